@@ -0,0 +1,56 @@
+package kirilloffna.taskrest.benchmark;
+
+import kirilloffna.taskrest.model.CategoryType;
+import kirilloffna.taskrest.model.OrderDetail;
+import kirilloffna.taskrest.model.OrderStatus;
+import kirilloffna.taskrest.model.Product;
+import kirilloffna.taskrest.model.ProductCategory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Генерирует графы объектов, близкие по форме к реальным данным: продукты с двумя категориями
+ * и заказы с несколькими строками.
+ */
+final class BenchmarkData {
+  static final List<ProductCategory> CATEGORIES = List.of(
+          new ProductCategory(1L, "Холодные", CategoryType.Напитки, null),
+          new ProductCategory(2L, "Горячие", CategoryType.Напитки, null),
+          new ProductCategory(3L, "Горячие", CategoryType.Закуски, null),
+          new ProductCategory(4L, "Холодные", CategoryType.Закуски, null),
+          new ProductCategory(5L, "Пирожное", CategoryType.Десерты, null),
+          new ProductCategory(6L, "Горячие", CategoryType.Основное_блюдо, null));
+
+  private BenchmarkData() {
+  }
+
+  static Product product(long id) {
+    List<ProductCategory> categories = List.of(
+            CATEGORIES.get((int) (id % CATEGORIES.size())),
+            CATEGORIES.get((int) ((id + 1) % CATEGORIES.size())));
+    return new Product(id, "Продукт " + id, BigDecimal.valueOf(100 + id % 900, 0).add(new BigDecimal("0.50")),
+            (int) (id % 20), true, new ArrayList<>(categories));
+  }
+
+  static OrderDetail orderDetail(long id, int lines) {
+    List<Product> products = new ArrayList<>(lines);
+    BigDecimal totalAmount = BigDecimal.ZERO;
+    for (int i = 0; i < lines; i++) {
+      Product product = product(id * 100 + i);
+      products.add(product);
+      totalAmount = totalAmount.add(product.getPrice());
+    }
+    OrderStatus status = OrderStatus.values()[(int) (id % OrderStatus.values().length)];
+    return new OrderDetail(id, status, products, totalAmount);
+  }
+
+  static List<OrderDetail> orderDetails(int count, int lines) {
+    List<OrderDetail> orderDetails = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      orderDetails.add(orderDetail(i, lines));
+    }
+    return orderDetails;
+  }
+}
@@ -0,0 +1,124 @@
+package kirilloffna.taskrest.benchmark;
+
+import kirilloffna.taskrest.dao.impl.OrderDetailDAOImpl;
+import kirilloffna.taskrest.dao.impl.ProductDAOImpl;
+import kirilloffna.taskrest.model.OrderDetail;
+import kirilloffna.taskrest.model.Product;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * База данных для бенчмарков DAO и HTTP.
+ * <p>
+ * По умолчанию запускается контейнер PostgreSQL той же версии, что и в тестах. Если задано системное свойство
+ * {@code bench.db.url} (и при необходимости {@code bench.db.username}, {@code bench.db.password}), используется
+ * указанная база данных. Она должна быть отдельной: схема создаётся из init.sql, если её ещё нет,
+ * и в неё добавляются тестовые данные.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+  private final PostgreSQLContainer<?> container;
+  private final String url;
+  private final String username;
+  private final String password;
+
+  private BenchmarkDatabase(PostgreSQLContainer<?> container, String url, String username, String password) {
+    this.container = container;
+    this.url = url;
+    this.username = username;
+    this.password = password;
+  }
+
+  static BenchmarkDatabase start() {
+    String url = System.getProperty("bench.db.url");
+    if (url != null) {
+      return new BenchmarkDatabase(null, url,
+              System.getProperty("bench.db.username", "admin"), System.getProperty("bench.db.password", "admin"));
+    }
+    PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:alpine3.18")
+            .withDatabaseName("bench_restaurant_db");
+    container.start();
+    return new BenchmarkDatabase(container, container.getJdbcUrl(), container.getUsername(), container.getPassword());
+  }
+
+  /**
+   * Направляет пул соединений приложения в эту базу данных. Вызывается до первого обращения к ConnectionProvider.
+   */
+  void useForApplication() {
+    System.setProperty("db.url", url);
+    System.setProperty("db.username", username);
+    System.setProperty("db.password", password);
+  }
+
+  Connection connect() throws SQLException {
+    return DriverManager.getConnection(url, username, password);
+  }
+
+  /**
+   * Создаёт схему, если её нет, и добавляет продукты меню и заказы через DAO приложения.
+   *
+   * @return Идентификаторы добавленных продуктов меню и заказов.
+   */
+  SeededIds seed(int menuProducts, int orders, int linesPerOrder) throws SQLException, IOException {
+    try (Connection connection = connect()) {
+      createSchema(connection);
+
+      List<Product> products = new ArrayList<>(menuProducts);
+      for (int i = 0; i < menuProducts; i++) {
+        Product product = BenchmarkData.product(i);
+        product.setId(null);
+        products.add(product);
+      }
+      new ProductDAOImpl().copyAll(products.iterator(), 1000, connection);
+
+      OrderDetailDAOImpl orderDetailDAO = new OrderDetailDAOImpl();
+      List<Long> orderIds = new ArrayList<>(orders);
+      for (int i = 1; i <= orders; i++) {
+        OrderDetail orderDetail = BenchmarkData.orderDetail(i, linesPerOrder);
+        orderDetail.setId(null);
+        orderDetail.getProducts().forEach(product -> product.setId(null));
+        orderDetailDAO.save(orderDetail, connection);
+        orderIds.add(orderDetail.getId());
+      }
+      connection.setAutoCommit(true);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("ANALYZE");
+      }
+      return new SeededIds(products.stream().map(Product::getId).toList(), orderIds);
+    }
+  }
+
+  private void createSchema(Connection connection) throws SQLException, IOException {
+    try (ResultSet tables = connection.getMetaData().getTables(null, null, "products", null)) {
+      if (tables.next()) {
+        return;
+      }
+    }
+    try (InputStream input = BenchmarkDatabase.class.getResourceAsStream("/init.sql");
+         Statement statement = connection.createStatement()) {
+      if (input == null) {
+        throw new IOException("init.sql not found on classpath");
+      }
+      statement.execute(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Override
+  public void close() {
+    if (container != null) {
+      container.stop();
+    }
+  }
+
+  record SeededIds(List<Long> productIds, List<Long> orderIds) {
+  }
+}
@@ -0,0 +1,103 @@
+package kirilloffna.taskrest.benchmark;
+
+import kirilloffna.taskrest.dao.impl.CategoryDictionary;
+import kirilloffna.taskrest.dao.impl.OrderDetailDAOImpl;
+import kirilloffna.taskrest.dao.impl.ProductDAOImpl;
+import kirilloffna.taskrest.model.OrderDetail;
+import kirilloffna.taskrest.model.Product;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет чтения {@link ProductDAOImpl} и {@link OrderDetailDAOImpl} на PostgreSQL, включая сеть,
+ * драйвер JDBC и сборку графа объектов. Каждый поток работает через своё соединение без пула.
+ * Настройка базы данных описана в {@link BenchmarkDatabase}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+  private static final int MENU_PRODUCTS = 1000;
+  private static final int ORDERS = 500;
+  private static final int LINES_PER_ORDER = 10;
+  private static final int PAGE_SIZE = 50;
+
+  @State(Scope.Benchmark)
+  public static class Database {
+    BenchmarkDatabase database;
+    List<Long> productIds;
+    List<Long> orderIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+      database = BenchmarkDatabase.start();
+      BenchmarkDatabase.SeededIds ids = database.seed(MENU_PRODUCTS, ORDERS, LINES_PER_ORDER);
+      productIds = ids.productIds();
+      orderIds = ids.orderIds();
+      CategoryDictionary.invalidate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      database.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Session {
+    Connection connection;
+    final ProductDAOImpl productDAO = new ProductDAOImpl();
+    final OrderDetailDAOImpl orderDetailDAO = new OrderDetailDAOImpl();
+
+    @Setup(Level.Trial)
+    public void setUp(Database database) throws SQLException {
+      connection = database.database.connect();
+      CategoryDictionary.preload(connection);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+      connection.close();
+    }
+  }
+
+  @Benchmark
+  public Optional<Product> productFindById(Database database, Session session) throws SQLException {
+    return session.productDAO.findById(randomId(database.productIds), session.connection);
+  }
+
+  @Benchmark
+  public List<Product> productFindPage(Database database, Session session) throws SQLException {
+    return session.productDAO.findPage(randomId(database.productIds) - 1, PAGE_SIZE, session.connection);
+  }
+
+  @Benchmark
+  public Optional<OrderDetail> orderDetailFindById(Database database, Session session) throws SQLException {
+    return session.orderDetailDAO.findById(randomId(database.orderIds), session.connection);
+  }
+
+  @Benchmark
+  public List<OrderDetail> orderDetailFindPage(Database database, Session session) throws SQLException {
+    return session.orderDetailDAO.findPage(randomId(database.orderIds) - 1, PAGE_SIZE, session.connection);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void orderDetailStreamAll(Session session, Blackhole blackhole) throws SQLException, IOException {
+    session.orderDetailDAO.streamAll(500, blackhole::consume, session.connection);
+  }
+
+  private static long randomId(List<Long> ids) {
+    return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+  }
+}
@@ -0,0 +1,83 @@
+package kirilloffna.taskrest.benchmark;
+
+import kirilloffna.taskrest.Application;
+import kirilloffna.taskrest.utils.ConnectionProvider;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает пропускную способность приложения в режимах потоков {@code platform} и {@code virtual}
+ * при 1000 одновременных клиентах.
+ * <p>
+ * Сервер запускается в том же JVM через {@link Application#createServer(int)} на свободном порту, каждый поток JMH —
+ * отдельный клиент, который последовательно запрашивает страницу заказов. Запрос выполняет два обращения
+ * к базе данных, поэтому результат определяется тем, сколько запросов одновременно ожидают JDBC. Режим
+ * {@code virtual} требует Java 21, на более ранней версии приложение использует платформенные потоки.
+ * Ожидание соединения из пула увеличено до минуты, чтобы очередь из 1000 клиентов измерялась как задержка,
+ * а не как ошибки. Количество клиентов меняется параметром {@code -t}, размер пула соединений —
+ * {@code -jvmArgsAppend -Ddb.pool.maxSize=...}. Настройка базы данных описана в {@link BenchmarkDatabase}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(1000)
+@State(Scope.Benchmark)
+public class HttpThroughputBenchmark {
+  private static final int MENU_PRODUCTS = 1000;
+  private static final int ORDERS = 500;
+  private static final int LINES_PER_ORDER = 10;
+  private static final String CONNECTION_TIMEOUT_PROPERTY = "db.pool.connectionTimeoutMs";
+
+  @Param({"platform", "virtual"})
+  public String threadMode;
+
+  private BenchmarkDatabase database;
+  private Tomcat tomcat;
+  private HttpClient client;
+  private HttpRequest orderDetailsPage;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException, IOException, LifecycleException {
+    database = BenchmarkDatabase.start();
+    database.seed(MENU_PRODUCTS, ORDERS, LINES_PER_ORDER);
+    database.useForApplication();
+    System.setProperty("server.threads.mode", threadMode);
+    if (System.getProperty(CONNECTION_TIMEOUT_PROPERTY) == null) {
+      System.setProperty(CONNECTION_TIMEOUT_PROPERTY, "60000");
+    }
+
+    tomcat = Application.createServer(0);
+    tomcat.start();
+    URI baseUri = URI.create("http://localhost:" + tomcat.getConnector().getLocalPort());
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    orderDetailsPage = HttpRequest.newBuilder(baseUri.resolve("/order-details?limit=20")).GET().build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws LifecycleException {
+    tomcat.stop();
+    tomcat.destroy();
+    ConnectionProvider.close();
+    database.close();
+  }
+
+  @Benchmark
+  public int orderDetailsPage() throws IOException, InterruptedException {
+    HttpResponse<byte[]> response = client.send(orderDetailsPage, HttpResponse.BodyHandlers.ofByteArray());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Unexpected status " + response.statusCode() + ": " + new String(response.body()));
+    }
+    return response.body().length;
+  }
+}
@@ -0,0 +1,62 @@
+package kirilloffna.taskrest.benchmark;
+
+import kirilloffna.taskrest.dto.OrderDetailDTO;
+import kirilloffna.taskrest.dto.ProductDTO;
+import kirilloffna.taskrest.mapper.OrderDetailMapper;
+import kirilloffna.taskrest.mapper.ProductMapper;
+import kirilloffna.taskrest.model.OrderDetail;
+import kirilloffna.taskrest.model.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет преобразования MapStruct между сущностями и DTO.
+ * Параметр lines задаёт количество строк в заказе.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+  private static final ProductMapper productMapper = ProductMapper.INSTANCE;
+  private static final OrderDetailMapper orderDetailMapper = OrderDetailMapper.INSTANCE;
+
+  @Param({"1", "20"})
+  private int lines;
+
+  private Product product;
+  private ProductDTO productDTO;
+  private OrderDetail orderDetail;
+  private OrderDetailDTO orderDetailDTO;
+
+  @Setup
+  public void setUp() {
+    product = BenchmarkData.product(42);
+    productDTO = productMapper.toDTO(product);
+    orderDetail = BenchmarkData.orderDetail(7, lines);
+    orderDetailDTO = orderDetailMapper.toDTO(orderDetail);
+  }
+
+  @Benchmark
+  public ProductDTO productToDTO() {
+    return productMapper.toDTO(product);
+  }
+
+  @Benchmark
+  public Product productToEntity() {
+    return productMapper.toEntity(productDTO);
+  }
+
+  @Benchmark
+  public OrderDetailDTO orderDetailToDTO() {
+    return orderDetailMapper.toDTO(orderDetail);
+  }
+
+  @Benchmark
+  public OrderDetail orderDetailToEntity() {
+    return orderDetailMapper.toEntity(orderDetailDTO);
+  }
+}
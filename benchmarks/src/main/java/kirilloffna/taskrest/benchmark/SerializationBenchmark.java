@@ -0,0 +1,59 @@
+package kirilloffna.taskrest.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kirilloffna.taskrest.dto.OrderDetailDTO;
+import kirilloffna.taskrest.dto.PageDTO;
+import kirilloffna.taskrest.mapper.OrderDetailMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет сериализацию графов OrderDetailDTO тем же ObjectMapper без дополнительной настройки,
+ * что используется в сервлетах: один заказ, страница из 50 заказов и обратное чтение заказа.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+  private static final int PAGE_SIZE = 50;
+
+  @Param({"5", "30"})
+  private int lines;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private OrderDetailDTO orderDetail;
+  private PageDTO<OrderDetailDTO> page;
+  private byte[] orderDetailJson;
+
+  @Setup
+  public void setUp() throws IOException {
+    OrderDetailMapper mapper = OrderDetailMapper.INSTANCE;
+    orderDetail = mapper.toDTO(BenchmarkData.orderDetail(7, lines));
+    List<OrderDetailDTO> orderDetails = BenchmarkData.orderDetails(PAGE_SIZE, lines).stream()
+            .map(mapper::toDTO)
+            .toList();
+    page = new PageDTO<>(orderDetails, (long) PAGE_SIZE);
+    orderDetailJson = objectMapper.writeValueAsBytes(orderDetail);
+  }
+
+  @Benchmark
+  public byte[] writeOrderDetail() throws IOException {
+    return objectMapper.writeValueAsBytes(orderDetail);
+  }
+
+  @Benchmark
+  public byte[] writeOrderDetailsPage() throws IOException {
+    return objectMapper.writeValueAsBytes(page);
+  }
+
+  @Benchmark
+  public OrderDetailDTO readOrderDetail() throws IOException {
+    return objectMapper.readValue(orderDetailJson, OrderDetailDTO.class);
+  }
+}
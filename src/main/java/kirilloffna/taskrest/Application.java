@@ -2,40 +2,195 @@ package kirilloffna.taskrest;
 
 import kirilloffna.taskrest.dao.OrderDetailDAO;
 import kirilloffna.taskrest.dao.ProductDAO;
+import kirilloffna.taskrest.dao.impl.CategoryDictionary;
+import kirilloffna.taskrest.dao.impl.ChangeListener;
+import kirilloffna.taskrest.dao.impl.ChangeNotifications;
+import kirilloffna.taskrest.dao.impl.OrderStatusTotals;
+import kirilloffna.taskrest.dao.impl.ProductNameIndex;
 import kirilloffna.taskrest.dao.impl.OrderDetailDAOImpl;
 import kirilloffna.taskrest.dao.impl.ProductDAOImpl;
+import kirilloffna.taskrest.dao.impl.StatementWarmup;
 import kirilloffna.taskrest.service.OrderDetailService;
-import kirilloffna.taskrest.service.ProductService;
 import kirilloffna.taskrest.service.impl.OrderDetailServiceImpl;
 import kirilloffna.taskrest.service.impl.ProductServiceImpl;
+import kirilloffna.taskrest.servlet.CompressionFilter;
+import kirilloffna.taskrest.servlet.MetricsServlet;
 import kirilloffna.taskrest.servlet.OrderDetailServlet;
+import kirilloffna.taskrest.servlet.OrderStatusEventsServlet;
+import kirilloffna.taskrest.servlet.OrderStatusTotalsServlet;
+import kirilloffna.taskrest.servlet.ProductImportServlet;
 import kirilloffna.taskrest.servlet.ProductServlet;
+import kirilloffna.taskrest.servlet.ProductSuggestServlet;
+import kirilloffna.taskrest.utils.ApplicationProperties;
+import kirilloffna.taskrest.utils.ConnectionProvider;
+import kirilloffna.taskrest.utils.DbExecutor;
+import kirilloffna.taskrest.utils.OrderStatusFeed;
+import kirilloffna.taskrest.utils.ThreadMode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+import java.sql.Connection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Основной класс приложения, который инициализирует и запускает встроенный сервер Tomcat.
  * Сервер Tomcat запускается на порту 9090.
+ * После остановки сервера закрывается пул соединений с базой данных.
+ * При старте загружается справочник категорий, если база данных доступна.
+ * Режим потоков для обработки запросов задаётся настройкой {@code server.threads.mode}, см. {@link ThreadMode}.
+ * При {@code server.async.enabled=true} запросы к продуктам и заказам выполняются асинхронно в {@link DbExecutor}.
+ * Метрики в формате Prometheus доступны по адресу {@code /metrics}, см. {@link MetricsServlet}.
+ * При {@code server.compression.enabled=true} ответы сжимаются, см. {@link CompressionFilter}.
+ * При {@code cache.sync.enabled=true} кэши обновляются по изменениям других экземпляров, см. {@link ChangeListener}.
  */
+@Slf4j
 public class Application {
+  private static final int PORT = 9090;
+
   public static void main(String[] args) throws LifecycleException {
+    Tomcat tomcat = createServer(PORT);
+    preloadCategories();
+    preloadProductNames();
+    scheduleOrderTotalsReconciliation();
+    tomcat.start();
+    tomcat.getServer().await();
+    ConnectionProvider.close();
+  }
+
+  /**
+   * Создаёт сервер Tomcat с сервлетами приложения, но не запускает его.
+   *
+   * @param port Порт сервера, 0 — любой свободный порт.
+   * @return Настроенный сервер.
+   */
+  public static Tomcat createServer(int port) {
+    ConnectionProvider.setConnectionInitializer(StatementWarmup::warmUp);
     Tomcat tomcat = new Tomcat();
     ProductDAO productDAO = new ProductDAOImpl();
     OrderDetailDAO orderDetailDAO = new OrderDetailDAOImpl();
-    ProductService productService = new ProductServiceImpl(productDAO);
-    OrderDetailService orderDetailService = new OrderDetailServiceImpl(orderDetailDAO);
+    ProductServiceImpl productService = new ProductServiceImpl(productDAO);
+    OrderDetailService orderDetailService = new OrderDetailServiceImpl(orderDetailDAO, productService::evictCachedProducts);
+    DbExecutor dbExecutor = ApplicationProperties.getBoolean("server.async.enabled", false)
+            ? DbExecutor.fromProperties() : null;
 
-    tomcat.setPort(9090);
-    tomcat.getConnector();
+    tomcat.setPort(port);
+    configureThreads(tomcat.getConnector(), ThreadMode.fromProperties());
 
     var context = tomcat.addContext("", null);
 
-    Tomcat.addServlet(context, "productServlet", new ProductServlet(productService));
+    Tomcat.addServlet(context, "productServlet", new ProductServlet(productService, dbExecutor))
+            .setAsyncSupported(true);
     context.addServletMappingDecoded("/products", "productServlet");
-    Tomcat.addServlet(context, "orderDetailServlet", new OrderDetailServlet(orderDetailService));
+    Tomcat.addServlet(context, "productImportServlet", new ProductImportServlet(productService));
+    context.addServletMappingDecoded("/products/import", "productImportServlet");
+    Tomcat.addServlet(context, "productSuggestServlet", new ProductSuggestServlet(productService));
+    context.addServletMappingDecoded("/products/suggest", "productSuggestServlet");
+    Tomcat.addServlet(context, "orderDetailServlet", new OrderDetailServlet(orderDetailService, dbExecutor))
+            .setAsyncSupported(true);
     context.addServletMappingDecoded("/order-details", "orderDetailServlet");
+    Tomcat.addServlet(context, "orderStatusTotalsServlet", new OrderStatusTotalsServlet(orderDetailService));
+    context.addServletMappingDecoded("/order-details/totals", "orderStatusTotalsServlet");
+    Tomcat.addServlet(context, "orderStatusEventsServlet", new OrderStatusEventsServlet(OrderStatusFeed.ORDERS))
+            .setAsyncSupported(true);
+    context.addServletMappingDecoded("/order-details/events", "orderStatusEventsServlet");
+    ChangeListener changeListener = ChangeNotifications.ENABLED
+            ? ChangeListener.fromProperties(productService::evictCachedProducts, productService::evictAllCachedProducts)
+            : null;
+    Tomcat.addServlet(context, "metricsServlet",
+            new MetricsServlet(productService::getCacheStats, dbExecutor, changeListener));
+    context.addServletMappingDecoded("/metrics", "metricsServlet");
+    if (ApplicationProperties.getBoolean("server.compression.enabled", true)) {
+      addCompressionFilter(context);
+    }
 
-    tomcat.start();
-    tomcat.getServer().await();
+    if (changeListener != null) {
+      tomcat.getServer().addLifecycleListener(event -> {
+        if (Lifecycle.AFTER_START_EVENT.equals(event.getType())) {
+          changeListener.start();
+        } else if (Lifecycle.BEFORE_STOP_EVENT.equals(event.getType())) {
+          changeListener.stop();
+        }
+      });
+    }
+    if (dbExecutor != null) {
+      tomcat.getServer().addLifecycleListener(event -> {
+        if (Lifecycle.AFTER_STOP_EVENT.equals(event.getType())) {
+          dbExecutor.shutdown();
+        }
+      });
+    }
+    return tomcat;
+  }
+
+  private static void addCompressionFilter(Context context) {
+    FilterDef filterDef = new FilterDef();
+    filterDef.setFilterName("compressionFilter");
+    filterDef.setFilter(CompressionFilter.fromProperties());
+    filterDef.setAsyncSupported("true");
+    context.addFilterDef(filterDef);
+    FilterMap filterMap = new FilterMap();
+    filterMap.setFilterName("compressionFilter");
+    filterMap.addURLPatternDecoded("/*");
+    context.addFilterMap(filterMap);
+  }
+
+  private static void configureThreads(Connector connector, ThreadMode threadMode) {
+    if (threadMode == ThreadMode.VIRTUAL) {
+      connector.setProperty("useVirtualThreads", "true");
+      log.info("Requests are executed on virtual threads");
+    } else {
+      int maxThreads = ApplicationProperties.getInt("server.threads.max", 200);
+      connector.setProperty("maxThreads", String.valueOf(maxThreads));
+      log.info("Requests are executed on up to {} platform threads", maxThreads);
+    }
+  }
+
+  private static void preloadCategories() {
+    try (Connection connection = ConnectionProvider.getConnection()) {
+      CategoryDictionary.preload(connection);
+    } catch (Exception e) {
+      log.warn("Product categories are not preloaded, they will be loaded on first use: {}", e.getMessage());
+    }
+  }
+
+  private static void preloadProductNames() {
+    try (Connection connection = ConnectionProvider.getConnection()) {
+      ProductNameIndex.preload(connection);
+    } catch (Exception e) {
+      log.warn("Product names are not preloaded, they will be loaded on first suggest request: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Загружает итоги заказов по статусам и периодически сверяет их с базой данных, см. {@link OrderStatusTotals}.
+   * Период задаётся свойством {@code order.totals.reconcileSeconds}, 0 отключает сверку.
+   */
+  private static void scheduleOrderTotalsReconciliation() {
+    long periodSeconds = ApplicationProperties.getLong("order.totals.reconcileSeconds", 60);
+    if (periodSeconds <= 0) {
+      return;
+    }
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "order-totals-reconciler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(Application::reconcileOrderTotals, 0, periodSeconds, TimeUnit.SECONDS);
+  }
+
+  private static void reconcileOrderTotals() {
+    try (Connection connection = ConnectionProvider.getConnection()) {
+      OrderStatusTotals.reconcile(connection);
+    } catch (Exception e) {
+      log.warn("Order totals are not reconciled, the next attempt is scheduled: {}", e.getMessage());
+    }
   }
 }
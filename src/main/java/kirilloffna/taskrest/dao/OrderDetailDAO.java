@@ -2,6 +2,7 @@ package kirilloffna.taskrest.dao;
 
 import kirilloffna.taskrest.model.OrderDetail;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
@@ -36,17 +37,19 @@ public interface OrderDetailDAO {
    *
    * @param orderDetail Сущность {@link OrderDetail}, которую необходимо обновить.
    * @param connection  Соединение с базой данных.
-   * @return Optional обновлённая сущность {@link OrderDetail}, если обновление успешно.
+   * @return Optional обновлённая сущность {@link OrderDetail} с изменёнными строками заказа, если обновление
+   * успешно, или пустой Optional, если заказ с таким ID не найден.
    */
-  Optional<OrderDetail> update(OrderDetail orderDetail, Connection connection) throws SQLException;
+  Optional<OrderDetailUpdate> update(OrderDetail orderDetail, Connection connection) throws SQLException;
 
   /**
    * Удаляет сущность {@link OrderDetail} из базы данных по идентификатору.
    *
    * @param id          Идентификатор удаляемой сущности.
    * @param connection  Соединение с базой данных.
+   * @return Идентификаторы удалённых строк заказа или пустой список, если заказ не удалён.
    */
-  void deleteById(Long id, Connection connection) throws SQLException;
+  List<Long> deleteById(Long id, Connection connection) throws SQLException;
 
   /**
    * Возвращает список всех сущностей {@link OrderDetail} из базы данных.
@@ -55,4 +58,43 @@ public interface OrderDetailDAO {
    * @return Список всех сущностей {@link OrderDetail}.
    */
   List<OrderDetail> findAll(Connection connection) throws SQLException;
+
+  /**
+   * Возвращает страницу сущностей {@link OrderDetail}, упорядоченных по идентификатору (keyset-пагинация).
+   *
+   * @param afterId    Идентификатор, после которого начинается страница, {@code null} для первой страницы.
+   * @param limit      Максимальное количество сущностей на странице.
+   * @param connection Соединение с базой данных.
+   * @return Список сущностей {@link OrderDetail} с идентификатором больше afterId.
+   */
+  List<OrderDetail> findPage(Long afterId, int limit, Connection connection) throws SQLException;
+
+  /**
+   * Потоково читает все сущности {@link OrderDetail} из базы данных. Строки читаются серверным курсором порциями
+   * по fetchSize и передаются в callback по одной, не накапливаясь в памяти.
+   *
+   * @param fetchSize  Количество строк, читаемых из курсора за одно обращение к базе данных.
+   * @param callback   Обработчик, вызываемый для каждой сущности {@link OrderDetail}.
+   * @param connection Соединение с базой данных.
+   */
+  void streamAll(int fetchSize, RowCallback<OrderDetail> callback, Connection connection) throws SQLException, IOException;
+
+  /**
+   * Возвращает версию сущности {@link OrderDetail}. Версия меняется при каждом изменении сущности, в том числе
+   * её продуктов и их категорий.
+   *
+   * @param id         Идентификатор сущности.
+   * @param connection Соединение с базой данных.
+   * @return Опционально версия, если сущность с таким идентификатором найдена, иначе пусто.
+   */
+  Optional<Long> findVersion(Long id, Connection connection) throws SQLException;
+
+  /**
+   * Возвращает версию списка всех сущностей {@link OrderDetail}, которая меняется при любом их создании, изменении
+   * или удалении.
+   *
+   * @param connection Соединение с базой данных.
+   * @return Версия в виде {@code <количество>-<максимальная версия сущности>}.
+   */
+  String findListVersion(Connection connection) throws SQLException;
 }
@@ -0,0 +1,23 @@
+package kirilloffna.taskrest.dao;
+
+import kirilloffna.taskrest.model.OrderDetail;
+import kirilloffna.taskrest.model.OrderStatus;
+
+import java.util.Set;
+
+/**
+ * Результат обновления {@link OrderDetail}.
+ *
+ * @param orderDetail    Обновлённая сущность {@link OrderDetail}.
+ * @param previousStatus Статус заказа до обновления.
+ * @param changedLineIds Идентификаторы вставленных, изменённых и удалённых строк заказа.
+ */
+public record OrderDetailUpdate(OrderDetail orderDetail, OrderStatus previousStatus, Set<Long> changedLineIds) {
+
+  /**
+   * Возвращает {@code true}, если обновление изменило статус заказа.
+   */
+  public boolean isStatusChanged() {
+    return previousStatus != orderDetail.getOrderStatus();
+  }
+}
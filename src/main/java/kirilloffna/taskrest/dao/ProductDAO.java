@@ -1,11 +1,15 @@
 package kirilloffna.taskrest.dao;
 
+import kirilloffna.taskrest.dto.ProductFilter;
 import kirilloffna.taskrest.model.Product;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Интерфейс для работы с сущностью {@link Product} в базе данных.
@@ -36,7 +40,8 @@ public interface ProductDAO {
    *
    * @param product    Сущность {@link Product}, которую необходимо обновить.
    * @param connection Соединение с базой данных.
-   * @return Опционально обновлённая сущность {@link Product}, если обновление успешно, иначе пусто.
+   * @return Опционально обновлённая сущность {@link Product}, если обновление успешно, иначе пусто —
+   * продукт с таким ID не найден.
    */
   Optional<Product> update(Product product, Connection connection) throws SQLException;
 
@@ -55,5 +60,76 @@ public interface ProductDAO {
    * @return Список всех сущностей {@link Product}.
    */
   List<Product> findAll(Connection connection) throws SQLException;
-}
 
+  /**
+   * Возвращает страницу сущностей {@link Product}, упорядоченных по идентификатору (keyset-пагинация).
+   *
+   * @param afterId    Идентификатор, после которого начинается страница, {@code null} для первой страницы.
+   * @param limit      Максимальное количество сущностей на странице.
+   * @param connection Соединение с базой данных.
+   * @return Список сущностей {@link Product} с идентификатором больше afterId.
+   */
+  List<Product> findPage(Long afterId, int limit, Connection connection) throws SQLException;
+
+  /**
+   * Возвращает сущности {@link Product}, удовлетворяющие фильтру, упорядоченные по идентификатору. В запрос
+   * попадают только условия заданных полей фильтра, значения передаются параметрами.
+   *
+   * @param filter     Условия отбора.
+   * @param afterId    Идентификатор, после которого начинается страница, {@code null} для первой страницы.
+   * @param limit      Максимальное количество сущностей или {@code null} — без ограничения.
+   * @param connection Соединение с базой данных.
+   * @return Список сущностей {@link Product} с идентификатором больше afterId.
+   */
+  List<Product> findFiltered(ProductFilter filter, Long afterId, Integer limit, Connection connection)
+          throws SQLException;
+
+  /**
+   * Потоково читает все сущности {@link Product} из базы данных. Строки читаются серверным курсором порциями
+   * по fetchSize и передаются в callback по одной, не накапливаясь в памяти.
+   *
+   * @param fetchSize  Количество строк, читаемых из курсора за одно обращение к базе данных.
+   * @param callback   Обработчик, вызываемый для каждой сущности {@link Product}.
+   * @param connection Соединение с базой данных.
+   */
+  void streamAll(int fetchSize, RowCallback<Product> callback, Connection connection) throws SQLException, IOException;
+
+  /**
+   * Возвращает идентификаторы всех категорий продуктов.
+   *
+   * @param connection Соединение с базой данных.
+   * @return Множество идентификаторов категорий.
+   */
+  Set<Long> findCategoryIds(Connection connection) throws SQLException;
+
+  /**
+   * Массово загружает сущности {@link Product} и их связи с категориями командой COPY в одной транзакции.
+   * Продукты читаются из итератора порциями по chunkSize, поэтому в памяти находится не больше одной порции.
+   * При ошибке транзакция откатывается целиком.
+   *
+   * @param products   Итератор загружаемых сущностей {@link Product}.
+   * @param chunkSize  Количество продуктов в одной команде COPY.
+   * @param connection Соединение с базой данных.
+   * @return Количество загруженных продуктов.
+   */
+  long copyAll(Iterator<Product> products, int chunkSize, Connection connection) throws SQLException, IOException;
+
+  /**
+   * Возвращает версию сущности {@link Product}. Версия меняется при каждом изменении сущности, в том числе
+   * её продуктов и их категорий.
+   *
+   * @param id         Идентификатор сущности.
+   * @param connection Соединение с базой данных.
+   * @return Опционально версия, если сущность с таким идентификатором найдена, иначе пусто.
+   */
+  Optional<Long> findVersion(Long id, Connection connection) throws SQLException;
+
+  /**
+   * Возвращает версию списка всех сущностей {@link Product}, которая меняется при любом их создании, изменении
+   * или удалении.
+   *
+   * @param connection Соединение с базой данных.
+   * @return Версия в виде {@code <количество>-<максимальная версия сущности>}.
+   */
+  String findListVersion(Connection connection) throws SQLException;
+}
@@ -0,0 +1,20 @@
+package kirilloffna.taskrest.dao;
+
+import java.io.IOException;
+
+/**
+ * Обработчик строк потоковой выборки. Вызывается для каждой сущности по мере чтения из базы данных,
+ * поэтому выборка не накапливается в памяти.
+ *
+ * @param <T> Тип обрабатываемой сущности.
+ */
+@FunctionalInterface
+public interface RowCallback<T> {
+
+  /**
+   * Обрабатывает очередную сущность выборки.
+   *
+   * @param row Очередная сущность.
+   */
+  void accept(T row) throws IOException;
+}
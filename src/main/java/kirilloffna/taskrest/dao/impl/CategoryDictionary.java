@@ -0,0 +1,122 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.CategoryType;
+import kirilloffna.taskrest.model.ProductCategory;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ALL_CATEGORIES;
+
+/**
+ * Справочник категорий продуктов в памяти.
+ * <p>
+ * Таблица products_categories небольшая и почти не меняется, поэтому она целиком загружается в неизменяемую
+ * карту по идентификатору, а запросы продуктов выбирают только идентификаторы категорий из таблицы связей.
+ * Экземпляры {@link ProductCategory} общие для всех продуктов и не должны изменяться.
+ * <p>
+ * Справочник загружается при первом обращении и перезагружается, если встречен неизвестный идентификатор
+ * или вызван {@link #invalidate()}. Идентификаторы, которых нет и после перезагрузки, запоминаются до следующей
+ * загрузки справочника, чтобы строки с одной и той же висячей ссылкой не перезагружали его каждая.
+ */
+@Slf4j
+@UtilityClass
+public class CategoryDictionary {
+  private static final ReentrantLock lock = new ReentrantLock();
+  private static volatile Loaded categories;
+
+  /**
+   * Загружает справочник, если он ещё не загружен. Используется для предзагрузки при старте приложения.
+   *
+   * @param connection Соединение с базой данных.
+   */
+  public static void preload(Connection connection) throws SQLException {
+    getCategories(connection);
+  }
+
+  /**
+   * Возвращает категорию по идентификатору. Если категории нет в загруженном справочнике, справочник
+   * перезагружается один раз, а не найденный после перезагрузки идентификатор больше не перезагружает справочник
+   * до следующей загрузки.
+   *
+   * @param id         Идентификатор категории.
+   * @param connection Соединение с базой данных, используется только для загрузки справочника.
+   * @return Общий экземпляр {@link ProductCategory} или {@code null}, если категория не найдена и после перезагрузки.
+   */
+  public static ProductCategory resolve(long id, Connection connection) throws SQLException {
+    Loaded current = getCategories(connection);
+    ProductCategory category = current.categories().get(id);
+    if (category != null || current.missing().contains(id)) {
+      return category;
+    }
+    Loaded reloaded = reload(current, connection);
+    category = reloaded.categories().get(id);
+    if (category == null && reloaded.missing().add(id)) {
+      log.warn("Product category {} not found", id);
+    }
+    return category;
+  }
+
+  /**
+   * Сбрасывает справочник, следующий вызов загрузит его заново.
+   */
+  public static void invalidate() {
+    categories = null;
+  }
+
+  private static Loaded getCategories(Connection connection) throws SQLException {
+    Loaded current = categories;
+    return current != null ? current : reload(null, connection);
+  }
+
+  /**
+   * Перезагружает справочник, если его не успел перезагрузить другой поток после того, как был прочитан expected.
+   */
+  private static Loaded reload(Loaded expected, Connection connection) throws SQLException {
+    lock.lock();
+    try {
+      if (categories != expected) {
+        return categories != null ? categories : load(connection);
+      }
+      return load(connection);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static Loaded load(Connection connection) throws SQLException {
+    Map<Long, ProductCategory> loaded = new HashMap<>();
+    long start = System.nanoTime();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_CATEGORIES);
+         ResultSet resultSet = preparedStatement.executeQuery()) {
+      while (resultSet.next()) {
+        long id = resultSet.getLong("id");
+        loaded.put(id, new ProductCategory(id, resultSet.getString("name"),
+                CategoryType.valueOf(resultSet.getString("type")), null));
+      }
+    }
+    QueryMetrics.record(SELECT_ALL_CATEGORIES, start, loaded.size());
+    Loaded current = new Loaded(Map.copyOf(loaded), ConcurrentHashMap.newKeySet());
+    categories = current;
+    log.info("Loaded {} product categories", loaded.size());
+    return current;
+  }
+
+  /**
+   * Загруженный справочник.
+   *
+   * @param categories Категории по идентификатору.
+   * @param missing    Идентификаторы, не найденные в этом справочнике после перезагрузки.
+   */
+  private record Loaded(Map<Long, ProductCategory> categories, Set<Long> missing) {
+  }
+}
@@ -0,0 +1,222 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.utils.ApplicationProperties;
+import kirilloffna.taskrest.utils.ConnectionProvider;
+import kirilloffna.taskrest.utils.ResponseCache;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Слушатель уведомлений {@link ChangeNotifications} об изменениях, выполненных другими экземплярами приложения.
+ * <p>
+ * Слушатель держит отдельное соединение с основной базой данных вне пула, подписанное командой LISTEN, и ждёт
+ * уведомлений в своём потоке. Драйвер возвращает уведомление сразу после его получения, поэтому кэши этого
+ * экземпляра обновляются через миллисекунды после фиксации изменения на другом экземпляре. Уведомления, полученные
+ * вместе, применяются одним обновлением:
+ * <ul>
+ *   <li>записи изменённых продуктов удаляются из кэша продуктов, а их названия перечитываются в {@link ProductNameIndex};</li>
+ *   <li>сбрасывается кэш готовых ответов {@link ResponseCache#PRODUCTS};</li>
+ *   <li>изменения заказов из уведомлений применяются к итогам {@link OrderStatusTotals} без запроса к базе данных,
+ *   итоги перечитываются, только если уведомление не содержит изменения.</li>
+ * </ul>
+ * Свои уведомления пропускаются: после фиксации изменения DAO этого экземпляра перечитывают названия
+ * {@link ProductNameIndex#sync(Collection, Connection)} и применяют итоги {@link OrderStatusTotals}, а сервисы удаляют
+ * из кэша продуктов изменённые продукты и строки заказа.
+ * <p>
+ * Уведомления, отправленные, пока соединение было разорвано, не доставляются. Поэтому после каждого подключения
+ * слушатель сначала подписывается на канал, а затем полностью сбрасывает и перечитывает кэши. Разрыв соединения
+ * обнаруживается проверкой соединения, если уведомлений не было {@code cache.sync.pollMs}, после чего слушатель
+ * подключается заново каждые {@code cache.sync.reconnectMs}.
+ */
+@Slf4j
+public class ChangeListener {
+  private final Consumer<Collection<Long>> productEviction;
+  private final Runnable allProductsEviction;
+  private final int pollMs;
+  private final long reconnectMs;
+  private final LongAdder received = new LongAdder();
+  private final LongAdder applied = new LongAdder();
+  private final LongAdder resyncs = new LongAdder();
+  private volatile boolean connected;
+  private volatile Thread thread;
+
+  /**
+   * @param productEviction     Удаляет записи продуктов из кэша продуктов.
+   * @param allProductsEviction Очищает кэш продуктов.
+   * @param pollMs              Время ожидания уведомлений, после которого проверяется соединение.
+   * @param reconnectMs         Задержка перед повторным подключением.
+   */
+  public ChangeListener(Consumer<Collection<Long>> productEviction, Runnable allProductsEviction,
+                        int pollMs, long reconnectMs) {
+    this.productEviction = productEviction;
+    this.allProductsEviction = allProductsEviction;
+    this.pollMs = pollMs;
+    this.reconnectMs = reconnectMs;
+  }
+
+  /**
+   * Создаёт слушатель с настройками {@code cache.sync.*}.
+   */
+  public static ChangeListener fromProperties(Consumer<Collection<Long>> productEviction,
+                                              Runnable allProductsEviction) {
+    return new ChangeListener(productEviction, allProductsEviction,
+            ApplicationProperties.getInt("cache.sync.pollMs", 10000),
+            ApplicationProperties.getLong("cache.sync.reconnectMs", 5000));
+  }
+
+  /**
+   * Запускает поток слушателя.
+   */
+  public void start() {
+    Thread listener = new Thread(this::run, "cache-sync-listener");
+    listener.setDaemon(true);
+    thread = listener;
+    listener.start();
+    log.info("Listening for cache changes on channel {} as node {}", ChangeNotifications.CHANNEL,
+            ChangeNotifications.NODE_ID);
+  }
+
+  /**
+   * Останавливает поток слушателя, соединение закрывается при выходе из потока.
+   */
+  public void stop() {
+    Thread listener = thread;
+    thread = null;
+    if (listener != null) {
+      listener.interrupt();
+    }
+  }
+
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * Возвращает количество полученных уведомлений, включая свои.
+   */
+  public long getReceived() {
+    return received.sum();
+  }
+
+  /**
+   * Возвращает количество применённых уведомлений других экземпляров приложения.
+   */
+  public long getApplied() {
+    return applied.sum();
+  }
+
+  /**
+   * Возвращает количество полных пересинхронизаций кэшей после подключения.
+   */
+  public long getResyncs() {
+    return resyncs.sum();
+  }
+
+  private void run() {
+    while (thread == Thread.currentThread()) {
+      try (Connection connection = ConnectionProvider.openDedicatedConnection()) {
+        listen(connection);
+      } catch (SQLException e) {
+        log.warn("Cache change listener is disconnected, reconnecting in {} ms: {}", reconnectMs, e.getMessage());
+      } finally {
+        connected = false;
+      }
+      try {
+        TimeUnit.MILLISECONDS.sleep(reconnectMs);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private void listen(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("LISTEN " + ChangeNotifications.CHANNEL);
+    }
+    connected = true;
+    resync(connection);
+    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+    while (thread == Thread.currentThread()) {
+      PGNotification[] notifications = pgConnection.getNotifications(pollMs);
+      if (notifications != null && notifications.length > 0) {
+        apply(notifications, connection);
+      } else if (!connection.isValid((int) TimeUnit.MILLISECONDS.toSeconds(Math.max(pollMs, 1000)))) {
+        throw new SQLException("Listener connection is not valid");
+      }
+    }
+  }
+
+  /**
+   * Сбрасывает кэши, которые могли пропустить изменения, пока слушатель не был подписан на канал.
+   */
+  private void resync(Connection connection) throws SQLException {
+    allProductsEviction.run();
+    ResponseCache.PRODUCTS.invalidate();
+    CategoryDictionary.invalidate();
+    ProductNameIndex.invalidate();
+    ProductNameIndex.preload(connection);
+    OrderStatusTotals.refresh(connection);
+    resyncs.increment();
+    log.info("Caches are resynchronized with the database after the listener connected");
+  }
+
+  void apply(PGNotification[] notifications, Connection connection) throws SQLException {
+    Set<Long> productIds = new LinkedHashSet<>();
+    boolean allProducts = false;
+    boolean refreshTotals = false;
+    int remote = 0;
+    for (PGNotification notification : notifications) {
+      received.increment();
+      Optional<ChangeNotifications.Notification> parsed = ChangeNotifications.parse(notification.getParameter());
+      if (parsed.isEmpty()) {
+        log.warn("Unknown cache change notification: {}", notification.getParameter());
+        continue;
+      }
+      ChangeNotifications.Notification change = parsed.get();
+      if (change.isLocal()) {
+        continue;
+      }
+      remote++;
+      if (change.kind() == ChangeNotifications.Kind.ORDER) {
+        if (change.totalsChange() != null) {
+          OrderStatusTotals.applyRemote(change.totalsChange().transactionId(), change.totalsChange().change());
+        } else {
+          refreshTotals = true;
+        }
+      }
+      if (change.isAllProducts()) {
+        allProducts = true;
+      } else {
+        productIds.addAll(change.productIds());
+      }
+    }
+    if (remote == 0) {
+      return;
+    }
+    ResponseCache.PRODUCTS.invalidate();
+    if (allProducts) {
+      allProductsEviction.run();
+      ProductNameIndex.invalidate();
+    } else if (!productIds.isEmpty()) {
+      productEviction.accept(productIds);
+      ProductNameIndex.refresh(productIds, connection);
+    }
+    if (refreshTotals) {
+      OrderStatusTotals.refresh(connection);
+    }
+    applied.add(remote);
+    log.debug("Applied {} cache change notifications from other nodes", remote);
+  }
+}
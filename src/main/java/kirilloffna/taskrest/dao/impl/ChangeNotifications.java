@@ -0,0 +1,221 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.OrderStatus;
+import kirilloffna.taskrest.utils.ApplicationProperties;
+import lombok.experimental.UtilityClass;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.NOTIFY_CHANGE;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.NOTIFY_ORDER_CHANGE;
+
+/**
+ * Уведомления об изменении продуктов и заказов для других экземпляров приложения.
+ * <p>
+ * DAO вызывают методы этого класса в транзакции изменения до её фиксации. Уведомление отправляется
+ * {@code pg_notify} в канал {@code cache.sync.channel}, и PostgreSQL доставляет его слушателям только после фиксации
+ * транзакции, а при откате не доставляет. Экземпляры приложения получают уведомления через {@link ChangeListener}.
+ * <p>
+ * Уведомление имеет вид {@code <узел>:<вид>:<идентификаторы>}, где узел — {@link #NODE_ID} отправителя, вид —
+ * {@code product} или {@code order}, а идентификаторы — изменённые продукты через запятую или {@code *}, если
+ * изменены все продукты или их список не помещается в уведомление.
+ * <p>
+ * Уведомление об изменении заказа дополнительно содержит изменение итогов {@link OrderStatusTotals}:
+ * {@code <узел>:order:<идентификаторы>:<транзакция>,<статус до>,<сумма до>,<статус после>,<сумма после>}, где
+ * транзакция — {@code txid_current()} отправителя, а отсутствующие статус и сумма пусты. Получатели применяют
+ * изменение к итогам в памяти без пересчёта запросом с GROUP BY.
+ */
+@UtilityClass
+public class ChangeNotifications {
+  private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+  /**
+   * Идентификатор этого экземпляра приложения: свои уведомления слушатель пропускает.
+   */
+  public static final String NODE_ID = UUID.randomUUID().toString();
+  public static final boolean ENABLED = ApplicationProperties.getBoolean("cache.sync.enabled", true);
+  public static final String CHANNEL = channel(ApplicationProperties.getString("cache.sync.channel", "taskrest_changes"));
+  static final String ALL_IDS = "*";
+  /**
+   * Ограничение длины списка идентификаторов: длина уведомления PostgreSQL не больше 8000 байт.
+   */
+  private static final int MAX_IDS_LENGTH = 7000;
+
+  /**
+   * Вид изменённых данных.
+   */
+  public enum Kind {
+    /**
+     * Изменены продукты меню.
+     */
+    PRODUCT,
+    /**
+     * Изменён заказ, идентификаторы — изменённые строки заказа.
+     */
+    ORDER
+  }
+
+  /**
+   * Уведомляет об изменении продуктов.
+   *
+   * @param connection Соединение, в транзакции которого изменены продукты.
+   * @param productIds Идентификаторы изменённых продуктов.
+   */
+  public static void products(Connection connection, Collection<Long> productIds) throws SQLException {
+    send(connection, Kind.PRODUCT, join(productIds));
+  }
+
+  /**
+   * Уведомляет об изменении неизвестного множества продуктов, например после импорта.
+   */
+  public static void allProducts(Connection connection) throws SQLException {
+    send(connection, Kind.PRODUCT, ALL_IDS);
+  }
+
+  /**
+   * Уведомляет об изменении заказа.
+   *
+   * @param connection Соединение, в транзакции которого изменён заказ.
+   * @param productIds Идентификаторы вставленных, изменённых и удалённых строк заказа.
+   * @param change     Изменение итогов заказов.
+   */
+  public static void order(Connection connection, Collection<Long> productIds, OrderStatusTotals.Change change)
+          throws SQLException {
+    if (!ENABLED) {
+      return;
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement(NOTIFY_ORDER_CHANGE)) {
+      preparedStatement.setString(1, CHANNEL);
+      preparedStatement.setString(2, format(Kind.ORDER, join(productIds)) + ":");
+      preparedStatement.setString(3, "," + String.join(",", text(change.removedStatus()),
+              text(change.removedAmount()), text(change.addedStatus()), text(change.addedAmount())));
+      long start = System.nanoTime();
+      preparedStatement.execute();
+      QueryMetrics.record(NOTIFY_ORDER_CHANGE, start, 1);
+    }
+  }
+
+  /**
+   * Разбирает уведомление.
+   *
+   * @param payload Текст уведомления.
+   * @return Уведомление или {@link Optional#empty()}, если текст не соответствует формату.
+   */
+  public static Optional<Notification> parse(String payload) {
+    String[] parts = payload.split(":", 4);
+    if (parts.length < 3) {
+      return Optional.empty();
+    }
+    try {
+      Kind kind = Kind.valueOf(parts[1].toUpperCase(Locale.ROOT));
+      if (parts.length == 4 && kind != Kind.ORDER) {
+        return Optional.empty();
+      }
+      TotalsChange totalsChange = parts.length == 4 ? parseTotalsChange(parts[3]) : null;
+      if (ALL_IDS.equals(parts[2])) {
+        return Optional.of(new Notification(parts[0], kind, null, totalsChange));
+      }
+      Set<Long> productIds = new LinkedHashSet<>();
+      for (String id : parts[2].split(",")) {
+        if (!id.isEmpty()) {
+          productIds.add(Long.parseLong(id));
+        }
+      }
+      return Optional.of(new Notification(parts[0], kind, productIds, totalsChange));
+    } catch (IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+
+  static String format(Kind kind, String ids) {
+    return NODE_ID + ":" + kind.name().toLowerCase(Locale.ROOT) + ":" + ids;
+  }
+
+  private static void send(Connection connection, Kind kind, String ids) throws SQLException {
+    if (!ENABLED) {
+      return;
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement(NOTIFY_CHANGE)) {
+      preparedStatement.setString(1, CHANNEL);
+      preparedStatement.setString(2, format(kind, ids));
+      long start = System.nanoTime();
+      preparedStatement.execute();
+      QueryMetrics.record(NOTIFY_CHANGE, start, 1);
+    }
+  }
+
+  private static TotalsChange parseTotalsChange(String text) {
+    String[] fields = text.split(",", -1);
+    if (fields.length != 5) {
+      throw new IllegalArgumentException("Invalid order totals change: " + text);
+    }
+    return new TotalsChange(Long.parseLong(fields[0]), new OrderStatusTotals.Change(
+            fields[1].isEmpty() ? null : OrderStatus.valueOf(fields[1]),
+            fields[2].isEmpty() ? null : new BigDecimal(fields[2]),
+            fields[3].isEmpty() ? null : OrderStatus.valueOf(fields[3]),
+            fields[4].isEmpty() ? null : new BigDecimal(fields[4])));
+  }
+
+  private static String text(OrderStatus status) {
+    return status == null ? "" : status.name();
+  }
+
+  private static String text(BigDecimal amount) {
+    return amount == null ? "" : amount.toPlainString();
+  }
+
+  private static String join(Collection<Long> ids) {
+    String joined = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    return joined.length() > MAX_IDS_LENGTH ? ALL_IDS : joined;
+  }
+
+  /**
+   * Имя канала подставляется в команду LISTEN без параметров, поэтому допускается только простой идентификатор.
+   */
+  private static String channel(String name) {
+    if (!CHANNEL_NAME.matcher(name).matches()) {
+      throw new IllegalArgumentException("Invalid cache.sync.channel: " + name);
+    }
+    return name;
+  }
+
+  /**
+   * Полученное уведомление.
+   *
+   * @param node         {@link #NODE_ID} отправителя.
+   * @param kind         Вид изменённых данных.
+   * @param productIds   Идентификаторы изменённых продуктов или строк заказа, {@code null} — все продукты.
+   * @param totalsChange Изменение итогов заказов или {@code null}, если уведомление его не содержит.
+   */
+  public record Notification(String node, Kind kind, Set<Long> productIds, TotalsChange totalsChange) {
+    /**
+     * Возвращает {@code true}, если уведомление отправлено этим экземпляром приложения.
+     */
+    public boolean isLocal() {
+      return NODE_ID.equals(node);
+    }
+
+    public boolean isAllProducts() {
+      return productIds == null;
+    }
+  }
+
+  /**
+   * Изменение итогов заказов из уведомления.
+   *
+   * @param transactionId Транзакция отправителя, в которой изменён заказ.
+   * @param change        Изменение заказа.
+   */
+  public record TotalsChange(long transactionId, OrderStatusTotals.Change change) {
+  }
+}
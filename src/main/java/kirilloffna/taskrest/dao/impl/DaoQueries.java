@@ -10,27 +10,107 @@ import lombok.experimental.UtilityClass;
 public class DaoQueries {
   public static final String INSERT_PRODUCT_SQL = "INSERT INTO products (name, price, quantity, available) VALUES (?, ?, ?, ?)";
   public static final String SELECT_PRODUCT_BY_ID = "SELECT * FROM products WHERE id = ?";
-  public static final String UPDATE_PRODUCT_SQL = "UPDATE products SET name = ?, price = ?, quantity = ?, available = ? WHERE id = ?";
+  public static final String UPDATE_PRODUCT_SQL = "WITH updated AS (" +
+          "UPDATE products SET name = ?, price = ?, quantity = ?, available = ?, " +
+          "version = nextval('entity_version_seq') WHERE id = ? RETURNING id, name, price, quantity, available, " +
+          "order_detail_id), " +
+          "touched AS (UPDATE order_details SET version = nextval('entity_version_seq') " +
+          "WHERE id = (SELECT order_detail_id FROM updated)) " +
+          "SELECT id, name, price, quantity, available FROM updated";
+  public static final String SELECT_PRODUCT_VERSION = "SELECT version FROM products WHERE id = ?";
+  public static final String SELECT_PRODUCTS_VERSION = "SELECT count(*), coalesce(max(version), 0) FROM products";
+  public static final String TOUCH_ORDER_DETAIL_BY_PRODUCT_ID =
+          "UPDATE order_details SET version = nextval('entity_version_seq') " +
+                  "WHERE id = (SELECT order_detail_id FROM products WHERE id = ?)";
   public static final String SELECT_ALL_PRODUCTS = "SELECT * FROM products";
+  public static final String STREAM_ALL_PRODUCTS_WITH_CATEGORIES =
+          "SELECT p.id, p.name, p.price, p.quantity, p.available, pcg.category_id " +
+                  "FROM products p " +
+                  "LEFT JOIN products_products_categories pcg ON pcg.product_id = p.id " +
+                  "ORDER BY p.id, pcg.category_id";
+  public static final String SELECT_PRODUCTS_PAGE = "SELECT * FROM products WHERE id > ? ORDER BY id LIMIT ?";
+  /**
+   * Начало запроса продуктов с фильтрами: к нему добавляются условия {@code FILTER_PRODUCTS_BY_*} для заданных
+   * полей фильтра и {@link #ORDER_FILTERED_PRODUCTS}. Время выполнения всех вариантов учитывается под этим именем.
+   */
+  public static final String SELECT_FILTERED_PRODUCTS = "SELECT p.* FROM products p WHERE p.id > ?";
+  public static final String FILTER_PRODUCTS_BY_CATEGORY_TYPE = " AND EXISTS (SELECT 1 " +
+          "FROM products_products_categories pcg JOIN products_categories c ON c.id = pcg.category_id " +
+          "WHERE pcg.product_id = p.id AND c.type = ?)";
+  public static final String FILTER_PRODUCTS_BY_AVAILABLE = " AND p.available = ?";
+  public static final String FILTER_PRODUCTS_BY_MIN_PRICE = " AND p.price >= ?";
+  public static final String FILTER_PRODUCTS_BY_MAX_PRICE = " AND p.price <= ?";
+  public static final String FILTER_PRODUCTS_BY_NAME_PREFIX = " AND lower(p.name) LIKE ? ESCAPE '\\'";
+  public static final String ORDER_FILTERED_PRODUCTS = " ORDER BY p.id LIMIT ?";
   public static final String INSERT_PRODUCT_CATEGORY =
           "INSERT INTO products_products_categories (product_id, category_id) VALUES (?, ?)";
-  public static final String SELECT_PRODUCT_WITH_ORDER_ID =
-          "SELECT p.id, p.name, p.price, p.quantity, p.available FROM products p WHERE p.order_detail_id = ?";
-  public static final String DELETE_PRODUCT_BY_ORDER_ID_SQL = "DELETE FROM products WHERE order_detail_id = ?";
+  public static final String SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS =
+          "SELECT p.id, p.name, p.price, p.quantity, p.available, p.order_detail_id, pcg.category_id " +
+                  "FROM products p " +
+                  "LEFT JOIN products_products_categories pcg ON pcg.product_id = p.id " +
+                  "WHERE p.order_detail_id = ANY(?) ORDER BY p.order_detail_id, p.id, pcg.category_id";
+  public static final String SELECT_ALL_CATEGORY_IDS = "SELECT id FROM products_categories";
+  public static final String ALLOCATE_PRODUCT_IDS =
+          "SELECT nextval(pg_get_serial_sequence('products', 'id')) FROM generate_series(1, ?)";
+  public static final String COPY_PRODUCTS =
+          "COPY products (id, name, price, quantity, available) FROM STDIN WITH (FORMAT csv)";
+  public static final String COPY_PRODUCT_CATEGORIES =
+          "COPY products_products_categories (product_id, category_id) FROM STDIN WITH (FORMAT csv)";
+  public static final String DELETE_PRODUCT_BY_ORDER_ID_SQL = "DELETE FROM products WHERE order_detail_id = ? RETURNING id";
+  public static final String SELECT_PRODUCT_NAMES = "SELECT id, name FROM products";
+  public static final String SELECT_PRODUCT_NAMES_BY_IDS = "SELECT id, name FROM products WHERE id = ANY(?)";
 
   public static final String SELECT_ORDER_DETAILS_BY_ID = "SELECT * FROM order_details WHERE id = ?";
-  public static final String DELETE_ORDER_DETAILS_SQL = "DELETE FROM order_details WHERE id = ?";
+  public static final String DELETE_ORDER_DETAILS_SQL =
+          "DELETE FROM order_details WHERE id = ? RETURNING order_status, total_amount";
   public static final String SELECT_ALL_ORDER_DETAILS = "SELECT * FROM order_details";
+  public static final String STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS =
+          "SELECT o.id AS order_detail_id, o.order_status, o.total_amount, " +
+                  "p.id, p.name, p.price, p.quantity, p.available, pcg.category_id " +
+                  "FROM order_details o " +
+                  "LEFT JOIN products p ON p.order_detail_id = o.id " +
+                  "LEFT JOIN products_products_categories pcg ON pcg.product_id = p.id " +
+                  "ORDER BY o.id, p.id, pcg.category_id";
+  public static final String SELECT_ORDER_DETAILS_PAGE = "SELECT * FROM order_details WHERE id > ? ORDER BY id LIMIT ?";
   public static final String INSERT_ORDER_DETAIL = "INSERT INTO order_details (order_status, total_amount) VALUES (?, ?)";
-  public static final String UPDATE_ORDER_DETAIL = "UPDATE order_details SET order_status = ?, total_amount = ? WHERE id = ?";
+  // Подзапрос блокирует строку заказа и возвращает значения до изменения для итогов по статусам.
+  public static final String UPDATE_ORDER_DETAIL = "UPDATE order_details o SET order_status = ?, total_amount = ?, " +
+          "version = nextval('entity_version_seq') " +
+          "FROM (SELECT id, order_status, total_amount FROM order_details WHERE id = ? FOR UPDATE) previous " +
+          "WHERE o.id = previous.id RETURNING o.id, o.order_status, o.total_amount, " +
+          "previous.order_status AS previous_status, previous.total_amount AS previous_total_amount";
+  public static final String SELECT_ORDER_DETAIL_VERSION = "SELECT version FROM order_details WHERE id = ?";
+  public static final String SELECT_ORDER_DETAILS_VERSION = "SELECT count(*), coalesce(max(version), 0) FROM order_details";
+  public static final String SELECT_ORDER_TOTALS_BY_STATUS =
+          "SELECT txid_current_snapshot()::text AS snapshot, t.order_status, t.order_count, t.total_amount " +
+                  "FROM (SELECT 1) s LEFT JOIN (SELECT order_status, count(*) AS order_count, " +
+                  "sum(total_amount) AS total_amount FROM order_details GROUP BY order_status) t ON true";
   public static final String INSERT_PRODUCT =
           "INSERT INTO products (name, price, quantity, available, order_detail_id) VALUES (?, ?, ?, ?, ?)";
+  public static final String SELECT_ORDER_LINES =
+          "SELECT p.id, p.name, p.price, p.quantity, p.available, pcg.category_id " +
+                  "FROM products p " +
+                  "LEFT JOIN products_products_categories pcg ON pcg.product_id = p.id " +
+                  "WHERE p.order_detail_id = ? ORDER BY p.id, pcg.category_id";
+  public static final String UPDATE_ORDER_LINE = "UPDATE products SET name = ?, price = ?, quantity = ?, available = ?, " +
+          "version = nextval('entity_version_seq') WHERE id = ? AND order_detail_id = ?";
+  // Строки, у которых изменились только связи с категориями, получают новую версию без изменения полей.
+  public static final String TOUCH_ORDER_LINES = "UPDATE products SET version = nextval('entity_version_seq') " +
+          "WHERE order_detail_id = ? AND id = ANY(?)";
+  public static final String DELETE_ORDER_LINES = "DELETE FROM products WHERE order_detail_id = ? AND id = ANY(?)";
+  public static final String DELETE_PRODUCT_CATEGORY =
+          "DELETE FROM products_products_categories WHERE product_id = ? AND category_id = ?";
 
   public static final String SAVE_PRODUCT_CATEGORY_PRODUCT_SQL =
           "INSERT INTO products_products_categories (product_id, category_id) VALUES (?, ?)  ON CONFLICT (product_id, category_id) DO NOTHING";
-  public static final String FIND_PRODUCT_CATEGORY_BY_PRODUCT_ID_SQL =
-          "SELECT pc.* FROM products_categories pc JOIN products_products_categories pcg ON pc.id = pcg.category_id WHERE pcg.product_id = ?";
+  public static final String FIND_PRODUCT_CATEGORIES_BY_PRODUCT_IDS_SQL =
+          "SELECT product_id, category_id FROM products_products_categories " +
+                  "WHERE product_id = ANY(?) ORDER BY product_id, category_id";
+  public static final String SELECT_ALL_CATEGORIES = "SELECT id, name, type FROM products_categories";
   public static final String DELETE_PRODUCT_PRODUCT_CATEGORY_SQL = "DELETE FROM products WHERE id = ?";
+  public static final String NOTIFY_CHANGE = "SELECT pg_notify(?, ?)";
+  public static final String NOTIFY_ORDER_CHANGE = "SELECT pg_notify(?, ? || txid_current() || ?)";
+  public static final String SELECT_CURRENT_TRANSACTION_ID = "SELECT txid_current()";
 
   public static final String EXECUTE_ORDER_DETAIL_SQL=  "OrderDetailDAOImpl. Executing query: {} with orderDetail: {}";
   public static final String PRODUCT_DAO_EXECUTE_WITH_PRODUCT_SQL = "ProductDAOImpl. Executing query: {} with product: {}";
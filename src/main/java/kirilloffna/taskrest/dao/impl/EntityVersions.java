@@ -0,0 +1,54 @@
+package kirilloffna.taskrest.dao.impl;
+
+import lombok.experimental.UtilityClass;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * Чтение версий строк products и order_details для условных запросов.
+ * <p>
+ * Версии берутся из общей последовательности {@code entity_version_seq}: новая строка получает следующее значение
+ * по умолчанию, а DAO присваивают следующее значение при каждом изменении строки. Поэтому версия таблицы —
+ * количество строк и максимальная версия — меняется при любой вставке, изменении или удалении.
+ */
+@UtilityClass
+class EntityVersions {
+
+  /**
+   * Возвращает версию строки по идентификатору.
+   *
+   * @param sql Запрос вида {@code SELECT version FROM ... WHERE id = ?}.
+   */
+  static Optional<Long> find(String sql, Long id, Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+      preparedStatement.setLong(1, id);
+      long start = System.nanoTime();
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        Optional<Long> version = resultSet.next() ? Optional.of(resultSet.getLong(1)) : Optional.empty();
+        QueryMetrics.record(sql, start, version.isPresent() ? 1 : 0);
+        return version;
+      }
+    }
+  }
+
+  /**
+   * Возвращает версию таблицы в виде {@code <количество строк>-<максимальная версия>}.
+   *
+   * @param sql Запрос вида {@code SELECT count(*), coalesce(max(version), 0) FROM ...}.
+   */
+  static String findTable(String sql, Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+      long start = System.nanoTime();
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        resultSet.next();
+        String version = resultSet.getLong(1) + "-" + resultSet.getLong(2);
+        QueryMetrics.record(sql, start, 1);
+        return version;
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.model.OrderDetail;
+import kirilloffna.taskrest.model.OrderStatus;
+import kirilloffna.taskrest.model.Product;
+import kirilloffna.taskrest.model.ProductCategory;
+
+import java.io.IOException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS;
+
+/**
+ * Загрузчик агрегата {@link OrderDetail} вместе с продуктами и их категориями.
+ * <p>
+ * Продукты и идентификаторы их категорий для всех заказов выбираются одним запросом по массиву идентификаторов
+ * заказов и собираются в граф объектов в памяти, поэтому количество запросов не зависит от количества заказов
+ * и продуктов. Категории берутся из {@link CategoryDictionary}.
+ */
+class OrderDetailAggregateLoader {
+
+  /**
+   * Выполняет запрос заказов и загружает для них продукты с категориями.
+   *
+   * @param sql            текст запроса из {@link DaoQueries}, используется для {@link QueryMetrics}.
+   * @param orderStatement подготовленный запрос, возвращающий строки таблицы order_details.
+   * @param connection     Соединение с базой данных.
+   * @return Список заказов в порядке, возвращённом запросом.
+   */
+  List<OrderDetail> load(String sql, PreparedStatement orderStatement, Connection connection) throws SQLException {
+    Map<Long, OrderDetail> orderDetails = new LinkedHashMap<>();
+    long start = System.nanoTime();
+    try (ResultSet resultSet = orderStatement.executeQuery()) {
+      while (resultSet.next()) {
+        OrderDetail orderDetail = mapOrderDetail(resultSet, resultSet.getLong("id"));
+        orderDetails.put(orderDetail.getId(), orderDetail);
+      }
+    }
+    QueryMetrics.record(sql, start, orderDetails.size());
+    attachProducts(orderDetails, connection);
+    return new ArrayList<>(orderDetails.values());
+  }
+
+  /**
+   * Потоково собирает заказы из строк соединения order_details, products и категорий, упорядоченных
+   * по идентификатору заказа и продукта. Каждый заказ передаётся в callback, как только прочитаны все его строки,
+   * поэтому в памяти находится только текущий заказ.
+   *
+   * @param statement  подготовленный запрос {@link DaoQueries#STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS}.
+   * @param connection Соединение с базой данных.
+   * @param callback   обработчик собранных заказов.
+   */
+  void stream(PreparedStatement statement, Connection connection, RowCallback<OrderDetail> callback)
+          throws SQLException, IOException {
+    // Время включает запись строк клиенту: курсор читается по мере отправки ответа.
+    long start = System.nanoTime();
+    long rows = 0;
+    try (ResultSet resultSet = statement.executeQuery()) {
+      OrderDetail orderDetail = null;
+      Product product = null;
+      while (resultSet.next()) {
+        rows++;
+        long orderDetailId = resultSet.getLong("order_detail_id");
+        if (orderDetail == null || orderDetail.getId() != orderDetailId) {
+          if (orderDetail != null) {
+            callback.accept(orderDetail);
+          }
+          orderDetail = mapOrderDetail(resultSet, orderDetailId);
+          product = null;
+        }
+
+        long productId = resultSet.getLong("id");
+        if (resultSet.wasNull()) {
+          continue;
+        }
+        if (product == null || product.getId() != productId) {
+          product = mapProduct(resultSet);
+          orderDetail.getProducts().add(product);
+        }
+        addJoinedCategory(resultSet, product, connection);
+      }
+      if (orderDetail != null) {
+        callback.accept(orderDetail);
+      }
+    }
+    QueryMetrics.record(STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS, start, rows);
+  }
+
+  /**
+   * Добавляет продукту категорию по колонке category_id строки соединения, если строка содержит категорию.
+   * Категория берётся из {@link CategoryDictionary}.
+   */
+  static void addJoinedCategory(ResultSet resultSet, Product product, Connection connection) throws SQLException {
+    long categoryId = resultSet.getLong("category_id");
+    if (!resultSet.wasNull()) {
+      ProductCategory category = CategoryDictionary.resolve(categoryId, connection);
+      if (category != null) {
+        product.getProductCategories().add(category);
+      }
+    }
+  }
+
+  private void attachProducts(Map<Long, OrderDetail> orderDetails, Connection connection) throws SQLException {
+    if (orderDetails.isEmpty()) {
+      return;
+    }
+
+    Array orderIds = connection.createArrayOf("bigint", orderDetails.keySet().toArray());
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS)) {
+      preparedStatement.setArray(1, orderIds);
+
+      long start = System.nanoTime();
+      long rows = 0;
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        Product product = null;
+        while (resultSet.next()) {
+          rows++;
+          long productId = resultSet.getLong("id");
+          if (product == null || product.getId() != productId) {
+            product = mapProduct(resultSet);
+            orderDetails.get(resultSet.getLong("order_detail_id")).getProducts().add(product);
+          }
+          addJoinedCategory(resultSet, product, connection);
+        }
+      }
+      QueryMetrics.record(SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS, start, rows);
+    }
+  }
+
+  private OrderDetail mapOrderDetail(ResultSet resultSet, long id) throws SQLException {
+    OrderDetail orderDetail = new OrderDetail();
+    orderDetail.setId(id);
+    orderDetail.setOrderStatus(OrderStatus.valueOf(resultSet.getString("order_status")));
+    orderDetail.setTotalAmount(resultSet.getBigDecimal("total_amount"));
+    orderDetail.setProducts(new ArrayList<>());
+    return orderDetail;
+  }
+
+  private Product mapProduct(ResultSet resultSet) throws SQLException {
+    Product product = new Product();
+    product.setId(resultSet.getLong("id"));
+    product.setName(resultSet.getString("name"));
+    product.setPrice(resultSet.getBigDecimal("price"));
+    product.setQuantity(resultSet.getInt("quantity"));
+    product.setAvailable(resultSet.getBoolean("available"));
+    product.setProductCategories(new ArrayList<>());
+    return product;
+  }
+}
@@ -1,18 +1,25 @@
 package kirilloffna.taskrest.dao.impl;
 
 import kirilloffna.taskrest.dao.OrderDetailDAO;
+import kirilloffna.taskrest.dao.OrderDetailUpdate;
+import kirilloffna.taskrest.dao.RowCallback;
 import kirilloffna.taskrest.model.*;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static kirilloffna.taskrest.dao.impl.DaoQueries.*;
 
 @Slf4j
 public class OrderDetailDAOImpl implements OrderDetailDAO {
+  private final OrderDetailAggregateLoader aggregateLoader = new OrderDetailAggregateLoader();
 
   @Override
   public void save(OrderDetail orderDetail, Connection connection) throws SQLException {
@@ -23,7 +30,8 @@ public class OrderDetailDAOImpl implements OrderDetailDAO {
 
       preparedStatement.setString(1, orderDetail.getOrderStatus().name());
       preparedStatement.setBigDecimal(2, orderDetail.getTotalAmount());
-      preparedStatement.executeUpdate();
+      long start = System.nanoTime();
+      QueryMetrics.record(INSERT_ORDER_DETAIL, start, preparedStatement.executeUpdate());
 
       try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
         if (generatedKeys.next()) {
@@ -31,8 +39,12 @@ public class OrderDetailDAOImpl implements OrderDetailDAO {
           orderDetail.setId(generatedId);
         }
       }
-      saveProducts(orderDetail, connection);
-      connection.commit();
+      saveProducts(orderDetail.getId(), orderDetail.getProducts(), connection);
+      OrderStatusTotals.Change change =
+              OrderStatusTotals.Change.created(orderDetail.getOrderStatus(), orderDetail.getTotalAmount());
+      ChangeNotifications.order(connection, productIds(orderDetail.getProducts()), change);
+      OrderStatusTotals.commit(connection, change);
+      ProductNameIndex.sync(productIds(orderDetail.getProducts()), connection);
     } catch (Exception e) {
       connection.rollback();
       log.error("Error executing save: {}", e.getMessage(), e);
@@ -40,24 +52,44 @@ public class OrderDetailDAOImpl implements OrderDetailDAO {
   }
 
   @Override
-  public Optional<OrderDetail> update(OrderDetail orderDetail, Connection connection) throws SQLException {
+  public Optional<OrderDetailUpdate> update(OrderDetail orderDetail, Connection connection) throws SQLException {
     log.info("Executing update with orderDetail: {}", orderDetail);
+    OrderDetail updated = null;
+    OrderLineMerge merge = null;
+    OrderStatusTotals.Change change = null;
     try (PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_ORDER_DETAIL)) {
       connection.setAutoCommit(false);
       preparedStatement.setString(1, orderDetail.getOrderStatus().name());
       preparedStatement.setBigDecimal(2, orderDetail.getTotalAmount());
       preparedStatement.setLong(3, orderDetail.getId());
-      preparedStatement.executeUpdate();
-
-      deleteOrderDetailProduct(orderDetail.getId(), connection);
-      saveProducts(orderDetail, connection);
+      long start = System.nanoTime();
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        if (resultSet.next()) {
+          updated = new OrderDetail(resultSet.getLong("id"), OrderStatus.valueOf(resultSet.getString("order_status")),
+                  orderDetail.getProducts(), resultSet.getBigDecimal("total_amount"));
+          change = OrderStatusTotals.Change.updated(OrderStatus.valueOf(resultSet.getString("previous_status")),
+                  resultSet.getBigDecimal("previous_total_amount"), updated.getOrderStatus(), updated.getTotalAmount());
+        }
+      }
+      QueryMetrics.record(UPDATE_ORDER_DETAIL, start, updated == null ? 0 : 1);
 
-      connection.commit();
+      // Строки заказа меняются, только если сам заказ найден.
+      merge = updated != null ? mergeProducts(orderDetail, connection) : null;
+      if (merge != null) {
+        ChangeNotifications.order(connection, merge.getChangedIds(), change);
+      }
+      OrderStatusTotals.commit(connection, change);
+      if (merge != null) {
+        ProductNameIndex.sync(merge.getChangedIds(), connection);
+      }
     } catch (Exception e) {
       connection.rollback();
       log.error("Error executing update: {}", e.getMessage(), e);
+      throw e;
     }
-    return Optional.of(orderDetail);
+    return updated == null
+            ? Optional.empty()
+            : Optional.of(new OrderDetailUpdate(updated, change.removedStatus(), merge.getChangedIds()));
   }
 
   public Optional<OrderDetail> findById(Long id, Connection connection) throws SQLException {
@@ -67,14 +99,10 @@ public class OrderDetailDAOImpl implements OrderDetailDAO {
     try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ORDER_DETAILS_BY_ID)) {
       connection.setAutoCommit(false);
       preparedStatement.setLong(1, id);
-      ResultSet resultSet = preparedStatement.executeQuery();
 
-      if (resultSet.next()) {
-        orderDetail = new OrderDetail();
-        orderDetail.setId(resultSet.getLong("id"));
-        orderDetail.setOrderStatus(OrderStatus.valueOf(resultSet.getString("order_status")));
-        orderDetail.setTotalAmount(resultSet.getBigDecimal("total_amount"));
-        orderDetail.setProducts(findProductByOrderId(orderDetail.getId(), connection));
+      List<OrderDetail> orderDetails = aggregateLoader.load(SELECT_ORDER_DETAILS_BY_ID, preparedStatement, connection);
+      if (!orderDetails.isEmpty()) {
+        orderDetail = orderDetails.get(0);
       }
       connection.commit();
     } catch (Exception e) {
@@ -86,20 +114,34 @@ public class OrderDetailDAOImpl implements OrderDetailDAO {
   }
 
   @Override
-  public void deleteById(Long id, Connection connection) throws SQLException {
+  public List<Long> deleteById(Long id, Connection connection) throws SQLException {
     log.info(EXECUTE_ORDER_DETAIL_SQL, DELETE_ORDER_DETAILS_SQL, id);
 
     try (PreparedStatement preparedStatement = connection.prepareStatement(DELETE_ORDER_DETAILS_SQL)) {
       connection.setAutoCommit(false);
 
-      deleteOrderDetailProduct(id, connection);
+      List<Long> deletedProductIds = deleteOrderDetailProduct(id, connection);
       preparedStatement.setLong(1, id);
-      preparedStatement.executeUpdate();
-      connection.commit();
+      OrderStatusTotals.Change change = null;
+      long start = System.nanoTime();
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        if (resultSet.next()) {
+          change = OrderStatusTotals.Change.deleted(OrderStatus.valueOf(resultSet.getString("order_status")),
+                  resultSet.getBigDecimal("total_amount"));
+        }
+      }
+      QueryMetrics.record(DELETE_ORDER_DETAILS_SQL, start, change == null ? 0 : 1);
+      if (change != null) {
+        ChangeNotifications.order(connection, deletedProductIds, change);
+      }
+      OrderStatusTotals.commit(connection, change);
+      ProductNameIndex.sync(deletedProductIds, connection);
+      return deletedProductIds;
     } catch (Exception e) {
       connection.rollback();
       log.error("Error executing query: {} with orderDetailId: {}", DELETE_ORDER_DETAILS_SQL, id, e);
     }
+    return List.of();
   }
 
   @Override
@@ -109,16 +151,7 @@ public class OrderDetailDAOImpl implements OrderDetailDAO {
     List<OrderDetail> orderDetailList = new ArrayList<>();
     try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_ORDER_DETAILS)) {
       connection.setAutoCommit(false);
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      while (resultSet.next()) {
-        OrderDetail orderDetail = new OrderDetail();
-        orderDetail.setId(resultSet.getLong("id"));
-        orderDetail.setOrderStatus(OrderStatus.valueOf(resultSet.getString("order_status")));
-        orderDetail.setTotalAmount(resultSet.getBigDecimal("total_amount"));
-        orderDetail.setProducts(findProductByOrderId(orderDetail.getId(), connection));
-        orderDetailList.add(orderDetail);
-      }
+      orderDetailList = aggregateLoader.load(SELECT_ALL_ORDER_DETAILS, preparedStatement, connection);
       connection.commit();
     } catch (Exception e) {
       connection.rollback();
@@ -127,96 +160,237 @@ public class OrderDetailDAOImpl implements OrderDetailDAO {
     return orderDetailList;
   }
 
-  private void deleteOrderDetailProduct(Long orderDetailId, Connection connection) throws SQLException {
-    try (PreparedStatement preparedStatement = connection
-            .prepareStatement(DELETE_PRODUCT_BY_ORDER_ID_SQL)) {
-      preparedStatement.setLong(1, orderDetailId);
-      preparedStatement.executeUpdate();
+  @Override
+  public List<OrderDetail> findPage(Long afterId, int limit, Connection connection) throws SQLException {
+    log.info("OrderDetailDAOImpl. Executing query: {} with afterId: {}, limit: {}", SELECT_ORDER_DETAILS_PAGE, afterId, limit);
+
+    List<OrderDetail> orderDetailList = new ArrayList<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ORDER_DETAILS_PAGE)) {
+      connection.setAutoCommit(false);
+      preparedStatement.setLong(1, afterId == null ? 0 : afterId);
+      preparedStatement.setInt(2, limit);
+      orderDetailList = aggregateLoader.load(SELECT_ORDER_DETAILS_PAGE, preparedStatement, connection);
+      connection.commit();
+    } catch (Exception e) {
+      connection.rollback();
+      log.error("Error executing query: {}", SELECT_ORDER_DETAILS_PAGE, e);
     }
+    return orderDetailList;
   }
 
-  private List<Product> findProductByOrderId(Long orderDetailId, Connection connection) {
-    List<Product> products = new ArrayList<>();
-    String query = SELECT_PRODUCT_WITH_ORDER_ID;
+  @Override
+  public Optional<Long> findVersion(Long id, Connection connection) throws SQLException {
+    return EntityVersions.find(SELECT_ORDER_DETAIL_VERSION, id, connection);
+  }
 
-    try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-      preparedStatement.setLong(1, orderDetailId);
-      ResultSet resultSet = preparedStatement.executeQuery();
+  @Override
+  public String findListVersion(Connection connection) throws SQLException {
+    return EntityVersions.findTable(SELECT_ORDER_DETAILS_VERSION, connection);
+  }
 
-      while (resultSet.next()) {
-        Product product = new Product();
-        product.setId(resultSet.getLong("id"));
-        product.setName(resultSet.getString("name"));
-        product.setPrice(resultSet.getBigDecimal("price"));
-        product.setQuantity(resultSet.getInt("quantity"));
-        product.setAvailable(resultSet.getBoolean("available"));
-        product.setProductCategories(findProductCategoriesByProductId(product.getId(), connection));
-        products.add(product);
-      }
-    } catch (SQLException e) {
-      log.error("Error fetching products for orderDetailId: {}", orderDetailId, e);
+  @Override
+  public void streamAll(int fetchSize, RowCallback<OrderDetail> callback, Connection connection)
+          throws SQLException, IOException {
+    log.info("OrderDetailDAOImpl. Executing query: {}", STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS);
+
+    try (PreparedStatement preparedStatement = connection.prepareStatement(STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS)) {
+      // Серверный курсор PostgreSQL используется только вне режима autocommit.
+      connection.setAutoCommit(false);
+      preparedStatement.setFetchSize(fetchSize);
+      aggregateLoader.stream(preparedStatement, connection, callback);
+      connection.commit();
+    } catch (SQLException | IOException e) {
+      connection.rollback();
+      log.error("Error executing query: {}", STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS, e);
+      throw e;
     }
+  }
 
-    return products;
+  /**
+   * Удаляет строки заказа и возвращает их идентификаторы.
+   */
+  private List<Long> deleteOrderDetailProduct(Long orderDetailId, Connection connection) throws SQLException {
+    List<Long> deletedIds = new ArrayList<>();
+    try (PreparedStatement preparedStatement = connection
+            .prepareStatement(DELETE_PRODUCT_BY_ORDER_ID_SQL)) {
+      preparedStatement.setLong(1, orderDetailId);
+      long start = System.nanoTime();
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          deletedIds.add(resultSet.getLong("id"));
+        }
+      }
+      QueryMetrics.record(DELETE_PRODUCT_BY_ORDER_ID_SQL, start, deletedIds.size());
+    }
+    return deletedIds;
   }
 
-  public List<ProductCategory> findProductCategoriesByProductId(Long productId, Connection connection) {
-    List<ProductCategory> categories = new ArrayList<>();
-    String query = FIND_PRODUCT_CATEGORY_BY_PRODUCT_ID_SQL;
+  private static List<Long> productIds(List<Product> products) {
+    List<Long> ids = new ArrayList<>();
+    if (products != null) {
+      for (Product product : products) {
+        if (product.getId() != null) {
+          ids.add(product.getId());
+        }
+      }
+    }
+    return ids;
+  }
 
-    try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-      preparedStatement.setLong(1, productId);
-      ResultSet resultSet = preparedStatement.executeQuery();
+  /**
+   * Приводит строки заказа к строкам из запроса, изменяя только отличающиеся строки, см. {@link OrderLineMerge}.
+   * Каждый вид изменения выполняется одним пакетом или одним запросом, неизменённые строки сохраняют
+   * идентификаторы и версии, а строки с изменёнными полями или категориями получают новую версию.
+   *
+   * @return Выполненные изменения строк, вставленные строки уже получили идентификаторы.
+   */
+  private OrderLineMerge mergeProducts(OrderDetail orderDetail, Connection connection) throws SQLException {
+    Long orderDetailId = orderDetail.getId();
+    OrderLineMerge merge = OrderLineMerge.of(findOrderLines(orderDetailId, connection), orderDetail.getProducts());
+    log.debug("Merging lines of orderDetail {}: {} inserted, {} updated, {} deleted", orderDetailId,
+            merge.getInserted().size(), merge.getUpdated().size(), merge.getDeletedIds().size());
+
+    if (!merge.getDeletedIds().isEmpty()) {
+      try (PreparedStatement preparedStatement = connection.prepareStatement(DELETE_ORDER_LINES)) {
+        preparedStatement.setLong(1, orderDetailId);
+        preparedStatement.setArray(2, connection.createArrayOf("bigint", merge.getDeletedIds().toArray()));
+        long start = System.nanoTime();
+        QueryMetrics.record(DELETE_ORDER_LINES, start, preparedStatement.executeUpdate());
+      }
+    }
+    if (!merge.getUpdated().isEmpty()) {
+      try (PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_ORDER_LINE)) {
+        for (Product product : merge.getUpdated()) {
+          preparedStatement.setString(1, product.getName());
+          preparedStatement.setBigDecimal(2, product.getPrice());
+          preparedStatement.setInt(3, product.getQuantity());
+          preparedStatement.setBoolean(4, product.isAvailable());
+          preparedStatement.setLong(5, product.getId());
+          preparedStatement.setLong(6, orderDetailId);
+          preparedStatement.addBatch();
+        }
+        long start = System.nanoTime();
+        QueryMetrics.recordBatch(UPDATE_ORDER_LINE, start, preparedStatement.executeBatch());
+      }
+    }
+    Set<Long> recategorizedIds = merge.getRecategorizedIds();
+    if (!recategorizedIds.isEmpty()) {
+      try (PreparedStatement preparedStatement = connection.prepareStatement(TOUCH_ORDER_LINES)) {
+        preparedStatement.setLong(1, orderDetailId);
+        preparedStatement.setArray(2, connection.createArrayOf("bigint", recategorizedIds.toArray()));
+        long start = System.nanoTime();
+        QueryMetrics.record(TOUCH_ORDER_LINES, start, preparedStatement.executeUpdate());
+      }
+    }
+    executeCategoryBatch(DELETE_PRODUCT_CATEGORY, merge.getRemovedCategoryIds(), connection);
+    executeCategoryBatch(INSERT_PRODUCT_CATEGORY, merge.getAddedCategoryIds(), connection);
+    saveProducts(orderDetailId, merge.getInserted(), connection);
+    return merge;
+  }
 
-      while (resultSet.next()) {
-        ProductCategory category = new ProductCategory();
-        category.setId(resultSet.getLong("id"));
-        category.setName(resultSet.getString("name"));
-        category.setType(CategoryType.valueOf(resultSet.getString("type")));
-        categories.add(category);
+  /**
+   * Загружает сохранённые строки заказа с идентификаторами категорий одним запросом.
+   */
+  private Map<Long, Product> findOrderLines(Long orderDetailId, Connection connection) throws SQLException {
+    Map<Long, Product> lines = new LinkedHashMap<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ORDER_LINES)) {
+      preparedStatement.setLong(1, orderDetailId);
+      long start = System.nanoTime();
+      long rows = 0;
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          rows++;
+          Product product = lines.computeIfAbsent(resultSet.getLong("id"), id -> new Product());
+          if (product.getId() == null) {
+            product.setId(resultSet.getLong("id"));
+            product.setName(resultSet.getString("name"));
+            product.setPrice(resultSet.getBigDecimal("price"));
+            product.setQuantity(resultSet.getInt("quantity"));
+            product.setAvailable(resultSet.getBoolean("available"));
+            product.setProductCategories(new ArrayList<>());
+          }
+          long categoryId = resultSet.getLong("category_id");
+          if (!resultSet.wasNull()) {
+            product.getProductCategories().add(new ProductCategory(categoryId, null, null, null));
+          }
+        }
       }
-    } catch (SQLException e) {
-      log.error("Error fetching categories for productId: {}", productId, e);
+      QueryMetrics.record(SELECT_ORDER_LINES, start, rows);
     }
+    return lines;
+  }
 
-    return categories;
+  /**
+   * Выполняет запрос с параметрами (product_id, category_id) одним пакетом для всех пар.
+   */
+  private void executeCategoryBatch(String sql, Map<Long, Set<Long>> categoryIdsByProductId, Connection connection)
+          throws SQLException {
+    if (categoryIdsByProductId.isEmpty()) {
+      return;
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+      for (Map.Entry<Long, Set<Long>> entry : categoryIdsByProductId.entrySet()) {
+        for (Long categoryId : entry.getValue()) {
+          preparedStatement.setLong(1, entry.getKey());
+          preparedStatement.setLong(2, categoryId);
+          preparedStatement.addBatch();
+        }
+      }
+      long start = System.nanoTime();
+      QueryMetrics.recordBatch(sql, start, preparedStatement.executeBatch());
+    }
   }
 
-  private void saveProducts(OrderDetail orderDetail, Connection connection) {
-    for (Product product : orderDetail.getProducts()) {
-      try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_PRODUCT, Statement.RETURN_GENERATED_KEYS)) {
+  /**
+   * Сохраняет продукты заказа и их связи с категориями двумя пакетными запросами, независимо от количества строк
+   * заказа. Идентификаторы продуктов возвращаются драйвером в порядке добавления в пакет.
+   */
+  private void saveProducts(Long orderDetailId, List<Product> products, Connection connection) throws SQLException {
+    if (products == null || products.isEmpty()) {
+      return;
+    }
+
+    try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_PRODUCT, Statement.RETURN_GENERATED_KEYS)) {
+      for (Product product : products) {
         preparedStatement.setString(1, product.getName());
         preparedStatement.setBigDecimal(2, product.getPrice());
         preparedStatement.setInt(3, product.getQuantity());
         preparedStatement.setBoolean(4, product.isAvailable());
-        preparedStatement.setLong(5, orderDetail.getId());
-        preparedStatement.executeUpdate();
+        preparedStatement.setLong(5, orderDetailId);
+        preparedStatement.addBatch();
+      }
+      long start = System.nanoTime();
+      QueryMetrics.recordBatch(INSERT_PRODUCT, start, preparedStatement.executeBatch());
 
-        try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
-          if (generatedKeys.next()) {
-            Long generatedProductId = generatedKeys.getLong(1);
-            product.setId(generatedProductId);
+      try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+        for (Product product : products) {
+          if (!generatedKeys.next()) {
+            throw new SQLException("Generated keys count does not match saved products for orderDetail " + orderDetailId);
           }
+          product.setId(generatedKeys.getLong(1));
         }
-
-        if (product.getProductCategories() != null) {
-          saveProductCategories(product, connection);
-        }
-
-      } catch (SQLException e) {
-        log.error("Error saving product: {}", e.getMessage(), e);
       }
     }
+    saveProductCategories(products, connection);
   }
 
-  private void saveProductCategories(Product product, Connection connection) {
-    for (ProductCategory category : product.getProductCategories()) {
-      try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_PRODUCT_CATEGORY)) {
-        preparedStatement.setLong(1, product.getId()); // связь с products
-        preparedStatement.setLong(2, category.getId());
-        preparedStatement.executeUpdate();
-      } catch (SQLException e) {
-        log.error("Error saving product category: {}", e.getMessage(), e);
+  private void saveProductCategories(List<Product> products, Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_PRODUCT_CATEGORY)) {
+      int batchSize = 0;
+      for (Product product : products) {
+        if (product.getProductCategories() == null) {
+          continue;
+        }
+        for (ProductCategory category : product.getProductCategories()) {
+          preparedStatement.setLong(1, product.getId()); // связь с products
+          preparedStatement.setLong(2, category.getId());
+          preparedStatement.addBatch();
+          batchSize++;
+        }
+      }
+      if (batchSize > 0) {
+        long start = System.nanoTime();
+        QueryMetrics.recordBatch(INSERT_PRODUCT_CATEGORY, start, preparedStatement.executeBatch());
       }
     }
   }
@@ -0,0 +1,128 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.Product;
+import kirilloffna.taskrest.model.ProductCategory;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Разница между сохранёнными строками заказа и строками из запроса на обновление.
+ * <p>
+ * Строка из запроса с идентификатором сохранённой строки этого заказа считается той же строкой и обновляется,
+ * только если изменились её поля; связи с категориями такой строки добавляются и удаляются по разнице.
+ * Остальные строки из запроса вставляются как новые, а сохранённые строки, которых нет в запросе, удаляются.
+ */
+@Getter
+class OrderLineMerge {
+  private final List<Product> inserted = new ArrayList<>();
+  private final List<Product> updated = new ArrayList<>();
+  private final List<Long> deletedIds = new ArrayList<>();
+  /**
+   * Идентификаторы категорий, связи с которыми нужно добавить, по идентификатору продукта.
+   */
+  private final Map<Long, Set<Long>> addedCategoryIds = new LinkedHashMap<>();
+  /**
+   * Идентификаторы категорий, связи с которыми нужно удалить, по идентификатору продукта.
+   */
+  private final Map<Long, Set<Long>> removedCategoryIds = new LinkedHashMap<>();
+
+  /**
+   * Вычисляет разницу строк заказа.
+   *
+   * @param stored   Сохранённые строки заказа по идентификатору продукта.
+   * @param incoming Строки из запроса, {@code null} — заказ без строк.
+   */
+  static OrderLineMerge of(Map<Long, Product> stored, List<Product> incoming) {
+    OrderLineMerge merge = new OrderLineMerge();
+    Set<Long> kept = new HashSet<>();
+    if (incoming != null) {
+      for (Product product : incoming) {
+        Product current = product.getId() == null ? null : stored.get(product.getId());
+        if (current == null || !kept.add(product.getId())) {
+          merge.inserted.add(product);
+          continue;
+        }
+        if (!sameFields(current, product)) {
+          merge.updated.add(product);
+        }
+        Set<Long> currentCategoryIds = categoryIds(current);
+        Set<Long> incomingCategoryIds = categoryIds(product);
+        Set<Long> added = new LinkedHashSet<>(incomingCategoryIds);
+        added.removeAll(currentCategoryIds);
+        Set<Long> removed = new LinkedHashSet<>(currentCategoryIds);
+        removed.removeAll(incomingCategoryIds);
+        if (!added.isEmpty()) {
+          merge.addedCategoryIds.put(product.getId(), added);
+        }
+        if (!removed.isEmpty()) {
+          merge.removedCategoryIds.put(product.getId(), removed);
+        }
+      }
+    }
+    for (Long id : stored.keySet()) {
+      if (!kept.contains(id)) {
+        merge.deletedIds.add(id);
+      }
+    }
+    return merge;
+  }
+
+  /**
+   * Возвращает идентификаторы вставленных, изменённых и удалённых строк, а также строк с изменёнными категориями.
+   * Вызывается после сохранения, когда вставленные строки уже получили идентификаторы.
+   */
+  Set<Long> getChangedIds() {
+    Set<Long> ids = new LinkedHashSet<>();
+    for (Product product : inserted) {
+      if (product.getId() != null) {
+        ids.add(product.getId());
+      }
+    }
+    for (Product product : updated) {
+      ids.add(product.getId());
+    }
+    ids.addAll(deletedIds);
+    ids.addAll(addedCategoryIds.keySet());
+    ids.addAll(removedCategoryIds.keySet());
+    return ids;
+  }
+
+  /**
+   * Возвращает идентификаторы сохраняемых строк, у которых изменились только связи с категориями: их версию
+   * нужно изменить отдельно, так как обновление полей для них не выполняется.
+   */
+  Set<Long> getRecategorizedIds() {
+    Set<Long> ids = new LinkedHashSet<>(addedCategoryIds.keySet());
+    ids.addAll(removedCategoryIds.keySet());
+    for (Product product : updated) {
+      ids.remove(product.getId());
+    }
+    return ids;
+  }
+
+  private static boolean sameFields(Product current, Product product) {
+    return Objects.equals(current.getName(), product.getName())
+            && current.getPrice() != null && product.getPrice() != null
+            && current.getPrice().compareTo(product.getPrice()) == 0
+            && current.getQuantity() == product.getQuantity()
+            && current.isAvailable() == product.isAvailable();
+  }
+
+  private static Set<Long> categoryIds(Product product) {
+    Set<Long> ids = new LinkedHashSet<>();
+    if (product.getProductCategories() != null) {
+      for (ProductCategory category : product.getProductCategories()) {
+        ids.add(category.getId());
+      }
+    }
+    return ids;
+  }
+}
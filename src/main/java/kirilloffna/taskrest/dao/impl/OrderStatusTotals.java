@@ -0,0 +1,389 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.OrderStatus;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_CURRENT_TRANSACTION_ID;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ORDER_TOTALS_BY_STATUS;
+
+/**
+ * Количество заказов и сумма {@code total_amount} по каждому {@link OrderStatus} в памяти.
+ * <p>
+ * Итоги загружаются запросом с GROUP BY, а затем DAO заказов применяют к ним изменение каждого созданного,
+ * изменённого и удалённого заказа, поэтому чтение итогов стоит O(количество статусов) без обращения к базе данных.
+ * Итоги неизменяемы и заменяются целиком при каждом изменении.
+ * <p>
+ * Изменение применяется вместе с фиксацией транзакции в {@link #commit(Connection, Change)} под общей блокировкой
+ * чтения. Сверка {@link #reconcile(Connection)} выполняет GROUP BY без блокировки и запоминает снимок транзакций
+ * запроса {@code txid_current_snapshot()}. Изменения, зафиксированные во время запроса, применяются к старым итогам
+ * и вместе с номером своей транзакции откладываются, а блокировка записи берётся только на замену итогов: к
+ * результату запроса применяются отложенные изменения транзакций, не видимых в снимке. Поэтому фиксация заказов
+ * не ждёт GROUP BY, и ни одно изменение не теряется и не учитывается дважды. Номер транзакции запрашивается только
+ * во время сверки. Сверка также исправляет расхождения из-за изменений в обход DAO.
+ * <p>
+ * Изменения на других экземплярах приложения {@link ChangeListener} применяет из уведомления
+ * {@link #applyRemote(long, Change)}. Уведомление приходит после фиксации транзакции, поэтому запрос сверки мог уже
+ * увидеть изменение: изменение транзакции, видимой в снимке загруженных итогов, пропускается.
+ */
+@Slf4j
+@UtilityClass
+public class OrderStatusTotals {
+  /**
+   * Масштаб колонки {@code order_details.total_amount DECIMAL(10, 2)}.
+   */
+  private static final int AMOUNT_SCALE = 2;
+  private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  /**
+   * Не даёт сверкам и перечитываниям выполняться одновременно, фиксацию заказов не блокирует.
+   */
+  private static final ReentrantLock reloadLock = new ReentrantLock();
+  private static final AtomicReference<Map<OrderStatus, Total>> totals = new AtomicReference<>();
+  /**
+   * Снимок транзакций запроса, загрузившего итоги. Меняется только под блокировкой записи.
+   */
+  private static volatile TransactionSnapshot snapshot;
+  /**
+   * Изменения, отложенные во время запроса сверки, или {@code null} вне сверки. Меняется только под блокировкой
+   * записи.
+   */
+  private static volatile Queue<PendingChange> pending;
+  private static final LongAdder reconciliations = new LongAdder();
+  private static final LongAdder corrections = new LongAdder();
+
+  /**
+   * Возвращает итоги по всем статусам, включая статусы без заказов.
+   *
+   * @return Итоги или {@link Optional#empty()}, если они ещё не загружены.
+   */
+  public static Optional<Map<OrderStatus, Total>> get() {
+    return Optional.ofNullable(totals.get());
+  }
+
+  /**
+   * Загружает итоги, если они ещё не загружены.
+   *
+   * @param connection Соединение с основной базой данных.
+   */
+  public static void preload(Connection connection) throws SQLException {
+    if (totals.get() == null) {
+      reconcile(connection);
+    }
+  }
+
+  /**
+   * Фиксирует транзакцию и применяет изменение заказа к итогам. Если фиксация не удалась, итоги не меняются.
+   *
+   * @param connection Соединение, в транзакции которого изменён заказ.
+   * @param change     Изменение заказа или {@code null}, если заказ не изменён.
+   */
+  public static void commit(Connection connection, Change change) throws SQLException {
+    lock.readLock().lock();
+    try {
+      Queue<PendingChange> reloading = change == null ? null : pending;
+      long transactionId = reloading == null ? 0 : currentTransactionId(connection);
+      connection.commit();
+      if (change != null) {
+        totals.updateAndGet(current -> current == null ? null : change.applyTo(current));
+        if (reloading != null) {
+          reloading.add(new PendingChange(transactionId, change));
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Применяет изменение заказа, зафиксированное другим экземпляром приложения. Изменение пропускается, если итоги
+   * не загружены или транзакция изменения видна запросу, загрузившему итоги.
+   *
+   * @param transactionId Транзакция, в которой изменён заказ.
+   * @param change        Изменение заказа.
+   * @return {@code true}, если изменение применено к итогам.
+   */
+  public static boolean applyRemote(long transactionId, Change change) {
+    lock.readLock().lock();
+    try {
+      TransactionSnapshot loadedSnapshot = snapshot;
+      if (loadedSnapshot != null && loadedSnapshot.isVisible(transactionId)) {
+        return false;
+      }
+      Queue<PendingChange> reloading = pending;
+      if (reloading != null) {
+        reloading.add(new PendingChange(transactionId, change));
+      }
+      return totals.updateAndGet(current -> current == null ? null : change.applyTo(current)) != null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Пересчитывает итоги запросом с GROUP BY и заменяет ими итоги в памяти.
+   *
+   * @param connection Соединение с основной базой данных: реплика может не содержать уже применённых изменений.
+   */
+  public static void reconcile(Connection connection) throws SQLException {
+    reloadLock.lock();
+    try {
+      Replacement replacement = reload(connection, false).orElseThrow();
+      reconciliations.increment();
+      if (replacement.previous() != null && !replacement.previous().equals(replacement.current())) {
+        corrections.increment();
+        log.warn("Order totals differed from the database and were corrected: {} -> {}",
+                replacement.previous(), replacement.current());
+      }
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Перечитывает итоги, которые могли пропустить изменения других экземпляров приложения, например после
+   * переподключения {@link ChangeListener}. В отличие от {@link #reconcile(Connection)} ожидаемое отличие от итогов
+   * в памяти не считается расхождением. Если итоги ещё не загружены, ничего не делает: загрузка прочитает актуальные
+   * итоги.
+   *
+   * @param connection Соединение с основной базой данных.
+   */
+  public static void refresh(Connection connection) throws SQLException {
+    reloadLock.lock();
+    try {
+      if (totals.get() != null) {
+        reload(connection, true);
+      }
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Сбрасывает итоги, следующее обращение загрузит их заново.
+   */
+  public static void invalidate() {
+    lock.writeLock().lock();
+    try {
+      totals.set(null);
+      snapshot = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Возвращает количество выполненных сверок.
+   */
+  public static long getReconciliations() {
+    return reconciliations.sum();
+  }
+
+  /**
+   * Возвращает количество сверок, обнаруживших расхождение с базой данных.
+   */
+  public static long getCorrections() {
+    return corrections.sum();
+  }
+
+  /**
+   * Выполняет запрос итогов без блокировки, откладывая изменения, зафиксированные во время него, и заменяет итоги
+   * под блокировкой записи. Вызывается под {@link #reloadLock}.
+   *
+   * @param onlyLoaded {@code true} — не заменять итоги, сброшенные во время запроса.
+   * @return Прежние и новые итоги или {@link Optional#empty()}, если итоги не заменены.
+   */
+  private static Optional<Replacement> reload(Connection connection, boolean onlyLoaded) throws SQLException {
+    Queue<PendingChange> changes = new ConcurrentLinkedQueue<>();
+    // Фиксации, начатые до этого момента, завершаются до запроса и видны ему.
+    setPending(changes);
+    Loaded loaded;
+    try {
+      loaded = load(connection);
+    } catch (SQLException | RuntimeException e) {
+      setPending(null);
+      throw e;
+    }
+    lock.writeLock().lock();
+    try {
+      pending = null;
+      Map<OrderStatus, Total> result = loaded.totals();
+      for (PendingChange change : changes) {
+        if (loaded.snapshot() == null || !loaded.snapshot().isVisible(change.transactionId())) {
+          result = change.change().applyTo(result);
+        }
+      }
+      Map<OrderStatus, Total> previous = totals.get();
+      if (onlyLoaded && previous == null) {
+        return Optional.empty();
+      }
+      totals.set(result);
+      snapshot = loaded.snapshot();
+      return Optional.of(new Replacement(previous, result));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static void setPending(Queue<PendingChange> changes) {
+    lock.writeLock().lock();
+    try {
+      pending = changes;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static long currentTransactionId(Connection connection) throws SQLException {
+    long start = System.nanoTime();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_CURRENT_TRANSACTION_ID);
+         ResultSet resultSet = preparedStatement.executeQuery()) {
+      resultSet.next();
+      QueryMetrics.record(SELECT_CURRENT_TRANSACTION_ID, start, 1);
+      return resultSet.getLong(1);
+    }
+  }
+
+  private static Loaded load(Connection connection) throws SQLException {
+    Map<OrderStatus, Total> loaded = emptyTotals();
+    TransactionSnapshot loadedSnapshot = null;
+    long start = System.nanoTime();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ORDER_TOTALS_BY_STATUS);
+         ResultSet resultSet = preparedStatement.executeQuery()) {
+      while (resultSet.next()) {
+        loadedSnapshot = TransactionSnapshot.parse(resultSet.getString("snapshot"));
+        // Без заказов запрос возвращает одну строку только со снимком.
+        String status = resultSet.getString("order_status");
+        if (status != null) {
+          loaded.put(OrderStatus.valueOf(status),
+                  new Total(resultSet.getLong("order_count"), resultSet.getBigDecimal("total_amount")));
+        }
+      }
+    }
+    QueryMetrics.record(SELECT_ORDER_TOTALS_BY_STATUS, start, loaded.size());
+    return new Loaded(Collections.unmodifiableMap(loaded), loadedSnapshot);
+  }
+
+  private static Map<OrderStatus, Total> emptyTotals() {
+    Map<OrderStatus, Total> empty = new EnumMap<>(OrderStatus.class);
+    for (OrderStatus status : OrderStatus.values()) {
+      empty.put(status, new Total(0, BigDecimal.ZERO));
+    }
+    return empty;
+  }
+
+  /**
+   * Итоги, загруженные запросом, и снимок транзакций этого запроса.
+   */
+  private record Loaded(Map<OrderStatus, Total> totals, TransactionSnapshot snapshot) {
+  }
+
+  /**
+   * Итоги до и после замены результатом запроса.
+   */
+  private record Replacement(Map<OrderStatus, Total> previous, Map<OrderStatus, Total> current) {
+  }
+
+  /**
+   * Изменение, зафиксированное во время запроса сверки.
+   */
+  private record PendingChange(long transactionId, Change change) {
+  }
+
+  /**
+   * Снимок транзакций PostgreSQL в формате {@code txid_current_snapshot()}: {@code xmin:xmax:xip_list}.
+   *
+   * @param xmin       Наименьшая транзакция, которая ещё выполнялась.
+   * @param xmax       Первая ещё не назначенная транзакция.
+   * @param inProgress Транзакции между {@code xmin} и {@code xmax}, которые ещё выполнялись.
+   */
+  record TransactionSnapshot(long xmin, long xmax, Set<Long> inProgress) {
+
+    static TransactionSnapshot parse(String text) {
+      if (text == null) {
+        return null;
+      }
+      String[] parts = text.split(":", 3);
+      Set<Long> inProgress = new HashSet<>();
+      for (String id : parts[2].split(",")) {
+        if (!id.isEmpty()) {
+          inProgress.add(Long.parseLong(id));
+        }
+      }
+      return new TransactionSnapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), inProgress);
+    }
+
+    /**
+     * Возвращает {@code true}, если транзакция завершилась до снимка.
+     */
+    boolean isVisible(long transactionId) {
+      return transactionId < xmin || transactionId < xmax && !inProgress.contains(transactionId);
+    }
+  }
+
+  /**
+   * Итог по одному статусу.
+   *
+   * @param count  Количество заказов.
+   * @param amount Сумма {@code total_amount} заказов, приводится к масштабу колонки.
+   */
+  public record Total(long count, BigDecimal amount) {
+    public Total {
+      amount = amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP);
+    }
+
+    private Total plus(int orders, BigDecimal orderAmount) {
+      return new Total(count + orders, amount.add(orderAmount));
+    }
+  }
+
+  /**
+   * Изменение одного заказа: статус и сумма до изменения и после него. Для созданного заказа отсутствует
+   * состояние до изменения, для удалённого — после.
+   */
+  public record Change(OrderStatus removedStatus, BigDecimal removedAmount,
+                       OrderStatus addedStatus, BigDecimal addedAmount) {
+
+    public static Change created(OrderStatus status, BigDecimal amount) {
+      return new Change(null, null, status, amount);
+    }
+
+    public static Change updated(OrderStatus previousStatus, BigDecimal previousAmount,
+                                 OrderStatus status, BigDecimal amount) {
+      return new Change(previousStatus, previousAmount, status, amount);
+    }
+
+    public static Change deleted(OrderStatus status, BigDecimal amount) {
+      return new Change(status, amount, null, null);
+    }
+
+    Map<OrderStatus, Total> applyTo(Map<OrderStatus, Total> current) {
+      Map<OrderStatus, Total> next = new EnumMap<>(current);
+      if (removedStatus != null) {
+        next.put(removedStatus, next.get(removedStatus).plus(-1, removedAmount.negate()));
+      }
+      if (addedStatus != null) {
+        next.put(addedStatus, next.get(addedStatus).plus(1, addedAmount));
+      }
+      return Collections.unmodifiableMap(next);
+    }
+  }
+}
@@ -1,15 +1,26 @@
 package kirilloffna.taskrest.dao.impl;
 
 import kirilloffna.taskrest.dao.ProductDAO;
-import kirilloffna.taskrest.model.CategoryType;
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.dto.ProductFilter;
 import kirilloffna.taskrest.model.Product;
 import kirilloffna.taskrest.model.ProductCategory;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static kirilloffna.taskrest.dao.impl.DaoQueries.*;
 
@@ -27,7 +38,9 @@ public class ProductDAOImpl implements ProductDAO {
       preparedStatement.setBigDecimal(2, product.getPrice());
       preparedStatement.setInt(3, product.getQuantity());
       preparedStatement.setBoolean(4, product.isAvailable());
+      long start = System.nanoTime();
       int affectedRows = preparedStatement.executeUpdate();
+      QueryMetrics.record(INSERT_PRODUCT_SQL, start, affectedRows);
 
       if (affectedRows == 0) {
         log.warn("Creating product failed, no rows affected.");
@@ -41,12 +54,14 @@ public class ProductDAOImpl implements ProductDAO {
         }
       }
 
-      if (product.getProductCategories() != null && !product.getProductCategories().isEmpty()) {
-        for (ProductCategory category : product.getProductCategories()) {
-          saveProductCategory(product.getId(), category.getId(), connection);
-        }
+      saveProductCategories(product, connection);
+      if (product.getId() != null) {
+        ChangeNotifications.products(connection, List.of(product.getId()));
       }
       connection.commit();
+      if (product.getId() != null) {
+        ProductNameIndex.sync(List.of(product.getId()), connection);
+      }
     } catch (SQLException e) {
       connection.rollback();
       log.error(PRODUCT_DAO_EXECUTE_WITH_PRODUCT_ID_SQL, INSERT_PRODUCT_SQL, product, e);
@@ -61,10 +76,15 @@ public class ProductDAOImpl implements ProductDAO {
     Product product = null;
     try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PRODUCT_BY_ID)) {
       preparedStatement.setLong(1, id);
+      long start = System.nanoTime();
       ResultSet resultSet = preparedStatement.executeQuery();
 
       if (resultSet.next()) {
-        product = fillProduct(resultSet, connection);
+        product = fillProduct(resultSet);
+      }
+      QueryMetrics.record(SELECT_PRODUCT_BY_ID, start, product == null ? 0 : 1);
+      if (product != null) {
+        fillCategories(List.of(product), connection);
       }
 
       connection.commit();
@@ -75,31 +95,50 @@ public class ProductDAOImpl implements ProductDAO {
     return Optional.ofNullable(product);
   }
 
+  /**
+   * Обновляет продукт и версию его заказа одним запросом {@code UPDATE ... RETURNING}. Если продукта нет,
+   * запрос не меняет ни одной строки и категории не сохраняются.
+   */
   @Override
   public Optional<Product> update(Product product, Connection connection) throws SQLException {
     log.info(PRODUCT_DAO_EXECUTE_WITH_PRODUCT_SQL, UPDATE_PRODUCT_SQL, product);
 
     connection.setAutoCommit(false);
+    Product updated = null;
     try (PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_PRODUCT_SQL)) {
       preparedStatement.setString(1, product.getName());
       preparedStatement.setBigDecimal(2, product.getPrice());
       preparedStatement.setInt(3, product.getQuantity());
       preparedStatement.setBoolean(4, product.isAvailable());
       preparedStatement.setLong(5, product.getId());
-      preparedStatement.executeUpdate();
-
-      if (product.getProductCategories() != null && !product.getProductCategories().isEmpty()) {
-        for (ProductCategory category : product.getProductCategories()) {
-          saveProductCategory(product.getId(), category.getId(), connection);
+      long start = System.nanoTime();
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        if (resultSet.next()) {
+          updated = fillProduct(resultSet);
         }
       }
+      QueryMetrics.record(UPDATE_PRODUCT_SQL, start, updated == null ? 0 : 1);
 
+      if (updated != null) {
+        saveProductCategories(product, connection);
+        if (product.getProductCategories() != null) {
+          for (ProductCategory category : product.getProductCategories()) {
+            ProductCategory resolved = CategoryDictionary.resolve(category.getId(), connection);
+            updated.getProductCategories().add(resolved == null ? category : resolved);
+          }
+        }
+        ChangeNotifications.products(connection, List.of(updated.getId()));
+      }
       connection.commit();
+      if (updated != null) {
+        ProductNameIndex.sync(List.of(updated.getId()), connection);
+      }
     } catch (SQLException e) {
       connection.rollback();
       log.error(PRODUCT_DAO_EXECUTE_WITH_PRODUCT_SQL, UPDATE_PRODUCT_SQL, product, e);
+      throw e;
     }
-    return Optional.ofNullable(product);
+    return Optional.ofNullable(updated);
   }
 
   @Override
@@ -108,11 +147,15 @@ public class ProductDAOImpl implements ProductDAO {
 
     connection.setAutoCommit(false);
     try (PreparedStatement preparedStatement = connection.prepareStatement(DELETE_PRODUCT_PRODUCT_CATEGORY_SQL)) {
+      touchOrderDetail(id, connection);
       preparedStatement.setLong(1, id);
-      preparedStatement.executeUpdate();
+      long start = System.nanoTime();
+      QueryMetrics.record(DELETE_PRODUCT_PRODUCT_CATEGORY_SQL, start, preparedStatement.executeUpdate());
       deleteProductCategory(id, connection);
+      ChangeNotifications.products(connection, List.of(id));
 
       connection.commit();
+      ProductNameIndex.sync(List.of(id), connection);
     } catch (SQLException e) {
       connection.rollback();
       log.error(PRODUCT_DAO_EXECUTE_WITH_PRODUCT_ID_SQL, DELETE_PRODUCT_PRODUCT_CATEGORY_SQL, id, e);
@@ -127,59 +170,343 @@ public class ProductDAOImpl implements ProductDAO {
     List<Product> products = new ArrayList<>();
 
     try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_PRODUCTS)) {
-      ResultSet resultSet = preparedStatement.executeQuery();
+      products = findProducts(SELECT_ALL_PRODUCTS, preparedStatement, connection);
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      log.error("Error executing: {}", SELECT_ALL_PRODUCTS, e);
+    }
+    return products;
+  }
 
-      while (resultSet.next()) {
-        Product product = fillProduct(resultSet, connection);
-        products.add(product);
+  @Override
+  public List<Product> findPage(Long afterId, int limit, Connection connection) throws SQLException {
+    log.info("ProductDAOImpl. Executing query: {} with afterId: {}, limit: {}", SELECT_PRODUCTS_PAGE, afterId, limit);
+
+    connection.setAutoCommit(false);
+    List<Product> products = new ArrayList<>();
+
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PRODUCTS_PAGE)) {
+      preparedStatement.setLong(1, afterId == null ? 0 : afterId);
+      preparedStatement.setInt(2, limit);
+      products = findProducts(SELECT_PRODUCTS_PAGE, preparedStatement, connection);
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      log.error("Error executing: {}", SELECT_PRODUCTS_PAGE, e);
+    }
+    return products;
+  }
+
+  /**
+   * Собирает запрос из {@link DaoQueries#SELECT_FILTERED_PRODUCTS} и условий только для заданных полей фильтра,
+   * чтобы планировщик выбирал индекс под конкретный набор условий. Различных текстов запроса не больше 32,
+   * поэтому все они остаются в кэше подготовленных запросов соединения.
+   */
+  @Override
+  public List<Product> findFiltered(ProductFilter filter, Long afterId, Integer limit, Connection connection)
+          throws SQLException {
+    StringBuilder sql = new StringBuilder(SELECT_FILTERED_PRODUCTS);
+    List<Object> parameters = new ArrayList<>();
+    parameters.add(afterId == null ? 0 : afterId);
+    if (filter.getCategoryType() != null) {
+      sql.append(FILTER_PRODUCTS_BY_CATEGORY_TYPE);
+      parameters.add(filter.getCategoryType().name());
+    }
+    if (filter.getAvailable() != null) {
+      sql.append(FILTER_PRODUCTS_BY_AVAILABLE);
+      parameters.add(filter.getAvailable());
+    }
+    if (filter.getMinPrice() != null) {
+      sql.append(FILTER_PRODUCTS_BY_MIN_PRICE);
+      parameters.add(filter.getMinPrice());
+    }
+    if (filter.getMaxPrice() != null) {
+      sql.append(FILTER_PRODUCTS_BY_MAX_PRICE);
+      parameters.add(filter.getMaxPrice());
+    }
+    if (filter.getNamePrefix() != null) {
+      sql.append(FILTER_PRODUCTS_BY_NAME_PREFIX);
+      parameters.add(toLikePrefix(filter.getNamePrefix()));
+    }
+    sql.append(ORDER_FILTERED_PRODUCTS);
+    log.info("ProductDAOImpl. Executing query: {} with filter: {}, afterId: {}, limit: {}", sql, filter, afterId, limit);
+
+    connection.setAutoCommit(false);
+    List<Product> products = new ArrayList<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(sql.toString())) {
+      for (int i = 0; i < parameters.size(); i++) {
+        preparedStatement.setObject(i + 1, parameters.get(i));
+      }
+      // LIMIT NULL в PostgreSQL означает выборку без ограничения.
+      if (limit == null) {
+        preparedStatement.setNull(parameters.size() + 1, Types.INTEGER);
+      } else {
+        preparedStatement.setInt(parameters.size() + 1, limit);
       }
+      products = findProducts(SELECT_FILTERED_PRODUCTS, preparedStatement, connection);
       connection.commit();
     } catch (SQLException e) {
       connection.rollback();
-      log.error("Error executing: {}", SELECT_ALL_PRODUCTS, e);
+      log.error("Error executing: {}", sql, e);
+      throw e;
     }
     return products;
   }
 
-  private void saveProductCategory(Long productId, Long categoryId, Connection connection) throws SQLException {
+  @Override
+  public Optional<Long> findVersion(Long id, Connection connection) throws SQLException {
+    return EntityVersions.find(SELECT_PRODUCT_VERSION, id, connection);
+  }
+
+  @Override
+  public String findListVersion(Connection connection) throws SQLException {
+    return EntityVersions.findTable(SELECT_PRODUCTS_VERSION, connection);
+  }
+
+  @Override
+  public void streamAll(int fetchSize, RowCallback<Product> callback, Connection connection)
+          throws SQLException, IOException {
+    log.info(PRODUCT_DAO_EXECUTE_SQL, STREAM_ALL_PRODUCTS_WITH_CATEGORIES);
+
+    // Серверный курсор PostgreSQL используется только вне режима autocommit.
+    connection.setAutoCommit(false);
+    try (PreparedStatement preparedStatement = connection.prepareStatement(STREAM_ALL_PRODUCTS_WITH_CATEGORIES)) {
+      preparedStatement.setFetchSize(fetchSize);
+      // Время включает запись строк клиенту: курсор читается по мере отправки ответа.
+      long start = System.nanoTime();
+      long rows = 0;
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        Product product = null;
+        while (resultSet.next()) {
+          rows++;
+          long productId = resultSet.getLong("id");
+          if (product == null || product.getId() != productId) {
+            if (product != null) {
+              callback.accept(product);
+            }
+            product = fillProduct(resultSet);
+          }
+          OrderDetailAggregateLoader.addJoinedCategory(resultSet, product, connection);
+        }
+        if (product != null) {
+          callback.accept(product);
+        }
+      }
+      QueryMetrics.record(STREAM_ALL_PRODUCTS_WITH_CATEGORIES, start, rows);
+      connection.commit();
+    } catch (SQLException | IOException e) {
+      connection.rollback();
+      log.error("Error executing: {}", STREAM_ALL_PRODUCTS_WITH_CATEGORIES, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Сохраняет связи продукта с категориями одним пакетом.
+   */
+  private void saveProductCategories(Product product, Connection connection) throws SQLException {
+    if (product.getProductCategories() == null || product.getProductCategories().isEmpty()) {
+      return;
+    }
+
     try (PreparedStatement preparedStatement = connection.prepareStatement(SAVE_PRODUCT_CATEGORY_PRODUCT_SQL)) {
+      for (ProductCategory category : product.getProductCategories()) {
+        preparedStatement.setLong(1, product.getId());
+        preparedStatement.setLong(2, category.getId());
+        preparedStatement.addBatch();
+      }
+      long start = System.nanoTime();
+      QueryMetrics.recordBatch(SAVE_PRODUCT_CATEGORY_PRODUCT_SQL, start, preparedStatement.executeBatch());
+    }
+  }
+
+  @Override
+  public Set<Long> findCategoryIds(Connection connection) throws SQLException {
+    log.info(PRODUCT_DAO_EXECUTE_SQL, SELECT_ALL_CATEGORY_IDS);
+
+    Set<Long> categoryIds = new HashSet<>();
+    long start = System.nanoTime();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_CATEGORY_IDS);
+         ResultSet resultSet = preparedStatement.executeQuery()) {
+      while (resultSet.next()) {
+        categoryIds.add(resultSet.getLong(1));
+      }
+    }
+    QueryMetrics.record(SELECT_ALL_CATEGORY_IDS, start, categoryIds.size());
+    return categoryIds;
+  }
+
+  @Override
+  public long copyAll(Iterator<Product> products, int chunkSize, Connection connection)
+          throws SQLException, IOException {
+    log.info(PRODUCT_DAO_EXECUTE_SQL, COPY_PRODUCTS);
+
+    connection.setAutoCommit(false);
+    try {
+      CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+      long imported = 0;
+      List<Product> chunk = new ArrayList<>(chunkSize);
+      while (products.hasNext()) {
+        chunk.add(products.next());
+        if (chunk.size() == chunkSize) {
+          copyChunk(chunk, copyManager, connection);
+          imported += chunk.size();
+          chunk.clear();
+        }
+      }
+      if (!chunk.isEmpty()) {
+        copyChunk(chunk, copyManager, connection);
+        imported += chunk.size();
+      }
+      if (imported > 0) {
+        ChangeNotifications.allProducts(connection);
+      }
+      connection.commit();
+      // Импорт добавляет тысячи продуктов: индекс названий дешевле перечитать при следующем обращении.
+      if (imported > 0) {
+        ProductNameIndex.invalidate();
+      }
+      return imported;
+    } catch (SQLException | IOException | RuntimeException e) {
+      connection.rollback();
+      log.error("Error executing: {}", COPY_PRODUCTS, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Выделяет идентификаторы для порции продуктов одним запросом к последовательности таблицы products
+   * и загружает порцию вместе со связями с категориями двумя командами COPY.
+   */
+  private void copyChunk(List<Product> chunk, CopyManager copyManager, Connection connection)
+          throws SQLException, IOException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(ALLOCATE_PRODUCT_IDS)) {
+      preparedStatement.setInt(1, chunk.size());
+      long start = System.nanoTime();
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        for (Product product : chunk) {
+          if (!resultSet.next()) {
+            throw new SQLException("Not enough product ids allocated for import chunk");
+          }
+          product.setId(resultSet.getLong(1));
+        }
+      }
+      QueryMetrics.record(ALLOCATE_PRODUCT_IDS, start, chunk.size());
+    }
+
+    StringBuilder productRows = new StringBuilder();
+    StringBuilder categoryRows = new StringBuilder();
+    for (Product product : chunk) {
+      productRows.append(product.getId()).append(',')
+              .append(toCsvValue(product.getName())).append(',')
+              .append(product.getPrice().toPlainString()).append(',')
+              .append(product.getQuantity()).append(',')
+              .append(product.isAvailable()).append('\n');
+      if (product.getProductCategories() != null) {
+        for (ProductCategory category : product.getProductCategories()) {
+          categoryRows.append(product.getId()).append(',').append(category.getId()).append('\n');
+        }
+      }
+    }
+    long start = System.nanoTime();
+    QueryMetrics.record(COPY_PRODUCTS, start, copyManager.copyIn(COPY_PRODUCTS, new StringReader(productRows.toString())));
+    if (categoryRows.length() > 0) {
+      start = System.nanoTime();
+      QueryMetrics.record(COPY_PRODUCT_CATEGORIES, start,
+              copyManager.copyIn(COPY_PRODUCT_CATEGORIES, new StringReader(categoryRows.toString())));
+    }
+  }
+
+  private static String toCsvValue(String value) {
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * Присваивает новую версию заказу, которому принадлежит продукт: продукты входят в агрегат заказа.
+   * При обновлении продукта то же делает {@link DaoQueries#UPDATE_PRODUCT_SQL}.
+   */
+  private void touchOrderDetail(Long productId, Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(TOUCH_ORDER_DETAIL_BY_PRODUCT_ID)) {
       preparedStatement.setLong(1, productId);
-      preparedStatement.setLong(2, categoryId);
-      preparedStatement.executeUpdate();
+      long start = System.nanoTime();
+      QueryMetrics.record(TOUCH_ORDER_DETAIL_BY_PRODUCT_ID, start, preparedStatement.executeUpdate());
     }
   }
 
   private void deleteProductCategory(Long productId, Connection connection) throws SQLException {
     try (PreparedStatement preparedStatement = connection.prepareStatement(DELETE_PRODUCT_PRODUCT_CATEGORY_SQL)) {
       preparedStatement.setLong(1, productId);
-      preparedStatement.executeUpdate();
+      long start = System.nanoTime();
+      QueryMetrics.record(DELETE_PRODUCT_PRODUCT_CATEGORY_SQL, start, preparedStatement.executeUpdate());
+    }
+  }
+
+  private List<Product> findProducts(String sql, PreparedStatement preparedStatement, Connection connection)
+          throws SQLException {
+    List<Product> products = new ArrayList<>();
+    long start = System.nanoTime();
+    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+      while (resultSet.next()) {
+        products.add(fillProduct(resultSet));
+      }
     }
+    QueryMetrics.record(sql, start, products.size());
+    fillCategories(products, connection);
+    return products;
   }
 
-  private Product fillProduct(ResultSet resultSet, Connection connection) throws SQLException {
+  /**
+   * Переводит начало названия в шаблон LIKE для {@code lower(name)}, экранируя символы шаблона.
+   */
+  static String toLikePrefix(String namePrefix) {
+    String escaped = namePrefix.toLowerCase(Locale.ROOT)
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_");
+    return escaped + "%";
+  }
+
+  private Product fillProduct(ResultSet resultSet) throws SQLException {
     Product product = new Product();
     product.setId(resultSet.getLong("id"));
     product.setName(resultSet.getString("name"));
     product.setPrice(resultSet.getBigDecimal("price"));
     product.setQuantity(resultSet.getInt("quantity"));
     product.setAvailable(resultSet.getBoolean("available"));
-    product.setProductCategories(findCategoryByProductId(product.getId(), connection));
+    product.setProductCategories(new ArrayList<>());
     return product;
   }
 
-  private List<ProductCategory> findCategoryByProductId(Long productId, Connection connection) throws SQLException {
-    List<ProductCategory> categories = new ArrayList<>();
-    try (PreparedStatement preparedStatement = connection.prepareStatement(FIND_PRODUCT_CATEGORY_BY_PRODUCT_ID_SQL)) {
-      preparedStatement.setLong(1, productId);
-      ResultSet resultSet = preparedStatement.executeQuery();
-      while (resultSet.next()) {
-        ProductCategory category = new ProductCategory();
-        category.setId(resultSet.getLong("id"));
-        category.setName(resultSet.getString("name"));
-        category.setType(CategoryType.valueOf(resultSet.getString("type")));
-        categories.add(category);
+  /**
+   * Загружает идентификаторы категорий для всех переданных продуктов одним запросом по массиву идентификаторов
+   * продуктов. Категории берутся из {@link CategoryDictionary}.
+   */
+  private void fillCategories(List<Product> products, Connection connection) throws SQLException {
+    if (products.isEmpty()) {
+      return;
+    }
+
+    Map<Long, Product> productsById = new HashMap<>();
+    for (Product product : products) {
+      productsById.put(product.getId(), product);
+    }
+
+    Array productIds = connection.createArrayOf("bigint", productsById.keySet().toArray());
+    try (PreparedStatement preparedStatement = connection.prepareStatement(FIND_PRODUCT_CATEGORIES_BY_PRODUCT_IDS_SQL)) {
+      preparedStatement.setArray(1, productIds);
+      long start = System.nanoTime();
+      long rows = 0;
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          rows++;
+          ProductCategory category = CategoryDictionary.resolve(resultSet.getLong("category_id"), connection);
+          if (category != null) {
+            productsById.get(resultSet.getLong("product_id")).getProductCategories().add(category);
+          }
+        }
       }
+      QueryMetrics.record(FIND_PRODUCT_CATEGORIES_BY_PRODUCT_IDS_SQL, start, rows);
     }
-    return categories;
   }
-}
\ No newline at end of file
+}
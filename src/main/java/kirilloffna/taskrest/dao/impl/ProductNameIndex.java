@@ -0,0 +1,368 @@
+package kirilloffna.taskrest.dao.impl;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCT_NAMES;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCT_NAMES_BY_IDS;
+
+/**
+ * Индекс названий продуктов в памяти для подсказок по началу названия.
+ * <p>
+ * Различные названия хранятся в отсортированном массиве вместе с ключами в нижнем регистре. Поиск находит первый
+ * ключ не меньше префикса двоичным поиском и читает подряд идущие совпадения: O(log n + limit) без блокировок
+ * и обращений к базе данных. Массивы неизменяемы и заменяются целиком при изменении; вставка и удаление
+ * названия копируют массив со сдвигом на одну позицию.
+ * <p>
+ * Индекс загружается при первом обращении, а DAO после фиксации транзакции перечитывают в него названия
+ * созданных, изменённых и удалённых продуктов {@link #sync(Collection, Connection)}. Названия читаются из базы
+ * данных под блокировкой загрузки, поэтому изменение, зафиксированное во время загрузки, не теряется, а при
+ * одновременных изменениях одного продукта в индексе остаётся название, зафиксированное последним. После массовых
+ * изменений индекс сбрасывается {@link #invalidate()}, а названия продуктов, изменённых другими экземплярами
+ * приложения, перечитываются {@link #refresh(Collection, Connection)}.
+ */
+@Slf4j
+@UtilityClass
+public class ProductNameIndex {
+  private static final ReentrantLock lock = new ReentrantLock();
+  private static volatile Snapshot snapshot;
+  /**
+   * Название каждого продукта, изменяется только под {@link #lock}.
+   */
+  private static Map<Long, String> namesById;
+  /**
+   * Количество продуктов с каждым названием, изменяется только под {@link #lock}.
+   */
+  private static Map<String, Integer> nameCounts;
+
+  /**
+   * Загружает индекс, если он ещё не загружен. Используется для предзагрузки при старте приложения.
+   *
+   * @param connection Соединение с базой данных.
+   */
+  public static void preload(Connection connection) throws SQLException {
+    if (snapshot == null) {
+      lock.lock();
+      try {
+        if (snapshot == null) {
+          load(connection);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Возвращает названия, начинающиеся с префикса без учёта регистра, в алфавитном порядке.
+   *
+   * @param prefix Начало названия.
+   * @param limit  Максимальное количество названий.
+   * @return Названия или {@link Optional#empty()}, если индекс ещё не загружен.
+   */
+  public static Optional<List<String>> suggest(String prefix, int limit) {
+    Snapshot current = snapshot;
+    return current == null ? Optional.empty() : Optional.of(current.find(toKey(prefix), limit));
+  }
+
+  /**
+   * Сохраняет название созданного или изменённого продукта. Если индекс не загружен, ничего не делает:
+   * загрузка прочитает актуальное название из базы данных.
+   */
+  static void put(long id, String name) {
+    if (name == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (snapshot == null) {
+        return;
+      }
+      String previous = namesById.put(id, name);
+      if (name.equals(previous)) {
+        return;
+      }
+      Snapshot next = snapshot;
+      if (previous != null) {
+        next = decrement(next, previous);
+      }
+      snapshot = increment(next, name);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Удаляет удалённые продукты из индекса.
+   */
+  static void remove(Collection<Long> ids) {
+    lock.lock();
+    try {
+      if (snapshot == null) {
+        return;
+      }
+      Snapshot next = snapshot;
+      for (Long id : ids) {
+        String previous = namesById.remove(id);
+        if (previous != null) {
+          next = decrement(next, previous);
+        }
+      }
+      snapshot = next;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Перечитывает названия продуктов из базы данных, например после их изменения другим экземпляром приложения.
+   * Продукты, которых уже нет в базе данных, удаляются из индекса. Запрос выполняется под блокировкой, поэтому
+   * изменение, зафиксированное этим экземпляром после запроса, применяется после него и не теряется.
+   *
+   * @param ids        Идентификаторы продуктов.
+   * @param connection Соединение с основной базой данных.
+   */
+  public static void refresh(Collection<Long> ids, Connection connection) throws SQLException {
+    if (ids.isEmpty()) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (snapshot == null) {
+        return;
+      }
+      Map<Long, String> loaded = new HashMap<>();
+      long start = System.nanoTime();
+      try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PRODUCT_NAMES_BY_IDS)) {
+        preparedStatement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+          while (resultSet.next()) {
+            loaded.put(resultSet.getLong("id"), resultSet.getString("name"));
+          }
+        }
+      }
+      QueryMetrics.record(SELECT_PRODUCT_NAMES_BY_IDS, start, loaded.size());
+      List<Long> removed = new ArrayList<>();
+      for (Long id : ids) {
+        String name = loaded.get(id);
+        if (name == null) {
+          removed.add(id);
+        } else {
+          put(id, name);
+        }
+      }
+      remove(removed);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Перечитывает названия продуктов после фиксации их изменения этим экземпляром приложения. Название берётся
+   * из базы данных, а не из изменения: вызовы после фиксации выполняются в произвольном порядке, и более старое
+   * название могло бы заменить более новое. Если индекс не загружен, ничего не делает. Если прочитать названия
+   * не удалось, индекс сбрасывается и будет загружен заново.
+   *
+   * @param ids        Идентификаторы созданных, изменённых и удалённых продуктов.
+   * @param connection Соединение, в котором зафиксировано изменение.
+   */
+  public static void sync(Collection<Long> ids, Connection connection) {
+    if (ids.isEmpty() || snapshot == null) {
+      return;
+    }
+    try {
+      refresh(ids, connection);
+      if (!connection.getAutoCommit()) {
+        connection.commit();
+      }
+    } catch (SQLException e) {
+      log.warn("Product names are not re-read after a change, resetting the name index: {}", e.getMessage());
+      invalidate();
+    }
+  }
+
+  /**
+   * Сбрасывает индекс, следующее обращение загрузит его заново.
+   */
+  public static void invalidate() {
+    lock.lock();
+    try {
+      snapshot = null;
+      namesById = null;
+      nameCounts = null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Возвращает количество различных названий в индексе, 0 — если индекс не загружен.
+   */
+  public static int size() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.names.length;
+  }
+
+  static String toKey(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  private static void load(Connection connection) throws SQLException {
+    Map<Long, String> loadedNames = new HashMap<>();
+    Map<String, Integer> loadedCounts = new HashMap<>();
+    long start = System.nanoTime();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PRODUCT_NAMES);
+         ResultSet resultSet = preparedStatement.executeQuery()) {
+      while (resultSet.next()) {
+        String name = resultSet.getString("name");
+        loadedNames.put(resultSet.getLong("id"), name);
+        loadedCounts.merge(name, 1, Integer::sum);
+      }
+    }
+    QueryMetrics.record(SELECT_PRODUCT_NAMES, start, loadedNames.size());
+    namesById = loadedNames;
+    nameCounts = loadedCounts;
+    snapshot = Snapshot.of(loadedCounts.keySet());
+    log.info("Loaded {} product names into the name index", loadedCounts.size());
+  }
+
+  private static Snapshot increment(Snapshot current, String name) {
+    return nameCounts.merge(name, 1, Integer::sum) == 1 ? current.insert(name) : current;
+  }
+
+  private static Snapshot decrement(Snapshot current, String name) {
+    Integer count = nameCounts.computeIfPresent(name, (key, value) -> value == 1 ? null : value - 1);
+    return count == null ? current.delete(name) : current;
+  }
+
+  /**
+   * Неизменяемый отсортированный массив названий. Ключ {@code keys[i]} — название {@code names[i]} в нижнем
+   * регистре, названия упорядочены по ключу, а при равных ключах — по самому названию.
+   */
+  static final class Snapshot {
+    private final String[] keys;
+    private final String[] names;
+
+    private Snapshot(String[] keys, String[] names) {
+      this.keys = keys;
+      this.names = names;
+    }
+
+    static Snapshot of(Collection<String> distinctNames) {
+      String[] names = distinctNames.toArray(new String[0]);
+      String[] keys = new String[names.length];
+      for (int i = 0; i < names.length; i++) {
+        keys[i] = toKey(names[i]);
+      }
+      Integer[] order = new Integer[names.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> compare(keys[a], names[a], keys[b], names[b]));
+      String[] sortedKeys = new String[names.length];
+      String[] sortedNames = new String[names.length];
+      for (int i = 0; i < order.length; i++) {
+        sortedKeys[i] = keys[order[i]];
+        sortedNames[i] = names[order[i]];
+      }
+      return new Snapshot(sortedKeys, sortedNames);
+    }
+
+    List<String> find(String prefix, int limit) {
+      List<String> result = new ArrayList<>(Math.min(limit, 16));
+      for (int i = lowerBound(prefix); i < keys.length && result.size() < limit && keys[i].startsWith(prefix); i++) {
+        result.add(names[i]);
+      }
+      return result;
+    }
+
+    Snapshot insert(String name) {
+      String key = toKey(name);
+      int position = position(key, name);
+      if (position >= 0) {
+        return this;
+      }
+      int at = -position - 1;
+      return new Snapshot(inserted(keys, at, key), inserted(names, at, name));
+    }
+
+    Snapshot delete(String name) {
+      int position = position(toKey(name), name);
+      if (position < 0) {
+        return this;
+      }
+      return new Snapshot(deleted(keys, position), deleted(names, position));
+    }
+
+    /**
+     * Первая позиция, ключ в которой не меньше {@code key}.
+     */
+    private int lowerBound(String key) {
+      int low = 0;
+      int high = keys.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (keys[middle].compareTo(key) < 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Позиция названия или {@code -(позиция вставки) - 1}, как в {@link Arrays#binarySearch}.
+     */
+    private int position(String key, String name) {
+      int low = 0;
+      int high = keys.length - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int comparison = compare(keys[middle], names[middle], key, name);
+        if (comparison < 0) {
+          low = middle + 1;
+        } else if (comparison > 0) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -low - 1;
+    }
+
+    private static int compare(String key, String name, String otherKey, String otherName) {
+      int comparison = key.compareTo(otherKey);
+      return comparison != 0 ? comparison : name.compareTo(otherName);
+    }
+
+    private static String[] inserted(String[] array, int at, String value) {
+      String[] copy = new String[array.length + 1];
+      System.arraycopy(array, 0, copy, 0, at);
+      copy[at] = value;
+      System.arraycopy(array, at, copy, at + 1, array.length - at);
+      return copy;
+    }
+
+    private static String[] deleted(String[] array, int at) {
+      String[] copy = new String[array.length - 1];
+      System.arraycopy(array, 0, copy, 0, at);
+      System.arraycopy(array, at + 1, copy, at, array.length - at - 1);
+      return copy;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.utils.LatencyHistogram;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.UtilityClass;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Время выполнения и количество строк для каждого запроса {@link DaoQueries}.
+ * <p>
+ * Статистика создаётся один раз для всех констант с SQL и выбирается по тексту запроса, который DAO передаёт
+ * в {@code prepareStatement}. Запись не использует блокировок и не создаёт объектов. Запросы, которых нет
+ * в {@link DaoQueries}, не учитываются.
+ */
+@UtilityClass
+public class QueryMetrics {
+  private static final Map<String, Query> queries = register();
+
+  /**
+   * Записывает выполнение запроса.
+   *
+   * @param sql        Текст запроса из {@link DaoQueries}.
+   * @param startNanos Время начала выполнения, полученное из {@link System#nanoTime()}.
+   * @param rows       Количество прочитанных или изменённых строк.
+   */
+  public static void record(String sql, long startNanos, long rows) {
+    Query query = queries.get(sql);
+    if (query != null) {
+      query.latency.recordSince(startNanos);
+      query.rows.add(rows);
+    }
+  }
+
+  /**
+   * Записывает выполнение пакета запросов, количество строк суммируется по результатам {@code executeBatch}.
+   */
+  public static void recordBatch(String sql, long startNanos, int[] updateCounts) {
+    long rows = 0;
+    if (updateCounts != null) {
+      for (int count : updateCounts) {
+        rows += Math.max(count, 0);
+      }
+    }
+    record(sql, startNanos, rows);
+  }
+
+  /**
+   * Возвращает статистику всех запросов для экспорта.
+   */
+  public static Collection<Query> all() {
+    return queries.values();
+  }
+
+  private static Map<String, Query> register() {
+    Map<String, Query> registered = new HashMap<>();
+    for (Field field : DaoQueries.class.getDeclaredFields()) {
+      if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+        continue;
+      }
+      try {
+        String sql = (String) field.get(null);
+        // Шаблоны лог-сообщений хранятся в том же классе.
+        if (!sql.contains("{}")) {
+          registered.putIfAbsent(sql, new Query(field.getName()));
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return Map.copyOf(registered);
+  }
+
+  /**
+   * Статистика одного запроса.
+   */
+  @Getter
+  @RequiredArgsConstructor
+  public static class Query {
+    /**
+     * Имя константы в {@link DaoQueries}.
+     */
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+  }
+}
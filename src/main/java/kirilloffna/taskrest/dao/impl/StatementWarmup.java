@@ -0,0 +1,119 @@
+package kirilloffna.taskrest.dao.impl;
+
+import lombok.experimental.UtilityClass;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.*;
+
+/**
+ * Подготавливает запросы {@link DaoQueries} на новом соединении до того, как его получит первый запрос.
+ * <p>
+ * Каждый запрос выполняется один раз с параметрами, которые не находят строк, в транзакции, которая затем
+ * откатывается. Драйвер сохраняет запрос в кэше соединения, а при {@code prepareThreshold=1} PostgreSQL разбирает
+ * и планирует его как именованный серверный оператор, который используется повторно при следующих вызовах
+ * {@code prepareStatement} с тем же SQL. Параметры задаются теми же методами, что и в DAO, потому что драйвер
+ * подготавливает оператор заново, если типы параметров отличаются.
+ * <p>
+ * Запросы INSERT и полные выборки не выполняются: они изменяют данные или читают таблицу целиком.
+ */
+@UtilityClass
+public class StatementWarmup {
+  private static final long MISSING_ID = -1;
+
+  /**
+   * Выполняет запросы на соединении и откатывает транзакцию.
+   *
+   * @param connection Новое соединение с базой данных.
+   */
+  public static void warmUp(Connection connection) throws SQLException {
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try {
+      execute(connection, SELECT_PRODUCT_BY_ID, statement -> statement.setLong(1, MISSING_ID));
+      execute(connection, SELECT_ORDER_DETAILS_BY_ID, statement -> statement.setLong(1, MISSING_ID));
+      execute(connection, SELECT_PRODUCT_VERSION, statement -> statement.setLong(1, MISSING_ID));
+      execute(connection, SELECT_ORDER_DETAIL_VERSION, statement -> statement.setLong(1, MISSING_ID));
+      execute(connection, SELECT_PRODUCTS_PAGE, statement -> {
+        statement.setLong(1, Long.MAX_VALUE);
+        statement.setInt(2, 1);
+      });
+      execute(connection, SELECT_ORDER_DETAILS_PAGE, statement -> {
+        statement.setLong(1, Long.MAX_VALUE);
+        statement.setInt(2, 1);
+      });
+      execute(connection, SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS,
+              statement -> statement.setArray(1, connection.createArrayOf("bigint", new Object[0])));
+      execute(connection, FIND_PRODUCT_CATEGORIES_BY_PRODUCT_IDS_SQL,
+              statement -> statement.setArray(1, connection.createArrayOf("bigint", new Object[0])));
+      execute(connection, SELECT_ALL_CATEGORIES, statement -> statement.setMaxRows(1));
+      execute(connection, UPDATE_PRODUCT_SQL, statement -> {
+        statement.setString(1, "");
+        statement.setBigDecimal(2, BigDecimal.ZERO);
+        statement.setInt(3, 0);
+        statement.setBoolean(4, false);
+        statement.setLong(5, MISSING_ID);
+      });
+      execute(connection, UPDATE_ORDER_DETAIL, statement -> {
+        statement.setString(1, "");
+        statement.setBigDecimal(2, BigDecimal.ZERO);
+        statement.setLong(3, MISSING_ID);
+      });
+      execute(connection, TOUCH_ORDER_DETAIL_BY_PRODUCT_ID, statement -> statement.setLong(1, MISSING_ID));
+      execute(connection, SELECT_ORDER_LINES, statement -> statement.setLong(1, MISSING_ID));
+      execute(connection, UPDATE_ORDER_LINE, statement -> {
+        statement.setString(1, "");
+        statement.setBigDecimal(2, BigDecimal.ZERO);
+        statement.setInt(3, 0);
+        statement.setBoolean(4, false);
+        statement.setLong(5, MISSING_ID);
+        statement.setLong(6, MISSING_ID);
+      });
+      execute(connection, TOUCH_ORDER_LINES, statement -> {
+        statement.setLong(1, MISSING_ID);
+        statement.setArray(2, connection.createArrayOf("bigint", new Object[0]));
+      });
+      execute(connection, DELETE_ORDER_LINES, statement -> {
+        statement.setLong(1, MISSING_ID);
+        statement.setArray(2, connection.createArrayOf("bigint", new Object[0]));
+      });
+      execute(connection, DELETE_PRODUCT_CATEGORY, statement -> {
+        statement.setLong(1, MISSING_ID);
+        statement.setLong(2, MISSING_ID);
+      });
+      execute(connection, DELETE_PRODUCT_PRODUCT_CATEGORY_SQL, statement -> statement.setLong(1, MISSING_ID));
+      execute(connection, DELETE_PRODUCT_BY_ORDER_ID_SQL, statement -> statement.setLong(1, MISSING_ID));
+      execute(connection, DELETE_ORDER_DETAILS_SQL, statement -> statement.setLong(1, MISSING_ID));
+      // Уведомление из откатываемой транзакции не доставляется.
+      execute(connection, NOTIFY_CHANGE, statement -> {
+        statement.setString(1, ChangeNotifications.CHANNEL);
+        statement.setString(2, "");
+      });
+      execute(connection, NOTIFY_ORDER_CHANGE, statement -> {
+        statement.setString(1, ChangeNotifications.CHANNEL);
+        statement.setString(2, "");
+        statement.setString(3, "");
+      });
+      execute(connection, SELECT_CURRENT_TRANSACTION_ID, statement -> {
+      });
+    } finally {
+      connection.rollback();
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+
+  private static void execute(Connection connection, String sql, ParameterSetter parameters) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+      parameters.set(preparedStatement);
+      preparedStatement.execute();
+    }
+  }
+
+  @FunctionalInterface
+  private interface ParameterSetter {
+    void set(PreparedStatement statement) throws SQLException;
+  }
+}
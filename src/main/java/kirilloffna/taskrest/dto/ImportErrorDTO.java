@@ -0,0 +1,18 @@
+package kirilloffna.taskrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) для представления ошибки в строке массового импорта.
+ * Поле line содержит номер строки тела запроса, начиная с 1.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportErrorDTO {
+  private long line;
+  private String message;
+}
@@ -0,0 +1,39 @@
+package kirilloffna.taskrest.dto;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Формат тела запроса массового импорта продуктов.
+ */
+public enum ImportFormat {
+  /**
+   * Один JSON-объект ProductDTO в каждой строке.
+   */
+  NDJSON,
+  /**
+   * CSV со строкой заголовка, категории перечисляются через точку с запятой.
+   */
+  CSV;
+
+  /**
+   * Определяет формат по заголовку Content-Type запроса.
+   *
+   * @param contentType значение заголовка Content-Type, может быть {@code null}.
+   * @return Опционально формат импорта, пусто если тип не поддерживается.
+   */
+  public static Optional<ImportFormat> fromContentType(String contentType) {
+    if (contentType == null) {
+      return Optional.empty();
+    }
+    String type = contentType.toLowerCase(Locale.ROOT);
+    if (type.startsWith("application/x-ndjson") || type.startsWith("application/ndjson")
+            || type.startsWith("application/jsonl")) {
+      return Optional.of(NDJSON);
+    }
+    if (type.startsWith("text/csv")) {
+      return Optional.of(CSV);
+    }
+    return Optional.empty();
+  }
+}
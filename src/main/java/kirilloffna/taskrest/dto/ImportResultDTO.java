@@ -0,0 +1,23 @@
+package kirilloffna.taskrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) для представления результата массового импорта.
+ * Поле failed содержит общее количество отклонённых строк, а errors — описание первых из них,
+ * не более заданного лимита, чтобы размер ответа не зависел от размера импорта.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportResultDTO {
+  private long imported;
+  private long failed;
+  private List<ImportErrorDTO> errors = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package kirilloffna.taskrest.dto;
+
+import kirilloffna.taskrest.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object (DTO) для представления события ленты статусов: заказ и его статус после изменения.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderStatusEventDTO {
+  private Long orderId;
+  private OrderStatus status;
+}
@@ -0,0 +1,21 @@
+package kirilloffna.taskrest.dto;
+
+import kirilloffna.taskrest.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object (DTO) для представления количества заказов и суммы totalAmount в одном статусе.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderStatusTotalDTO {
+  private OrderStatus status;
+  private long count;
+  private BigDecimal totalAmount;
+}
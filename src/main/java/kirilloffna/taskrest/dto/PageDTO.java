@@ -0,0 +1,39 @@
+package kirilloffna.taskrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Data Transfer Object (DTO) для представления страницы списка объектов.
+ * Поле nextCursor содержит идентификатор последнего элемента страницы, который передаётся в параметре
+ * {@code after} для получения следующей страницы, или {@code null}, если страница последняя.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageDTO<T> {
+  private List<T> items;
+  private Long nextCursor;
+
+  /**
+   * Создает страницу из выборки, запрошенной с лимитом {@code limit + 1}.
+   * Лишний элемент не попадает в страницу и служит признаком наличия следующей страницы.
+   *
+   * @param rows  выборка размером не более limit + 1.
+   * @param limit размер страницы.
+   * @param getId функция получения идентификатора элемента.
+   * @return страница с курсором на следующую страницу.
+   */
+  public static <T> PageDTO<T> of(List<T> rows, int limit, Function<T, Long> getId) {
+    if (rows.size() <= limit) {
+      return new PageDTO<>(rows, null);
+    }
+    List<T> items = rows.subList(0, limit);
+    return new PageDTO<>(items, getId.apply(items.get(limit - 1)));
+  }
+}
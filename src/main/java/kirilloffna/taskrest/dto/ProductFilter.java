@@ -0,0 +1,43 @@
+package kirilloffna.taskrest.dto;
+
+import kirilloffna.taskrest.model.CategoryType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Условия отбора продуктов. Поле со значением {@code null} не ограничивает выборку, заданные условия
+ * объединяются через AND.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductFilter {
+  /**
+   * Тип хотя бы одной из категорий продукта.
+   */
+  private CategoryType categoryType;
+  private Boolean available;
+  /**
+   * Нижняя граница цены включительно.
+   */
+  private BigDecimal minPrice;
+  /**
+   * Верхняя граница цены включительно.
+   */
+  private BigDecimal maxPrice;
+  /**
+   * Начало названия продукта без учёта регистра.
+   */
+  private String namePrefix;
+
+  /**
+   * Возвращает {@code true}, если ни одно условие не задано.
+   */
+  public boolean isEmpty() {
+    return categoryType == null && available == null && minPrice == null && maxPrice == null && namePrefix == null;
+  }
+}
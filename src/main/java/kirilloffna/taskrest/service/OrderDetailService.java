@@ -1,7 +1,11 @@
 package kirilloffna.taskrest.service;
 
+import kirilloffna.taskrest.dao.RowCallback;
 import kirilloffna.taskrest.dto.OrderDetailDTO;
+import kirilloffna.taskrest.dto.OrderStatusTotalDTO;
+import kirilloffna.taskrest.dto.PageDTO;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.List;
@@ -28,6 +32,21 @@ public interface OrderDetailService {
    */
   Optional<OrderDetailDTO> getOrderDetailById(Long id) throws SQLException;
 
+  /**
+   * Получает версию OrderDetailDTO без загрузки заказа и его продуктов. Используется для условных запросов.
+   *
+   * @param id ID OrderDetailDTO.
+   * @return Optional, содержащий версию, если заказ найден, или пустой Optional, если не найден.
+   */
+  Optional<Long> getOrderDetailVersion(Long id) throws SQLException;
+
+  /**
+   * Получает версию списка всех OrderDetailDTO, которая меняется при любом изменении заказов и их продуктов.
+   *
+   * @return версия списка.
+   */
+  String getOrderDetailsVersion() throws SQLException;
+
   /**
    * Обновляет существующий OrderDetail.
    *
@@ -50,4 +69,27 @@ public interface OrderDetailService {
    * @return список всех OrderDetailDTO.
    */
   List<OrderDetailDTO> getAllOrderDetails() throws SQLException;
+
+  /**
+   * Получает страницу OrderDetailDTO, упорядоченных по ID.
+   *
+   * @param afterId ID, после которого начинается страница, или {@code null} для первой страницы.
+   * @param limit   размер страницы.
+   * @return страница OrderDetailDTO с курсором на следующую страницу.
+   */
+  PageDTO<OrderDetailDTO> getOrderDetailsPage(Long afterId, int limit) throws SQLException;
+
+  /**
+   * Получает количество заказов и сумму totalAmount по каждому статусу, включая статусы без заказов.
+   *
+   * @return итоги в порядке объявления {@link kirilloffna.taskrest.model.OrderStatus}.
+   */
+  List<OrderStatusTotalDTO> getOrderStatusTotals() throws SQLException;
+
+  /**
+   * Потоково передает все OrderDetailDTO из базы данных в callback, не накапливая их в памяти.
+   *
+   * @param callback обработчик, вызываемый для каждого OrderDetailDTO.
+   */
+  void streamAllOrderDetails(RowCallback<OrderDetailDTO> callback) throws SQLException, IOException;
 }
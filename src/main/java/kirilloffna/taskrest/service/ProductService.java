@@ -1,7 +1,14 @@
 package kirilloffna.taskrest.service;
 
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.dto.ImportFormat;
+import kirilloffna.taskrest.dto.ImportResultDTO;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.dto.ProductDTO;
+import kirilloffna.taskrest.dto.ProductFilter;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.List;
@@ -29,6 +36,31 @@ public interface ProductService {
    */
   Optional<ProductDTO> getProductById(Long id) throws SQLException;
 
+  /**
+   * Получает объект ProductDTO по его ID не старше указанной версии. Используется вместе с
+   * {@link #getProductVersion(Long)}, чтобы тело ответа соответствовало версии в ETag.
+   *
+   * @param id         ID ProductDTO.
+   * @param minVersion Версия, не старше которой должен быть продукт.
+   * @return Optional, содержащий ProductDTO, если он найден, или пустой Optional, если не найден.
+   */
+  Optional<ProductDTO> getProductById(Long id, long minVersion) throws SQLException;
+
+  /**
+   * Получает версию ProductDTO без загрузки самого продукта. Используется для условных запросов.
+   *
+   * @param id ID ProductDTO.
+   * @return Optional, содержащий версию, если продукт найден, или пустой Optional, если не найден.
+   */
+  Optional<Long> getProductVersion(Long id) throws SQLException;
+
+  /**
+   * Получает версию списка всех ProductDTO, которая меняется при любом изменении продуктов.
+   *
+   * @return версия списка.
+   */
+  String getProductsVersion() throws SQLException;
+
   /**
    * Обновляет существующий ProductDTO.
    *
@@ -51,4 +83,58 @@ public interface ProductService {
    * @return список всех ProductDTO.
    */
   List<ProductDTO> getAllProducts() throws SQLException;
+
+  /**
+   * Получает страницу ProductDTO, упорядоченных по ID.
+   *
+   * @param afterId ID, после которого начинается страница, или {@code null} для первой страницы.
+   * @param limit   размер страницы.
+   * @return страница ProductDTO с курсором на следующую страницу.
+   */
+  PageDTO<ProductDTO> getProductsPage(Long afterId, int limit) throws SQLException;
+
+  /**
+   * Получает все ProductDTO, удовлетворяющие фильтру, упорядоченные по ID.
+   *
+   * @param filter условия отбора.
+   * @return список ProductDTO.
+   */
+  List<ProductDTO> getProducts(ProductFilter filter) throws SQLException;
+
+  /**
+   * Получает страницу ProductDTO, удовлетворяющих фильтру, упорядоченных по ID.
+   *
+   * @param filter  условия отбора.
+   * @param afterId ID, после которого начинается страница, или {@code null} для первой страницы.
+   * @param limit   размер страницы.
+   * @return страница ProductDTO с курсором на следующую страницу.
+   */
+  PageDTO<ProductDTO> getProductsPage(ProductFilter filter, Long afterId, int limit) throws SQLException;
+
+  /**
+   * Подсказывает названия продуктов по началу названия без учёта регистра.
+   *
+   * @param prefix начало названия.
+   * @param limit  максимальное количество названий.
+   * @return различные названия в алфавитном порядке.
+   */
+  List<String> suggestProductNames(String prefix, int limit) throws SQLException;
+
+  /**
+   * Потоково передает все ProductDTO из базы данных в callback, не накапливая их в памяти.
+   *
+   * @param callback обработчик, вызываемый для каждого ProductDTO.
+   */
+  void streamAllProducts(RowCallback<ProductDTO> callback) throws SQLException, IOException;
+
+  /**
+   * Массово импортирует продукты меню из тела запроса в формате NDJSON или CSV.
+   * Некорректные строки пропускаются и перечисляются в результате, остальные загружаются в одной транзакции.
+   *
+   * @param body   тело запроса.
+   * @param format формат тела запроса.
+   * @return количество загруженных и отклонённых строк с описанием ошибок.
+   * @throws IllegalArgumentException если заголовок CSV некорректен.
+   */
+  ImportResultDTO importProducts(Reader body, ImportFormat format) throws SQLException, IOException;
 }
@@ -1,24 +1,50 @@
 package kirilloffna.taskrest.service.impl;
 
 import kirilloffna.taskrest.dao.OrderDetailDAO;
+import kirilloffna.taskrest.dao.OrderDetailUpdate;
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.dao.impl.OrderStatusTotals;
 import kirilloffna.taskrest.dto.OrderDetailDTO;
+import kirilloffna.taskrest.dto.OrderStatusTotalDTO;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.mapper.OrderDetailMapper;
 import kirilloffna.taskrest.model.OrderDetail;
+import kirilloffna.taskrest.model.OrderStatus;
 import kirilloffna.taskrest.service.OrderDetailService;
+import kirilloffna.taskrest.utils.ApplicationProperties;
 import kirilloffna.taskrest.utils.ConnectionProvider;
+import kirilloffna.taskrest.utils.OrderStatusFeed;
+import kirilloffna.taskrest.utils.ResponseCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+/**
+ * Реализация {@link OrderDetailService}.
+ * <p>
+ * Строки заказа хранятся в таблице products, поэтому любое изменение заказа сбрасывает кэш готовых ответов
+ * {@link ResponseCache#PRODUCTS}, а изменённые и удалённые строки после фиксации удаляются из кэша продуктов
+ * {@link ProductServiceImpl}. Статус созданного заказа и новый статус заказа, у которого он изменился, публикуются
+ * в {@link OrderStatusFeed#ORDERS} после фиксации изменения.
+ */
 @Slf4j
 @RequiredArgsConstructor
 public class OrderDetailServiceImpl implements OrderDetailService {
   private static final OrderDetailMapper mapper = OrderDetailMapper.INSTANCE;
+  private static final int STREAM_FETCH_SIZE = ApplicationProperties.getInt("db.stream.fetchSize", 500);
   private final OrderDetailDAO orderDetailDAO;
+  /**
+   * Удаляет строки заказа из кэша продуктов, см. {@link ProductServiceImpl#evictCachedProducts(Collection)}.
+   */
+  private final Consumer<Collection<Long>> productEviction;
 
   @Override
   public void createOrderDetail(OrderDetailDTO orderDetailDTO) throws SQLException {
@@ -27,6 +53,12 @@ public class OrderDetailServiceImpl implements OrderDetailService {
     OrderDetail entity = mapper.toEntity(orderDetailDTO);
     try (Connection connection = ConnectionProvider.getConnection()) {
       orderDetailDAO.save(entity, connection);
+    } finally {
+      ResponseCache.PRODUCTS.invalidate();
+    }
+    // DAO присваивает ID только сохранённому заказу.
+    if (entity.getId() != null) {
+      OrderStatusFeed.ORDERS.publish(entity.getId(), entity.getOrderStatus());
     }
   }
 
@@ -34,9 +66,27 @@ public class OrderDetailServiceImpl implements OrderDetailService {
   public Optional<OrderDetailDTO> getOrderDetailById(Long id) throws SQLException {
     log.debug("OrderDetailServiceImpl. Fetching orderDetail by id: {}", id);
 
-    try (Connection connection = ConnectionProvider.getConnection()) {
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
       Optional<OrderDetail> orderDetail = orderDetailDAO.findById(id, connection);
-      return Optional.of(mapper.toDTO(orderDetail.get()));
+      return orderDetail.map(mapper::toDTO);
+    }
+  }
+
+  @Override
+  public Optional<Long> getOrderDetailVersion(Long id) throws SQLException {
+    log.debug("OrderDetailServiceImpl. Fetching orderDetail version by id: {}", id);
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      return orderDetailDAO.findVersion(id, connection);
+    }
+  }
+
+  @Override
+  public String getOrderDetailsVersion() throws SQLException {
+    log.debug("OrderDetailServiceImpl. Fetching orderDetails list version");
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      return orderDetailDAO.findListVersion(connection);
     }
   }
 
@@ -44,30 +94,83 @@ public class OrderDetailServiceImpl implements OrderDetailService {
   public Optional<OrderDetailDTO> updateOrderDetail(OrderDetailDTO orderDetailDTO) throws SQLException {
     log.debug("OrderDetailServiceImpl. Updating OrderDetail: {}", orderDetailDTO);
 
+    Optional<OrderDetailUpdate> updated;
     try (Connection connection = ConnectionProvider.getConnection()) {
-      orderDetailDAO.findById(orderDetailDTO.getId(), connection);
-      orderDetailDAO.update(mapper.toEntity(orderDetailDTO), connection);
-      return Optional.of(orderDetailDTO);
+      updated = orderDetailDAO.update(mapper.toEntity(orderDetailDTO), connection);
+    } finally {
+      ResponseCache.PRODUCTS.invalidate();
     }
+    updated.ifPresent(update -> {
+      productEviction.accept(update.changedLineIds());
+      if (update.isStatusChanged()) {
+        OrderStatusFeed.ORDERS.publish(update.orderDetail().getId(), update.orderDetail().getOrderStatus());
+      }
+    });
+    return updated.map(update -> mapper.toDTO(update.orderDetail()));
   }
 
   @Override
   public void deleteOrderDetail(Long id) throws SQLException {
     log.debug("OrderDetailServiceImpl. Deleting OrderDetail with id: {}", id);
 
+    List<Long> deletedLineIds;
     try (Connection connection = ConnectionProvider.getConnection()) {
-      orderDetailDAO.deleteById(id, connection);
+      deletedLineIds = orderDetailDAO.deleteById(id, connection);
+    } finally {
+      ResponseCache.PRODUCTS.invalidate();
     }
+    productEviction.accept(deletedLineIds);
   }
 
   @Override
   public List<OrderDetailDTO> getAllOrderDetails() throws SQLException {
     log.debug("OrderDetailServiceImpl. Getting all OrderDetails");
 
-    try (Connection connection = ConnectionProvider.getConnection()) {
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
       return orderDetailDAO.findAll(connection).stream()
               .map(mapper::toDTO)
               .toList();
     }
   }
+
+  @Override
+  public PageDTO<OrderDetailDTO> getOrderDetailsPage(Long afterId, int limit) throws SQLException {
+    log.debug("OrderDetailServiceImpl. Getting OrderDetails page after id: {}, limit: {}", afterId, limit);
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      List<OrderDetailDTO> orderDetails = orderDetailDAO.findPage(afterId, limit + 1, connection).stream()
+              .map(mapper::toDTO)
+              .toList();
+      return PageDTO.of(orderDetails, limit, OrderDetailDTO::getId);
+    }
+  }
+
+  /**
+   * Итоги выдаются из {@link OrderStatusTotals} без обращения к базе данных. Если они ещё не загружены,
+   * они загружаются с основной базы данных, изменения которой DAO уже применили к итогам.
+   */
+  @Override
+  public List<OrderStatusTotalDTO> getOrderStatusTotals() throws SQLException {
+    log.debug("OrderDetailServiceImpl. Getting OrderDetail totals by status");
+
+    Optional<Map<OrderStatus, OrderStatusTotals.Total>> totals = OrderStatusTotals.get();
+    if (totals.isEmpty()) {
+      try (Connection connection = ConnectionProvider.getConnection()) {
+        OrderStatusTotals.preload(connection);
+      }
+      totals = OrderStatusTotals.get();
+    }
+    return totals.orElseThrow().entrySet().stream()
+            .map(entry -> new OrderStatusTotalDTO(entry.getKey(), entry.getValue().count(), entry.getValue().amount()))
+            .toList();
+  }
+
+  @Override
+  public void streamAllOrderDetails(RowCallback<OrderDetailDTO> callback) throws SQLException, IOException {
+    log.debug("OrderDetailServiceImpl. Streaming all OrderDetails");
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      orderDetailDAO.streamAll(STREAM_FETCH_SIZE, orderDetail -> callback.accept(mapper.toDTO(orderDetail)), connection);
+    }
+  }
 }
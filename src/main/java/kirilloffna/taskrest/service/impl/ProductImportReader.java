@@ -0,0 +1,249 @@
+package kirilloffna.taskrest.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kirilloffna.taskrest.dto.ImportErrorDTO;
+import kirilloffna.taskrest.dto.ImportFormat;
+import kirilloffna.taskrest.dto.ImportResultDTO;
+import kirilloffna.taskrest.dto.ProductDTO;
+import kirilloffna.taskrest.mapper.ProductMapper;
+import kirilloffna.taskrest.model.Product;
+import kirilloffna.taskrest.model.ProductCategory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Построчно читает тело запроса массового импорта и возвращает только корректные продукты.
+ * <p>
+ * Строки, которые не удалось разобрать или которые не проходят проверку, пропускаются и учитываются
+ * в {@link ImportResultDTO}. Поддерживаются форматы {@link ImportFormat#NDJSON} (объект ProductDTO в строке)
+ * и {@link ImportFormat#CSV} со строкой заголовка из колонок name, price, quantity, available и categories,
+ * где categories — идентификаторы категорий через точку с запятой.
+ */
+class ProductImportReader implements Iterator<Product> {
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+  private static final ProductMapper mapper = ProductMapper.INSTANCE;
+  private static final int MAX_NAME_LENGTH = 100;
+  private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+
+  private final BufferedReader reader;
+  private final ImportFormat format;
+  private final Set<Long> categoryIds;
+  private final ImportResultDTO result;
+  private final int maxReportedErrors;
+  private Map<String, Integer> csvColumns;
+  private long lineNumber;
+  private Product next;
+
+  ProductImportReader(BufferedReader reader, ImportFormat format, Set<Long> categoryIds,
+                      ImportResultDTO result, int maxReportedErrors) {
+    this.reader = reader;
+    this.format = format;
+    this.categoryIds = categoryIds;
+    this.result = result;
+    this.maxReportedErrors = maxReportedErrors;
+  }
+
+  /**
+   * @throws UncheckedIOException     если не удалось прочитать тело запроса.
+   * @throws IllegalArgumentException если строка заголовка CSV не содержит колонок name и price.
+   */
+  @Override
+  public boolean hasNext() {
+    while (next == null) {
+      String line = readLine();
+      if (line == null) {
+        return false;
+      }
+      lineNumber++;
+      if (line.isBlank()) {
+        continue;
+      }
+      if (format == ImportFormat.CSV && csvColumns == null) {
+        csvColumns = parseCsvHeader(line);
+        continue;
+      }
+
+      try {
+        Product product = format == ImportFormat.CSV ? parseCsv(line) : parseJson(line);
+        validate(product);
+        next = product;
+      } catch (IllegalArgumentException e) {
+        reject(e.getMessage());
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Product next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Product product = next;
+    next = null;
+    return product;
+  }
+
+  private String readLine() {
+    try {
+      return reader.readLine();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void reject(String message) {
+    result.setFailed(result.getFailed() + 1);
+    if (result.getErrors().size() < maxReportedErrors) {
+      result.getErrors().add(new ImportErrorDTO(lineNumber, message));
+    }
+  }
+
+  private Product parseJson(String line) {
+    try {
+      return mapper.toEntity(objectMapper.readValue(line, ProductDTO.class));
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+    }
+  }
+
+  private Map<String, Integer> parseCsvHeader(String line) {
+    Map<String, Integer> columns = new HashMap<>();
+    List<String> names = splitCsv(line);
+    for (int i = 0; i < names.size(); i++) {
+      columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+    }
+    if (!columns.containsKey("name") || !columns.containsKey("price")) {
+      throw new IllegalArgumentException("CSV header must contain name and price columns");
+    }
+    return columns;
+  }
+
+  private Product parseCsv(String line) {
+    List<String> values = splitCsv(line);
+    Product product = new Product();
+    product.setName(csvValue(values, "name"));
+
+    String price = csvValue(values, "price");
+    String quantity = csvValue(values, "quantity");
+    try {
+      product.setPrice(price == null ? null : new BigDecimal(price.trim()));
+      product.setQuantity(quantity == null || quantity.isBlank() ? 0 : Integer.parseInt(quantity.trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number in price or quantity");
+    }
+
+    String available = csvValue(values, "available");
+    product.setAvailable(available == null || available.isBlank() || Boolean.parseBoolean(available.trim()));
+
+    List<ProductCategory> categories = new ArrayList<>();
+    String categoryList = csvValue(values, "categories");
+    if (categoryList != null && !categoryList.isBlank()) {
+      for (String categoryId : categoryList.split(";")) {
+        try {
+          categories.add(new ProductCategory(Long.valueOf(categoryId.trim()), null, null, null));
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid product category id: " + categoryId.trim());
+        }
+      }
+    }
+    product.setProductCategories(categories);
+    return product;
+  }
+
+  private String csvValue(List<String> values, String column) {
+    Integer index = csvColumns.get(column);
+    return index == null || index >= values.size() ? null : values.get(index);
+  }
+
+  /**
+   * Разбивает строку CSV на значения с учётом кавычек и удвоенных кавычек внутри значения.
+   */
+  private static List<String> splitCsv(String line) {
+    List<String> values = new ArrayList<>();
+    StringBuilder value = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          value.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          value.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        values.add(value.toString());
+        value.setLength(0);
+      } else {
+        value.append(c);
+      }
+    }
+    if (quoted) {
+      throw new IllegalArgumentException("Unterminated quoted value");
+    }
+    values.add(value.toString());
+    return values;
+  }
+
+  /**
+   * Проверяет ограничения таблиц products и products_products_categories, чтобы строка с ошибкой
+   * была отклонена до команды COPY и не прерывала загрузку остальных строк.
+   */
+  private void validate(Product product) {
+    if (product.getName() == null || product.getName().isBlank()) {
+      throw new IllegalArgumentException("Product name is required");
+    }
+    if (product.getName().length() > MAX_NAME_LENGTH) {
+      throw new IllegalArgumentException("Product name is longer than " + MAX_NAME_LENGTH + " characters");
+    }
+    if (product.getPrice() == null) {
+      throw new IllegalArgumentException("Product price is required");
+    }
+    if (product.getPrice().signum() < 0 || product.getPrice().compareTo(MAX_PRICE) > 0) {
+      throw new IllegalArgumentException("Product price must be between 0 and " + MAX_PRICE);
+    }
+    try {
+      product.setPrice(product.getPrice().setScale(2, RoundingMode.UNNECESSARY));
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Product price must have at most 2 decimal places");
+    }
+    if (product.getQuantity() < 0) {
+      throw new IllegalArgumentException("Product quantity must not be negative");
+    }
+
+    Set<Long> productCategoryIds = new LinkedHashSet<>();
+    if (product.getProductCategories() != null) {
+      for (ProductCategory category : product.getProductCategories()) {
+        if (category == null || category.getId() == null || !categoryIds.contains(category.getId())) {
+          throw new IllegalArgumentException("Unknown product category: "
+                  + (category == null ? null : category.getId()));
+        }
+        productCategoryIds.add(category.getId());
+      }
+    }
+    List<ProductCategory> categories = new ArrayList<>();
+    for (Long categoryId : productCategoryIds) {
+      categories.add(new ProductCategory(categoryId, null, null, null));
+    }
+    product.setProductCategories(categories);
+  }
+}
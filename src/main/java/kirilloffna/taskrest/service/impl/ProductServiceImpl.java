@@ -1,25 +1,64 @@
 package kirilloffna.taskrest.service.impl;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import kirilloffna.taskrest.dao.ProductDAO;
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.dao.impl.ChangeListener;
 import kirilloffna.taskrest.dao.impl.ProductDAOImpl;
+import kirilloffna.taskrest.dao.impl.ProductNameIndex;
+import kirilloffna.taskrest.dto.ImportFormat;
+import kirilloffna.taskrest.dto.ImportResultDTO;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.dto.ProductDTO;
+import kirilloffna.taskrest.dto.ProductFilter;
 import kirilloffna.taskrest.mapper.ProductMapper;
 import kirilloffna.taskrest.model.Product;
 import kirilloffna.taskrest.service.ProductService;
+import kirilloffna.taskrest.utils.ApplicationProperties;
 import kirilloffna.taskrest.utils.ConnectionProvider;
+import kirilloffna.taskrest.utils.ResponseCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Реализация {@link ProductService}.
+ * <p>
+ * Продукты, запрошенные по идентификатору, хранятся в ограниченном асинхронном кэше Caffeine. При превышении
+ * {@code product.cache.maxSize} записи вытесняются по частоте обращений, при заданном
+ * {@code product.cache.ttlSeconds} — также по времени с момента загрузки. Запись хранит версию строки, прочитанную
+ * до загрузки продукта, и запрос с более новой версией загружает продукт заново. Создание, обновление и удаление
+ * продукта через сервис удаляет соответствующую запись из кэша и сбрасывает кэш готовых ответов
+ * {@link ResponseCache#PRODUCTS}. Изменения на других экземплярах приложения удаляют записи через
+ * {@link #evictCachedProducts(Collection)}, см. {@link ChangeListener}.
+ * <p>
+ * Списки, страницы и версии читаются через {@link ConnectionProvider#getReadConnection()} и при настроенных
+ * репликах выполняются на них.
+ */
 @Slf4j
 @RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
   private static final ProductMapper mapper = ProductMapper.INSTANCE;
+  private static final int STREAM_FETCH_SIZE = ApplicationProperties.getInt("db.stream.fetchSize", 500);
+  private static final int IMPORT_CHUNK_SIZE = ApplicationProperties.getInt("import.chunkSize", 5000);
+  private static final int IMPORT_MAX_REPORTED_ERRORS = ApplicationProperties.getInt("import.maxReportedErrors", 1000);
   private final ProductDAO productDAO;
+  private final AsyncCache<Long, CachedProduct> productCache = createProductCache();
 
   @Override
   public void createProduct(ProductDTO productDTO) {
@@ -28,8 +67,13 @@ public class ProductServiceImpl implements ProductService {
     Product entity = mapper.toEntity(productDTO);
     try (Connection connection = ConnectionProvider.getConnection()) {
       productDAO.save(entity, connection);
+      if (entity.getId() != null) {
+        productCache.synchronous().invalidate(entity.getId());
+      }
     } catch (SQLException e) {
       log.error(e.getMessage());
+    } finally {
+      ResponseCache.PRODUCTS.invalidate();
     }
   }
 
@@ -37,9 +81,40 @@ public class ProductServiceImpl implements ProductService {
   public Optional<ProductDTO> getProductById(Long id) throws SQLException {
     log.debug("ProductServiceImpl. Fetching product by id: {}", id);
 
-    try (Connection connection = ConnectionProvider.getConnection()) {
-      Optional<Product> product = productDAO.findById(id, connection);
-      return Optional.of(mapper.toDTO(product.get()));
+    return Optional.ofNullable(getCachedProduct(id).product()).map(CachedProduct::product);
+  }
+
+  /**
+   * Запись кэша старше {@code minVersion} удаляется, только если её ещё не заменила другая загрузка, и продукт
+   * загружается заново. Версия читается до продукта, поэтому продукт не старше сохранённой с ним версии.
+   */
+  @Override
+  public Optional<ProductDTO> getProductById(Long id, long minVersion) throws SQLException {
+    log.debug("ProductServiceImpl. Fetching product by id: {}, version: {}", id, minVersion);
+
+    CachedEntry cached = getCachedProduct(id);
+    if (cached.product() != null && cached.product().version() < minVersion) {
+      productCache.asMap().remove(id, cached.future());
+      cached = getCachedProduct(id);
+    }
+    return Optional.ofNullable(cached.product()).map(CachedProduct::product);
+  }
+
+  @Override
+  public Optional<Long> getProductVersion(Long id) throws SQLException {
+    log.debug("ProductServiceImpl. Fetching product version by id: {}", id);
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      return productDAO.findVersion(id, connection);
+    }
+  }
+
+  @Override
+  public String getProductsVersion() throws SQLException {
+    log.debug("ProductServiceImpl. Fetching products list version");
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      return productDAO.findListVersion(connection);
     }
   }
 
@@ -48,9 +123,10 @@ public class ProductServiceImpl implements ProductService {
     log.debug("ProductServiceImpl. Updating product: {}", productDto);
 
     try (Connection connection = ConnectionProvider.getConnection()) {
-      productDAO.findById(productDto.getId(), connection);
-      productDAO.update(mapper.toEntity(productDto), connection);
-      return Optional.of(productDto);
+      return productDAO.update(mapper.toEntity(productDto), connection).map(mapper::toDTO);
+    } finally {
+      productCache.synchronous().invalidate(productDto.getId());
+      ResponseCache.PRODUCTS.invalidate();
     }
   }
 
@@ -60,6 +136,9 @@ public class ProductServiceImpl implements ProductService {
 
     try (Connection connection = ConnectionProvider.getConnection()) {
       productDAO.deleteById(id, connection);
+    } finally {
+      productCache.synchronous().invalidate(id);
+      ResponseCache.PRODUCTS.invalidate();
     }
   }
 
@@ -67,10 +146,189 @@ public class ProductServiceImpl implements ProductService {
   public List<ProductDTO> getAllProducts() throws SQLException {
     log.debug("ProductServiceImpl. Getting all Products");
 
-    try (Connection connection = ConnectionProvider.getConnection()) {
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
       return productDAO.findAll(connection).stream()
               .map(mapper::toDTO)
               .toList();
     }
   }
+
+  @Override
+  public PageDTO<ProductDTO> getProductsPage(Long afterId, int limit) throws SQLException {
+    log.debug("ProductServiceImpl. Getting Products page after id: {}, limit: {}", afterId, limit);
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      List<ProductDTO> products = productDAO.findPage(afterId, limit + 1, connection).stream()
+              .map(mapper::toDTO)
+              .toList();
+      return PageDTO.of(products, limit, ProductDTO::getId);
+    }
+  }
+
+  @Override
+  public List<ProductDTO> getProducts(ProductFilter filter) throws SQLException {
+    log.debug("ProductServiceImpl. Getting Products by filter: {}", filter);
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      return productDAO.findFiltered(filter, null, null, connection).stream()
+              .map(mapper::toDTO)
+              .toList();
+    }
+  }
+
+  @Override
+  public PageDTO<ProductDTO> getProductsPage(ProductFilter filter, Long afterId, int limit) throws SQLException {
+    log.debug("ProductServiceImpl. Getting Products page by filter: {}, after id: {}, limit: {}", filter, afterId, limit);
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      List<ProductDTO> products = productDAO.findFiltered(filter, afterId, limit + 1, connection).stream()
+              .map(mapper::toDTO)
+              .toList();
+      return PageDTO.of(products, limit, ProductDTO::getId);
+    }
+  }
+
+  /**
+   * Подсказки выдаются из {@link ProductNameIndex} без обращения к базе данных. Если индекс ещё не загружен
+   * или сброшен после импорта, он загружается с основной базы данных: реплика могла бы не содержать изменений,
+   * которые DAO уже передали в индекс.
+   */
+  @Override
+  public List<String> suggestProductNames(String prefix, int limit) throws SQLException {
+    log.debug("ProductServiceImpl. Suggesting Product names by prefix: {}, limit: {}", prefix, limit);
+
+    Optional<List<String>> names = ProductNameIndex.suggest(prefix, limit);
+    if (names.isPresent()) {
+      return names.get();
+    }
+    try (Connection connection = ConnectionProvider.getConnection()) {
+      ProductNameIndex.preload(connection);
+    }
+    return ProductNameIndex.suggest(prefix, limit).orElse(List.of());
+  }
+
+  @Override
+  public void streamAllProducts(RowCallback<ProductDTO> callback) throws SQLException, IOException {
+    log.debug("ProductServiceImpl. Streaming all Products");
+
+    try (Connection connection = ConnectionProvider.getReadConnection()) {
+      productDAO.streamAll(STREAM_FETCH_SIZE, product -> callback.accept(mapper.toDTO(product)), connection);
+    }
+  }
+
+  @Override
+  public ImportResultDTO importProducts(Reader body, ImportFormat format) throws SQLException, IOException {
+    log.debug("ProductServiceImpl. Importing Products in format {}", format);
+
+    ImportResultDTO result = new ImportResultDTO();
+    try (Connection connection = ConnectionProvider.getConnection()) {
+      Set<Long> categoryIds = productDAO.findCategoryIds(connection);
+      ProductImportReader products = new ProductImportReader(new BufferedReader(body), format, categoryIds,
+              result, IMPORT_MAX_REPORTED_ERRORS);
+      result.setImported(productDAO.copyAll(products, IMPORT_CHUNK_SIZE, connection));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      ResponseCache.PRODUCTS.invalidate();
+    }
+    log.info("ProductServiceImpl. Imported {} Products, rejected {} rows", result.getImported(), result.getFailed());
+    return result;
+  }
+
+  /**
+   * Удаляет продукты из кэша, например после их изменения другим экземпляром приложения.
+   */
+  public void evictCachedProducts(Collection<Long> ids) {
+    productCache.synchronous().invalidateAll(ids);
+  }
+
+  /**
+   * Очищает кэш продуктов.
+   */
+  public void evictAllCachedProducts() {
+    productCache.synchronous().invalidateAll();
+  }
+
+  /**
+   * Возвращает статистику кэша продуктов: попадания, промахи и вытеснения.
+   */
+  public CacheStats getCacheStats() {
+    return productCache.synchronous().stats();
+  }
+
+  /**
+   * Загружает продукт для кэша. Отсутствующий продукт не кэшируется.
+   * <p>
+   * Продукт загружается с основной базы данных, а не с реплики: отставшая реплика сразу после изменения вернула бы
+   * старую версию, и она осталась бы в кэше до истечения срока хранения.
+   */
+  private CachedProduct loadProduct(Long id) throws SQLException {
+    try (Connection connection = ConnectionProvider.getConnection()) {
+      Optional<Long> version = productDAO.findVersion(id, connection);
+      if (version.isEmpty()) {
+        return null;
+      }
+      return productDAO.findById(id, connection)
+              .map(product -> new CachedProduct(mapper.toDTO(product), version.get()))
+              .orElse(null);
+    }
+  }
+
+  /**
+   * Возвращает запись кэша, загружая продукт при её отсутствии.
+   * <p>
+   * Кэш атомарно для идентификатора сохраняет только незавершённую загрузку, а сам продукт загружается в потоке
+   * запроса вне блокировок кэша. Поэтому виртуальный поток, ожидающий базу данных, не закрепляет поток-носитель,
+   * а остальные запросы того же продукта ждут завершения загрузки. Удаление записи во время загрузки удаляет и
+   * загрузку: её результат получат только уже ожидающие запросы, и версия, загруженная до изменения, не остаётся
+   * в кэше.
+   */
+  private CachedEntry getCachedProduct(Long id) throws SQLException {
+    CompletableFuture<CachedProduct> loading = new CompletableFuture<>();
+    CompletableFuture<CachedProduct> future = productCache.get(id, (key, executor) -> loading);
+    if (future == loading) {
+      try {
+        loading.complete(loadProduct(id));
+      } catch (SQLException | RuntimeException e) {
+        loading.completeExceptionally(e);
+      }
+    }
+    try {
+      return new CachedEntry(future, future.join());
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof SQLException sqlException) {
+        throw sqlException;
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw e;
+    }
+  }
+
+  private static AsyncCache<Long, CachedProduct> createProductCache() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+            .maximumSize(ApplicationProperties.getLong("product.cache.maxSize", 10000))
+            .recordStats();
+    long ttlSeconds = ApplicationProperties.getLong("product.cache.ttlSeconds", 600);
+    if (ttlSeconds > 0) {
+      builder.expireAfterWrite(Duration.ofSeconds(ttlSeconds));
+    }
+    return builder.buildAsync();
+  }
+
+  /**
+   * Продукт в кэше вместе с версией строки, прочитанной до его загрузки.
+   */
+  private record CachedProduct(ProductDTO product, long version) {
+  }
+
+  /**
+   * Загрузка из кэша вместе с её результатом.
+   *
+   * @param future  Загрузка, сохранённая в кэше.
+   * @param product Загруженный продукт или {@code null}, если продукт не найден.
+   */
+  private record CachedEntry(CompletableFuture<CachedProduct> future, CachedProduct product) {
+  }
 }
@@ -0,0 +1,310 @@
+package kirilloffna.taskrest.servlet;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import kirilloffna.taskrest.utils.ContentEncoding;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Set;
+
+import static kirilloffna.taskrest.utils.ServletConstants.ETAG_HEADER;
+
+/**
+ * Ответ, тело которого сжимается по мере записи.
+ * <p>
+ * Первые {@code minSize} байт тела накапливаются в буфере. Если тело оказалось меньше, оно отправляется как есть.
+ * Как только буфер переполняется, выставляется заголовок Content-Encoding, и буфер вместе со всем последующим
+ * телом пишется в клиент через сжимающий поток. {@code flush()} до переполнения буфера ничего не отправляет,
+ * чтобы не зафиксировать ответ без сжатия. Тело ответа, тип которого известен до первой записи и не сжимается
+ * (например, text/event-stream), пишется в клиент без буфера.
+ */
+class CompressingResponseWrapper extends HttpServletResponseWrapper {
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private final ContentEncoding encoding;
+  private final int minSize;
+  private final int level;
+  private final Set<String> mimeTypes;
+  private CompressingOutputStream stream;
+  private PrintWriter writer;
+  private long contentLength = -1;
+
+  CompressingResponseWrapper(HttpServletResponse response, ContentEncoding encoding, int minSize, int level,
+                             Set<String> mimeTypes) {
+    super(response);
+    this.encoding = encoding;
+    this.minSize = minSize;
+    this.level = level;
+    this.mimeTypes = mimeTypes;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter() has already been called");
+    }
+    if (stream == null) {
+      stream = new CompressingOutputStream();
+    }
+    return stream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      if (stream != null) {
+        throw new IllegalStateException("getOutputStream() has already been called");
+      }
+      stream = new CompressingOutputStream();
+      writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void setContentLength(int len) {
+    contentLength = len;
+  }
+
+  @Override
+  public void setContentLengthLong(long len) {
+    contentLength = len;
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    } else if (stream != null) {
+      stream.flush();
+    }
+  }
+
+  @Override
+  public void resetBuffer() {
+    if (stream != null) {
+      stream.discardBuffer();
+    }
+    super.resetBuffer();
+  }
+
+  @Override
+  public void reset() {
+    if (stream != null) {
+      stream.discardBuffer();
+    }
+    super.reset();
+  }
+
+  @Override
+  public void sendError(int sc, String msg) throws IOException {
+    discardForError();
+    super.sendError(sc, msg);
+  }
+
+  @Override
+  public void sendError(int sc) throws IOException {
+    discardForError();
+    super.sendError(sc);
+  }
+
+  /**
+   * Дописывает тело: отправляет буфер без сжатия или завершает сжимающий поток. Вызывается после обработки запроса.
+   */
+  void finish() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    if (stream != null) {
+      stream.finish();
+    }
+  }
+
+  private void discardForError() {
+    if (stream != null) {
+      stream.discardBuffer();
+      stream.state = State.FINISHED;
+    }
+  }
+
+  private boolean isCompressible() {
+    String contentType = getContentType();
+    if (contentType == null || containsHeader("Content-Encoding")) {
+      return false;
+    }
+    int parameters = contentType.indexOf(';');
+    String mimeType = (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim();
+    return mimeTypes.contains(mimeType);
+  }
+
+  private static long cpuTime() {
+    long cpuTime = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    // Для виртуальных потоков процессорное время недоступно, учитывается общее время.
+    return cpuTime < 0 ? System.nanoTime() : cpuTime;
+  }
+
+  private enum State {
+    BUFFERING, COMPRESSING, IDENTITY, FINISHED
+  }
+
+  private class CompressingOutputStream extends ServletOutputStream {
+    private final byte[] buffer = new byte[minSize];
+    private int buffered;
+    private State state = State.BUFFERING;
+    private CountingOutputStream compressedOut;
+    private OutputStream compressor;
+    private long uncompressedBytes;
+    private long cpuNanos;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      switch (state) {
+        case BUFFERING -> {
+          // Тип ответа уже известен и не сжимается: тело сразу пишется в клиент, flush() отправляет его без задержки.
+          if (buffered == 0 && getContentType() != null && !isCompressible()) {
+            start(false);
+            write(b, off, len);
+            return;
+          }
+          if (buffered + len <= buffer.length) {
+            System.arraycopy(b, off, buffer, buffered, len);
+            buffered += len;
+            return;
+          }
+          start(isCompressible());
+          write(b, off, len);
+        }
+        case COMPRESSING -> {
+          long start = cpuTime();
+          compressor.write(b, off, len);
+          cpuNanos += cpuTime() - start;
+          uncompressedBytes += len;
+        }
+        case IDENTITY -> getResponse().getOutputStream().write(b, off, len);
+        case FINISHED -> throw new IOException("Response body is already finished");
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (state == State.COMPRESSING) {
+        long start = cpuTime();
+        compressor.flush();
+        cpuNanos += cpuTime() - start;
+      } else if (state == State.IDENTITY) {
+        getResponse().getOutputStream().flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      finish();
+    }
+
+    @Override
+    public boolean isReady() {
+      try {
+        return getResponse().getOutputStream().isReady();
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      try {
+        getResponse().getOutputStream().setWriteListener(writeListener);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    void discardBuffer() {
+      if (state == State.BUFFERING) {
+        buffered = 0;
+      }
+    }
+
+    void finish() throws IOException {
+      if (state == State.BUFFERING) {
+        if (buffered > 0) {
+          getResponse().setContentLength(buffered);
+        }
+        start(false);
+      }
+      if (state == State.COMPRESSING) {
+        long start = cpuTime();
+        compressor.close();
+        cpuNanos += cpuTime() - start;
+        encoding.getMetrics().record(uncompressedBytes, compressedOut.count, cpuNanos);
+      }
+      state = State.FINISHED;
+    }
+
+    private void start(boolean compress) throws IOException {
+      OutputStream out = getResponse().getOutputStream();
+      if (compress) {
+        setHeader("Content-Encoding", encoding.getToken());
+        // Сжатое тело отличается от исходного побайтно, поэтому тег версии становится слабым.
+        String etag = getHeader(ETAG_HEADER);
+        if (etag != null && !etag.startsWith("W/")) {
+          setHeader(ETAG_HEADER, "W/" + etag);
+        }
+        compressedOut = new CountingOutputStream(out);
+        compressor = encoding.wrap(compressedOut, level);
+        state = State.COMPRESSING;
+      } else {
+        if (contentLength >= 0 && buffered == 0) {
+          getResponse().setContentLengthLong(contentLength);
+        }
+        state = State.IDENTITY;
+      }
+      int length = buffered;
+      buffered = 0;
+      if (length > 0) {
+        write(buffer, 0, length);
+      }
+    }
+  }
+
+  /**
+   * Считает сжатые байты и не закрывает поток контейнера: его закрывает Tomcat после завершения ответа.
+   */
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
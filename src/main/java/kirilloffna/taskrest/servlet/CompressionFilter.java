@@ -0,0 +1,107 @@
+package kirilloffna.taskrest.servlet;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.utils.ApplicationProperties;
+import kirilloffna.taskrest.utils.ContentEncoding;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Фильтр, сжимающий ответы по заголовку Accept-Encoding, см. {@link ContentEncoding}.
+ * <p>
+ * Сжимаются только ответы с типом из {@code server.compression.mimeTypes}, тело которых больше
+ * {@code server.compression.minSize} байт. Тело сжимается потоково по мере записи сервлетом, см.
+ * {@link CompressingResponseWrapper}. Для асинхронных запросов сжатие завершается при завершении
+ * {@link jakarta.servlet.AsyncContext}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@WebFilter(filterName = "CompressionFilter", urlPatterns = "/*", asyncSupported = true)
+public class CompressionFilter implements Filter {
+  static final String VARY_HEADER = "Vary";
+  static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+
+  private final int minSize;
+  private final int level;
+  private final Set<String> mimeTypes;
+
+  /**
+   * Создаёт фильтр по настройкам {@code server.compression.*}.
+   */
+  public static CompressionFilter fromProperties() {
+    Set<String> mimeTypes = Arrays.stream(
+                    ApplicationProperties.getString("server.compression.mimeTypes", "application/json,text/plain")
+                            .split(","))
+            .map(String::trim)
+            .filter(mimeType -> !mimeType.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+    return new CompressionFilter(ApplicationProperties.getInt("server.compression.minSize", 1024),
+            ApplicationProperties.getInt("server.compression.level", 6), mimeTypes);
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+          throws IOException, ServletException {
+    HttpServletRequest req = (HttpServletRequest) request;
+    HttpServletResponse resp = (HttpServletResponse) response;
+    resp.addHeader(VARY_HEADER, ACCEPT_ENCODING_HEADER);
+    Optional<ContentEncoding> encoding = ContentEncoding.negotiate(req.getHeader(ACCEPT_ENCODING_HEADER));
+    if (encoding.isEmpty()) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    CompressingResponseWrapper wrapper = new CompressingResponseWrapper(resp, encoding.get(), minSize, level,
+            mimeTypes);
+    try {
+      chain.doFilter(request, wrapper);
+    } finally {
+      if (req.isAsyncStarted()) {
+        req.getAsyncContext().addListener(new FinishOnComplete(wrapper));
+      } else {
+        wrapper.finish();
+      }
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class FinishOnComplete implements AsyncListener {
+    private final CompressingResponseWrapper wrapper;
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      try {
+        wrapper.finish();
+      } catch (IOException e) {
+        log.warn("Compressed response is not finished: {}", e.getMessage());
+      }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+  }
+}
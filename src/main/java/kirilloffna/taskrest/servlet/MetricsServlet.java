@@ -0,0 +1,319 @@
+package kirilloffna.taskrest.servlet;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dao.impl.ChangeListener;
+import kirilloffna.taskrest.dao.impl.OrderStatusTotals;
+import kirilloffna.taskrest.dao.impl.ProductNameIndex;
+import kirilloffna.taskrest.dao.impl.QueryMetrics;
+import kirilloffna.taskrest.utils.CompressionMetrics;
+import kirilloffna.taskrest.utils.ConnectionProvider;
+import kirilloffna.taskrest.utils.ContentEncoding;
+import kirilloffna.taskrest.utils.DbExecutor;
+import kirilloffna.taskrest.utils.DbExecutorStats;
+import kirilloffna.taskrest.utils.LatencyHistogram;
+import kirilloffna.taskrest.utils.OrderStatusFeed;
+import kirilloffna.taskrest.utils.ReadRoutingStats;
+import kirilloffna.taskrest.utils.RequestMetrics;
+import kirilloffna.taskrest.utils.ResponseCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static kirilloffna.taskrest.utils.ServletConstants.ERROR_PROCESSING_IO_ERROR;
+import static kirilloffna.taskrest.utils.ServletHelper.dispatch;
+import static kirilloffna.taskrest.utils.ServletHelper.sendError;
+
+/**
+ * Сервлет, публикующий метрики приложения в текстовом формате Prometheus.
+ * <p>
+ * Метрики собираются в момент запроса из {@link RequestMetrics}, {@link QueryMetrics}, пула соединений,
+ * кэша продуктов, кэша готовых ответов {@link ResponseCache}, {@link ChangeListener}, {@link DbExecutor} и счётчиков сжатия {@link ContentEncoding}. Перцентили оцениваются по корзинам гистограмм и публикуются отдельными
+ * метриками с суффиксами {@code _quantile_seconds} и {@code _max_seconds}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@WebServlet(name = "MetricsServlet", urlPatterns = "/metrics")
+public class MetricsServlet extends HttpServlet {
+  static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  private final Supplier<CacheStats> productCacheStats;
+  /**
+   * Пул потоков асинхронных запросов или {@code null}, если асинхронный режим выключен.
+   */
+  private final DbExecutor dbExecutor;
+  /**
+   * Слушатель изменений других экземпляров приложения или {@code null}, если синхронизация кэшей выключена.
+   */
+  private final ChangeListener changeListener;
+  private final RequestMetrics requestMetrics = RequestMetrics.forServlet("MetricsServlet");
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+    dispatch(req, resp, null, requestMetrics, () -> handleGet(resp));
+  }
+
+  private void handleGet(HttpServletResponse resp) {
+    StringBuilder out = new StringBuilder(16384);
+    writeRequestMetrics(out);
+    writeQueryMetrics(out);
+    writeConnectionMetrics(out);
+    writeProductCacheMetrics(out);
+    writeResponseCacheMetrics(out);
+    writeOrderTotalsMetrics(out);
+    writeOrderFeedMetrics(out);
+    writeCacheSyncMetrics(out);
+    writeDbExecutorMetrics(out);
+    writeCompressionMetrics(out);
+
+    resp.setCharacterEncoding("UTF-8");
+    resp.setContentType(CONTENT_TYPE);
+    try {
+      resp.getWriter().write(out.toString());
+    } catch (IOException e) {
+      sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ERROR_PROCESSING_IO_ERROR, e);
+    }
+  }
+
+  private void writeRequestMetrics(StringBuilder out) {
+    Map<String, LatencyHistogram.Snapshot> series = new TreeMap<>();
+    RequestMetrics.all().forEach((servlet, metrics) -> metrics.byMethod().forEach((method, histogram) -> {
+      LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+      if (snapshot.count() > 0) {
+        series.put("servlet=\"" + servlet + "\",method=\"" + method + "\"", snapshot);
+      }
+    }));
+    writeLatency(out, "http_server_requests", "HTTP request processing time", series);
+  }
+
+  private void writeQueryMetrics(StringBuilder out) {
+    Map<String, LatencyHistogram.Snapshot> series = new TreeMap<>();
+    Map<String, Long> rows = new TreeMap<>();
+    for (QueryMetrics.Query query : QueryMetrics.all()) {
+      LatencyHistogram.Snapshot snapshot = query.getLatency().snapshot();
+      if (snapshot.count() > 0) {
+        String labels = "query=\"" + query.getName() + "\"";
+        series.put(labels, snapshot);
+        rows.put(labels, query.getRows().sum());
+      }
+    }
+    writeLatency(out, "db_query", "DaoQueries statement execution time", series);
+    writeHeader(out, "db_query_rows_total", "Rows read or affected by DaoQueries statements", "counter");
+    rows.forEach((labels, value) -> writeSample(out, "db_query_rows_total", labels, value));
+  }
+
+  private void writeConnectionMetrics(StringBuilder out) {
+    writeLatency(out, "db_connection_acquire", "Time to obtain a connection from the pool",
+            Map.of("", ConnectionProvider.getAcquireTime().snapshot()));
+
+    ConnectionProvider.getPoolStats().ifPresent(pool -> {
+      writeHeader(out, "db_pool_connections", "Connections in the pool by state", "gauge");
+      writeSample(out, "db_pool_connections", "state=\"active\"", pool.getActiveConnections());
+      writeSample(out, "db_pool_connections", "state=\"idle\"", pool.getIdleConnections());
+      writeSample(out, "db_pool_connections", "state=\"total\"", pool.getTotalConnections());
+      writeGauge(out, "db_pool_connections_max", "Maximum pool size", pool.getMaxPoolSize());
+      writeGauge(out, "db_pool_threads_awaiting", "Threads waiting for a connection",
+              pool.getThreadsAwaitingConnection());
+    });
+
+    ReadRoutingStats routing = ConnectionProvider.getReadRoutingStats();
+    if (routing.getReplicas() > 0) {
+      writeGauge(out, "db_read_replicas", "Configured read replica pools", routing.getReplicas());
+      writeHeader(out, "db_read_connections_total", "Read-only connections by target database", "counter");
+      writeSample(out, "db_read_connections_total", "target=\"replica\"", routing.getReplicaReads());
+      writeSample(out, "db_read_connections_total", "target=\"primary\"", routing.getPrimaryReads());
+      writeCounter(out, "db_read_replica_failures_total", "Reads sent to the primary because no replica was available",
+              routing.getReplicaFailures());
+    }
+
+    ConnectionProvider.getStatementCacheStats().ifPresent(cache -> {
+      writeCounter(out, "db_statement_cache_hits_total", "Statements already prepared on the connection",
+              cache.getHits());
+      writeCounter(out, "db_statement_cache_misses_total", "Statements prepared for the first time on the connection",
+              cache.getMisses());
+      writeGauge(out, "db_statement_cache_hit_ratio", "Prepared statement cache hit ratio", cache.getHitRate());
+    });
+  }
+
+  private void writeProductCacheMetrics(StringBuilder out) {
+    CacheStats cache = productCacheStats.get();
+    writeHeader(out, "product_cache_requests_total", "Product cache lookups by result", "counter");
+    writeSample(out, "product_cache_requests_total", "result=\"hit\"", cache.hitCount());
+    writeSample(out, "product_cache_requests_total", "result=\"miss\"", cache.missCount());
+    writeCounter(out, "product_cache_evictions_total", "Products evicted from the cache", cache.evictionCount());
+    writeGauge(out, "product_cache_hit_ratio", "Product cache hit ratio", cache.hitRate());
+  }
+
+  private void writeResponseCacheMetrics(StringBuilder out) {
+    ResponseCache cache = ResponseCache.PRODUCTS;
+    writeHeader(out, "response_cache_requests_total", "Pre-serialized product list lookups by result", "counter");
+    writeSample(out, "response_cache_requests_total", "result=\"hit\"", cache.getHits());
+    writeSample(out, "response_cache_requests_total", "result=\"miss\"", cache.getMisses());
+    writeCounter(out, "response_cache_invalidations_total", "Response cache resets caused by product writes",
+            cache.getInvalidations());
+    writeGauge(out, "response_cache_bytes", "Size of cached response bodies", cache.getBytes());
+    writeGauge(out, "product_name_index_names", "Distinct product names in the suggest index",
+            ProductNameIndex.size());
+  }
+
+  private void writeOrderTotalsMetrics(StringBuilder out) {
+    OrderStatusTotals.get().ifPresent(totals -> {
+      writeHeader(out, "orders", "Orders by status", "gauge");
+      totals.forEach((status, total) -> writeSample(out, "orders", "status=\"" + status + "\"", total.count()));
+      writeHeader(out, "orders_amount", "Sum of order totalAmount by status", "gauge");
+      totals.forEach((status, total) ->
+              writeSample(out, "orders_amount", "status=\"" + status + "\"", total.amount().doubleValue()));
+    });
+    writeCounter(out, "order_totals_reconciliations_total", "Order totals reconciliations with GROUP BY",
+            OrderStatusTotals.getReconciliations());
+    writeCounter(out, "order_totals_corrections_total", "Reconciliations that found drifted order totals",
+            OrderStatusTotals.getCorrections());
+  }
+
+  private void writeOrderFeedMetrics(StringBuilder out) {
+    OrderStatusFeed feed = OrderStatusFeed.ORDERS;
+    writeGauge(out, "order_feed_subscribers", "Connected order status feed subscribers", feed.getSubscribers());
+    writeCounter(out, "order_feed_events_total", "Order status events published", feed.getPublished());
+    writeCounter(out, "order_feed_dropped_subscribers_total", "Subscribers disconnected for falling behind",
+            feed.getDropped());
+  }
+
+  private void writeCacheSyncMetrics(StringBuilder out) {
+    if (changeListener == null) {
+      return;
+    }
+    writeGauge(out, "cache_sync_connected", "Whether the cache change listener is subscribed",
+            changeListener.isConnected() ? 1 : 0);
+    writeCounter(out, "cache_sync_notifications_total", "Change notifications received, including own",
+            changeListener.getReceived());
+    writeCounter(out, "cache_sync_applied_total", "Change notifications from other nodes applied to caches",
+            changeListener.getApplied());
+    writeCounter(out, "cache_sync_resyncs_total", "Full cache resynchronizations after the listener connected",
+            changeListener.getResyncs());
+  }
+
+  private void writeDbExecutorMetrics(StringBuilder out) {
+    if (dbExecutor == null) {
+      return;
+    }
+    DbExecutorStats stats = dbExecutor.getStats();
+    writeGauge(out, "db_executor_queue_depth", "Requests waiting in the DB executor queue", stats.getQueueDepth());
+    writeGauge(out, "db_executor_queue_capacity", "DB executor queue capacity", stats.getQueueCapacity());
+    writeGauge(out, "db_executor_active_threads", "DB executor threads running requests", stats.getActiveThreads());
+    writeHeader(out, "db_executor_rejected_total", "Requests rejected with 503 by reason", "counter");
+    writeSample(out, "db_executor_rejected_total", "reason=\"queue_full\"", stats.getRejectedTasks());
+    writeSample(out, "db_executor_rejected_total", "reason=\"wait_expired\"", stats.getExpiredTasks());
+    writeLatency(out, "db_executor_wait", "Time requests spent in the DB executor queue",
+            Map.of("", dbExecutor.getWaitTime().snapshot()));
+  }
+
+  private void writeCompressionMetrics(StringBuilder out) {
+    writeHeader(out, "http_compressed_responses_total", "Compressed responses by encoding", "counter");
+    for (ContentEncoding encoding : ContentEncoding.values()) {
+      writeSample(out, "http_compressed_responses_total", encodingLabel(encoding),
+              encoding.getMetrics().getResponses());
+    }
+    writeHeader(out, "http_compression_bytes_total", "Compressed response bodies size before and after compression",
+            "counter");
+    for (ContentEncoding encoding : ContentEncoding.values()) {
+      CompressionMetrics metrics = encoding.getMetrics();
+      writeSample(out, "http_compression_bytes_total", join(encodingLabel(encoding), "stage=\"uncompressed\""),
+              metrics.getUncompressedBytes());
+      writeSample(out, "http_compression_bytes_total", join(encodingLabel(encoding), "stage=\"compressed\""),
+              metrics.getCompressedBytes());
+    }
+    writeHeader(out, "http_compression_ratio", "Compressed to uncompressed size ratio", "gauge");
+    for (ContentEncoding encoding : ContentEncoding.values()) {
+      writeSample(out, "http_compression_ratio", encodingLabel(encoding), encoding.getMetrics().getRatio());
+    }
+    writeHeader(out, "http_compression_cpu_seconds_total", "CPU time spent compressing responses", "counter");
+    for (ContentEncoding encoding : ContentEncoding.values()) {
+      writeSample(out, "http_compression_cpu_seconds_total", encodingLabel(encoding),
+              encoding.getMetrics().getCpuNanos() / NANOS_PER_SECOND);
+    }
+  }
+
+  private static String encodingLabel(ContentEncoding encoding) {
+    return "encoding=\"" + encoding.getToken() + "\"";
+  }
+
+  /**
+   * Записывает гистограмму {@code <name>_seconds}, а также оценки перцентилей и максимум для каждой серии.
+   *
+   * @param series Снимки гистограмм по строке меток без фигурных скобок.
+   */
+  private static void writeLatency(StringBuilder out, String name, String help,
+                                   Map<String, LatencyHistogram.Snapshot> series) {
+    String histogram = name + "_seconds";
+    writeHeader(out, histogram, help, "histogram");
+    series.forEach((labels, snapshot) -> {
+      long cumulative = 0;
+      long[] counts = snapshot.counts();
+      for (int i = 0; i < counts.length; i++) {
+        cumulative += counts[i];
+        String le = i < counts.length - 1
+                ? String.valueOf(LatencyHistogram.upperBoundNanos(i) / NANOS_PER_SECOND) : "+Inf";
+        writeSample(out, histogram + "_bucket", join(labels, "le=\"" + le + "\""), cumulative);
+      }
+      writeSample(out, histogram + "_sum", labels, snapshot.sumNanos() / NANOS_PER_SECOND);
+      writeSample(out, histogram + "_count", labels, snapshot.count());
+    });
+
+    String quantile = name + "_quantile_seconds";
+    writeHeader(out, quantile, help + ", percentile estimated from histogram buckets", "gauge");
+    series.forEach((labels, snapshot) -> {
+      for (double q : QUANTILES) {
+        writeSample(out, quantile, join(labels, "quantile=\"" + q + "\""),
+                snapshot.quantileNanos(q) / NANOS_PER_SECOND);
+      }
+    });
+
+    String max = name + "_max_seconds";
+    writeHeader(out, max, help + ", maximum", "gauge");
+    series.forEach((labels, snapshot) -> writeSample(out, max, labels, snapshot.maxNanos() / NANOS_PER_SECOND));
+  }
+
+  private static void writeCounter(StringBuilder out, String name, String help, long value) {
+    writeHeader(out, name, help, "counter");
+    writeSample(out, name, "", value);
+  }
+
+  private static void writeGauge(StringBuilder out, String name, String help, double value) {
+    writeHeader(out, name, help, "gauge");
+    writeSample(out, name, "", value);
+  }
+
+  private static void writeHeader(StringBuilder out, String name, String help, String type) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void writeSample(StringBuilder out, String name, String labels, long value) {
+    appendName(out, name, labels).append(value).append('\n');
+  }
+
+  private static void writeSample(StringBuilder out, String name, String labels, double value) {
+    appendName(out, name, labels).append(value).append('\n');
+  }
+
+  private static StringBuilder appendName(StringBuilder out, String name, String labels) {
+    out.append(name);
+    if (!labels.isEmpty()) {
+      out.append('{').append(labels).append('}');
+    }
+    return out.append(' ');
+  }
+
+  private static String join(String labels, String label) {
+    return labels.isEmpty() ? label : labels + "," + label;
+  }
+}
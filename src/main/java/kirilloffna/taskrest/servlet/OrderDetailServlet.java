@@ -6,31 +6,50 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import kirilloffna.taskrest.dto.OrderDetailDTO;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.service.OrderDetailService;
+import kirilloffna.taskrest.utils.DbExecutor;
+import kirilloffna.taskrest.utils.JsonArrayWriter;
+import kirilloffna.taskrest.utils.RequestMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.List;
 import java.util.Optional;
 
 import static kirilloffna.taskrest.utils.ServletConstants.*;
-import static kirilloffna.taskrest.utils.ServletHelper.sendError;
-import static kirilloffna.taskrest.utils.ServletHelper.setRespReqEncoded;
+import static kirilloffna.taskrest.utils.ServletHelper.*;
 
 /**
  * Сервлет для управления обьектами OrderDetails.
+ * <p>
+ * Если передан {@link DbExecutor}, запросы выполняются асинхронно в его потоках,
+ * см. {@link kirilloffna.taskrest.utils.ServletHelper#dispatch}.
  */
 @Slf4j
 @RequiredArgsConstructor
-@WebServlet(name = "OrderDetailServlet", urlPatterns = "/order-details")
+@WebServlet(name = "OrderDetailServlet", asyncSupported = true, urlPatterns = "/order-details")
 public class OrderDetailServlet extends HttpServlet {
   private final OrderDetailService orderDetailService;
+  private final DbExecutor dbExecutor;
+  private final RequestMetrics requestMetrics = RequestMetrics.forServlet("OrderDetailServlet");
   private final ObjectMapper objectMapper = new ObjectMapper();
 
+  /**
+   * Создаёт сервлет, обрабатывающий запросы синхронно в потоке контейнера.
+   */
+  public OrderDetailServlet(OrderDetailService orderDetailService) {
+    this(orderDetailService, null);
+  }
+
   /**
    * Обрабатывает GET-запросы для получения объекта OrderDetailDTO по ID или списка всех OrderDetailDTO.
+   * При наличии параметров limit и/или after возвращает страницу OrderDetailDTO с курсором nextCursor.
+   * Полный список записывается в ответ потоково, по мере чтения строк из базы данных.
+   * Объект по ID и полный список отдаются с заголовком ETag по версии в базе данных: если клиент передал её
+   * в If-None-Match, возвращается 304 Not Modified без загрузки данных. Версия и данные читаются с одной реплики,
+   * закреплённой за запросом ({@link kirilloffna.taskrest.utils.ReadYourWrites}), поэтому ETag не опережает тело.
    *
    * @param req  запрос от клиента
    * @param resp ответ клиенту
@@ -40,22 +59,37 @@ public class OrderDetailServlet extends HttpServlet {
     log.info("Received GET request for /order-details");
     setRespReqEncoded(req, resp);
 
+    dispatch(req, resp, dbExecutor, requestMetrics, () -> handleGet(req, resp));
+  }
+
+  private void handleGet(HttpServletRequest req, HttpServletResponse resp) {
     try {
       String idParam = req.getParameter("id");
       if (idParam != null) {
         Long id = Long.valueOf(idParam);
-        Optional<OrderDetailDTO> orderDetail = orderDetailService.getOrderDetailById(id);
+        Optional<Long> version = orderDetailService.getOrderDetailVersion(id);
+        if (version.isPresent() && checkNotModified(req, resp, version.get().toString())) {
+          return;
+        }
+        Optional<OrderDetailDTO> orderDetail =
+                version.isPresent() ? orderDetailService.getOrderDetailById(id) : Optional.empty();
         if (orderDetail.isPresent()) {
           resp.getWriter().write(objectMapper.writeValueAsString(orderDetail.get()));
         } else {
           sendError(resp, HttpServletResponse.SC_NOT_FOUND, ORDER_DETAIL_NOT_FOUND, null);
         }
-      } else {
-        List<OrderDetailDTO> orderDetailsDTO = orderDetailService.getAllOrderDetails();
-        resp.getWriter().write(objectMapper.writeValueAsString(orderDetailsDTO));
+      } else if (isPageRequest(req)) {
+        PageDTO<OrderDetailDTO> page = orderDetailService.getOrderDetailsPage(getPageAfter(req), getPageLimit(req));
+        resp.getWriter().write(objectMapper.writeValueAsString(page));
+      } else if (!checkNotModified(req, resp, orderDetailService.getOrderDetailsVersion())) {
+        JsonArrayWriter<OrderDetailDTO> writer = new JsonArrayWriter<>(objectMapper, resp);
+        orderDetailService.streamAllOrderDetails(writer);
+        writer.finish();
       }
     } catch (NumberFormatException e) {
       sendError(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_ORDER_ID, e);
+    } catch (IllegalArgumentException e) {
+      sendError(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_PAGE_PARAMETERS, e);
     } catch (IOException | SQLException e) {
       sendError(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_ORDER_DATA, e);
     } catch (Exception e) {
@@ -74,6 +108,10 @@ public class OrderDetailServlet extends HttpServlet {
     log.info("Received POST request for /order-details");
     setRespReqEncoded(req, resp);
 
+    dispatch(req, resp, dbExecutor, requestMetrics, () -> handlePost(req, resp));
+  }
+
+  private void handlePost(HttpServletRequest req, HttpServletResponse resp) {
     try {
       OrderDetailDTO orderDetailDTO = objectMapper.readValue(req.getInputStream(), OrderDetailDTO.class);
       orderDetailService.createOrderDetail(orderDetailDTO);
@@ -96,6 +134,10 @@ public class OrderDetailServlet extends HttpServlet {
     log.info("Received PUT request for /order-details");
     setRespReqEncoded(req, resp);
 
+    dispatch(req, resp, dbExecutor, requestMetrics, () -> handlePut(req, resp));
+  }
+
+  private void handlePut(HttpServletRequest req, HttpServletResponse resp) {
     try {
       OrderDetailDTO orderDetailDTO = objectMapper.readValue(req.getInputStream(), OrderDetailDTO.class);
 
@@ -104,12 +146,9 @@ public class OrderDetailServlet extends HttpServlet {
         return;
       }
 
-      Optional<OrderDetailDTO> orderDetailOpt = orderDetailService.getOrderDetailById(orderDetailDTO.getId());
-      if (orderDetailOpt.isPresent()) {
-        Optional<OrderDetailDTO> updatedOrderDetail = orderDetailService.updateOrderDetail(orderDetailDTO);
-        if (updatedOrderDetail.isPresent()) {
-          resp.getWriter().write(objectMapper.writeValueAsString(updatedOrderDetail.get()));
-        }
+      Optional<OrderDetailDTO> updatedOrderDetail = orderDetailService.updateOrderDetail(orderDetailDTO);
+      if (updatedOrderDetail.isPresent()) {
+        resp.getWriter().write(objectMapper.writeValueAsString(updatedOrderDetail.get()));
       } else {
         resp.sendError(HttpServletResponse.SC_NOT_FOUND, ORDER_DETAIL_NOT_FOUND);
       }
@@ -131,6 +170,10 @@ public class OrderDetailServlet extends HttpServlet {
   protected void doDelete(HttpServletRequest req, HttpServletResponse resp) {
     log.info("Received DELETE request for /order-details");
     setRespReqEncoded(req, resp);
+    dispatch(req, resp, dbExecutor, requestMetrics, () -> handleDelete(req, resp));
+  }
+
+  private void handleDelete(HttpServletRequest req, HttpServletResponse resp) {
     try {
       long id = Long.parseLong(req.getParameter("id"));
       if (id > 0) {
@@ -0,0 +1,72 @@
+package kirilloffna.taskrest.servlet;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.utils.OrderStatusFeed;
+import kirilloffna.taskrest.utils.RequestMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+import static kirilloffna.taskrest.utils.ServletConstants.*;
+import static kirilloffna.taskrest.utils.ServletHelper.dispatch;
+import static kirilloffna.taskrest.utils.ServletHelper.sendError;
+
+/**
+ * Сервлет ленты изменений статусов заказов в формате Server-Sent Events, см. {@link OrderStatusFeed}.
+ * <p>
+ * Запрос переводится в асинхронный режим без ограничения времени и не занимает поток контейнера: события
+ * записываются в ответ неблокирующими вызовами по мере публикации. В метриках запросов учитывается время
+ * подписки, а не время жизни потока событий.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@WebServlet(name = "OrderStatusEventsServlet", asyncSupported = true, urlPatterns = "/order-details/events")
+public class OrderStatusEventsServlet extends HttpServlet {
+  static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream";
+  private final OrderStatusFeed feed;
+  private final RequestMetrics requestMetrics = RequestMetrics.forServlet("OrderStatusEventsServlet");
+
+  /**
+   * Обрабатывает GET-запросы подписки на ленту. Клиент, переподключающийся после обрыва, передаёт номер
+   * последнего полученного события в заголовке Last-Event-ID (так делает EventSource) или параметре after
+   * и получает пропущенные события.
+   *
+   * @param req  запрос от клиента
+   * @param resp ответ клиенту
+   */
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+    log.debug("Received GET request for /order-details/events");
+
+    dispatch(req, resp, null, requestMetrics, () -> handleGet(req, resp));
+  }
+
+  private void handleGet(HttpServletRequest req, HttpServletResponse resp) {
+    try {
+      Long afterSequence = getLastEventId(req);
+      resp.setCharacterEncoding("UTF-8");
+      resp.setContentType(EVENT_STREAM_CONTENT_TYPE);
+      resp.setHeader("Cache-Control", "no-cache");
+      AsyncContext asyncContext = req.startAsync();
+      asyncContext.setTimeout(0);
+      feed.subscribe(asyncContext, afterSequence);
+    } catch (NumberFormatException e) {
+      sendError(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_LAST_EVENT_ID, e);
+    } catch (IOException e) {
+      sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ERROR_PROCESSING_IO_ERROR, e);
+    }
+  }
+
+  private static Long getLastEventId(HttpServletRequest req) {
+    String lastEventId = req.getHeader(LAST_EVENT_ID_HEADER);
+    if (lastEventId == null || lastEventId.isEmpty()) {
+      lastEventId = req.getParameter(PAGE_AFTER_PARAM);
+    }
+    return lastEventId == null || lastEventId.isEmpty() ? null : Long.valueOf(lastEventId);
+  }
+}
@@ -0,0 +1,60 @@
+package kirilloffna.taskrest.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dao.impl.OrderStatusTotals;
+import kirilloffna.taskrest.dto.OrderStatusTotalDTO;
+import kirilloffna.taskrest.service.OrderDetailService;
+import kirilloffna.taskrest.utils.RequestMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static kirilloffna.taskrest.utils.ServletConstants.*;
+import static kirilloffna.taskrest.utils.ServletHelper.*;
+
+/**
+ * Сервлет итогов заказов по статусам.
+ * <p>
+ * Итоги хранятся в памяти ({@link OrderStatusTotals}), поэтому запрос выполняется в потоке контейнера
+ * без {@link kirilloffna.taskrest.utils.DbExecutor}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@WebServlet(name = "OrderStatusTotalsServlet", urlPatterns = "/order-details/totals")
+public class OrderStatusTotalsServlet extends HttpServlet {
+  private final OrderDetailService orderDetailService;
+  private final RequestMetrics requestMetrics = RequestMetrics.forServlet("OrderStatusTotalsServlet");
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  /**
+   * Обрабатывает GET-запросы итогов. В ответ возвращается JSON-массив вида
+   * {@code [{"status": "Принят", "count": 3, "totalAmount": 450.00}, ...]} по всем статусам.
+   *
+   * @param req  запрос от клиента
+   * @param resp ответ клиенту
+   */
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+    log.debug("Received GET request for /order-details/totals");
+    setRespReqEncoded(req, resp);
+
+    dispatch(req, resp, null, requestMetrics, () -> handleGet(resp));
+  }
+
+  private void handleGet(HttpServletResponse resp) {
+    try {
+      List<OrderStatusTotalDTO> totals = orderDetailService.getOrderStatusTotals();
+      resp.getWriter().write(objectMapper.writeValueAsString(totals));
+    } catch (SQLException e) {
+      sendError(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, ERROR_LOADING_ORDER_TOTALS, e);
+    } catch (Exception e) {
+      sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ERROR_PROCESSING_GET_REQUEST, e);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package kirilloffna.taskrest.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dto.ImportFormat;
+import kirilloffna.taskrest.dto.ImportResultDTO;
+import kirilloffna.taskrest.service.ProductService;
+import kirilloffna.taskrest.utils.RequestMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static kirilloffna.taskrest.utils.ServletConstants.*;
+import static kirilloffna.taskrest.utils.ServletHelper.*;
+
+/**
+ * Сервлет для массового импорта Products.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@WebServlet(name = "ProductImportServlet", urlPatterns = "/products/import")
+public class ProductImportServlet extends HttpServlet {
+  private final ProductService productService;
+  private final RequestMetrics requestMetrics = RequestMetrics.forServlet("ProductImportServlet");
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  /**
+   * Обрабатывает POST-запросы для массового импорта Products. Формат тела определяется заголовком Content-Type:
+   * application/x-ndjson или text/csv. В ответ возвращается количество загруженных и отклонённых строк.
+   *
+   * @param req  запрос от клиента
+   * @param resp ответ клиенту
+   */
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+    log.info("Received POST request for /products/import");
+    setRespReqEncoded(req, resp);
+
+    dispatch(req, resp, null, requestMetrics, () -> handlePost(req, resp));
+  }
+
+  private void handlePost(HttpServletRequest req, HttpServletResponse resp) {
+    try {
+      Optional<ImportFormat> format = ImportFormat.fromContentType(req.getContentType());
+      if (format.isEmpty()) {
+        resp.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, UNSUPPORTED_IMPORT_FORMAT);
+        return;
+      }
+
+      ImportResultDTO result = productService.importProducts(req.getReader(), format.get());
+      resp.getWriter().write(objectMapper.writeValueAsString(result));
+    } catch (IllegalArgumentException e) {
+      sendError(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage(), e);
+    } catch (IOException | SQLException e) {
+      sendError(resp, HttpServletResponse.SC_BAD_REQUEST, ERROR_PROCESSING_IO_ERROR, e);
+    } catch (Exception e) {
+      sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ERROR_PROCESSING_POST_REQUEST, e);
+    }
+  }
+}
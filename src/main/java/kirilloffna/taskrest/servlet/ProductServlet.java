@@ -5,32 +5,60 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.dto.ProductDTO;
+import kirilloffna.taskrest.dto.ProductFilter;
+import kirilloffna.taskrest.model.CategoryType;
 import kirilloffna.taskrest.service.ProductService;
+import kirilloffna.taskrest.utils.DbExecutor;
+import kirilloffna.taskrest.utils.JsonArrayWriter;
+import kirilloffna.taskrest.utils.ReadYourWrites;
+import kirilloffna.taskrest.utils.RequestMetrics;
+import kirilloffna.taskrest.utils.ResponseCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.SQLException;
-import java.util.List;
 import java.util.Optional;
 
 import static kirilloffna.taskrest.utils.ServletConstants.*;
-import static kirilloffna.taskrest.utils.ServletHelper.sendError;
-import static kirilloffna.taskrest.utils.ServletHelper.setRespReqEncoded;
+import static kirilloffna.taskrest.utils.ServletHelper.*;
 
 /**
  * Сервлет для управления обьектами Products.
+ * <p>
+ * Если передан {@link DbExecutor}, запросы выполняются асинхронно в его потоках,
+ * см. {@link kirilloffna.taskrest.utils.ServletHelper#dispatch}.
  */
 @Slf4j
 @RequiredArgsConstructor
-@WebServlet(name = "ProductServlet", urlPatterns = "/products")
+@WebServlet(name = "ProductServlet", asyncSupported = true, urlPatterns = "/products")
 public class ProductServlet extends HttpServlet {
+  private static final String ALL_PRODUCTS_CACHE_KEY = "all";
   private final ProductService productService;
+  private final DbExecutor dbExecutor;
+  private final RequestMetrics requestMetrics = RequestMetrics.forServlet("ProductServlet");
   private final ObjectMapper objectMapper = new ObjectMapper();
 
+  /**
+   * Создаёт сервлет, обрабатывающий запросы синхронно в потоке контейнера.
+   */
+  public ProductServlet(ProductService productService) {
+    this(productService, null);
+  }
+
   /**
    * Обрабатывает GET-запросы для получения объекта ProductDTO по ID или списка всех ProductDTO.
+   * При наличии параметров limit и/или after возвращает страницу ProductDTO с курсором nextCursor.
+   * Полный список записывается в ответ потоково, по мере чтения строк из базы данных.
+   * Параметры categoryType, available, minPrice, maxPrice и name (начало названия без учёта регистра) отбирают
+   * продукты на стороне базы данных как для полного списка, так и для страниц.
+   * Объект по ID и полный список отдаются с заголовком ETag по версии в базе данных: если клиент передал её
+   * в If-None-Match, возвращается 304 Not Modified без загрузки данных.
+   * Тело полного списка, в том числе с фильтрами, сохраняется в {@link ResponseCache#PRODUCTS} и до следующего
+   * изменения продуктов отдаётся готовыми байтами без обращения к базе данных.
    *
    * @param req  запрос от клиента
    * @param resp ответ клиенту
@@ -40,23 +68,40 @@ public class ProductServlet extends HttpServlet {
     log.info("Received GET request for /products");
     setRespReqEncoded(req, resp);
 
+    dispatch(req, resp, dbExecutor, requestMetrics, () -> handleGet(req, resp));
+  }
+
+  private void handleGet(HttpServletRequest req, HttpServletResponse resp) {
     try {
       String idParam = req.getParameter("id");
       if (idParam != null) {
         Long id = Long.valueOf(idParam);
-        Optional<ProductDTO> productDTO = productService.getProductById(id);
+        Optional<Long> version = productService.getProductVersion(id);
+        if (version.isPresent() && checkNotModified(req, resp, version.get().toString())) {
+          return;
+        }
+        Optional<ProductDTO> productDTO = version.isPresent()
+                ? productService.getProductById(id, version.get())
+                : Optional.empty();
         if (productDTO.isPresent()) {
           resp.getWriter().write(objectMapper.writeValueAsString(productDTO.get()));
         } else {
           resp.sendError(HttpServletResponse.SC_NOT_FOUND, PRODUCT_NOT_FOUND);
         }
+      } else if (isPageRequest(req)) {
+        ProductFilter filter = getProductFilter(req);
+        PageDTO<ProductDTO> page = filter.isEmpty()
+                ? productService.getProductsPage(getPageAfter(req), getPageLimit(req))
+                : productService.getProductsPage(filter, getPageAfter(req), getPageLimit(req));
+        resp.getWriter().write(objectMapper.writeValueAsString(page));
       } else {
-        List<ProductDTO> products = productService.getAllProducts();
-        resp.getWriter().write(objectMapper.writeValueAsString(products));
+        handleGetAll(req, resp, getProductFilter(req));
       }
     } catch (NumberFormatException e) {
       log.error(INVALID_PRODUCT_ID, e);
       sendError(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_PRODUCT_ID, e);
+    } catch (IllegalArgumentException e) {
+      sendError(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage(), e);
     } catch (IOException | SQLException e) {
       log.error(ERROR_PROCESSING_GET_REQUEST, e);
       sendError(resp, HttpServletResponse.SC_BAD_REQUEST, ERROR_PROCESSING_IO_ERROR, e);
@@ -66,6 +111,82 @@ public class ProductServlet extends HttpServlet {
     }
   }
 
+  private void handleGetAll(HttpServletRequest req, HttpServletResponse resp, ProductFilter filter)
+          throws SQLException, IOException {
+    String cacheKey = filter.isEmpty() ? ALL_PRODUCTS_CACHE_KEY : filter.toString();
+    Optional<ResponseCache.Entry> cached = ResponseCache.PRODUCTS.get(cacheKey);
+    if (cached.isPresent()) {
+      if (!checkNotModified(req, resp, cached.get().version())) {
+        byte[] body = cached.get().body();
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+      }
+      return;
+    }
+
+    // Поколение кэша фиксируется до чтения версии, чтобы изменение во время выдачи не попало в кэш.
+    // Версия и тело читаются с одной реплики, закреплённой за запросом (ReadYourWrites), поэтому ETag не опережает
+    // тело. Тело для кэша читается с основной базы данных: отставание реплики осталось бы в кэше до следующего
+    // изменения.
+    Optional<ResponseCache.Recorder> recorder = ResponseCache.PRODUCTS.record(cacheKey);
+    if (recorder.isPresent()) {
+      ReadYourWrites.requirePrimary();
+    }
+    String version = productService.getProductsVersion();
+    if (!checkNotModified(req, resp, version)) {
+      JsonArrayWriter<ProductDTO> writer = new JsonArrayWriter<>(objectMapper,
+              recorder.map(r -> r.wrap(resp)).orElse(resp));
+      if (filter.isEmpty()) {
+        productService.streamAllProducts(writer);
+      } else {
+        for (ProductDTO product : productService.getProducts(filter)) {
+          writer.accept(product);
+        }
+      }
+      writer.finish();
+      recorder.ifPresent(r -> r.commit(version));
+    }
+  }
+
+  /**
+   * Возвращает фильтр из параметров запроса, пустые параметры не учитываются.
+   *
+   * @throws IllegalArgumentException если значение параметра некорректно.
+   */
+  private static ProductFilter getProductFilter(HttpServletRequest req) {
+    try {
+      ProductFilter filter = new ProductFilter();
+      String categoryType = getFilterParameter(req, FILTER_CATEGORY_TYPE_PARAM);
+      if (categoryType != null) {
+        filter.setCategoryType(CategoryType.valueOf(categoryType));
+      }
+      String available = getFilterParameter(req, FILTER_AVAILABLE_PARAM);
+      if (available != null) {
+        if (!"true".equals(available) && !"false".equals(available)) {
+          throw new IllegalArgumentException(INVALID_FILTER_PARAMETERS);
+        }
+        filter.setAvailable(Boolean.valueOf(available));
+      }
+      String minPrice = getFilterParameter(req, FILTER_MIN_PRICE_PARAM);
+      if (minPrice != null) {
+        filter.setMinPrice(new BigDecimal(minPrice));
+      }
+      String maxPrice = getFilterParameter(req, FILTER_MAX_PRICE_PARAM);
+      if (maxPrice != null) {
+        filter.setMaxPrice(new BigDecimal(maxPrice));
+      }
+      filter.setNamePrefix(getFilterParameter(req, FILTER_NAME_PARAM));
+      return filter;
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(INVALID_FILTER_PARAMETERS, e);
+    }
+  }
+
+  private static String getFilterParameter(HttpServletRequest req, String name) {
+    String value = req.getParameter(name);
+    return value == null || value.isBlank() ? null : value.trim();
+  }
+
   /**
    * Обрабатывает POST-запросы для создания нового Product.
    *
@@ -77,6 +198,10 @@ public class ProductServlet extends HttpServlet {
     log.info("Received POST request for /products");
     setRespReqEncoded(req, resp);
 
+    dispatch(req, resp, dbExecutor, requestMetrics, () -> handlePost(req, resp));
+  }
+
+  private void handlePost(HttpServletRequest req, HttpServletResponse resp) {
     try {
       ProductDTO productDTO = objectMapper.readValue(req.getInputStream(), ProductDTO.class);
       productService.createProduct(productDTO);
@@ -99,6 +224,10 @@ public class ProductServlet extends HttpServlet {
     log.info("Received PUT request for /products");
     setRespReqEncoded(req, resp);
 
+    dispatch(req, resp, dbExecutor, requestMetrics, () -> handlePut(req, resp));
+  }
+
+  private void handlePut(HttpServletRequest req, HttpServletResponse resp) {
     try {
       ProductDTO productDTO = objectMapper.readValue(req.getInputStream(), ProductDTO.class);
 
@@ -107,13 +236,9 @@ public class ProductServlet extends HttpServlet {
         return;
       }
 
-      Optional<ProductDTO> productOpt = productService.getProductById(productDTO.getId());
-
-      if (productOpt.isPresent()) {
-        Optional<ProductDTO> updatedProductDTO = productService.updateProduct(productDTO);
-        if (updatedProductDTO.isPresent()) {
-          resp.getWriter().write(objectMapper.writeValueAsString(updatedProductDTO.get()));
-        }
+      Optional<ProductDTO> updatedProductDTO = productService.updateProduct(productDTO);
+      if (updatedProductDTO.isPresent()) {
+        resp.getWriter().write(objectMapper.writeValueAsString(updatedProductDTO.get()));
       } else {
         resp.sendError(HttpServletResponse.SC_NOT_FOUND, PRODUCT_NOT_FOUND);
       }
@@ -137,6 +262,10 @@ public class ProductServlet extends HttpServlet {
   protected void doDelete(HttpServletRequest req, HttpServletResponse resp) {
     log.info("Received DELETE request for /products");
 
+    dispatch(req, resp, dbExecutor, requestMetrics, () -> handleDelete(req, resp));
+  }
+
+  private void handleDelete(HttpServletRequest req, HttpServletResponse resp) {
     try {
       long id = Long.parseLong(req.getParameter("id"));
       if (id > 0) {
@@ -0,0 +1,75 @@
+package kirilloffna.taskrest.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dao.impl.ProductNameIndex;
+import kirilloffna.taskrest.service.ProductService;
+import kirilloffna.taskrest.utils.RequestMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+import static kirilloffna.taskrest.utils.ServletConstants.*;
+import static kirilloffna.taskrest.utils.ServletHelper.*;
+
+/**
+ * Сервлет подсказок названий продуктов по мере ввода.
+ * <p>
+ * Подсказки выдаются из {@link ProductNameIndex} в памяти, поэтому запрос выполняется в потоке контейнера
+ * без {@link kirilloffna.taskrest.utils.DbExecutor}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@WebServlet(name = "ProductSuggestServlet", urlPatterns = "/products/suggest")
+public class ProductSuggestServlet extends HttpServlet {
+  private final ProductService productService;
+  private final RequestMetrics requestMetrics = RequestMetrics.forServlet("ProductSuggestServlet");
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  /**
+   * Обрабатывает GET-запросы подсказок. Параметр prefix задаёт начало названия без учёта регистра, limit —
+   * количество подсказок (по умолчанию 10, не более 50). В ответ возвращается JSON-массив различных названий
+   * в алфавитном порядке.
+   *
+   * @param req  запрос от клиента
+   * @param resp ответ клиенту
+   */
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+    log.debug("Received GET request for /products/suggest");
+    setRespReqEncoded(req, resp);
+
+    dispatch(req, resp, null, requestMetrics, () -> handleGet(req, resp));
+  }
+
+  private void handleGet(HttpServletRequest req, HttpServletResponse resp) {
+    try {
+      String prefix = req.getParameter(SUGGEST_PREFIX_PARAM);
+      if (prefix == null || prefix.isEmpty()) {
+        throw new IllegalArgumentException(INVALID_SUGGEST_PARAMETERS);
+      }
+      List<String> names = productService.suggestProductNames(prefix, getSuggestLimit(req));
+      resp.getWriter().write(objectMapper.writeValueAsString(names));
+    } catch (IllegalArgumentException e) {
+      sendError(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_SUGGEST_PARAMETERS, e);
+    } catch (Exception e) {
+      sendError(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ERROR_PROCESSING_GET_REQUEST, e);
+    }
+  }
+
+  private static int getSuggestLimit(HttpServletRequest req) {
+    String limitParam = req.getParameter(PAGE_LIMIT_PARAM);
+    if (limitParam == null) {
+      return DEFAULT_SUGGEST_LIMIT;
+    }
+    int limit = Integer.parseInt(limitParam);
+    if (limit <= 0) {
+      throw new IllegalArgumentException(INVALID_SUGGEST_PARAMETERS);
+    }
+    return Math.min(limit, MAX_SUGGEST_LIMIT);
+  }
+}
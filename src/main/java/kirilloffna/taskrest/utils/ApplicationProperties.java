@@ -0,0 +1,60 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Утилитарный класс, содержит настройки приложения из файла application.properties.
+ * <p>
+ * Значение можно переопределить системным свойством JVM с тем же ключом, например {@code -Ddb.pool.maxSize=20}.
+ */
+@Slf4j
+@UtilityClass
+public class ApplicationProperties {
+  private static final String PROPERTIES_FILE = "src/main/resources/application.properties";
+  private static final Properties properties = new Properties();
+
+  static {
+    try (InputStream input = new FileInputStream(PROPERTIES_FILE)) {
+      properties.load(input);
+    } catch (IOException e) {
+      log.error("Error loading properties file", e);
+    }
+  }
+
+  public static String getString(String key) {
+    return System.getProperty(key, properties.getProperty(key));
+  }
+
+  public static String getString(String key, String defaultValue) {
+    String value = getString(key);
+    return value == null || value.isBlank() ? defaultValue : value.trim();
+  }
+
+  public static int getInt(String key, int defaultValue) {
+    return (int) getLong(key, defaultValue);
+  }
+
+  public static long getLong(String key, long defaultValue) {
+    String value = getString(key);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      log.warn("Invalid numeric value '{}' for property {}, using default {}", value, key, defaultValue);
+      return defaultValue;
+    }
+  }
+
+  public static boolean getBoolean(String key, boolean defaultValue) {
+    String value = getString(key);
+    return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+  }
+}
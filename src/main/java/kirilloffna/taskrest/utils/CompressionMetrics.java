@@ -0,0 +1,52 @@
+package kirilloffna.taskrest.utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики сжатия ответов одной {@link ContentEncoding}: количество ответов, объём до и после сжатия
+ * и процессорное время, затраченное на сжатие.
+ */
+public class CompressionMetrics {
+  private final LongAdder responses = new LongAdder();
+  private final LongAdder uncompressedBytes = new LongAdder();
+  private final LongAdder compressedBytes = new LongAdder();
+  private final LongAdder cpuNanos = new LongAdder();
+
+  /**
+   * Учитывает сжатый ответ.
+   *
+   * @param uncompressed Размер тела до сжатия в байтах.
+   * @param compressed   Размер тела после сжатия в байтах.
+   * @param cpuTime      Процессорное время сжатия в наносекундах.
+   */
+  public void record(long uncompressed, long compressed, long cpuTime) {
+    responses.increment();
+    uncompressedBytes.add(uncompressed);
+    compressedBytes.add(compressed);
+    cpuNanos.add(cpuTime);
+  }
+
+  public long getResponses() {
+    return responses.sum();
+  }
+
+  public long getUncompressedBytes() {
+    return uncompressedBytes.sum();
+  }
+
+  public long getCompressedBytes() {
+    return compressedBytes.sum();
+  }
+
+  public long getCpuNanos() {
+    return cpuNanos.sum();
+  }
+
+  /**
+   * Возвращает отношение сжатого объёма к исходному, 0 — если сжатых ответов ещё не было.
+   */
+  public double getRatio() {
+    long uncompressed = getUncompressedBytes();
+    return uncompressed == 0 ? 0 : (double) getCompressedBytes() / uncompressed;
+  }
+}
@@ -0,0 +1,12 @@
+package kirilloffna.taskrest.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Действие над новым физическим соединением до передачи его в пул {@link ConnectionProvider}.
+ */
+@FunctionalInterface
+public interface ConnectionInitializer {
+  void initialize(Connection connection) throws SQLException;
+}
@@ -1,46 +1,301 @@
 package kirilloffna.taskrest.utils;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.Getter;
 import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.ds.PGSimpleDataSource;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.util.Properties;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Утилитарный класс, содержит методы для подключения к основной базе данных. Подключение осуществляется через JDBC.
+ * <p>
+ * Соединения выдаются из пула HikariCP, который создаётся при первом обращении. Закрытие полученного соединения
+ * возвращает его в пул. Настройки пула задаются в application.properties с префиксом {@code db.pool.}.
+ * <p>
+ * Подготовленные запросы кэшируются драйвером на каждом физическом соединении пула (настройки {@code db.statements.}),
+ * новое соединение подготавливает запросы через {@link #setConnectionInitializer(ConnectionInitializer)}.
+ * <p>
+ * Если в {@code db.replica.urls} перечислены реплики, для каждой создаётся свой пул с соединениями только для чтения,
+ * и {@link #getReadConnection()} выдаёт соединения с реплик по очереди. Записи всегда выполняются на основной базе
+ * данных, см. также {@link ReadYourWrites}.
  */
 @Slf4j
 @UtilityClass
 public class ConnectionProvider {
-  private static final Properties properties = new Properties();
+  private static final String POOL_NAME = "restaurant-db-pool";
+  private static final String REPLICA_POOL_NAME = "restaurant-db-replica-";
+  private static final ReentrantLock lock = new ReentrantLock();
+  private static volatile HikariDataSource dataSource;
   @Setter
   private static Connection mockConnection;
+  /**
+   * Действие над каждым новым физическим соединением. Задаётся до первого обращения к пулу.
+   */
+  @Setter
+  private static ConnectionInitializer connectionInitializer;
+  private static volatile StatementCacheDataSource statementCacheDataSource;
+  /**
+   * Время получения соединения из пула, включая ожидание свободного соединения.
+   */
+  @Getter
+  private static final LatencyHistogram acquireTime = new LatencyHistogram();
+  private static volatile List<HikariDataSource> replicas;
+  private static final AtomicInteger nextReplica = new AtomicInteger();
+  private static final LongAdder replicaReads = new LongAdder();
+  private static final LongAdder primaryReads = new LongAdder();
+  private static final LongAdder replicaFailures = new LongAdder();
 
-  static {
-    try (InputStream input = new FileInputStream("src/main/resources/application.properties")) {
-      properties.load(input);
-    } catch (IOException e) {
-      log.error("Error loading properties file", e);
+  @SneakyThrows
+  public static Connection getConnection() {
+    if (mockConnection != null) {
+      return mockConnection;
     }
+
+    long start = System.nanoTime();
+    Connection connection = getDataSource().getConnection();
+    acquireTime.recordSince(start);
+    return connection;
   }
 
+  /**
+   * Возвращает соединение для запросов только на чтение. Соединение реплики выдаётся в режиме read-only,
+   * поэтому транзакции DAO на нём открываются как {@code BEGIN READ ONLY}.
+   * <p>
+   * Соединение основной базы данных выдаётся, если реплики не настроены, если текущий запрос должен видеть свои
+   * записи ({@link ReadYourWrites}) или если ни одна реплика не выдала соединение за
+   * {@code db.replica.connectionTimeoutMs}.
+   * <p>
+   * Реплика, выдавшая соединение, закрепляется за текущим запросом ({@link ReadYourWrites#pinReplica(int)}), и его
+   * следующие чтения выполняются на ней же. Если закреплённая реплика стала недоступна, остальные чтения запроса
+   * выполняются на основной базе данных, которая не отстаёт от уже прочитанного.
+   */
   @SneakyThrows
-  public static Connection getConnection() {
-    Class.forName("org.postgresql.Driver");
-    String url = properties.getProperty("db.url");
-    String username = properties.getProperty("db.username");
-    String password = properties.getProperty("db.password");
-
+  public static Connection getReadConnection() {
     if (mockConnection != null) {
       return mockConnection;
     }
 
-    return DriverManager.getConnection(url, username, password);
+    List<HikariDataSource> current = getReplicas();
+    if (!current.isEmpty() && !ReadYourWrites.isPrimaryRequired()) {
+      int pinned = ReadYourWrites.getPinnedReplica();
+      if (pinned != ReadYourWrites.UNPINNED) {
+        Optional<Connection> connection = getReplicaConnection(current.get(pinned));
+        if (connection.isPresent()) {
+          return connection.get();
+        }
+        ReadYourWrites.requirePrimary();
+      } else {
+        int first = Math.floorMod(nextReplica.getAndIncrement(), current.size());
+        for (int i = 0; i < current.size(); i++) {
+          int index = (first + i) % current.size();
+          Optional<Connection> connection = getReplicaConnection(current.get(index));
+          if (connection.isPresent()) {
+            ReadYourWrites.pinReplica(index);
+            return connection.get();
+          }
+        }
+      }
+      replicaFailures.increment();
+    }
+    primaryReads.increment();
+    return getConnection();
+  }
+
+  private static Optional<Connection> getReplicaConnection(HikariDataSource replica) {
+    try {
+      long start = System.nanoTime();
+      Connection connection = replica.getConnection();
+      acquireTime.recordSince(start);
+      replicaReads.increment();
+      return Optional.of(connection);
+    } catch (SQLException e) {
+      log.warn("Read replica pool {} is unavailable: {}", replica.getPoolName(), e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Открывает соединение с основной базой данных вне пула, его закрывает вызывающий. Используется для соединений,
+   * которые держатся всё время работы приложения: соединение пула вернулось бы в пул с подпиской LISTEN.
+   */
+  public static Connection openDedicatedConnection() throws SQLException {
+    return createPgDataSource().getConnection();
+  }
+
+  /**
+   * Возвращает {@code true}, если в настройках перечислены реплики для чтения.
+   */
+  public static boolean isReadReplicaConfigured() {
+    return !replicaUrls().isEmpty();
+  }
+
+  /**
+   * Возвращает статистику направления чтений между репликами и основной базой данных.
+   */
+  public static ReadRoutingStats getReadRoutingStats() {
+    List<HikariDataSource> current = replicas;
+    return new ReadRoutingStats(current == null ? 0 : current.size(), replicaReads.sum(), primaryReads.sum(),
+            replicaFailures.sum());
+  }
+
+  /**
+   * Возвращает текущее состояние пула соединений.
+   *
+   * @return Optional {@link PoolStats}, пустой если пул ещё не создан.
+   */
+  public static Optional<PoolStats> getPoolStats() {
+    HikariDataSource current = dataSource;
+    if (current == null || current.getHikariPoolMXBean() == null) {
+      return Optional.empty();
+    }
+    HikariPoolMXBean pool = current.getHikariPoolMXBean();
+    return Optional.of(new PoolStats(pool.getActiveConnections(), pool.getIdleConnections(),
+            pool.getTotalConnections(), pool.getThreadsAwaitingConnection(),
+            current.getMinimumIdle(), current.getMaximumPoolSize()));
+  }
+
+  /**
+   * Возвращает статистику кэша подготовленных запросов.
+   *
+   * @return Optional {@link StatementCacheStats}, пустой если пул ещё не создан.
+   */
+  public static Optional<StatementCacheStats> getStatementCacheStats() {
+    StatementCacheDataSource current = statementCacheDataSource;
+    return current == null ? Optional.empty() : Optional.of(current.getStats());
+  }
+
+  /**
+   * Закрывает пул соединений. Используется при остановке приложения.
+   */
+  public static void close() {
+    lock.lock();
+    try {
+      if (dataSource != null) {
+        log.info("Closing connection pool {}", POOL_NAME);
+        dataSource.close();
+        dataSource = null;
+        statementCacheDataSource = null;
+      }
+      if (replicas != null) {
+        replicas.forEach(HikariDataSource::close);
+        replicas = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static HikariDataSource getDataSource() throws SQLException {
+    HikariDataSource current = dataSource;
+    if (current != null) {
+      return current;
+    }
+    lock.lock();
+    try {
+      if (dataSource == null) {
+        statementCacheDataSource = new StatementCacheDataSource(createPgDataSource(), connectionInitializer);
+        dataSource = new HikariDataSource(createConfig(POOL_NAME, statementCacheDataSource));
+        log.info("Connection pool {} started: minIdle={}, maxSize={}",
+                POOL_NAME, dataSource.getMinimumIdle(), dataSource.getMaximumPoolSize());
+      }
+      return dataSource;
+    } catch (RuntimeException e) {
+      throw new SQLException("Error creating connection pool", e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static List<HikariDataSource> getReplicas() throws SQLException {
+    List<HikariDataSource> current = replicas;
+    if (current != null) {
+      return current;
+    }
+    lock.lock();
+    try {
+      if (replicas == null) {
+        List<HikariDataSource> created = new ArrayList<>();
+        List<String> urls = replicaUrls();
+        for (int i = 0; i < urls.size(); i++) {
+          PGSimpleDataSource pgDataSource = createPgDataSource(urls.get(i),
+                  ApplicationProperties.getString("db.replica.username", ApplicationProperties.getString("db.username")),
+                  ApplicationProperties.getString("db.replica.password", ApplicationProperties.getString("db.password")));
+          // Прогрев запросов DAO не выполняется: на реплике изменяющие запросы завершаются ошибкой.
+          HikariConfig config = createConfig(REPLICA_POOL_NAME + (i + 1), new StatementCacheDataSource(pgDataSource, null));
+          config.setReadOnly(true);
+          config.setMaximumPoolSize(ApplicationProperties.getInt("db.replica.maxSize", config.getMaximumPoolSize()));
+          config.setConnectionTimeout(ApplicationProperties.getLong("db.replica.connectionTimeoutMs", 1000));
+          created.add(new HikariDataSource(config));
+          log.info("Read replica pool {} started for {}", config.getPoolName(), urls.get(i));
+        }
+        replicas = List.copyOf(created);
+      }
+      return replicas;
+    } catch (RuntimeException e) {
+      throw new SQLException("Error creating read replica pools", e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static List<String> replicaUrls() {
+    return Arrays.stream(ApplicationProperties.getString("db.replica.urls", "").split(","))
+            .map(String::trim)
+            .filter(url -> !url.isEmpty())
+            .toList();
+  }
+
+  private static PGSimpleDataSource createPgDataSource() {
+    return createPgDataSource(ApplicationProperties.getString("db.url"), ApplicationProperties.getString("db.username"),
+            ApplicationProperties.getString("db.password"));
+  }
+
+  private static PGSimpleDataSource createPgDataSource(String url, String username, String password) {
+    PGSimpleDataSource pgDataSource = new PGSimpleDataSource();
+    pgDataSource.setURL(url);
+    pgDataSource.setUser(username);
+    pgDataSource.setPassword(password);
+    // Серверный именованный оператор создаётся при первом выполнении запроса, а не после пятого.
+    pgDataSource.setPrepareThreshold(ApplicationProperties.getInt("db.statements.prepareThreshold", 1));
+    pgDataSource.setPreparedStatementCacheQueries(ApplicationProperties.getInt("db.statements.cacheQueries", 256));
+    pgDataSource.setPreparedStatementCacheSizeMiB(ApplicationProperties.getInt("db.statements.cacheSizeMiB", 5));
+    return pgDataSource;
+  }
+
+  private static HikariConfig createConfig(String poolName, DataSource connectionSource) {
+    // Окно, в течение которого недавно использованное соединение выдаётся без проверки isValid().
+    // Читается HikariCP один раз при загрузке классов пула, поэтому задаётся до создания конфигурации.
+    System.setProperty("com.zaxxer.hikari.aliveBypassWindowMs",
+            String.valueOf(ApplicationProperties.getLong("db.pool.aliveBypassWindowMs", 500)));
+
+    HikariConfig config = new HikariConfig();
+    config.setPoolName(poolName);
+    config.setDataSource(connectionSource);
+    config.setMinimumIdle(ApplicationProperties.getInt("db.pool.minIdle", 2));
+    config.setMaximumPoolSize(ApplicationProperties.getInt("db.pool.maxSize", 10));
+    config.setConnectionTimeout(ApplicationProperties.getLong("db.pool.connectionTimeoutMs", 3000));
+    config.setValidationTimeout(ApplicationProperties.getLong("db.pool.validationTimeoutMs", 1000));
+    config.setIdleTimeout(ApplicationProperties.getLong("db.pool.idleTimeoutMs", 600000));
+    config.setMaxLifetime(ApplicationProperties.getLong("db.pool.maxLifetimeMs", 1800000));
+    config.setLeakDetectionThreshold(ApplicationProperties.getLong("db.pool.leakDetectionThresholdMs", 10000));
+    config.setRegisterMbeans(true);
+    // Приложение стартует даже при недоступной БД, соединения создаются по мере необходимости.
+    config.setInitializationFailTimeout(-1);
+    return config;
   }
 }
@@ -0,0 +1,112 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кодировки сжатия ответа, поддерживаемые без внешних библиотек.
+ * <p>
+ * {@code gzip} и {@code deflate} — один и тот же алгоритм DEFLATE в разных обёртках (gzip и zlib), они
+ * различаются только заголовком и контрольной суммой, поэтому скорость и степень сжатия у них одинаковы, а
+ * {@code deflate} поддерживается для клиентов, которые не принимают gzip. Скорость сжатия задаёт уровень.
+ * Потоки создаются с {@code syncFlush}, поэтому {@code flush()} отправляет клиенту всё, что уже сжато.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ContentEncoding {
+  GZIP("gzip"),
+  DEFLATE("deflate");
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Значение заголовков Accept-Encoding и Content-Encoding.
+   */
+  private final String token;
+  private final CompressionMetrics metrics = new CompressionMetrics();
+
+  /**
+   * Выбирает кодировку по заголовку Accept-Encoding с учётом весов {@code q}. При равных весах предпочитается gzip.
+   *
+   * @param acceptEncoding Значение заголовка или {@code null}.
+   * @return Кодировка или пустой Optional, если клиент не принимает ни одну из поддерживаемых.
+   */
+  public static Optional<ContentEncoding> negotiate(String acceptEncoding) {
+    if (acceptEncoding == null || acceptEncoding.isBlank()) {
+      return Optional.empty();
+    }
+    ContentEncoding best = null;
+    double bestQuality = 0;
+    for (ContentEncoding encoding : values()) {
+      double quality = quality(acceptEncoding, encoding.token);
+      if (quality > bestQuality) {
+        best = encoding;
+        bestQuality = quality;
+      }
+    }
+    return Optional.ofNullable(best);
+  }
+
+  /**
+   * Создаёт сжимающий поток поверх {@code out}.
+   *
+   * @param level Уровень сжатия от 1 (быстрее) до 9 (меньше).
+   */
+  public OutputStream wrap(OutputStream out, int level) throws IOException {
+    if (this == GZIP) {
+      return new GZIPOutputStream(out, BUFFER_SIZE, true) {
+        {
+          def.setLevel(level);
+        }
+      };
+    }
+    Deflater deflater = new Deflater(level);
+    return new DeflaterOutputStream(out, deflater, BUFFER_SIZE, true) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          deflater.end();
+        }
+      }
+    };
+  }
+
+  private static double quality(String acceptEncoding, String token) {
+    double wildcard = 0;
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.trim().split(";");
+      String coding = params[0].trim();
+      double quality = parseQuality(params);
+      if (coding.equalsIgnoreCase(token)) {
+        return quality;
+      }
+      if (coding.equals("*")) {
+        wildcard = quality;
+      }
+    }
+    return wildcard;
+  }
+
+  private static double parseQuality(String[] params) {
+    for (int i = 1; i < params.length; i++) {
+      String param = params[i].trim();
+      if (param.startsWith("q=")) {
+        try {
+          return Double.parseDouble(param.substring(2));
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+}
@@ -0,0 +1,128 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный пул потоков для обработки запросов, обращающихся к базе данных.
+ * <p>
+ * Количество потоков по умолчанию равно размеру пула соединений, поэтому задачи не ждут соединение внутри пула
+ * HikariCP, а стоят в очереди ограниченного размера. Если очередь заполнена, задача отклоняется сразу.
+ * Задача, которая простояла в очереди дольше {@code db.executor.maxQueueWaitMs}, тоже отклоняется: клиент,
+ * скорее всего, уже не ждёт ответа. Настройки задаются в application.properties с префиксом {@code db.executor.}.
+ */
+@Slf4j
+public class DbExecutor {
+  private final ThreadPoolExecutor executor;
+  private final int queueCapacity;
+  private final long maxQueueWaitNanos;
+  @Getter
+  private final int retryAfterSeconds;
+  private final LongAdder rejectedTasks = new LongAdder();
+  private final LongAdder expiredTasks = new LongAdder();
+  /**
+   * Время ожидания задач в очереди.
+   */
+  @Getter
+  private final LatencyHistogram waitTime = new LatencyHistogram();
+
+  /**
+   * @param threads           Количество потоков.
+   * @param queueCapacity     Размер очереди задач.
+   * @param maxQueueWaitMs    Максимальное время ожидания задачи в очереди, 0 — без ограничения.
+   * @param retryAfterSeconds Значение заголовка Retry-After для отклонённых запросов.
+   */
+  public DbExecutor(int threads, int queueCapacity, long maxQueueWaitMs, int retryAfterSeconds) {
+    this.queueCapacity = queueCapacity;
+    this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs);
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new DbThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  /**
+   * Создаёт пул потоков по настройкам {@code db.executor.*} из application.properties.
+   */
+  public static DbExecutor fromProperties() {
+    DbExecutor dbExecutor = new DbExecutor(
+            ApplicationProperties.getInt("db.executor.threads", ApplicationProperties.getInt("db.pool.maxSize", 10)),
+            ApplicationProperties.getInt("db.executor.queueSize", 100),
+            ApplicationProperties.getLong("db.executor.maxQueueWaitMs", 3000),
+            ApplicationProperties.getInt("db.executor.retryAfterSeconds", 1));
+    log.info("DB executor started: threads={}, queueSize={}",
+            dbExecutor.executor.getMaximumPoolSize(), dbExecutor.queueCapacity);
+    return dbExecutor;
+  }
+
+  /**
+   * Ставит задачу в очередь.
+   *
+   * @param task       Задача.
+   * @param onRejected Вызывается вместо задачи, если она простояла в очереди слишком долго. Выполняется в потоке пула.
+   * @throws RejectedExecutionException если очередь заполнена или пул остановлен.
+   */
+  public void execute(Runnable task, Runnable onRejected) {
+    long queuedAt = System.nanoTime();
+    try {
+      executor.execute(() -> {
+        long waitNanos = System.nanoTime() - queuedAt;
+        waitTime.record(waitNanos);
+        if (maxQueueWaitNanos > 0 && waitNanos > maxQueueWaitNanos) {
+          expiredTasks.increment();
+          onRejected.run();
+        } else {
+          task.run();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejectedTasks.increment();
+      throw e;
+    }
+  }
+
+  /**
+   * Возвращает текущее состояние пула потоков и очереди.
+   */
+  public DbExecutorStats getStats() {
+    LatencyHistogram.Snapshot wait = waitTime.snapshot();
+    return new DbExecutorStats(executor.getQueue().size(), queueCapacity, executor.getActiveCount(),
+            executor.getMaximumPoolSize(), executor.getCompletedTaskCount(), rejectedTasks.sum(), expiredTasks.sum(),
+            wait.count() == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(wait.sumNanos() / wait.count()),
+            TimeUnit.NANOSECONDS.toMillis(wait.maxNanos()));
+  }
+
+  /**
+   * Останавливает пул, дожидаясь завершения поставленных задач. Используется при остановке приложения.
+   */
+  public void shutdown() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+        log.warn("DB executor did not terminate in time, {} tasks left in queue", executor.getQueue().size());
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class DbThreadFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "db-executor-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
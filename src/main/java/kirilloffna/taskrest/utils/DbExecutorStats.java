@@ -0,0 +1,22 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Снимок состояния {@link DbExecutor}.
+ * Время ожидания — время от постановки задачи в очередь до начала её выполнения.
+ */
+@Data
+@AllArgsConstructor
+public class DbExecutorStats {
+  private int queueDepth;
+  private int queueCapacity;
+  private int activeThreads;
+  private int maxThreads;
+  private long completedTasks;
+  private long rejectedTasks;
+  private long expiredTasks;
+  private long averageWaitMs;
+  private long maxWaitMs;
+}
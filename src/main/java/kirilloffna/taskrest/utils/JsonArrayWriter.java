@@ -0,0 +1,53 @@
+package kirilloffna.taskrest.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dao.RowCallback;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+
+/**
+ * Потоковая запись JSON-массива в ответ сервлета по одному элементу.
+ * <p>
+ * Ответ открывается только при записи первого элемента или при вызове {@link #finish()}, поэтому ошибка,
+ * возникшая до первой строки, ещё может быть передана клиенту обычным кодом ошибки. После первого элемента
+ * заголовки отправляются клиенту, и ошибка посреди потока обрывает ответ.
+ *
+ * @param <T> тип элементов массива.
+ */
+@RequiredArgsConstructor
+public class JsonArrayWriter<T> implements RowCallback<T> {
+  private final ObjectMapper objectMapper;
+  private final HttpServletResponse resp;
+  private JsonGenerator generator;
+
+  @Override
+  public void accept(T row) throws IOException {
+    boolean first = generator == null;
+    if (first) {
+      start();
+    }
+    generator.writeObject(row);
+    if (first) {
+      generator.flush();
+    }
+  }
+
+  /**
+   * Завершает массив и закрывает генератор. Для пустой выборки записывает {@code []}.
+   */
+  public void finish() throws IOException {
+    if (generator == null) {
+      start();
+    }
+    generator.writeEndArray();
+    generator.close();
+  }
+
+  private void start() throws IOException {
+    generator = objectMapper.createGenerator(resp.getWriter());
+    generator.writeStartArray();
+  }
+}
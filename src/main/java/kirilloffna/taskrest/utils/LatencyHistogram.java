@@ -0,0 +1,115 @@
+package kirilloffna.taskrest.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей с фиксированными границами корзин.
+ * <p>
+ * Запись {@link #record(long)} не использует блокировок и не создаёт объектов: счётчики корзин, сумма и максимум
+ * хранятся в {@link LongAdder} и {@link LongAccumulator}, которые распределяют конкурентные обновления по ячейкам.
+ * Перцентили вычисляются при чтении по корзинам, поэтому их точность ограничена шириной корзины.
+ */
+public class LatencyHistogram {
+  /**
+   * Верхние границы корзин в наносекундах, последняя корзина не ограничена.
+   */
+  static final long[] BOUNDS_NANOS = {
+          micros(50), micros(100), micros(250), micros(500),
+          millis(1), millis(2), millis(5), millis(10), millis(25), millis(50), millis(100), millis(250), millis(500),
+          millis(1000), millis(2500), millis(5000), millis(10000)
+  };
+
+  private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+  private final LongAdder sumNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Записывает длительность.
+   *
+   * @param nanos Длительность в наносекундах.
+   */
+  public void record(long nanos) {
+    int bucket = 0;
+    while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+      bucket++;
+    }
+    buckets[bucket].increment();
+    sumNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  /**
+   * Записывает время, прошедшее с {@code startNanos}, полученного из {@link System#nanoTime()}.
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Возвращает согласованную копию счётчиков для экспорта.
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[buckets.length];
+    long count = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      counts[i] = buckets[i].sum();
+      count += counts[i];
+    }
+    return new Snapshot(counts, count, sumNanos.sum(), maxNanos.get());
+  }
+
+  /**
+   * Возвращает верхнюю границу корзины в наносекундах, для последней корзины — {@link Long#MAX_VALUE}.
+   */
+  public static long upperBoundNanos(int bucket) {
+    return bucket < BOUNDS_NANOS.length ? BOUNDS_NANOS[bucket] : Long.MAX_VALUE;
+  }
+
+  private static long micros(long value) {
+    return TimeUnit.MICROSECONDS.toNanos(value);
+  }
+
+  private static long millis(long value) {
+    return TimeUnit.MILLISECONDS.toNanos(value);
+  }
+
+  /**
+   * Копия гистограммы на момент чтения.
+   *
+   * @param counts   Количество значений в каждой корзине.
+   * @param count    Общее количество значений.
+   * @param sumNanos Сумма значений в наносекундах.
+   * @param maxNanos Максимальное значение в наносекундах.
+   */
+  public record Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+
+    /**
+     * Оценивает перцентиль как верхнюю границу корзины, в которую он попадает, но не больше максимума.
+     *
+     * @param quantile Доля от 0 до 1.
+     * @return Значение в наносекундах или 0, если значений нет.
+     */
+    public long quantileNanos(double quantile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(quantile * count);
+      long cumulative = 0;
+      for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+        cumulative += counts[i];
+        if (cumulative >= rank) {
+          return Math.min(BOUNDS_NANOS[i], maxNanos);
+        }
+      }
+      return maxNanos;
+    }
+  }
+}
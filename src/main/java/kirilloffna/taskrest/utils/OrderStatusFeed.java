@@ -0,0 +1,329 @@
+package kirilloffna.taskrest.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import kirilloffna.taskrest.dto.OrderStatusEventDTO;
+import kirilloffna.taskrest.model.OrderStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Лента изменений статусов заказов в формате Server-Sent Events.
+ * <p>
+ * Каждое событие получает порядковый номер и хранится в кольцевом буфере последних {@code order.feed.bufferSize}
+ * событий. Подписчик, переподключившийся с заголовком Last-Event-ID, получает пропущенные события из буфера;
+ * если они уже вытеснены, он получает событие {@code reset} и должен заново загрузить заказы.
+ * <p>
+ * Подписчики не занимают потоки: ответ переводится в асинхронный режим, а события записываются неблокирующими
+ * вызовами ({@link WriteListener}) из потока, опубликовавшего событие, или из потока контейнера, когда сокет снова
+ * готов к записи. Событие кодируется один раз и одним массивом байт отправляется всем подписчикам. Подписчик,
+ * у которого накопилось больше {@code order.feed.maxPendingEvents} неотправленных событий, отключается.
+ * Раз в {@code order.feed.heartbeatSeconds} подписчикам отправляется комментарий, чтобы обнаружить закрытые
+ * соединения.
+ */
+@Slf4j
+public class OrderStatusFeed {
+  /**
+   * Лента изменений статусов заказов, публикуется сервисом заказов после фиксации изменения.
+   */
+  public static final OrderStatusFeed ORDERS = new OrderStatusFeed(
+          ApplicationProperties.getInt("order.feed.bufferSize", 1024),
+          ApplicationProperties.getInt("order.feed.maxPendingEvents", 256),
+          ApplicationProperties.getInt("order.feed.heartbeatSeconds", 15),
+          ApplicationProperties.getInt("order.feed.retryMs", 3000));
+
+  static final String EVENT_NAME = "order-status";
+  private static final byte[] RESET_FRAME = "event: reset\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] HEARTBEAT_FRAME = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final ReentrantLock lock = new ReentrantLock();
+  /**
+   * Кольцевой буфер событий, событие с номером n хранится в ячейке {@code n % buffer.length}.
+   * Изменяется только под {@link #lock}.
+   */
+  private final byte[][] buffer;
+  private long lastSequence;
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  private final int maxPendingEvents;
+  private final int heartbeatSeconds;
+  private final byte[] retryFrame;
+  private final AtomicBoolean heartbeatStarted = new AtomicBoolean();
+  private final LongAdder published = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+
+  /**
+   * @param bufferSize       Количество последних событий, доступных для повторной отправки.
+   * @param maxPendingEvents Максимальное количество неотправленных событий одного подписчика.
+   * @param heartbeatSeconds Период отправки комментария подписчикам, 0 — не отправлять.
+   * @param retryMs          Задержка переподключения клиента, передаётся клиенту полем retry.
+   */
+  public OrderStatusFeed(int bufferSize, int maxPendingEvents, int heartbeatSeconds, int retryMs) {
+    this.buffer = new byte[bufferSize][];
+    this.maxPendingEvents = maxPendingEvents;
+    this.heartbeatSeconds = heartbeatSeconds;
+    this.retryFrame = ("retry: " + retryMs + "\n\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Публикует новый статус заказа всем подписчикам. Вызывается после фиксации изменения.
+   *
+   * @param orderId ID заказа.
+   * @param status  Статус заказа после изменения.
+   */
+  public void publish(long orderId, OrderStatus status) {
+    String data;
+    try {
+      data = objectMapper.writeValueAsString(new OrderStatusEventDTO(orderId, status));
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+    lock.lock();
+    try {
+      long sequence = ++lastSequence;
+      byte[] frame = ("id: " + sequence + "\nevent: " + EVENT_NAME + "\ndata: " + data + "\n\n")
+              .getBytes(StandardCharsets.UTF_8);
+      buffer[(int) (sequence % buffer.length)] = frame;
+      // Постановка в очереди под блокировкой сохраняет порядок событий у каждого подписчика.
+      for (Subscriber subscriber : subscribers) {
+        subscriber.enqueue(frame);
+      }
+    } finally {
+      lock.unlock();
+    }
+    published.increment();
+    subscribers.forEach(Subscriber::drain);
+  }
+
+  /**
+   * Подписывает асинхронный запрос на ленту. Ответ должен быть уже переведён в асинхронный режим,
+   * а заголовки ответа выставлены.
+   *
+   * @param asyncContext  Асинхронный контекст запроса.
+   * @param afterSequence Номер последнего полученного клиентом события или {@code null} для новой подписки.
+   */
+  public void subscribe(AsyncContext asyncContext, Long afterSequence) throws IOException {
+    ServletOutputStream out = asyncContext.getResponse().getOutputStream();
+    Subscriber subscriber = new Subscriber(asyncContext, out);
+    asyncContext.addListener(subscriber);
+    out.setWriteListener(subscriber);
+    lock.lock();
+    try {
+      subscriber.enqueue(retryFrame);
+      for (byte[] frame : replay(afterSequence)) {
+        subscriber.enqueue(frame);
+      }
+      subscribers.add(subscriber);
+    } finally {
+      lock.unlock();
+    }
+    startHeartbeat();
+    subscriber.drain();
+  }
+
+  /**
+   * Возвращает количество подключённых подписчиков.
+   */
+  public int getSubscribers() {
+    return subscribers.size();
+  }
+
+  public long getPublished() {
+    return published.sum();
+  }
+
+  /**
+   * Возвращает количество подписчиков, отключённых из-за переполнения очереди неотправленных событий.
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * События после {@code afterSequence}, вызывается под {@link #lock}.
+   */
+  private List<byte[]> replay(Long afterSequence) {
+    List<byte[]> frames = new ArrayList<>();
+    if (afterSequence == null || afterSequence == lastSequence) {
+      return frames;
+    }
+    // Номер из будущего остался от предыдущего запуска приложения, вытесненные события восстановить нельзя,
+    // а слишком длинный повтор сразу переполнил бы очередь подписчика.
+    long replayable = Math.min(buffer.length, maxPendingEvents - 1);
+    if (afterSequence > lastSequence || afterSequence < lastSequence - replayable) {
+      frames.add(RESET_FRAME);
+      return frames;
+    }
+    for (long sequence = afterSequence + 1; sequence <= lastSequence; sequence++) {
+      frames.add(buffer[(int) (sequence % buffer.length)]);
+    }
+    return frames;
+  }
+
+  private void startHeartbeat() {
+    if (heartbeatSeconds <= 0 || !heartbeatStarted.compareAndSet(false, true)) {
+      return;
+    }
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "order-feed-heartbeat");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+  }
+
+  private void heartbeat() {
+    for (Subscriber subscriber : subscribers) {
+      // Контейнер сообщает не о каждом закрытом соединении: подписчик, в которого за весь период не удалось
+      // ничего записать, считается отключённым.
+      if (subscriber.isStalled()) {
+        log.debug("Order feed subscriber has not accepted writes for {} s, disconnecting", heartbeatSeconds);
+        subscriber.close();
+        continue;
+      }
+      subscriber.enqueue(HEARTBEAT_FRAME);
+      subscriber.drain();
+    }
+  }
+
+  /**
+   * Подписчик ленты: очередь неотправленных событий одного асинхронного ответа.
+   */
+  private class Subscriber implements WriteListener, AsyncListener {
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream out;
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    /**
+     * Запись в ответ выполняется и потоком публикации, и потоком контейнера, но не одновременно.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile boolean closed;
+    private volatile boolean written;
+
+    private Subscriber(AsyncContext asyncContext, ServletOutputStream out) {
+      this.asyncContext = asyncContext;
+      this.out = out;
+    }
+
+    private void enqueue(byte[] frame) {
+      if (closed) {
+        return;
+      }
+      if (pendingCount.incrementAndGet() > maxPendingEvents) {
+        dropped.increment();
+        log.warn("Order feed subscriber is too slow, {} events are not sent, disconnecting", maxPendingEvents);
+        close();
+        return;
+      }
+      pending.add(frame);
+    }
+
+    /**
+     * Записывает накопленные события, пока ответ готов к неблокирующей записи. Если ответ не готов,
+     * контейнер вызовет {@link #onWritePossible()}, когда запись станет возможна.
+     */
+    private void drain() {
+      writeLock.lock();
+      try {
+        boolean unflushed = false;
+        while (!closed && out.isReady()) {
+          byte[] frame = pending.poll();
+          if (frame == null) {
+            if (!unflushed) {
+              return;
+            }
+            out.flush();
+            unflushed = false;
+          } else {
+            pendingCount.decrementAndGet();
+            out.write(frame);
+            unflushed = true;
+            written = true;
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        // Контейнер может освободить ответ закрытого соединения раньше, чем сообщит об ошибке, и тогда запись
+        // завершается непроверяемым исключением. Оно не должно прерывать публикацию и отправку heartbeat.
+        log.debug("Order feed subscriber disconnected: {}", e.toString());
+        close();
+      } finally {
+        writeLock.unlock();
+      }
+    }
+
+    /**
+     * Возвращает {@code true}, если с прошлого вызова в ответ ничего не записано, хотя события ожидают отправки.
+     */
+    private boolean isStalled() {
+      boolean stalled = !written && pendingCount.get() > 0;
+      written = false;
+      return stalled;
+    }
+
+    private void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      subscribers.remove(this);
+      pending.clear();
+      try {
+        asyncContext.complete();
+      } catch (IllegalStateException e) {
+        // Запрос уже завершён контейнером.
+      }
+    }
+
+    @Override
+    public void onWritePossible() {
+      drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      closed = true;
+      subscribers.remove(this);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Снимок состояния пула соединений {@link ConnectionProvider}.
+ * Используется для подбора размера пула относительно количества потоков Tomcat.
+ */
+@Data
+@AllArgsConstructor
+public class PoolStats {
+  private int activeConnections;
+  private int idleConnections;
+  private int totalConnections;
+  private int threadsAwaitingConnection;
+  private int minIdle;
+  private int maxPoolSize;
+}
@@ -0,0 +1,19 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Снимок статистики направления чтений {@link ConnectionProvider#getReadConnection()}.
+ */
+@Data
+@AllArgsConstructor
+public class ReadRoutingStats {
+  private int replicas;
+  private long replicaReads;
+  private long primaryReads;
+  /**
+   * Чтения, отправленные на основную базу данных, потому что ни одна реплика не выдала соединение.
+   */
+  private long replicaFailures;
+}
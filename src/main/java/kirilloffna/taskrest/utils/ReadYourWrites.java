@@ -0,0 +1,142 @@
+package kirilloffna.taskrest.utils;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Чтение своих записей при чтении с реплик, см. {@link ConnectionProvider#getReadConnection()}.
+ * <p>
+ * Реплика получает изменения с задержкой, поэтому клиент, только что изменивший данные, мог бы не увидеть их
+ * при следующем чтении. Ответ на изменяющий запрос устанавливает cookie {@value #COOKIE_NAME} со временем,
+ * до которого запросы этого клиента читают с основной базы данных. Длительность окна задаётся настройкой
+ * {@code db.replica.readYourWritesMs}, 0 — выключено.
+ * <p>
+ * Кроме того, все чтения одного запроса с реплик выполняются на одной реплике: реплики отстают по-разному, и версия,
+ * прочитанная с одной реплики, не должна попасть в заголовок ETag вместе с телом, прочитанным с более отстающей.
+ */
+@UtilityClass
+public class ReadYourWrites {
+  public static final String COOKIE_NAME = "read-primary-until";
+  private static final long WINDOW_MS = ApplicationProperties.getLong("db.replica.readYourWritesMs", 5000);
+  private static final boolean REPLICAS = ConnectionProvider.isReadReplicaConfigured();
+  private static final boolean ENABLED = WINDOW_MS > 0 && REPLICAS;
+  /**
+   * Реплика, ещё не выбранная запросом.
+   */
+  public static final int UNPINNED = -1;
+  private static final ThreadLocal<Route> route = new ThreadLocal<>();
+
+  /**
+   * Возвращает {@code true}, если текущий запрос должен читать с основной базы данных.
+   */
+  public static boolean isPrimaryRequired() {
+    Route current = route.get();
+    return current != null && current.primary;
+  }
+
+  /**
+   * Направляет остальные чтения текущего запроса на основную базу данных. Используется, когда прочитанное
+   * сохраняется в кэш и отставание реплики осталось бы в нём до следующего изменения, а также когда реплика
+   * запроса стала недоступна. Действует только внутри обработчика, возвращённого {@link #bind}.
+   */
+  public static void requirePrimary() {
+    Route current = route.get();
+    if (current != null) {
+      current.primary = true;
+    }
+  }
+
+  /**
+   * Возвращает номер реплики, с которой уже читал текущий запрос, или {@link #UNPINNED}.
+   */
+  public static int getPinnedReplica() {
+    Route current = route.get();
+    return current == null ? UNPINNED : current.replica;
+  }
+
+  /**
+   * Закрепляет реплику за текущим запросом. Вне обработчика, возвращённого {@link #bind}, ничего не делает.
+   *
+   * @param replica Номер реплики в {@code db.replica.urls}.
+   */
+  public static void pinReplica(int replica) {
+    Route current = route.get();
+    if (current != null) {
+      current.replica = replica;
+    }
+  }
+
+  /**
+   * Определяет, где должен читать запрос, и связывает решение с обработчиком. Для изменяющего запроса сразу
+   * устанавливает cookie, пока ответ ещё не отправлен.
+   *
+   * @param handler Обработчик запроса, может выполняться в другом потоке.
+   * @return Обработчик, чтения которого направляются с учётом окна чтения своих записей.
+   */
+  public static Runnable bind(HttpServletRequest req, HttpServletResponse resp, Runnable handler) {
+    if (!REPLICAS) {
+      return handler;
+    }
+    boolean primary = false;
+    if (ENABLED) {
+      long now = System.currentTimeMillis();
+      boolean write = isWrite(req.getMethod());
+      if (write) {
+        resp.addCookie(createCookie(now + WINDOW_MS));
+      }
+      primary = write || isWithinWindow(req.getCookies(), now);
+    }
+    return route(primary, handler);
+  }
+
+  static Runnable route(boolean primary, Runnable handler) {
+    return () -> {
+      Route current = new Route();
+      current.primary = primary;
+      route.set(current);
+      try {
+        handler.run();
+      } finally {
+        route.remove();
+      }
+    };
+  }
+
+  static boolean isWrite(String method) {
+    return "POST".equals(method) || "PUT".equals(method) || "DELETE".equals(method) || "PATCH".equals(method);
+  }
+
+  static boolean isWithinWindow(Cookie[] cookies, long now) {
+    if (cookies == null) {
+      return false;
+    }
+    for (Cookie cookie : cookies) {
+      if (COOKIE_NAME.equals(cookie.getName())) {
+        try {
+          return Long.parseLong(cookie.getValue()) > now;
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+
+  static Cookie createCookie(long until) {
+    Cookie cookie = new Cookie(COOKIE_NAME, String.valueOf(until));
+    cookie.setPath("/");
+    cookie.setHttpOnly(true);
+    cookie.setMaxAge((int) Math.max(1, (WINDOW_MS + 999) / 1000));
+    return cookie;
+  }
+
+  /**
+   * Направление чтений одного запроса.
+   */
+  private static final class Route {
+    private boolean primary;
+    private int replica = UNPINNED;
+  }
+}
@@ -0,0 +1,68 @@
+package kirilloffna.taskrest.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Гистограммы длительности запросов одного сервлета по HTTP-методам.
+ * <p>
+ * Экземпляры регистрируются при создании сервлета через {@link #forServlet(String)}, а гистограмма метода выбирается
+ * без поиска в карте, поэтому запись на пути запроса не создаёт объектов.
+ */
+public class RequestMetrics {
+  private static final Map<String, RequestMetrics> registry = new ConcurrentHashMap<>();
+
+  private final String servlet;
+  private final LatencyHistogram get = new LatencyHistogram();
+  private final LatencyHistogram post = new LatencyHistogram();
+  private final LatencyHistogram put = new LatencyHistogram();
+  private final LatencyHistogram delete = new LatencyHistogram();
+  private final LatencyHistogram other = new LatencyHistogram();
+
+  private RequestMetrics(String servlet) {
+    this.servlet = servlet;
+  }
+
+  /**
+   * Возвращает гистограммы сервлета, создавая их при первом обращении.
+   *
+   * @param servlet Имя сервлета, используется как метка при экспорте.
+   */
+  public static RequestMetrics forServlet(String servlet) {
+    return registry.computeIfAbsent(servlet, RequestMetrics::new);
+  }
+
+  /**
+   * Возвращает все зарегистрированные сервлеты.
+   */
+  public static Map<String, RequestMetrics> all() {
+    return Map.copyOf(registry);
+  }
+
+  public String getServlet() {
+    return servlet;
+  }
+
+  /**
+   * Возвращает гистограмму для HTTP-метода.
+   */
+  public LatencyHistogram forMethod(String method) {
+    if (method == null) {
+      return other;
+    }
+    return switch (method) {
+      case "GET" -> get;
+      case "POST" -> post;
+      case "PUT" -> put;
+      case "DELETE" -> delete;
+      default -> other;
+    };
+  }
+
+  /**
+   * Возвращает гистограммы по HTTP-методам для экспорта.
+   */
+  public Map<String, LatencyHistogram> byMethod() {
+    return Map.of("GET", get, "POST", post, "PUT", put, "DELETE", delete, "OTHER", other);
+  }
+}
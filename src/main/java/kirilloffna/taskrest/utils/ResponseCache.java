@@ -0,0 +1,217 @@
+package kirilloffna.taskrest.utils;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш готовых тел ответов: JSON, уже сериализованный и закодированный в UTF-8, по ключу варианта ответа.
+ * Попадание отдаёт байты прямо в {@code OutputStream} ответа без запроса к базе данных, маппера и Jackson.
+ * <p>
+ * Инвалидация выполняется сменой поколения: {@link #invalidate()} увеличивает номер поколения, и все записи
+ * предыдущих поколений сразу перестают выдаваться. Запись заполняется только если поколение не сменилось
+ * с начала чтения данных, поэтому ответ, прочитанный одновременно с изменением, в кэш не попадает.
+ * <p>
+ * Тело записывается в кэш по ходу обычной потоковой выдачи ответа ({@link Recorder}). Ответы больше
+ * {@code response.cache.maxEntryBytes} не кэшируются.
+ */
+public class ResponseCache {
+  /**
+   * Полный список продуктов. Сбрасывается при любом изменении таблицы products через сервисы.
+   */
+  public static final ResponseCache PRODUCTS = new ResponseCache(
+          ApplicationProperties.getBoolean("response.cache.enabled", true),
+          ApplicationProperties.getInt("response.cache.maxEntries", 64),
+          ApplicationProperties.getInt("response.cache.maxEntryBytes", 4 * 1024 * 1024));
+
+  private final boolean enabled;
+  private final int maxEntries;
+  private final int maxEntryBytes;
+  private final AtomicLong generation = new AtomicLong();
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  /**
+   * @param enabled       {@code false} — кэш ничего не хранит и не учитывает промахи.
+   * @param maxEntries    Максимальное количество вариантов ответа.
+   * @param maxEntryBytes Максимальный размер тела одного ответа в байтах.
+   */
+  public ResponseCache(boolean enabled, int maxEntries, int maxEntryBytes) {
+    this.enabled = enabled;
+    this.maxEntries = maxEntries;
+    this.maxEntryBytes = maxEntryBytes;
+  }
+
+  /**
+   * Возвращает тело ответа текущего поколения.
+   *
+   * @param key Ключ варианта ответа, например набор параметров запроса.
+   */
+  public Optional<Entry> get(String key) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    Entry entry = entries.get(key);
+    if (entry == null || entry.generation() != generation.get()) {
+      misses.increment();
+      return Optional.empty();
+    }
+    hits.increment();
+    return Optional.of(entry);
+  }
+
+  /**
+   * Начинает запись тела ответа в кэш. Вызывается до чтения из базы данных версии и самих данных.
+   *
+   * @param key Ключ варианта ответа.
+   * @return Запись тела или {@link Optional#empty()}, если кэш выключен.
+   */
+  public Optional<Recorder> record(String key) {
+    return enabled ? Optional.of(new Recorder(key, generation.get())) : Optional.empty();
+  }
+
+  /**
+   * Сбрасывает все записи. После возврата из метода ни один запрос не получит тело, сохранённое до вызова.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    entries.clear();
+    invalidations.increment();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getInvalidations() {
+    return invalidations.sum();
+  }
+
+  /**
+   * Возвращает суммарный размер тел текущего поколения в байтах.
+   */
+  public long getBytes() {
+    long current = generation.get();
+    return entries.values().stream()
+            .filter(entry -> entry.generation() == current)
+            .mapToLong(entry -> entry.body().length)
+            .sum();
+  }
+
+  private void put(String key, Entry entry) {
+    if (entry.generation() != generation.get() || (entries.size() >= maxEntries && !entries.containsKey(key))) {
+      return;
+    }
+    entries.put(key, entry);
+    // invalidate() мог очистить кэш между проверкой и записью; устаревшая запись не выдаётся, но и хранить её незачем.
+    if (entry.generation() != generation.get()) {
+      entries.remove(key, entry);
+    }
+  }
+
+  /**
+   * Тело ответа в кэше.
+   *
+   * @param generation Поколение кэша, в котором началось чтение данных.
+   * @param version Версия данных, из которых построено тело.
+   * @param body    JSON в кодировке UTF-8.
+   */
+  public record Entry(long generation, String version, byte[] body) {
+  }
+
+  /**
+   * Копирует тело ответа, записываемое через {@link HttpServletResponse#getWriter()}, и сохраняет его в кэше
+   * после успешного завершения ответа.
+   */
+  public class Recorder {
+    private final String key;
+    private final long startGeneration;
+    private final CharArrayWriter copy = new CharArrayWriter();
+    private boolean overflow;
+
+    private Recorder(String key, long startGeneration) {
+      this.key = key;
+      this.startGeneration = startGeneration;
+    }
+
+    /**
+     * Возвращает ответ, запись в {@code getWriter()} которого одновременно копируется в кэш.
+     */
+    public HttpServletResponse wrap(HttpServletResponse resp) {
+      return new HttpServletResponseWrapper(resp) {
+        private PrintWriter writer;
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+          if (writer == null) {
+            writer = new PrintWriter(new CopyingWriter(resp.getWriter()));
+          }
+          return writer;
+        }
+      };
+    }
+
+    /**
+     * Сохраняет скопированное тело, если ответ уложился в допустимый размер.
+     *
+     * @param version Версия данных, отдаётся вместе с телом в заголовке ETag.
+     */
+    public void commit(String version) {
+      if (overflow) {
+        return;
+      }
+      byte[] body = copy.toString().getBytes(StandardCharsets.UTF_8);
+      if (body.length <= maxEntryBytes) {
+        put(key, new Entry(startGeneration, version, body));
+      }
+    }
+
+    private class CopyingWriter extends Writer {
+      private final Writer target;
+
+      private CopyingWriter(Writer target) {
+        this.target = target;
+      }
+
+      @Override
+      public void write(char[] cbuf, int off, int len) throws IOException {
+        target.write(cbuf, off, len);
+        if (!overflow) {
+          // Символ UTF-8 занимает не меньше байта, поэтому превышение по символам означает превышение по байтам.
+          if (copy.size() + len > maxEntryBytes) {
+            overflow = true;
+            copy.reset();
+          } else {
+            copy.write(cbuf, off, len);
+          }
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        target.flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        target.close();
+      }
+    }
+  }
+}
@@ -22,6 +22,37 @@ public class ServletConstants {
   public static final String ORDER_DETAIL_NOT_FOUND = "OrderDetail not found";
   public static final String INVALID_ORDER_DATA = "Invalid order data";
 
+  public static final String INVALID_PAGE_PARAMETERS = "Invalid pagination parameters";
+  public static final String PAGE_LIMIT_PARAM = "limit";
+  public static final String PAGE_AFTER_PARAM = "after";
+  public static final int DEFAULT_PAGE_LIMIT = 50;
+  public static final int MAX_PAGE_LIMIT = 500;
+
+  public static final String INVALID_FILTER_PARAMETERS = "Invalid filter parameters";
+  public static final String FILTER_CATEGORY_TYPE_PARAM = "categoryType";
+  public static final String FILTER_AVAILABLE_PARAM = "available";
+  public static final String FILTER_MIN_PRICE_PARAM = "minPrice";
+  public static final String FILTER_MAX_PRICE_PARAM = "maxPrice";
+  public static final String FILTER_NAME_PARAM = "name";
+
+  public static final String INVALID_SUGGEST_PARAMETERS = "Invalid suggest parameters";
+  public static final String SUGGEST_PREFIX_PARAM = "prefix";
+  public static final int DEFAULT_SUGGEST_LIMIT = 10;
+  public static final int MAX_SUGGEST_LIMIT = 50;
+
+  public static final String ERROR_LOADING_ORDER_TOTALS = "Error loading order totals";
+
+  public static final String INVALID_LAST_EVENT_ID = "Invalid Last-Event-ID";
+  public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+  public static final String ETAG_HEADER = "ETag";
+  public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+  public static final String UNSUPPORTED_IMPORT_FORMAT =
+          "Unsupported import format, expected application/x-ndjson or text/csv";
+
+  public static final String SERVICE_OVERLOADED = "Service is overloaded, retry later";
+
   public static final String ERROR_PROCESSING_POST_REQUEST = "Error processing POST request";
   public static final String ERROR_PROCESSING_GET_REQUEST = "Error processing GET request";
   public static final String ERROR_PROCESSING_PUT_REQUEST = "Error processing PUT request";
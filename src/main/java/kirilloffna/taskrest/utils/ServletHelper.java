@@ -1,5 +1,6 @@
 package kirilloffna.taskrest.utils;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import kirilloffna.taskrest.servlet.OrderDetailServlet;
@@ -9,12 +10,14 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.RejectedExecutionException;
 
-import static kirilloffna.taskrest.utils.ServletConstants.ERROR_PROCESSING_SET_ENCODING;
-import static kirilloffna.taskrest.utils.ServletConstants.ERROR_SENDING_ERROR_RESPONSE;
+import static kirilloffna.taskrest.utils.ServletConstants.*;
 
 /**
  * Утилитарный класс, для установки кодировки ответа Servlet, а также для отправки ошибки в случае ошибки в кодировке.
+ * Также содержит разбор параметров пагинации {@code limit} и {@code after}, асинхронное выполнение запросов
+ * в {@link DbExecutor} и проверку условных запросов по ETag.
  * Используется в классах {@link ProductServlet} и {@link OrderDetailServlet}.
  */
 
@@ -24,6 +27,10 @@ public class ServletHelper {
 
   public static void sendError(HttpServletResponse resp, int statusCode, String errorMessage, Exception e) {
     log.error(errorMessage, e);
+    if (resp.isCommitted()) {
+      // Заголовки уже отправлены при потоковой записи, код ответа изменить нельзя.
+      return;
+    }
     try {
       resp.sendError(statusCode, errorMessage);
     } catch (IOException ioException) {
@@ -31,6 +38,96 @@ public class ServletHelper {
     }
   }
 
+  /**
+   * Выполняет обработчик запроса. Без {@code dbExecutor} обработчик выполняется в потоке контейнера.
+   * С {@code dbExecutor} запрос переводится в асинхронный режим, обработчик ставится в очередь пула,
+   * а поток контейнера сразу освобождается. Если очередь заполнена или запрос простоял в ней слишком долго,
+   * клиенту возвращается 503 с заголовком Retry-After.
+   * Время обработки, включая ожидание в очереди, записывается в {@code requestMetrics}.
+   * Чтения внутри обработчика направляются на реплики с учётом {@link ReadYourWrites}.
+   *
+   * @param dbExecutor     Пул потоков для обращений к базе данных или {@code null}.
+   * @param requestMetrics Гистограммы длительности запросов сервлета.
+   * @param handler        Обработчик запроса, должен сам отправлять ответы об ошибках.
+   */
+  public static void dispatch(HttpServletRequest req, HttpServletResponse resp, DbExecutor dbExecutor,
+                              RequestMetrics requestMetrics, Runnable handler) {
+    long start = System.nanoTime();
+    LatencyHistogram latency = requestMetrics.forMethod(req.getMethod());
+    Runnable routedHandler = ReadYourWrites.bind(req, resp, handler);
+    if (dbExecutor == null) {
+      try {
+        routedHandler.run();
+      } finally {
+        latency.recordSince(start);
+      }
+      return;
+    }
+
+    AsyncContext asyncContext = req.startAsync(req, resp);
+    // Время выполнения ограничено ожиданием в очереди и таймаутами пула соединений.
+    asyncContext.setTimeout(0);
+    Runnable reject = () -> {
+      sendServiceUnavailable(resp, dbExecutor.getRetryAfterSeconds());
+      asyncContext.complete();
+      latency.recordSince(start);
+    };
+    try {
+      dbExecutor.execute(() -> {
+        try {
+          routedHandler.run();
+        } finally {
+          asyncContext.complete();
+          latency.recordSince(start);
+        }
+      }, reject);
+    } catch (RejectedExecutionException e) {
+      reject.run();
+    }
+  }
+
+  private static void sendServiceUnavailable(HttpServletResponse resp, int retryAfterSeconds) {
+    log.warn(SERVICE_OVERLOADED);
+    resp.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+    try {
+      resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, SERVICE_OVERLOADED);
+    } catch (IOException e) {
+      log.error(ERROR_SENDING_ERROR_RESPONSE, e);
+    }
+  }
+
+  /**
+   * Устанавливает заголовок ETag по версии ресурса и проверяет заголовок If-None-Match запроса.
+   * Если клиент уже получил эту версию, отправляет 304 Not Modified без тела.
+   *
+   * @param version Версия ресурса, меняется при каждом его изменении.
+   * @return {@code true}, если отправлен ответ 304 и ресурс загружать не нужно.
+   */
+  public static boolean checkNotModified(HttpServletRequest req, HttpServletResponse resp, String version) {
+    String etag = '"' + version + '"';
+    resp.setHeader(ETAG_HEADER, etag);
+    String ifNoneMatch = req.getHeader(IF_NONE_MATCH_HEADER);
+    if (ifNoneMatch == null || !matchesEntityTag(ifNoneMatch, etag)) {
+      return false;
+    }
+    resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    return true;
+  }
+
+  private static boolean matchesEntityTag(String ifNoneMatch, String etag) {
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      // If-None-Match сравнивает теги без учёта признака слабого тега W/.
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public static void setRespReqEncoded(HttpServletRequest req, HttpServletResponse resp) {
     try {
       req.setCharacterEncoding("UTF-8");
@@ -40,4 +137,51 @@ public class ServletHelper {
     resp.setCharacterEncoding("UTF-8");
     resp.setContentType("application/json;charset=UTF-8");
   }
+
+  public static boolean isPageRequest(HttpServletRequest req) {
+    return req.getParameter(PAGE_LIMIT_PARAM) != null || req.getParameter(PAGE_AFTER_PARAM) != null;
+  }
+
+  /**
+   * Возвращает размер страницы из параметра limit. Значения больше {@link ServletConstants#MAX_PAGE_LIMIT}
+   * ограничиваются максимальным.
+   *
+   * @throws IllegalArgumentException если параметр не является положительным числом.
+   */
+  public static int getPageLimit(HttpServletRequest req) {
+    String limitParam = req.getParameter(PAGE_LIMIT_PARAM);
+    if (limitParam == null) {
+      return DEFAULT_PAGE_LIMIT;
+    }
+    long limit = parsePageParameter(limitParam);
+    if (limit <= 0) {
+      throw new IllegalArgumentException(INVALID_PAGE_PARAMETERS);
+    }
+    return (int) Math.min(limit, MAX_PAGE_LIMIT);
+  }
+
+  /**
+   * Возвращает курсор страницы из параметра after или {@code null} для первой страницы.
+   *
+   * @throws IllegalArgumentException если параметр не является неотрицательным числом.
+   */
+  public static Long getPageAfter(HttpServletRequest req) {
+    String afterParam = req.getParameter(PAGE_AFTER_PARAM);
+    if (afterParam == null || afterParam.isEmpty()) {
+      return null;
+    }
+    Long after = parsePageParameter(afterParam);
+    if (after < 0) {
+      throw new IllegalArgumentException(INVALID_PAGE_PARAMETERS);
+    }
+    return after;
+  }
+
+  private static Long parsePageParameter(String value) {
+    try {
+      return Long.valueOf(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(INVALID_PAGE_PARAMETERS, e);
+    }
+  }
 }
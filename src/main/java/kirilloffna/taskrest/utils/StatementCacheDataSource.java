@@ -0,0 +1,133 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Источник физических соединений для пула {@link ConnectionProvider}.
+ * <p>
+ * Подготовленные запросы кэширует драйвер PostgreSQL отдельно для каждого физического соединения, поэтому кэш
+ * живёт столько же, сколько соединение в пуле, и сохраняется между запросами. Этот класс вызывает
+ * {@link ConnectionInitializer} для каждого нового соединения, чтобы подготовить запросы заранее, и считает
+ * повторные вызовы {@code prepareStatement} с SQL, уже подготовленным на том же соединении, — попадания в кэш.
+ */
+@Slf4j
+class StatementCacheDataSource implements DataSource {
+  private final DataSource delegate;
+  private final ConnectionInitializer initializer;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder warmedConnections = new LongAdder();
+
+  StatementCacheDataSource(DataSource delegate, ConnectionInitializer initializer) {
+    this.delegate = delegate;
+    this.initializer = initializer;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return prepare(delegate.getConnection());
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return prepare(delegate.getConnection(username, password));
+  }
+
+  StatementCacheStats getStats() {
+    return new StatementCacheStats(hits.sum(), misses.sum(), warmedConnections.sum());
+  }
+
+  private Connection prepare(Connection physical) {
+    Connection connection = (Connection) Proxy.newProxyInstance(StatementCacheDataSource.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new CountingHandler(physical));
+    if (initializer != null) {
+      try {
+        initializer.initialize(connection);
+        warmedConnections.increment();
+      } catch (SQLException e) {
+        log.warn("Statements are not prepared on new connection: {}", e.getMessage());
+      }
+    }
+    return connection;
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return delegate.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    delegate.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    delegate.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return delegate.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return delegate.getParentLogger();
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    return delegate.unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return delegate.isWrapperFor(iface);
+  }
+
+  /**
+   * Передаёт вызовы физическому соединению и запоминает SQL, подготовленный на нём. Соединение используется
+   * одним потоком в каждый момент времени, поэтому множество не синхронизировано.
+   */
+  private class CountingHandler implements InvocationHandler {
+    private final Connection physical;
+    private final Set<List<Object>> preparedStatements = new HashSet<>();
+
+    CountingHandler(Connection physical) {
+      this.physical = physical;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if ("prepareStatement".equals(method.getName())) {
+        if (preparedStatements.add(Arrays.asList(args))) {
+          misses.increment();
+        } else {
+          hits.increment();
+        }
+      }
+      try {
+        return method.invoke(physical, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+}
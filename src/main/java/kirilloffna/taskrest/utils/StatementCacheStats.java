@@ -0,0 +1,22 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Снимок статистики кэша подготовленных запросов пула {@link ConnectionProvider}.
+ * Попадание — вызов {@code prepareStatement} с SQL, который уже подготавливался на том же физическом соединении,
+ * в том числе при его прогреве.
+ */
+@Data
+@AllArgsConstructor
+public class StatementCacheStats {
+  private long hits;
+  private long misses;
+  private long warmedConnections;
+
+  public double getHitRate() {
+    long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+}
@@ -0,0 +1,51 @@
+package kirilloffna.taskrest.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+
+/**
+ * Режим потоков, на которых встроенный Tomcat выполняет запросы.
+ * <p>
+ * {@link #PLATFORM} — пул платформенных потоков размером {@code server.threads.max}, одновременно обрабатывается
+ * не больше запросов, чем потоков в пуле. {@link #VIRTUAL} — каждый запрос выполняется на отдельном виртуальном
+ * потоке, который освобождает поток-носитель на время блокирующего ввода-вывода JDBC. Виртуальные потоки доступны
+ * начиная с Java 21, на более ранней версии используется {@link #PLATFORM}.
+ */
+@Slf4j
+public enum ThreadMode {
+  PLATFORM,
+  VIRTUAL;
+
+  private static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+
+  /**
+   * Возвращает режим из свойства {@code server.threads.mode} для текущей версии Java.
+   */
+  public static ThreadMode fromProperties() {
+    return resolve(ApplicationProperties.getString("server.threads.mode", "platform"), Runtime.version().feature());
+  }
+
+  /**
+   * Определяет режим по значению настройки и версии Java.
+   *
+   * @param value       Значение настройки без учёта регистра.
+   * @param javaVersion Номер версии Java.
+   * @return Запрошенный режим или {@link #PLATFORM}, если значение неизвестно или виртуальные потоки недоступны.
+   */
+  static ThreadMode resolve(String value, int javaVersion) {
+    ThreadMode mode;
+    try {
+      mode = valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      log.warn("Unknown server.threads.mode '{}', using platform threads", value);
+      return PLATFORM;
+    }
+    if (mode == VIRTUAL && javaVersion < VIRTUAL_THREADS_JAVA_VERSION) {
+      log.warn("Virtual threads require Java {}, running on Java {}; using platform threads",
+              VIRTUAL_THREADS_JAVA_VERSION, javaVersion);
+      return PLATFORM;
+    }
+    return mode;
+  }
+}
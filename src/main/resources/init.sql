@@ -1,7 +1,12 @@
+-- Версии строк products и order_details берутся из общей последовательности и меняются при каждом изменении,
+-- поэтому количество строк и максимальная версия меняются при любом изменении таблицы.
+CREATE SEQUENCE IF NOT EXISTS entity_version_seq;
+
 CREATE TABLE IF NOT EXISTS order_details(
     id SERIAL PRIMARY KEY,
     order_status VARCHAR(50) NOT NULL,
-    total_amount DECIMAL(10, 2) NOT NULL
+    total_amount DECIMAL(10, 2) NOT NULL,
+    version BIGINT NOT NULL DEFAULT nextval('entity_version_seq')
     );
 
 CREATE TABLE IF NOT EXISTS products(
@@ -10,9 +15,19 @@ CREATE TABLE IF NOT EXISTS products(
     price DECIMAL(10, 2) NOT NULL,
     quantity BIGINT NOT NULL DEFAULT 0,
     available BOOLEAN NOT NULL,
-    order_detail_id BIGINT REFERENCES order_details(id) ON DELETE CASCADE
+    order_detail_id BIGINT REFERENCES order_details(id) ON DELETE CASCADE,
+    version BIGINT NOT NULL DEFAULT nextval('entity_version_seq')
     );
 
+CREATE INDEX IF NOT EXISTS products_version_idx ON products(version);
+CREATE INDEX IF NOT EXISTS order_details_version_idx ON order_details(version);
+
+-- Индексы фильтров GET /products: доступность и диапазон цены, начало названия без учёта регистра
+-- (text_pattern_ops позволяет искать LIKE 'префикс%' по индексу при любой локали базы).
+CREATE INDEX IF NOT EXISTS products_available_price_idx ON products(available, price);
+CREATE INDEX IF NOT EXISTS products_price_idx ON products(price);
+CREATE INDEX IF NOT EXISTS products_name_lower_idx ON products(lower(name) text_pattern_ops);
+
 
 CREATE TABLE IF NOT EXISTS products_categories(
     id SERIAL PRIMARY KEY,
@@ -29,6 +44,10 @@ CREATE TABLE IF NOT EXISTS products_products_categories(
    FOREIGN KEY(category_id) REFERENCES products_categories(id) ON DELETE CASCADE
    );
 
+-- Фильтр по типу категории: категории типа, затем связи по category_id (первичный ключ начинается с product_id).
+CREATE INDEX IF NOT EXISTS products_categories_type_idx ON products_categories(type);
+CREATE INDEX IF NOT EXISTS products_products_categories_category_idx ON products_products_categories(category_id);
+
 CREATE TABLE IF NOT EXISTS order_approval(
     id SERIAL PRIMARY  KEY,
     order_detail_id  BIGINT REFERENCES order_details(id) UNIQUE
@@ -5,7 +5,6 @@ import kirilloffna.taskrest.dao.ProductDAO;
 import kirilloffna.taskrest.dao.impl.OrderDetailDAOImpl;
 import kirilloffna.taskrest.dao.impl.ProductDAOImpl;
 import kirilloffna.taskrest.service.OrderDetailService;
-import kirilloffna.taskrest.service.ProductService;
 import kirilloffna.taskrest.service.impl.OrderDetailServiceImpl;
 import kirilloffna.taskrest.service.impl.ProductServiceImpl;
 import kirilloffna.taskrest.servlet.OrderDetailServlet;
@@ -42,8 +41,8 @@ class ApplicationTest {
     tomcat = new Tomcat();
     ProductDAO productDAO = new ProductDAOImpl();
     OrderDetailDAO orderDetailDAO = new OrderDetailDAOImpl();
-    ProductService productService = new ProductServiceImpl(productDAO);
-    OrderDetailService orderDetailService = new OrderDetailServiceImpl(orderDetailDAO);
+    ProductServiceImpl productService = new ProductServiceImpl(productDAO);
+    OrderDetailService orderDetailService = new OrderDetailServiceImpl(orderDetailDAO, productService::evictCachedProducts);
     tomcat.setPort(9090);
     tomcat.getConnector();
 
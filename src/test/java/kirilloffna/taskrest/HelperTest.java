@@ -2,7 +2,9 @@ package kirilloffna.taskrest;
 
 import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletInputStream;
+import kirilloffna.taskrest.dao.impl.CategoryDictionary;
 import kirilloffna.taskrest.model.Product;
+import kirilloffna.taskrest.model.ProductCategory;
 import lombok.experimental.UtilityClass;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
@@ -14,12 +16,19 @@ import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ALL_CATEGORIES;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 /**
  * Утилитарный класс для тестирования.
  * Предоставляет методы для работы с базой данных и создания тестовых данных.
@@ -67,6 +76,28 @@ public class HelperTest {
     postgresContainer.stop();
   }
 
+  /**
+   * Загружает переданные категории в {@link CategoryDictionary} через мок-соединение.
+   *
+   * @param categories категории справочника.
+   */
+  public static void loadCategories(ProductCategory... categories) throws SQLException {
+    Connection connection = mock(Connection.class);
+    PreparedStatement preparedStatement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(SELECT_ALL_CATEGORIES)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+
+    AtomicInteger row = new AtomicInteger(-1);
+    when(resultSet.next()).thenAnswer(invocation -> row.incrementAndGet() < categories.length);
+    when(resultSet.getLong("id")).thenAnswer(invocation -> categories[row.get()].getId());
+    when(resultSet.getString("name")).thenAnswer(invocation -> categories[row.get()].getName());
+    when(resultSet.getString("type")).thenAnswer(invocation -> categories[row.get()].getType().name());
+
+    CategoryDictionary.invalidate();
+    CategoryDictionary.preload(connection);
+  }
+
   /**
    * Создает {@link ServletInputStream} из массива байтов.
    *
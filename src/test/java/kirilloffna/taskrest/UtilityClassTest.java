@@ -1,6 +1,13 @@
 package kirilloffna.taskrest;
 
+import kirilloffna.taskrest.dao.impl.CategoryDictionary;
+import kirilloffna.taskrest.dao.impl.ChangeNotifications;
 import kirilloffna.taskrest.dao.impl.DaoQueries;
+import kirilloffna.taskrest.dao.impl.OrderStatusTotals;
+import kirilloffna.taskrest.dao.impl.ProductNameIndex;
+import kirilloffna.taskrest.dao.impl.QueryMetrics;
+import kirilloffna.taskrest.dao.impl.StatementWarmup;
+import kirilloffna.taskrest.utils.ApplicationProperties;
 import kirilloffna.taskrest.utils.ConnectionProvider;
 import kirilloffna.taskrest.utils.ServletConstants;
 import kirilloffna.taskrest.utils.ServletHelper;
@@ -43,8 +50,15 @@ class UtilityClassTest {
   static Stream<Class<?>> classes() {
     return Stream.of(
             ConnectionProvider.class,
+            ApplicationProperties.class,
             ServletHelper.class,
             DaoQueries.class,
+            CategoryDictionary.class,
+            ChangeNotifications.class,
+            ProductNameIndex.class,
+            OrderStatusTotals.class,
+            StatementWarmup.class,
+            QueryMetrics.class,
             ServletConstants.class,
             HelperTest.class
     );
@@ -0,0 +1,91 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.CategoryType;
+import kirilloffna.taskrest.model.ProductCategory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ALL_CATEGORIES;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки справочника категорий {@link CategoryDictionary}.
+ */
+class CategoryDictionaryTest {
+
+  private final Connection connection = mock(Connection.class);
+  private final PreparedStatement preparedStatement = mock(PreparedStatement.class);
+  private final ResultSet resultSet = mock(ResultSet.class);
+
+  /**
+   * Сбрасывает справочник и настраивает запрос категорий, возвращающий одну категорию.
+   */
+  @BeforeEach
+  void setUp() throws SQLException {
+    CategoryDictionary.invalidate();
+    when(connection.prepareStatement(SELECT_ALL_CATEGORIES)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.getLong("id")).thenReturn(1L);
+    when(resultSet.getString("name")).thenReturn("Холодные");
+    when(resultSet.getString("type")).thenReturn(CategoryType.Напитки.name());
+  }
+
+  /**
+   * Тестирует метод {@link CategoryDictionary#resolve(long, Connection)}.
+   * Проверяет, что справочник загружается один раз и возвращает общий экземпляр категории.
+   */
+  @Test
+  void testResolve() throws SQLException {
+    ProductCategory first = CategoryDictionary.resolve(1L, connection);
+    ProductCategory second = CategoryDictionary.resolve(1L, connection);
+
+    assertEquals(new ProductCategory(1L, "Холодные", CategoryType.Напитки, null), first);
+    assertSame(first, second);
+    verify(preparedStatement, times(1)).executeQuery();
+  }
+
+  /**
+   * Тестирует перезагрузку справочника при обращении к неизвестной категории.
+   */
+  @Test
+  void testResolveUnknownCategoryReloads() throws SQLException {
+    CategoryDictionary.preload(connection);
+    when(resultSet.next()).thenReturn(true, true, false);
+    when(resultSet.getLong("id")).thenReturn(1L, 2L);
+
+    ProductCategory category = CategoryDictionary.resolve(2L, connection);
+
+    assertNotNull(category);
+    assertEquals(2L, category.getId());
+    assertNull(CategoryDictionary.resolve(99L, connection));
+    verify(preparedStatement, times(3)).executeQuery();
+  }
+
+  /**
+   * Тестирует, что категория, не найденная после перезагрузки, не перезагружает справочник повторно
+   * до вызова {@link CategoryDictionary#invalidate()}.
+   */
+  @Test
+  void testResolveMissingCategoryReloadsOnce() throws SQLException {
+    CategoryDictionary.preload(connection);
+
+    assertNull(CategoryDictionary.resolve(99L, connection));
+    assertNull(CategoryDictionary.resolve(99L, connection));
+    assertNull(CategoryDictionary.resolve(99L, connection));
+    verify(preparedStatement, times(2)).executeQuery();
+
+    CategoryDictionary.invalidate();
+    when(resultSet.next()).thenReturn(true, true, false);
+    when(resultSet.getLong("id")).thenReturn(1L, 99L);
+
+    assertNotNull(CategoryDictionary.resolve(99L, connection));
+    verify(preparedStatement, times(3)).executeQuery();
+  }
+}
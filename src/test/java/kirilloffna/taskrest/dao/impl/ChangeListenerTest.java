@@ -0,0 +1,126 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.OrderStatus;
+import kirilloffna.taskrest.utils.ResponseCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGNotification;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки применения уведомлений об изменениях {@link ChangeListener}.
+ */
+class ChangeListenerTest {
+
+  private final Connection connection = mock(Connection.class);
+  private final List<Collection<Long>> evicted = new ArrayList<>();
+  private final Runnable allProductsEviction = mock(Runnable.class);
+  private final ChangeListener listener = new ChangeListener(evicted::add, allProductsEviction, 1000, 1000);
+
+  /**
+   * Сбрасывает индекс названий и итоги заказов: незагруженные кэши не перечитываются из базы данных.
+   */
+  @BeforeEach
+  void setUp() {
+    ProductNameIndex.invalidate();
+    OrderStatusTotals.invalidate();
+  }
+
+  @AfterEach
+  void tearDown() {
+    ProductNameIndex.invalidate();
+    OrderStatusTotals.invalidate();
+  }
+
+  /**
+   * Тестирует применение уведомлений.
+   * Проверяет, что уведомления других экземпляров, полученные вместе, удаляют продукты из кэша одним вызовом
+   * и сбрасывают кэш готовых ответов, а свои уведомления пропускаются.
+   */
+  @Test
+  void testApplyRemoteNotifications() throws SQLException {
+    long invalidations = ResponseCache.PRODUCTS.getInvalidations();
+
+    listener.apply(new PGNotification[]{
+            notification("other-node:product:1"),
+            notification("other-node:order:2,3"),
+            notification(ChangeNotifications.format(ChangeNotifications.Kind.PRODUCT, "4"))}, connection);
+
+    assertEquals(1, evicted.size());
+    assertEquals(List.of(1L, 2L, 3L), List.copyOf(evicted.get(0)));
+    assertEquals(invalidations + 1, ResponseCache.PRODUCTS.getInvalidations());
+    assertEquals(3, listener.getReceived());
+    assertEquals(2, listener.getApplied());
+    verify(allProductsEviction, never()).run();
+    verifyNoInteractions(connection);
+  }
+
+  /**
+   * Тестирует применение только своих уведомлений и уведомления обо всех продуктах.
+   */
+  @Test
+  void testApplyLocalAndAllProductsNotifications() throws SQLException {
+    long invalidations = ResponseCache.PRODUCTS.getInvalidations();
+
+    listener.apply(new PGNotification[]{
+            notification(ChangeNotifications.format(ChangeNotifications.Kind.ORDER, "1"))}, connection);
+
+    assertEquals(invalidations, ResponseCache.PRODUCTS.getInvalidations());
+
+    listener.apply(new PGNotification[]{notification("other-node:product:*")}, connection);
+
+    assertTrue(evicted.isEmpty());
+    verify(allProductsEviction).run();
+    assertEquals(invalidations + 1, ResponseCache.PRODUCTS.getInvalidations());
+  }
+
+  /**
+   * Тестирует применение уведомлений об изменении заказов.
+   * Проверяет, что изменение итогов из уведомления применяется без запроса к базе данных, а изменение транзакции,
+   * видимой запросу загрузки итогов, пропускается.
+   */
+  @Test
+  void testApplyRemoteOrderTotalsChange() throws SQLException {
+    Connection totalsConnection = mock(Connection.class);
+    PreparedStatement preparedStatement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(totalsConnection.prepareStatement(DaoQueries.SELECT_ORDER_TOTALS_BY_STATUS)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.getString("snapshot")).thenReturn("100:100:");
+    when(resultSet.getString("order_status")).thenReturn(OrderStatus.Принят.name());
+    when(resultSet.getLong("order_count")).thenReturn(1L);
+    when(resultSet.getBigDecimal("total_amount")).thenReturn(new BigDecimal("50.00"));
+    OrderStatusTotals.preload(totalsConnection);
+
+    listener.apply(new PGNotification[]{
+            notification("other-node:order:2:99,,,Принят,50.00"),
+            notification("other-node:order:3:100,Принят,50.00,Готов,70.00")}, connection);
+
+    assertEquals(new OrderStatusTotals.Total(0, BigDecimal.ZERO),
+            OrderStatusTotals.get().orElseThrow().get(OrderStatus.Принят));
+    assertEquals(new OrderStatusTotals.Total(1, new BigDecimal("70.00")),
+            OrderStatusTotals.get().orElseThrow().get(OrderStatus.Готов));
+    assertEquals(List.of(2L, 3L), List.copyOf(evicted.get(0)));
+    verify(preparedStatement, times(1)).executeQuery();
+    verifyNoInteractions(connection);
+  }
+
+  private static PGNotification notification(String payload) {
+    PGNotification notification = mock(PGNotification.class);
+    when(notification.getParameter()).thenReturn(payload);
+    return notification;
+  }
+}
@@ -0,0 +1,64 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для проверки формата уведомлений {@link ChangeNotifications}.
+ */
+class ChangeNotificationsTest {
+
+  /**
+   * Тестирует метод {@link ChangeNotifications#parse(String)}.
+   * Проверяет разбор уведомления этого экземпляра приложения и уведомления другого экземпляра обо всех продуктах.
+   */
+  @Test
+  void testParse() {
+    ChangeNotifications.Notification local = ChangeNotifications
+            .parse(ChangeNotifications.format(ChangeNotifications.Kind.ORDER, "7,5")).orElseThrow();
+    ChangeNotifications.Notification remote = ChangeNotifications.parse("other-node:product:*").orElseThrow();
+
+    assertTrue(local.isLocal());
+    assertEquals(ChangeNotifications.Kind.ORDER, local.kind());
+    assertEquals(Set.of(5L, 7L), local.productIds());
+    assertNull(local.totalsChange());
+    assertFalse(remote.isLocal());
+    assertEquals(ChangeNotifications.Kind.PRODUCT, remote.kind());
+    assertTrue(remote.isAllProducts());
+  }
+
+  /**
+   * Тестирует метод {@link ChangeNotifications#parse(String)} для уведомления об изменении заказа с изменением итогов.
+   */
+  @Test
+  void testParseOrderTotalsChange() {
+    ChangeNotifications.Notification updated = ChangeNotifications
+            .parse("other-node:order:7:1234,Принят,150.00,Готов,175.50").orElseThrow();
+    ChangeNotifications.Notification deleted = ChangeNotifications
+            .parse("other-node:order::1235,Готов,80.00,,").orElseThrow();
+
+    assertEquals(Set.of(7L), updated.productIds());
+    assertEquals(new ChangeNotifications.TotalsChange(1234, OrderStatusTotals.Change.updated(OrderStatus.Принят,
+            new BigDecimal("150.00"), OrderStatus.Готов, new BigDecimal("175.50"))), updated.totalsChange());
+    assertEquals(new ChangeNotifications.TotalsChange(1235,
+            OrderStatusTotals.Change.deleted(OrderStatus.Готов, new BigDecimal("80.00"))), deleted.totalsChange());
+  }
+
+  /**
+   * Тестирует метод {@link ChangeNotifications#parse(String)} для текста в неизвестном формате.
+   */
+  @Test
+  void testParseInvalid() {
+    assertTrue(ChangeNotifications.parse("node:product").isEmpty());
+    assertTrue(ChangeNotifications.parse("node:category:1").isEmpty());
+    assertTrue(ChangeNotifications.parse("node:product:1,x").isEmpty());
+    assertTrue(ChangeNotifications.parse("node:product:1:1234,,,Принят,10").isEmpty());
+    assertTrue(ChangeNotifications.parse("node:order:1:1234,Принят,10").isEmpty());
+    assertTrue(ChangeNotifications.parse("node:order:1:1234,Отменён,10,,").isEmpty());
+  }
+}
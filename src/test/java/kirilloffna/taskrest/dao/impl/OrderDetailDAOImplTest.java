@@ -1,18 +1,44 @@
 package kirilloffna.taskrest.dao.impl;
 
+import kirilloffna.taskrest.dao.OrderDetailUpdate;
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.model.CategoryType;
 import kirilloffna.taskrest.model.OrderDetail;
 import kirilloffna.taskrest.model.OrderStatus;
+import kirilloffna.taskrest.model.Product;
+import kirilloffna.taskrest.model.ProductCategory;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-
+import java.util.Set;
+
+import static kirilloffna.taskrest.HelperTest.loadCategories;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.DELETE_ORDER_DETAILS_SQL;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.DELETE_ORDER_LINES;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.DELETE_PRODUCT_BY_ORDER_ID_SQL;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.DELETE_PRODUCT_CATEGORY;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.INSERT_ORDER_DETAIL;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.INSERT_PRODUCT;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.INSERT_PRODUCT_CATEGORY;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.NOTIFY_ORDER_CHANGE;
 import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ALL_ORDER_DETAILS;
-import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCT_WITH_ORDER_ID;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ORDER_DETAILS_BY_ID;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ORDER_DETAILS_PAGE;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ORDER_LINES;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.TOUCH_ORDER_LINES;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.UPDATE_ORDER_DETAIL;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.UPDATE_ORDER_LINE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -28,8 +54,19 @@ class OrderDetailDAOImplTest {
 
   private final ResultSet resultSet = mock(ResultSet.class);
 
+  private final PreparedStatement notifyStatement = mock(PreparedStatement.class);
+
   private final OrderDetailDAOImpl orderDetailDAO = new OrderDetailDAOImpl();
 
+  /**
+   * Загружает справочник категорий перед выполнением каждого теста.
+   */
+  @BeforeEach
+  void setUp() throws SQLException {
+    loadCategories(new ProductCategory(3L, "Горячие", CategoryType.Закуски, null),
+            new ProductCategory(5L, "Холодные", CategoryType.Напитки, null));
+  }
+
   /**
    * Тестирует метод {@link OrderDetailDAOImpl#save(OrderDetail, Connection)}.
    * Проверяет, что метод {@link PreparedStatement#executeUpdate()} вызывается, а также устанавливает идентификатор для сохраненного заказа.
@@ -39,6 +76,7 @@ class OrderDetailDAOImplTest {
     OrderDetail orderDetail = new OrderDetail(null, OrderStatus.Готовится, new ArrayList<>(), BigDecimal.valueOf(100.00));
 
     when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(preparedStatement);
+    when(connection.prepareStatement(NOTIFY_ORDER_CHANGE)).thenReturn(notifyStatement);
     when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
     when(resultSet.next()).thenReturn(true);
     when(resultSet.getLong(1)).thenReturn(1L);
@@ -49,6 +87,8 @@ class OrderDetailDAOImplTest {
     verify(preparedStatement).setString(1, orderDetail.getOrderStatus().name());
     verify(preparedStatement).setBigDecimal(2, orderDetail.getTotalAmount());
     verify(preparedStatement).executeUpdate();
+    verify(notifyStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.ORDER, "") + ":");
+    verify(notifyStatement).setString(3, ",,,Готовится,100.0");
     verify(connection).commit();
 
     assertEquals(1L, orderDetail.getId());
@@ -56,52 +96,185 @@ class OrderDetailDAOImplTest {
 
   /**
    * Тестирует метод {@link OrderDetailDAOImpl#update(OrderDetail, Connection)}.
-   * Проверяет, что метод {@link PreparedStatement#executeUpdate()} вызывается, а также что возвращается обновленный заказ.
+   * Проверяет, что заказ обновляется одним запросом с RETURNING, а из строк заказа обновляется только изменённая
+   * строка и вставляется новая, без удаления и пересоздания остальных.
    */
   @Test
   void testUpdate() throws SQLException {
-    OrderDetail orderDetail = new OrderDetail(1L, OrderStatus.Готов, List.of(), BigDecimal.valueOf(150.00));
-
-    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
-
-    Optional<OrderDetail> updatedOrderDetail = orderDetailDAO.update(orderDetail, connection);
+    ProductCategory category = new ProductCategory(3L, "Горячие", CategoryType.Закуски, null);
+    Product changed = new Product(5L, "Бургер", BigDecimal.valueOf(180.00), 2, true, List.of(category));
+    Product unchanged = new Product(6L, "Чай", BigDecimal.valueOf(100.00), 1, true, List.of());
+    Product added = new Product(null, "Кофе", BigDecimal.valueOf(120.00), 1, true, List.of());
+    OrderDetail orderDetail = new OrderDetail(1L, OrderStatus.Готов, List.of(changed, unchanged, added),
+            BigDecimal.valueOf(150.00));
+    PreparedStatement linesStatement = mock(PreparedStatement.class);
+    ResultSet lines = mock(ResultSet.class);
+    PreparedStatement updateLineStatement = mock(PreparedStatement.class);
+    PreparedStatement insertStatement = mock(PreparedStatement.class);
+    ResultSet generatedKeys = mock(ResultSet.class);
+
+    when(connection.prepareStatement(UPDATE_ORDER_DETAIL)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true);
+    when(resultSet.getLong("id")).thenReturn(1L);
+    when(resultSet.getString("order_status")).thenReturn(OrderStatus.Готов.name());
+    when(resultSet.getBigDecimal("total_amount")).thenReturn(BigDecimal.valueOf(150.00));
+    when(resultSet.getString("previous_status")).thenReturn(OrderStatus.Готовится.name());
+    when(resultSet.getBigDecimal("previous_total_amount")).thenReturn(BigDecimal.valueOf(150.00));
+    when(connection.prepareStatement(SELECT_ORDER_LINES)).thenReturn(linesStatement);
+    when(linesStatement.executeQuery()).thenReturn(lines);
+    when(lines.next()).thenReturn(true, true, false);
+    when(lines.getLong("id")).thenReturn(5L, 6L);
+    when(lines.getString("name")).thenReturn("Бургер", "Чай");
+    when(lines.getBigDecimal("price")).thenReturn(new BigDecimal("180.00"), new BigDecimal("100.00"));
+    when(lines.getInt("quantity")).thenReturn(1, 1);
+    when(lines.getBoolean("available")).thenReturn(true, true);
+    when(lines.getLong("category_id")).thenReturn(3L, 0L);
+    when(lines.wasNull()).thenReturn(false, true);
+    when(connection.prepareStatement(UPDATE_ORDER_LINE)).thenReturn(updateLineStatement);
+    when(connection.prepareStatement(INSERT_PRODUCT, Statement.RETURN_GENERATED_KEYS)).thenReturn(insertStatement);
+    when(insertStatement.getGeneratedKeys()).thenReturn(generatedKeys);
+    when(generatedKeys.next()).thenReturn(true);
+    when(generatedKeys.getLong(1)).thenReturn(7L);
+    when(connection.prepareStatement(INSERT_PRODUCT_CATEGORY)).thenReturn(mock(PreparedStatement.class));
+    when(connection.prepareStatement(NOTIFY_ORDER_CHANGE)).thenReturn(notifyStatement);
+
+    Optional<OrderDetailUpdate> updatedOrderDetail = orderDetailDAO.update(orderDetail, connection);
 
     verify(connection).setAutoCommit(false);
-
     verify(preparedStatement, times(1)).setString(1, orderDetail.getOrderStatus().name());
     verify(preparedStatement, times(1)).setBigDecimal(2, orderDetail.getTotalAmount());
     verify(preparedStatement, times(1)).setLong(3, orderDetail.getId());
-    verify(preparedStatement, times(2)).executeUpdate();
+    verify(linesStatement).setLong(1, orderDetail.getId());
+
+    verify(updateLineStatement, times(1)).addBatch();
+    verify(updateLineStatement).setLong(5, 5L);
+    verify(insertStatement, times(1)).addBatch();
+    verify(connection, never()).prepareStatement(DELETE_ORDER_LINES);
+    verify(connection, never()).prepareStatement(DELETE_PRODUCT_CATEGORY);
+    verify(connection, never()).prepareStatement(DELETE_PRODUCT_BY_ORDER_ID_SQL);
+    verify(connection, never()).prepareStatement(TOUCH_ORDER_LINES);
+    verify(notifyStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.ORDER, "7,5") + ":");
+    verify(notifyStatement).setString(3, ",Готовится,150.0,Готов,150.0");
+    verify(connection).commit();
 
-    verify(preparedStatement, times(1)).setLong(1, orderDetail.getId());
-    verify(preparedStatement, times(2)).executeUpdate();
+    assertTrue(updatedOrderDetail.isPresent());
+    assertEquals(orderDetail, updatedOrderDetail.get().orderDetail());
+    assertEquals(Set.of(5L, 7L), updatedOrderDetail.get().changedLineIds());
+    assertEquals(OrderStatus.Готовится, updatedOrderDetail.get().previousStatus());
+    assertTrue(updatedOrderDetail.get().isStatusChanged());
+    assertEquals(7L, added.getId());
+  }
 
+  /**
+   * Тестирует метод {@link OrderDetailDAOImpl#update(OrderDetail, Connection)} для строки, у которой изменились
+   * только категории. Проверяет, что поля строки не обновляются, но её версия меняется вместе со связями.
+   */
+  @Test
+  void testUpdateCategoriesOnly() throws SQLException {
+    ProductCategory category = new ProductCategory(5L, "Холодные", CategoryType.Напитки, null);
+    Product line = new Product(6L, "Чай", BigDecimal.valueOf(100.00), 1, true, List.of(category));
+    OrderDetail orderDetail = new OrderDetail(1L, OrderStatus.Готов, List.of(line), BigDecimal.valueOf(100.00));
+    PreparedStatement linesStatement = mock(PreparedStatement.class);
+    ResultSet lines = mock(ResultSet.class);
+    PreparedStatement touchStatement = mock(PreparedStatement.class);
+    PreparedStatement categoryStatement = mock(PreparedStatement.class);
+    Array lineIds = mock(Array.class);
+
+    when(connection.prepareStatement(UPDATE_ORDER_DETAIL)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true);
+    when(resultSet.getLong("id")).thenReturn(1L);
+    when(resultSet.getString("order_status")).thenReturn(OrderStatus.Готов.name());
+    when(resultSet.getBigDecimal("total_amount")).thenReturn(BigDecimal.valueOf(100.00));
+    when(resultSet.getString("previous_status")).thenReturn(OrderStatus.Готов.name());
+    when(resultSet.getBigDecimal("previous_total_amount")).thenReturn(BigDecimal.valueOf(100.00));
+    when(connection.prepareStatement(SELECT_ORDER_LINES)).thenReturn(linesStatement);
+    when(linesStatement.executeQuery()).thenReturn(lines);
+    when(lines.next()).thenReturn(true, false);
+    when(lines.getLong("id")).thenReturn(6L);
+    when(lines.getString("name")).thenReturn("Чай");
+    when(lines.getBigDecimal("price")).thenReturn(new BigDecimal("100.00"));
+    when(lines.getInt("quantity")).thenReturn(1);
+    when(lines.getBoolean("available")).thenReturn(true);
+    when(lines.wasNull()).thenReturn(true);
+    when(connection.prepareStatement(TOUCH_ORDER_LINES)).thenReturn(touchStatement);
+    when(connection.createArrayOf("bigint", new Object[]{6L})).thenReturn(lineIds);
+    when(connection.prepareStatement(INSERT_PRODUCT_CATEGORY)).thenReturn(categoryStatement);
+    when(connection.prepareStatement(NOTIFY_ORDER_CHANGE)).thenReturn(notifyStatement);
+
+    Optional<OrderDetailUpdate> updatedOrderDetail = orderDetailDAO.update(orderDetail, connection);
+
+    verify(connection, never()).prepareStatement(UPDATE_ORDER_LINE);
+    verify(touchStatement).setLong(1, 1L);
+    verify(touchStatement).setArray(2, lineIds);
+    verify(touchStatement).executeUpdate();
+    verify(categoryStatement).setLong(1, 6L);
+    verify(categoryStatement).setLong(2, 5L);
+    verify(categoryStatement).executeBatch();
+    verify(notifyStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.ORDER, "6") + ":");
     verify(connection).commit();
 
     assertTrue(updatedOrderDetail.isPresent());
-    assertEquals(orderDetail, updatedOrderDetail.get());
+    assertEquals(Set.of(6L), updatedOrderDetail.get().changedLineIds());
+    assertFalse(updatedOrderDetail.get().isStatusChanged());
+  }
+
+  /**
+   * Тестирует метод {@link OrderDetailDAOImpl#update(OrderDetail, Connection)} для несуществующего заказа.
+   * Проверяет, что возвращается пустой Optional, а строки заказа не изменяются.
+   */
+  @Test
+  void testUpdateNotFound() throws SQLException {
+    OrderDetail orderDetail = new OrderDetail(1L, OrderStatus.Готов, List.of(), BigDecimal.valueOf(150.00));
+
+    when(connection.prepareStatement(UPDATE_ORDER_DETAIL)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(false);
+
+    Optional<OrderDetailUpdate> updatedOrderDetail = orderDetailDAO.update(orderDetail, connection);
+
+    assertTrue(updatedOrderDetail.isEmpty());
+    verify(connection, never()).prepareStatement(DELETE_PRODUCT_BY_ORDER_ID_SQL);
+    verify(connection).commit();
   }
 
   /**
    * Тестирует метод {@link OrderDetailDAOImpl#findById(Long, Connection)}.
-   * Проверяет, что метод возвращает ожидаемый заказ, включая его статус и сумму.
+   * Проверяет, что метод возвращает ожидаемый заказ с продуктами и категориями,
+   * а продукты загружаются одним запросом по массиву идентификаторов заказов.
    */
   @Test
   void testFindById() throws SQLException {
     Long orderId = 1L;
-    OrderDetail expectedOrderDetail = new OrderDetail(orderId, OrderStatus.Принят, null, BigDecimal.valueOf(200.00));
+    ProductCategory category = new ProductCategory(3L, "Горячие", CategoryType.Закуски, null);
+    Product product = new Product(5L, "Бургер", BigDecimal.valueOf(180.00), 1, true, List.of(category));
+    OrderDetail expectedOrderDetail = new OrderDetail(orderId, OrderStatus.Принят, List.of(product), BigDecimal.valueOf(200.00));
 
-    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(connection.prepareStatement(SELECT_ORDER_DETAILS_BY_ID)).thenReturn(preparedStatement);
     when(preparedStatement.executeQuery()).thenReturn(resultSet);
-    when(resultSet.next()).thenReturn(true);
+    when(resultSet.next()).thenReturn(true, false);
     when(resultSet.getLong("id")).thenReturn(orderId);
     when(resultSet.getString("order_status")).thenReturn(OrderStatus.Принят.name());
     when(resultSet.getBigDecimal("total_amount")).thenReturn(BigDecimal.valueOf(200.00));
 
+    PreparedStatement productsPreparedStatement = mock(PreparedStatement.class);
+    ResultSet productsResultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS)).thenReturn(productsPreparedStatement);
+    when(productsPreparedStatement.executeQuery()).thenReturn(productsResultSet);
+    when(productsResultSet.next()).thenReturn(true, false);
+    when(productsResultSet.getLong("id")).thenReturn(product.getId());
+    when(productsResultSet.getLong("order_detail_id")).thenReturn(orderId);
+    when(productsResultSet.getString("name")).thenReturn(product.getName());
+    when(productsResultSet.getBigDecimal("price")).thenReturn(product.getPrice());
+    when(productsResultSet.getInt("quantity")).thenReturn(product.getQuantity());
+    when(productsResultSet.getBoolean("available")).thenReturn(product.isAvailable());
+    when(productsResultSet.getLong("category_id")).thenReturn(category.getId());
+
     Optional<OrderDetail> foundOrderDetail = orderDetailDAO.findById(orderId, connection);
 
-    verify(preparedStatement, times(3)).setLong(1, orderId);
-    verify(preparedStatement, times(3)).executeQuery();
+    verify(preparedStatement).setLong(1, orderId);
+    verify(productsPreparedStatement, times(1)).executeQuery();
 
     assertTrue(foundOrderDetail.isPresent());
     assertEquals(expectedOrderDetail, foundOrderDetail.get());
@@ -109,17 +282,28 @@ class OrderDetailDAOImplTest {
 
   /**
    * Тестирует метод {@link OrderDetailDAOImpl#deleteById(Long, Connection)}.
-   * Проверяет, что метод {@link PreparedStatement#executeUpdate()} вызывается для удаления заказа.
+   * Проверяет, что строки заказа удаляются с возвратом их идентификаторов, а затем удаляется сам заказ
+   * с возвратом его статуса и суммы.
    */
   @Test
   void testDeleteById() throws SQLException {
     when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false, true);
+    when(resultSet.getLong("id")).thenReturn(7L);
+    when(resultSet.getString("order_status")).thenReturn(OrderStatus.Принят.name());
+    when(resultSet.getBigDecimal("total_amount")).thenReturn(BigDecimal.valueOf(200.00));
 
-    orderDetailDAO.deleteById(1L, connection);
+    List<Long> deletedLineIds = orderDetailDAO.deleteById(1L, connection);
 
+    assertEquals(List.of(7L), deletedLineIds);
     verify(connection).setAutoCommit(false);
+    verify(connection).prepareStatement(DELETE_PRODUCT_BY_ORDER_ID_SQL);
+    verify(connection).prepareStatement(DELETE_ORDER_DETAILS_SQL);
     verify(preparedStatement, times(2)).setLong(1, 1L);
-    verify(preparedStatement, times(2)).executeUpdate();
+    verify(preparedStatement, times(2)).executeQuery();
+    verify(preparedStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.ORDER, "7") + ":");
+    verify(preparedStatement).setString(3, ",Принят,200.0,,");
     verify(connection).commit();
   }
 
@@ -145,7 +329,7 @@ class OrderDetailDAOImplTest {
     when(orderDetailsResultSet.getBigDecimal("total_amount")).thenReturn(BigDecimal.valueOf(100.00), BigDecimal.valueOf(200.00));
 
     PreparedStatement productsPreparedStatement = mock(PreparedStatement.class);
-    when(connection.prepareStatement(SELECT_PRODUCT_WITH_ORDER_ID)).thenReturn(productsPreparedStatement);
+    when(connection.prepareStatement(SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS)).thenReturn(productsPreparedStatement);
     ResultSet productsResultSet = mock(ResultSet.class);
     when(productsPreparedStatement.executeQuery()).thenReturn(productsResultSet);
     when(productsResultSet.next()).thenReturn(false);
@@ -153,10 +337,111 @@ class OrderDetailDAOImplTest {
     List<OrderDetail> foundOrderDetails = orderDetailDAO.findAll(connection);
 
     verify(orderDetailsPreparedStatement).executeQuery();
-    verify(productsPreparedStatement, times(2)).setLong(anyInt(), anyLong());
+    verify(productsPreparedStatement, times(1)).executeQuery();
 
     assertEquals(expectedOrderDetails.size(), foundOrderDetails.size());
     assertEquals(expectedOrderDetails.get(0), foundOrderDetails.get(0));
     assertEquals(expectedOrderDetails.get(1), foundOrderDetails.get(1));
   }
+
+  /**
+   * Тестирует метод {@link OrderDetailDAOImpl#findPage(Long, int, Connection)}.
+   * Проверяет, что для первой страницы курсор равен нулю, а лимит передаётся в запрос.
+   */
+  @Test
+  void testFindPage() throws SQLException {
+    PreparedStatement pageStatement = mock(PreparedStatement.class);
+    ResultSet pageResultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(SELECT_ORDER_DETAILS_PAGE)).thenReturn(pageStatement);
+    when(pageStatement.executeQuery()).thenReturn(pageResultSet);
+    when(pageResultSet.next()).thenReturn(true, false);
+    when(pageResultSet.getLong("id")).thenReturn(1L);
+    when(pageResultSet.getString("order_status")).thenReturn(OrderStatus.Готов.name());
+    when(pageResultSet.getBigDecimal("total_amount")).thenReturn(BigDecimal.valueOf(100.00));
+
+    PreparedStatement productsPreparedStatement = mock(PreparedStatement.class);
+    ResultSet productsResultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS)).thenReturn(productsPreparedStatement);
+    when(productsPreparedStatement.executeQuery()).thenReturn(productsResultSet);
+
+    List<OrderDetail> page = orderDetailDAO.findPage(null, 20, connection);
+
+    verify(pageStatement).setLong(1, 0L);
+    verify(pageStatement).setInt(2, 20);
+    assertEquals(List.of(new OrderDetail(1L, OrderStatus.Готов, List.of(), BigDecimal.valueOf(100.00))), page);
+  }
+
+  /**
+   * Тестирует метод {@link OrderDetailDAOImpl#streamAll(int, RowCallback, Connection)}.
+   * Проверяет, что заказы передаются в callback по одному, а ошибка обработчика откатывает транзакцию.
+   */
+  @Test
+  void testStreamAll() throws Exception {
+    when(connection.prepareStatement(STREAM_ALL_ORDER_DETAILS_WITH_PRODUCTS)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, true, false);
+    when(resultSet.getLong("order_detail_id")).thenReturn(1L, 2L);
+    when(resultSet.getString("order_status")).thenReturn(OrderStatus.Готов.name());
+    when(resultSet.getLong("id")).thenReturn(10L, 0L);
+    when(resultSet.getLong("category_id")).thenReturn(5L);
+    when(resultSet.wasNull()).thenReturn(false, false, true);
+
+    List<OrderDetail> orderDetails = new ArrayList<>();
+    orderDetailDAO.streamAll(50, orderDetails::add, connection);
+
+    verify(preparedStatement).setFetchSize(50);
+    verify(connection).commit();
+    assertEquals(2, orderDetails.size());
+    assertEquals(1, orderDetails.get(0).getProducts().size());
+    assertEquals(1, orderDetails.get(0).getProducts().get(0).getProductCategories().size());
+    assertTrue(orderDetails.get(1).getProducts().isEmpty());
+
+    when(resultSet.next()).thenReturn(true, false);
+    assertThrows(IOException.class, () -> orderDetailDAO.streamAll(50, orderDetail -> {
+      throw new IOException("Client disconnected");
+    }, connection));
+    verify(connection).rollback();
+  }
+
+  /**
+   * Тестирует сохранение строк заказа методом {@link OrderDetailDAOImpl#save(OrderDetail, Connection)}.
+   * Проверяет, что продукты и связи с категориями сохраняются пакетами, а сгенерированные идентификаторы
+   * присваиваются продуктам в порядке добавления.
+   */
+  @Test
+  void testSaveProductsInBatch() throws SQLException {
+    ProductCategory category = new ProductCategory(1L, "Category", CategoryType.Напитки, null);
+    List<Product> products = List.of(
+            new Product(null, "Product 1", BigDecimal.TEN, 1, true, List.of(category)),
+            new Product(null, "Product 2", BigDecimal.TEN, 2, true, List.of(category)),
+            new Product(null, "Product 3", BigDecimal.TEN, 3, true, List.of()));
+    OrderDetail orderDetail = new OrderDetail(null, OrderStatus.Принят, products, BigDecimal.valueOf(30.00));
+
+    when(connection.prepareStatement(INSERT_ORDER_DETAIL, Statement.RETURN_GENERATED_KEYS)).thenReturn(preparedStatement);
+    when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true);
+    when(resultSet.getLong(1)).thenReturn(1L);
+
+    PreparedStatement productStatement = mock(PreparedStatement.class);
+    ResultSet productKeys = mock(ResultSet.class);
+    when(connection.prepareStatement(INSERT_PRODUCT, Statement.RETURN_GENERATED_KEYS)).thenReturn(productStatement);
+    when(productStatement.getGeneratedKeys()).thenReturn(productKeys);
+    when(productKeys.next()).thenReturn(true, true, true, false);
+    when(productKeys.getLong(1)).thenReturn(10L, 11L, 12L);
+
+    PreparedStatement categoryStatement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(INSERT_PRODUCT_CATEGORY)).thenReturn(categoryStatement);
+    when(connection.prepareStatement(NOTIFY_ORDER_CHANGE)).thenReturn(notifyStatement);
+
+    orderDetailDAO.save(orderDetail, connection);
+
+    verify(productStatement, times(3)).addBatch();
+    verify(productStatement, times(1)).executeBatch();
+    verify(productStatement, never()).executeUpdate();
+    verify(categoryStatement, times(2)).addBatch();
+    verify(categoryStatement, times(1)).executeBatch();
+    verify(notifyStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.ORDER, "10,11,12") + ":");
+    verify(connection).commit();
+    assertEquals(List.of(10L, 11L, 12L), products.stream().map(Product::getId).toList());
+  }
 }
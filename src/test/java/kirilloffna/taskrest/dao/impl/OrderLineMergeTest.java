@@ -0,0 +1,89 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.Product;
+import kirilloffna.taskrest.model.ProductCategory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестовый класс для проверки вычисления разницы строк заказа {@link OrderLineMerge}.
+ */
+class OrderLineMergeTest {
+
+  /**
+   * Тестирует метод {@link OrderLineMerge#of(Map, List)}.
+   * Проверяет, что неизменённая строка не попадает в изменения, изменённая обновляется, новая вставляется,
+   * отсутствующая в запросе удаляется, а связи с категориями меняются по разнице.
+   */
+  @Test
+  void testOf() {
+    Map<Long, Product> stored = new LinkedHashMap<>();
+    stored.put(1L, product(1L, "Чай", "100.00", 1, 2L));
+    stored.put(2L, product(2L, "Кофе", "120.00", 1, 2L));
+    stored.put(3L, product(3L, "Лобио", "360.00", 1));
+    Product unchanged = product(1L, "Чай", "100", 1, 2L);
+    Product changed = product(2L, "Кофе", "120.00", 3, 1L);
+    Product added = product(null, "Пирожное", "90.00", 1, 5L);
+
+    OrderLineMerge merge = OrderLineMerge.of(stored, List.of(unchanged, changed, added));
+
+    assertEquals(List.of(changed), merge.getUpdated());
+    assertEquals(List.of(added), merge.getInserted());
+    assertEquals(List.of(3L), merge.getDeletedIds());
+    assertEquals(Map.of(2L, Set.of(1L)), merge.getAddedCategoryIds());
+    assertEquals(Map.of(2L, Set.of(2L)), merge.getRemovedCategoryIds());
+    assertTrue(merge.getRecategorizedIds().isEmpty());
+  }
+
+  /**
+   * Тестирует метод {@link OrderLineMerge#getRecategorizedIds()}.
+   * Проверяет, что строка, у которой изменились только категории, не обновляется, но возвращается для смены версии.
+   */
+  @Test
+  void testRecategorizedIds() {
+    Map<Long, Product> stored = new LinkedHashMap<>();
+    stored.put(1L, product(1L, "Чай", "100.00", 1, 2L));
+    Product recategorized = product(1L, "Чай", "100.00", 1, 5L);
+
+    OrderLineMerge merge = OrderLineMerge.of(stored, List.of(recategorized));
+
+    assertTrue(merge.getUpdated().isEmpty());
+    assertEquals(Set.of(1L), merge.getRecategorizedIds());
+    assertEquals(Set.of(1L), merge.getChangedIds());
+  }
+
+  /**
+   * Тестирует метод {@link OrderLineMerge#of(Map, List)} для строк с чужими или повторяющимися идентификаторами.
+   * Проверяет, что такие строки вставляются как новые, а пустой запрос удаляет все строки.
+   */
+  @Test
+  void testOfUnknownAndDuplicateIds() {
+    Map<Long, Product> stored = new LinkedHashMap<>();
+    stored.put(1L, product(1L, "Чай", "100.00", 1));
+    Product foreign = product(42L, "Бургер", "180.00", 1);
+    Product duplicate = product(1L, "Чай", "100.00", 1);
+
+    OrderLineMerge merge = OrderLineMerge.of(stored, List.of(product(1L, "Чай", "100.00", 1), duplicate, foreign));
+
+    assertEquals(List.of(duplicate, foreign), merge.getInserted());
+    assertTrue(merge.getUpdated().isEmpty());
+    assertTrue(merge.getDeletedIds().isEmpty());
+    assertEquals(List.of(1L), OrderLineMerge.of(stored, null).getDeletedIds());
+  }
+
+  private static Product product(Long id, String name, String price, int quantity, Long... categoryIds) {
+    List<ProductCategory> categories = Arrays.stream(categoryIds)
+            .map(categoryId -> new ProductCategory(categoryId, null, null, null))
+            .toList();
+    return new Product(id, name, new BigDecimal(price), quantity, true, categories);
+  }
+}
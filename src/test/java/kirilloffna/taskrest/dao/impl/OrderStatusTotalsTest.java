@@ -0,0 +1,203 @@
+package kirilloffna.taskrest.dao.impl;
+
+import kirilloffna.taskrest.model.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_CURRENT_TRANSACTION_ID;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ORDER_TOTALS_BY_STATUS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки итогов заказов по статусам {@link OrderStatusTotals}.
+ */
+class OrderStatusTotalsTest {
+
+  private final Connection connection = mock(Connection.class);
+  private final PreparedStatement preparedStatement = mock(PreparedStatement.class);
+  private final ResultSet resultSet = mock(ResultSet.class);
+
+  /**
+   * Сбрасывает итоги и настраивает запрос с GROUP BY, возвращающий два заказа в статусе «Принят» и снимок,
+   * в котором транзакция 102 ещё выполняется.
+   */
+  @BeforeEach
+  void setUp() throws SQLException {
+    OrderStatusTotals.invalidate();
+    when(connection.prepareStatement(SELECT_ORDER_TOTALS_BY_STATUS)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.getString("snapshot")).thenReturn("100:105:102");
+    when(resultSet.getString("order_status")).thenReturn(OrderStatus.Принят.name());
+    when(resultSet.getLong("order_count")).thenReturn(2L);
+    when(resultSet.getBigDecimal("total_amount")).thenReturn(new BigDecimal("300.00"));
+  }
+
+  /**
+   * Сбрасывает итоги, чтобы не влиять на другие тесты.
+   */
+  @AfterEach
+  void tearDown() {
+    OrderStatusTotals.invalidate();
+  }
+
+  /**
+   * Тестирует метод {@link OrderStatusTotals#commit(Connection, OrderStatusTotals.Change)}.
+   * Проверяет, что создание, смена статуса и удаление заказа переносят количество и сумму между статусами.
+   */
+  @Test
+  void testCommitAppliesChanges() throws SQLException {
+    OrderStatusTotals.preload(connection);
+
+    OrderStatusTotals.commit(connection, OrderStatusTotals.Change.created(OrderStatus.Принят, new BigDecimal("50")));
+    OrderStatusTotals.commit(connection, OrderStatusTotals.Change.updated(OrderStatus.Принят, new BigDecimal("150.00"),
+            OrderStatus.Готовится, new BigDecimal("175.00")));
+    OrderStatusTotals.commit(connection, OrderStatusTotals.Change.deleted(OrderStatus.Принят, new BigDecimal("50.00")));
+
+    Map<OrderStatus, OrderStatusTotals.Total> totals = OrderStatusTotals.get().orElseThrow();
+    assertEquals(new OrderStatusTotals.Total(1, new BigDecimal("150.00")), totals.get(OrderStatus.Принят));
+    assertEquals(new OrderStatusTotals.Total(1, new BigDecimal("175.00")), totals.get(OrderStatus.Готовится));
+    assertEquals(new OrderStatusTotals.Total(0, BigDecimal.ZERO), totals.get(OrderStatus.Готов));
+    verify(connection, times(3)).commit();
+  }
+
+  /**
+   * Тестирует фиксацию изменения до загрузки итогов и при ошибке фиксации.
+   * Проверяет, что итоги не загружаются частично и не меняются, если транзакция не зафиксирована.
+   */
+  @Test
+  void testCommitWithoutTotalsOrFailedCommit() throws SQLException {
+    OrderStatusTotals.commit(connection, OrderStatusTotals.Change.created(OrderStatus.Принят, BigDecimal.TEN));
+    assertTrue(OrderStatusTotals.get().isEmpty());
+
+    OrderStatusTotals.preload(connection);
+    doThrow(new SQLException("commit failed")).when(connection).commit();
+
+    assertThrows(SQLException.class, () -> OrderStatusTotals.commit(connection,
+            OrderStatusTotals.Change.created(OrderStatus.Принят, BigDecimal.TEN)));
+    assertEquals(2, OrderStatusTotals.get().orElseThrow().get(OrderStatus.Принят).count());
+  }
+
+  /**
+   * Тестирует метод {@link OrderStatusTotals#reconcile(Connection)}.
+   * Проверяет, что расхождение с базой данных исправляется и учитывается в счётчике исправлений.
+   */
+  @Test
+  void testReconcileCorrectsDrift() throws SQLException {
+    OrderStatusTotals.preload(connection);
+    OrderStatusTotals.commit(connection, OrderStatusTotals.Change.created(OrderStatus.Готов, BigDecimal.TEN));
+    long corrections = OrderStatusTotals.getCorrections();
+    when(resultSet.next()).thenReturn(true, false);
+
+    OrderStatusTotals.reconcile(connection);
+
+    assertEquals(corrections + 1, OrderStatusTotals.getCorrections());
+    assertEquals(new OrderStatusTotals.Total(0, BigDecimal.ZERO),
+            OrderStatusTotals.get().orElseThrow().get(OrderStatus.Готов));
+  }
+
+  /**
+   * Тестирует метод {@link OrderStatusTotals#refresh(Connection)}.
+   * Проверяет, что незагруженные итоги не загружаются, а загруженные перечитываются без учёта расхождения.
+   */
+  @Test
+  void testRefresh() throws SQLException {
+    OrderStatusTotals.refresh(connection);
+    assertTrue(OrderStatusTotals.get().isEmpty());
+
+    OrderStatusTotals.preload(connection);
+    OrderStatusTotals.commit(connection, OrderStatusTotals.Change.created(OrderStatus.Принят, BigDecimal.TEN));
+    when(resultSet.next()).thenReturn(true, false);
+    long corrections = OrderStatusTotals.getCorrections();
+
+    OrderStatusTotals.refresh(connection);
+
+    assertEquals(new OrderStatusTotals.Total(2, new BigDecimal("300.00")),
+            OrderStatusTotals.get().orElseThrow().get(OrderStatus.Принят));
+    assertEquals(corrections, OrderStatusTotals.getCorrections());
+    verify(preparedStatement, times(2)).executeQuery();
+  }
+
+  /**
+   * Тестирует метод {@link OrderStatusTotals#applyRemote(long, OrderStatusTotals.Change)}.
+   * Проверяет, что изменения транзакций, видимых запросу загрузки, пропускаются, а остальные применяются к итогам
+   * без обращения к базе данных.
+   */
+  @Test
+  void testApplyRemote() throws SQLException {
+    OrderStatusTotals.Change change = OrderStatusTotals.Change.created(OrderStatus.Принят, BigDecimal.TEN);
+    assertFalse(OrderStatusTotals.applyRemote(110, change));
+
+    OrderStatusTotals.preload(connection);
+
+    assertFalse(OrderStatusTotals.applyRemote(99, change));
+    assertFalse(OrderStatusTotals.applyRemote(103, change));
+    assertTrue(OrderStatusTotals.applyRemote(102, change));
+    assertTrue(OrderStatusTotals.applyRemote(105, OrderStatusTotals.Change.updated(OrderStatus.Принят, BigDecimal.TEN,
+            OrderStatus.Готов, BigDecimal.TEN)));
+
+    Map<OrderStatus, OrderStatusTotals.Total> totals = OrderStatusTotals.get().orElseThrow();
+    assertEquals(new OrderStatusTotals.Total(2, new BigDecimal("300.00")), totals.get(OrderStatus.Принят));
+    assertEquals(new OrderStatusTotals.Total(1, BigDecimal.TEN), totals.get(OrderStatus.Готов));
+    verify(preparedStatement, times(1)).executeQuery();
+  }
+
+  /**
+   * Тестирует загрузку итогов без заказов: запрос возвращает одну строку только со снимком.
+   */
+  @Test
+  void testPreloadWithoutOrders() throws SQLException {
+    when(resultSet.getString("order_status")).thenReturn(null);
+
+    OrderStatusTotals.preload(connection);
+
+    assertEquals(new OrderStatusTotals.Total(0, BigDecimal.ZERO),
+            OrderStatusTotals.get().orElseThrow().get(OrderStatus.Принят));
+    assertFalse(OrderStatusTotals.applyRemote(101, OrderStatusTotals.Change.created(OrderStatus.Принят, BigDecimal.TEN)));
+  }
+
+  /**
+   * Тестирует изменения, зафиксированные во время запроса {@link OrderStatusTotals#reconcile(Connection)}.
+   * Проверяет, что запрос выполняется без блокировки фиксации, изменение транзакции, не видимой в снимке запроса,
+   * применяется к его результату, а видимой — не учитывается дважды.
+   */
+  @Test
+  void testReconcileReplaysChangesCommittedDuringQuery() throws SQLException {
+    OrderStatusTotals.preload(connection);
+    Connection orderConnection = mock(Connection.class);
+    PreparedStatement transactionStatement = mock(PreparedStatement.class);
+    ResultSet transactionId = mock(ResultSet.class);
+    when(orderConnection.prepareStatement(SELECT_CURRENT_TRANSACTION_ID)).thenReturn(transactionStatement);
+    when(transactionStatement.executeQuery()).thenReturn(transactionId);
+    when(transactionId.next()).thenReturn(true);
+    when(transactionId.getLong(1)).thenReturn(99L, 102L);
+    when(resultSet.next()).thenReturn(true, false);
+    when(preparedStatement.executeQuery()).thenAnswer(invocation -> {
+      OrderStatusTotals.commit(orderConnection, OrderStatusTotals.Change.created(OrderStatus.Принят, BigDecimal.ONE));
+      OrderStatusTotals.commit(orderConnection, OrderStatusTotals.Change.created(OrderStatus.Готов, BigDecimal.TEN));
+      OrderStatusTotals.applyRemote(106, OrderStatusTotals.Change.created(OrderStatus.Готов, BigDecimal.ONE));
+      return resultSet;
+    });
+    long corrections = OrderStatusTotals.getCorrections();
+
+    OrderStatusTotals.reconcile(connection);
+
+    Map<OrderStatus, OrderStatusTotals.Total> totals = OrderStatusTotals.get().orElseThrow();
+    assertEquals(new OrderStatusTotals.Total(2, new BigDecimal("300.00")), totals.get(OrderStatus.Принят));
+    assertEquals(new OrderStatusTotals.Total(2, new BigDecimal("11.00")), totals.get(OrderStatus.Готов));
+    assertEquals(corrections + 1, OrderStatusTotals.getCorrections());
+    verify(orderConnection, times(2)).commit();
+
+    OrderStatusTotals.commit(orderConnection, OrderStatusTotals.Change.created(OrderStatus.Готов, BigDecimal.ONE));
+    verify(transactionStatement, times(2)).executeQuery();
+  }
+}
@@ -1,26 +1,55 @@
 package kirilloffna.taskrest.dao.impl;
 
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.dto.ProductFilter;
 import kirilloffna.taskrest.model.CategoryType;
 import kirilloffna.taskrest.model.Product;
 import kirilloffna.taskrest.model.ProductCategory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
+import java.io.BufferedReader;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static kirilloffna.taskrest.HelperTest.loadCategories;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.ALLOCATE_PRODUCT_IDS;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.COPY_PRODUCTS;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.COPY_PRODUCT_CATEGORIES;
 import static kirilloffna.taskrest.dao.impl.DaoQueries.DELETE_PRODUCT_PRODUCT_CATEGORY_SQL;
-import static kirilloffna.taskrest.dao.impl.DaoQueries.FIND_PRODUCT_CATEGORY_BY_PRODUCT_ID_SQL;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.FILTER_PRODUCTS_BY_AVAILABLE;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.FILTER_PRODUCTS_BY_CATEGORY_TYPE;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.FILTER_PRODUCTS_BY_MAX_PRICE;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.FIND_PRODUCT_CATEGORIES_BY_PRODUCT_IDS_SQL;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.NOTIFY_CHANGE;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.ORDER_FILTERED_PRODUCTS;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ALL_CATEGORY_IDS;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_FILTERED_PRODUCTS;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SAVE_PRODUCT_CATEGORY_PRODUCT_SQL;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCTS_PAGE;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.STREAM_ALL_PRODUCTS_WITH_CATEGORIES;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.TOUCH_ORDER_DETAIL_BY_PRODUCT_ID;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.UPDATE_PRODUCT_SQL;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -33,6 +62,7 @@ class ProductDAOImplTest {
   private final Connection connection = mock(Connection.class);
   private final PreparedStatement preparedStatement = mock(PreparedStatement.class);
   private final ResultSet resultSet = mock(ResultSet.class);
+  private final PreparedStatement notifyStatement = mock(PreparedStatement.class);
   private final ProductDAOImpl productDAO = new ProductDAOImpl();
 
   private Product product;
@@ -41,7 +71,10 @@ class ProductDAOImplTest {
    * Настраивает тестовые данные перед выполнением каждого теста.
    */
   @BeforeEach
-  void setUp() {
+  void setUp() throws SQLException {
+    loadCategories(new ProductCategory(1L, "Category", CategoryType.Основное_блюдо, null),
+            new ProductCategory(2L, "Category 2", CategoryType.Десерты, null));
+
     product = new Product();
     product.setId(1L);
     product.setName("Test Product");
@@ -67,6 +100,7 @@ class ProductDAOImplTest {
     product.setProductCategories(new ArrayList<>());
 
     when(connection.prepareStatement(anyString(), anyInt())).thenReturn(preparedStatement);
+    when(connection.prepareStatement(NOTIFY_CHANGE)).thenReturn(notifyStatement);
     when(preparedStatement.executeUpdate()).thenReturn(1);
     when(preparedStatement.getGeneratedKeys()).thenReturn(resultSet);
     when(resultSet.next()).thenReturn(true);
@@ -76,6 +110,7 @@ class ProductDAOImplTest {
 
     verify(preparedStatement, times(1)).executeUpdate();
     assertNotNull(product.getId());
+    verify(notifyStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.PRODUCT, "1"));
   }
 
   /**
@@ -97,12 +132,11 @@ class ProductDAOImplTest {
 
     ResultSet categoryResultSet = mock(ResultSet.class);
     PreparedStatement categoryPreparedStatement = mock(PreparedStatement.class);
-    when(connection.prepareStatement(FIND_PRODUCT_CATEGORY_BY_PRODUCT_ID_SQL)).thenReturn(categoryPreparedStatement);
+    when(connection.prepareStatement(FIND_PRODUCT_CATEGORIES_BY_PRODUCT_IDS_SQL)).thenReturn(categoryPreparedStatement);
     when(categoryPreparedStatement.executeQuery()).thenReturn(categoryResultSet);
     when(categoryResultSet.next()).thenReturn(true).thenReturn(false);
-    when(categoryResultSet.getLong("id")).thenReturn(productCategory.getId());
-    when(categoryResultSet.getString("name")).thenReturn(productCategory.getName());
-    when(categoryResultSet.getString("type")).thenReturn(productCategory.getType().toString());
+    when(categoryResultSet.getLong("product_id")).thenReturn(product.getId());
+    when(categoryResultSet.getLong("category_id")).thenReturn(productCategory.getId());
 
     Optional<Product> foundProduct = productDAO.findById(1L, connection);
 
@@ -116,37 +150,81 @@ class ProductDAOImplTest {
 
   /**
    * Тестирует метод {@link ProductDAOImpl#update(Product, Connection)}.
-   * Проверяет, что метод {@link PreparedStatement#executeUpdate()} вызывается дважды.
+   * Проверяет, что продукт и версия его заказа обновляются одним запросом с RETURNING,
+   * связи с категориями сохраняются одним пакетом, а возвращаются значения из базы данных.
    */
   @Test
   void testUpdateProduct() throws SQLException {
-    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
-    when(preparedStatement.executeUpdate()).thenReturn(1);
+    PreparedStatement categoriesStatement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(UPDATE_PRODUCT_SQL)).thenReturn(preparedStatement);
+    when(connection.prepareStatement(SAVE_PRODUCT_CATEGORY_PRODUCT_SQL)).thenReturn(categoriesStatement);
+    when(connection.prepareStatement(NOTIFY_CHANGE)).thenReturn(notifyStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true);
+    when(resultSet.getLong("id")).thenReturn(1L);
+    when(resultSet.getString("name")).thenReturn("Test Product");
+    when(resultSet.getBigDecimal("price")).thenReturn(new BigDecimal("99.99"));
+    when(resultSet.getInt("quantity")).thenReturn(10);
+    when(resultSet.getBoolean("available")).thenReturn(true);
 
-    productDAO.update(product, connection);
+    Optional<Product> updated = productDAO.update(product, connection);
 
-    verify(preparedStatement, times(2)).executeUpdate();
+    assertTrue(updated.isPresent());
+    assertEquals(new BigDecimal("99.99"), updated.get().getPrice());
+    assertEquals(product.getProductCategories(), updated.get().getProductCategories());
+    verify(connection, never()).prepareStatement(TOUCH_ORDER_DETAIL_BY_PRODUCT_ID);
+    verify(preparedStatement, never()).executeUpdate();
+    verify(categoriesStatement, times(1)).addBatch();
+    verify(categoriesStatement, times(1)).executeBatch();
+    verify(notifyStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.PRODUCT, "1"));
+    verify(connection).commit();
+  }
+
+  /**
+   * Тестирует метод {@link ProductDAOImpl#update(Product, Connection)} для несуществующего продукта.
+   * Проверяет, что возвращается пустой Optional и категории не сохраняются.
+   */
+  @Test
+  void testUpdateProductNotFound() throws SQLException {
+    when(connection.prepareStatement(UPDATE_PRODUCT_SQL)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(false);
+
+    Optional<Product> updated = productDAO.update(product, connection);
+
+    assertTrue(updated.isEmpty());
+    verify(connection, never()).prepareStatement(SAVE_PRODUCT_CATEGORY_PRODUCT_SQL);
+    verify(connection, never()).prepareStatement(NOTIFY_CHANGE);
+    verify(connection).commit();
   }
 
   /**
    * Тестирует метод {@link ProductDAOImpl#deleteById(Long, Connection)}.
-   * Проверяет, что метод {@link PreparedStatement#executeUpdate()} вызывается дважды.
+   * Проверяет, что метод {@link PreparedStatement#executeUpdate()} вызывается дважды, а версия заказа продукта
+   * обновляется до удаления.
    */
   @Test
   void testDeleteById() throws SQLException {
     PreparedStatement statement = mock(PreparedStatement.class);
+    PreparedStatement touchStatement = mock(PreparedStatement.class);
 
     when(connection.prepareStatement(DELETE_PRODUCT_PRODUCT_CATEGORY_SQL)).thenReturn(statement);
+    when(connection.prepareStatement(TOUCH_ORDER_DETAIL_BY_PRODUCT_ID)).thenReturn(touchStatement);
+    when(connection.prepareStatement(NOTIFY_CHANGE)).thenReturn(notifyStatement);
     when(statement.executeUpdate()).thenReturn(1);
 
     productDAO.deleteById(1L, connection);
 
     verify(statement, times(2)).executeUpdate();
+    verify(touchStatement).setLong(1, 1L);
+    verify(touchStatement).executeUpdate();
+    verify(notifyStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.PRODUCT, "1"));
   }
 
   /**
    * Тестирует метод {@link ProductDAOImpl#findAll(Connection)}.
-   * Проверяет, что метод возвращает список продуктов, и что этот список не пустой.
+   * Проверяет, что метод возвращает список продуктов, и что этот список не пустой,
+   * а категории всех продуктов загружаются одним дополнительным запросом.
    */
   @Test
   void testFindAll() throws SQLException {
@@ -163,5 +241,141 @@ class ProductDAOImplTest {
 
     assertFalse(products.isEmpty());
     assertEquals(1, products.size());
+    verify(preparedStatement, times(2)).executeQuery();
+  }
+
+  /**
+   * Тестирует метод {@link ProductDAOImpl#findPage(Long, int, Connection)}.
+   * Проверяет, что курсор и лимит передаются в запрос, а результат содержит продукты страницы.
+   */
+  @Test
+  void testFindPage() throws SQLException {
+    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true).thenReturn(false);
+    when(resultSet.getLong("id")).thenReturn(11L);
+    when(resultSet.getString("name")).thenReturn("Test Product");
+    when(resultSet.getBigDecimal("price")).thenReturn(BigDecimal.valueOf(99.99));
+
+    List<Product> products = productDAO.findPage(10L, 5, connection);
+
+    verify(connection).prepareStatement(SELECT_PRODUCTS_PAGE);
+    verify(preparedStatement).setLong(1, 10L);
+    verify(preparedStatement).setInt(2, 5);
+    assertEquals(1, products.size());
+    assertEquals(11L, products.get(0).getId());
+  }
+
+  /**
+   * Тестирует метод {@link ProductDAOImpl#findFiltered(ProductFilter, Long, Integer, Connection)}.
+   * Проверяет, что в запрос попадают условия только заданных полей фильтра, а значения передаются параметрами.
+   */
+  @Test
+  void testFindFiltered() throws SQLException {
+    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true).thenReturn(false);
+    when(resultSet.getLong("id")).thenReturn(6L);
+    when(resultSet.getString("name")).thenReturn("Чай");
+    when(resultSet.getBigDecimal("price")).thenReturn(BigDecimal.valueOf(100));
+    ProductFilter filter = new ProductFilter(CategoryType.Напитки, true, null, BigDecimal.valueOf(150), null);
+
+    List<Product> products = productDAO.findFiltered(filter, null, 51, connection);
+
+    verify(connection).prepareStatement(SELECT_FILTERED_PRODUCTS + FILTER_PRODUCTS_BY_CATEGORY_TYPE
+            + FILTER_PRODUCTS_BY_AVAILABLE + FILTER_PRODUCTS_BY_MAX_PRICE + ORDER_FILTERED_PRODUCTS);
+    verify(preparedStatement).setObject(1, 0L);
+    verify(preparedStatement).setObject(2, "Напитки");
+    verify(preparedStatement).setObject(3, true);
+    verify(preparedStatement).setObject(4, BigDecimal.valueOf(150));
+    verify(preparedStatement).setInt(5, 51);
+    assertEquals(1, products.size());
+    assertEquals(6L, products.get(0).getId());
+  }
+
+  /**
+   * Тестирует метод {@link ProductDAOImpl#toLikePrefix(String)}.
+   * Проверяет перевод в нижний регистр и экранирование символов шаблона LIKE.
+   */
+  @Test
+  void testToLikePrefix() {
+    assertEquals("кока%", ProductDAOImpl.toLikePrefix("КоКа"));
+    assertEquals("50\\%\\_\\\\%", ProductDAOImpl.toLikePrefix("50%_\\"));
+  }
+
+  /**
+   * Тестирует метод {@link ProductDAOImpl#streamAll(int, RowCallback, Connection)}.
+   * Проверяет, что строки одного продукта собираются в один объект с категориями,
+   * а запрос выполняется с курсором вне режима autocommit.
+   */
+  @Test
+  void testStreamAll() throws Exception {
+    when(connection.prepareStatement(STREAM_ALL_PRODUCTS_WITH_CATEGORIES)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, true, true, false);
+    // Идентификатор читается при группировке строк и ещё раз при заполнении нового продукта.
+    when(resultSet.getLong("id")).thenReturn(1L, 1L, 1L, 2L, 2L);
+    when(resultSet.getLong("category_id")).thenReturn(1L, 2L, 0L);
+    when(resultSet.wasNull()).thenReturn(false, false, true);
+
+    List<Product> products = new ArrayList<>();
+    productDAO.streamAll(100, products::add, connection);
+
+    verify(connection).setAutoCommit(false);
+    verify(preparedStatement).setFetchSize(100);
+    verify(connection).commit();
+    assertEquals(2, products.size());
+    assertEquals(2, products.get(0).getProductCategories().size());
+    assertTrue(products.get(1).getProductCategories().isEmpty());
+  }
+
+  /**
+   * Тестирует метод {@link ProductDAOImpl#findCategoryIds(Connection)}.
+   */
+  @Test
+  void testFindCategoryIds() throws SQLException {
+    when(connection.prepareStatement(SELECT_ALL_CATEGORY_IDS)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, true, false);
+    when(resultSet.getLong(1)).thenReturn(1L, 2L);
+
+    assertEquals(Set.of(1L, 2L), productDAO.findCategoryIds(connection));
+  }
+
+  /**
+   * Тестирует метод {@link ProductDAOImpl#copyAll(Iterator, int, Connection)}.
+   * Проверяет, что продукты загружаются порциями командой COPY с заранее выделенными идентификаторами,
+   * а связи с категориями загружаются только для порций, в которых они есть.
+   */
+  @Test
+  void testCopyAll() throws Exception {
+    PGConnection pgConnection = mock(PGConnection.class);
+    CopyManager copyManager = mock(CopyManager.class);
+    when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+    when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+    when(connection.prepareStatement(ALLOCATE_PRODUCT_IDS)).thenReturn(preparedStatement);
+    when(connection.prepareStatement(NOTIFY_CHANGE)).thenReturn(notifyStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true);
+    when(resultSet.getLong(1)).thenReturn(10L, 11L, 12L);
+
+    ProductCategory category = new ProductCategory(1L, null, null, null);
+    List<Product> products = List.of(
+            new Product(null, "Салат, \"сезонный\"", new BigDecimal("350.50"), 5, true, List.of(category)),
+            new Product(null, "Суп", new BigDecimal("200.00"), 1, true, List.of()),
+            new Product(null, "Чай", new BigDecimal("90.00"), 10, false, List.of()));
+
+    long imported = productDAO.copyAll(products.iterator(), 2, connection);
+
+    assertEquals(3, imported);
+    verify(preparedStatement).setInt(1, 2);
+    verify(preparedStatement).setInt(1, 1);
+    ArgumentCaptor<Reader> rows = ArgumentCaptor.forClass(Reader.class);
+    verify(copyManager, times(2)).copyIn(eq(COPY_PRODUCTS), rows.capture());
+    verify(copyManager, times(1)).copyIn(eq(COPY_PRODUCT_CATEGORIES), any(Reader.class));
+    assertEquals("10,\"Салат, \"\"сезонный\"\"\",350.50,5,true\n11,\"Суп\",200.00,1,true\n",
+            new BufferedReader(rows.getAllValues().get(0)).lines().map(line -> line + "\n").collect(Collectors.joining()));
+    verify(notifyStatement).setString(2, ChangeNotifications.format(ChangeNotifications.Kind.PRODUCT, "*"));
+    verify(connection).commit();
   }
-}
\ No newline at end of file
+}
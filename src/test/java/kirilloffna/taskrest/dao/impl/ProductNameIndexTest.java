@@ -0,0 +1,161 @@
+package kirilloffna.taskrest.dao.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCT_NAMES;
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCT_NAMES_BY_IDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки индекса названий продуктов {@link ProductNameIndex}.
+ */
+class ProductNameIndexTest {
+
+  private final Connection connection = mock(Connection.class);
+  private final PreparedStatement preparedStatement = mock(PreparedStatement.class);
+  private final ResultSet resultSet = mock(ResultSet.class);
+
+  /**
+   * Сбрасывает индекс и настраивает запрос названий, возвращающий три продукта, два из них с одним названием.
+   */
+  @BeforeEach
+  void setUp() throws SQLException {
+    ProductNameIndex.invalidate();
+    when(connection.prepareStatement(SELECT_PRODUCT_NAMES)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, true, true, false);
+    when(resultSet.getLong("id")).thenReturn(1L, 2L, 3L);
+    when(resultSet.getString("name")).thenReturn("Кока-Кола", "Кофе", "Кофе");
+  }
+
+  /**
+   * Сбрасывает индекс, чтобы не влиять на другие тесты.
+   */
+  @AfterEach
+  void tearDown() {
+    ProductNameIndex.invalidate();
+  }
+
+  /**
+   * Тестирует метод {@link ProductNameIndex#suggest(String, int)}.
+   * Проверяет, что до загрузки индекс ничего не возвращает, а после загрузки находит различные названия
+   * без учёта регистра в алфавитном порядке с ограничением количества.
+   */
+  @Test
+  void testSuggest() throws SQLException {
+    assertTrue(ProductNameIndex.suggest("ко", 10).isEmpty());
+
+    ProductNameIndex.preload(connection);
+    ProductNameIndex.preload(connection);
+
+    assertEquals(List.of("Кока-Кола", "Кофе"), ProductNameIndex.suggest("КО", 10).orElseThrow());
+    assertEquals(List.of("Кофе"), ProductNameIndex.suggest("коф", 10).orElseThrow());
+    assertEquals(List.of("Кока-Кола"), ProductNameIndex.suggest("к", 1).orElseThrow());
+    assertEquals(List.of(), ProductNameIndex.suggest("чай", 10).orElseThrow());
+    assertEquals(2, ProductNameIndex.size());
+    verify(preparedStatement, times(1)).executeQuery();
+  }
+
+  /**
+   * Тестирует методы {@link ProductNameIndex#put(long, String)} и {@link ProductNameIndex#remove}.
+   * Проверяет, что название удаляется из индекса только вместе с последним продуктом с этим названием,
+   * а переименование заменяет старое название новым.
+   */
+  @Test
+  void testPutAndRemove() throws SQLException {
+    ProductNameIndex.preload(connection);
+
+    ProductNameIndex.put(4L, "Компот");
+    ProductNameIndex.put(1L, "Морс");
+    ProductNameIndex.remove(List.of(2L));
+
+    assertEquals(List.of("Компот", "Кофе"), ProductNameIndex.suggest("ко", 10).orElseThrow());
+    assertEquals(List.of("Морс"), ProductNameIndex.suggest("м", 10).orElseThrow());
+
+    ProductNameIndex.remove(List.of(3L, 4L));
+
+    assertEquals(List.of(), ProductNameIndex.suggest("ко", 10).orElseThrow());
+    assertEquals(1, ProductNameIndex.size());
+  }
+
+  /**
+   * Тестирует метод {@link ProductNameIndex#refresh(java.util.Collection, Connection)}.
+   * Проверяет, что названия перечитываются одним запросом, а продукты, которых нет в базе данных, удаляются.
+   */
+  @Test
+  void testRefresh() throws SQLException {
+    ProductNameIndex.preload(connection);
+    PreparedStatement namesStatement = mock(PreparedStatement.class);
+    ResultSet names = mock(ResultSet.class);
+    when(connection.prepareStatement(SELECT_PRODUCT_NAMES_BY_IDS)).thenReturn(namesStatement);
+    when(namesStatement.executeQuery()).thenReturn(names);
+    when(names.next()).thenReturn(true, false);
+    when(names.getLong("id")).thenReturn(1L);
+    when(names.getString("name")).thenReturn("Морс");
+
+    ProductNameIndex.refresh(List.of(1L, 2L), connection);
+
+    assertEquals(List.of("Кофе"), ProductNameIndex.suggest("ко", 10).orElseThrow());
+    assertEquals(List.of("Морс"), ProductNameIndex.suggest("м", 10).orElseThrow());
+    verify(namesStatement, times(1)).executeQuery();
+  }
+
+  /**
+   * Тестирует метод {@link ProductNameIndex#sync(java.util.Collection, Connection)}.
+   * Проверяет, что после фиксации изменения название читается из базы данных: устаревшее название, применённое
+   * позже, заменяется зафиксированным последним. Транзакция чтения завершается.
+   */
+  @Test
+  void testSync() throws SQLException {
+    ProductNameIndex.preload(connection);
+    PreparedStatement namesStatement = mock(PreparedStatement.class);
+    ResultSet names = mock(ResultSet.class);
+    when(connection.prepareStatement(SELECT_PRODUCT_NAMES_BY_IDS)).thenReturn(namesStatement);
+    when(namesStatement.executeQuery()).thenReturn(names);
+    when(names.next()).thenReturn(true, false);
+    when(names.getLong("id")).thenReturn(1L);
+    when(names.getString("name")).thenReturn("Морс");
+    ProductNameIndex.put(1L, "Компот");
+
+    ProductNameIndex.sync(List.of(1L), connection);
+
+    assertEquals(List.of("Морс"), ProductNameIndex.suggest("м", 10).orElseThrow());
+    assertEquals(List.of("Кофе"), ProductNameIndex.suggest("ко", 10).orElseThrow());
+    verify(connection).commit();
+  }
+
+  /**
+   * Тестирует метод {@link ProductNameIndex#sync(java.util.Collection, Connection)} при ошибке чтения.
+   * Проверяет, что индекс сбрасывается, а ошибка не передаётся вызывающему после фиксации изменения.
+   */
+  @Test
+  void testSyncFailureResetsIndex() throws SQLException {
+    ProductNameIndex.preload(connection);
+    when(connection.prepareStatement(SELECT_PRODUCT_NAMES_BY_IDS)).thenThrow(new SQLException("connection is closed"));
+
+    ProductNameIndex.sync(List.of(1L), connection);
+
+    assertTrue(ProductNameIndex.suggest("ко", 10).isEmpty());
+  }
+
+  /**
+   * Тестирует {@link ProductNameIndex#put(long, String)} до загрузки индекса.
+   * Проверяет, что изменение не загружает индекс частично: загрузка прочитает все названия из базы данных.
+   */
+  @Test
+  void testPutBeforeLoadIsIgnored() {
+    ProductNameIndex.put(4L, "Компот");
+
+    assertTrue(ProductNameIndex.suggest("ко", 10).isEmpty());
+    assertEquals(0, ProductNameIndex.size());
+  }
+}
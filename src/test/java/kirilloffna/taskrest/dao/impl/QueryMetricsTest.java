@@ -0,0 +1,49 @@
+package kirilloffna.taskrest.dao.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для проверки статистики запросов {@link QueryMetrics}.
+ */
+class QueryMetricsTest {
+
+  /**
+   * Тестирует метод {@link QueryMetrics#record(String, long, long)}.
+   * Проверяет, что выполнение учитывается для константы запроса, а шаблоны лог-сообщений не регистрируются.
+   */
+  @Test
+  void testRecord() {
+    QueryMetrics.Query query = find("SELECT_ALL_CATEGORY_IDS");
+    long count = query.getLatency().snapshot().count();
+    long rows = query.getRows().sum();
+
+    QueryMetrics.record(SELECT_ALL_CATEGORY_IDS, System.nanoTime(), 3);
+    QueryMetrics.record("SELECT 1", System.nanoTime(), 1);
+
+    assertEquals(count + 1, query.getLatency().snapshot().count());
+    assertEquals(rows + 3, query.getRows().sum());
+    assertTrue(QueryMetrics.all().stream().noneMatch(q -> q.getName().equals("PRODUCT_DAO_EXECUTE_SQL")));
+  }
+
+  /**
+   * Тестирует метод {@link QueryMetrics#recordBatch(String, long, int[])}.
+   * Проверяет, что строки суммируются по результатам пакета без учёта отрицательных кодов драйвера.
+   */
+  @Test
+  void testRecordBatch() {
+    QueryMetrics.Query query = find("INSERT_PRODUCT_CATEGORY");
+    long rows = query.getRows().sum();
+
+    QueryMetrics.recordBatch(INSERT_PRODUCT_CATEGORY, System.nanoTime(), new int[]{1, 1, -2});
+    QueryMetrics.recordBatch(INSERT_PRODUCT_CATEGORY, System.nanoTime(), null);
+
+    assertEquals(rows + 2, query.getRows().sum());
+  }
+
+  private static QueryMetrics.Query find(String name) {
+    return QueryMetrics.all().stream().filter(q -> q.getName().equals(name)).findFirst().orElseThrow();
+  }
+}
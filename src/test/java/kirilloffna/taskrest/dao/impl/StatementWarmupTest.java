@@ -0,0 +1,47 @@
+package kirilloffna.taskrest.dao.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static kirilloffna.taskrest.dao.impl.DaoQueries.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки прогрева соединения {@link StatementWarmup}.
+ */
+class StatementWarmupTest {
+
+  private final Connection connection = mock(Connection.class);
+  private final PreparedStatement preparedStatement = mock(PreparedStatement.class);
+
+  /**
+   * Тестирует метод {@link StatementWarmup#warmUp(Connection)}.
+   * Проверяет, что запросы выполняются с теми же типами параметров, что и в DAO, а транзакция откатывается.
+   */
+  @Test
+  void testWarmUp() throws SQLException {
+    when(connection.getAutoCommit()).thenReturn(true);
+    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(connection.createArrayOf(eq("bigint"), any())).thenReturn(mock(Array.class));
+
+    StatementWarmup.warmUp(connection);
+
+    verify(connection).prepareStatement(SELECT_PRODUCT_BY_ID);
+    verify(connection).prepareStatement(SELECT_PRODUCTS_PAGE);
+    verify(connection).prepareStatement(SELECT_PRODUCTS_WITH_CATEGORIES_BY_ORDER_IDS);
+    verify(connection).prepareStatement(UPDATE_ORDER_DETAIL);
+    verify(connection, never()).prepareStatement(INSERT_PRODUCT);
+    verify(connection).prepareStatement(SELECT_PRODUCT_VERSION);
+    verify(connection).prepareStatement(UPDATE_ORDER_LINE);
+    verify(preparedStatement, times(23)).execute();
+    verify(preparedStatement, times(2)).setInt(2, 1);
+    verify(connection).rollback();
+    verify(connection).setAutoCommit(true);
+  }
+}
@@ -1,11 +1,19 @@
 package kirilloffna.taskrest.service.impl;
 
 import kirilloffna.taskrest.dao.OrderDetailDAO;
+import kirilloffna.taskrest.dao.OrderDetailUpdate;
+import kirilloffna.taskrest.dao.ProductDAO;
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.dao.impl.OrderStatusTotals;
 import kirilloffna.taskrest.dto.OrderDetailDTO;
+import kirilloffna.taskrest.dto.OrderStatusTotalDTO;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.mapper.OrderDetailMapper;
 import kirilloffna.taskrest.model.OrderDetail;
 import kirilloffna.taskrest.model.OrderStatus;
+import kirilloffna.taskrest.model.Product;
 import kirilloffna.taskrest.utils.ConnectionProvider;
+import kirilloffna.taskrest.utils.OrderStatusFeed;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,12 +22,18 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_ORDER_TOTALS_BY_STATUS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -33,7 +47,12 @@ class OrderDetailServiceImplTest {
 
   private final OrderDetailDAO orderDetailDAO = mock(OrderDetailDAO.class);
 
-  private final OrderDetailServiceImpl orderDetailService = new OrderDetailServiceImpl(orderDetailDAO);
+  private final ProductDAO productDAO = mock(ProductDAO.class);
+
+  private final ProductServiceImpl productService = new ProductServiceImpl(productDAO);
+
+  private final OrderDetailServiceImpl orderDetailService =
+          new OrderDetailServiceImpl(orderDetailDAO, productService::evictCachedProducts);
 
   /**
    * Настраивает моки и тестовые данные перед выполнением каждого теста.
@@ -77,23 +96,56 @@ class OrderDetailServiceImplTest {
     assertEquals(orderDetailDTO, result.get());
   }
 
+  /**
+   * Тестирует метод {@link OrderDetailServiceImpl#getOrderDetailById(Long)} для заказа, удалённого после проверки
+   * версии. Проверяет, что возвращается пустой результат, а не исключение.
+   */
+  @Test
+  void testGetOrderDetailByIdNotFound() throws SQLException {
+    when(orderDetailDAO.findById(eq(1L), any(Connection.class))).thenReturn(Optional.empty());
+
+    assertTrue(orderDetailService.getOrderDetailById(1L).isEmpty());
+  }
+
   /**
    * Тестирует метод {@link OrderDetailServiceImpl#updateOrderDetail(OrderDetailDTO)}.
-   * Проверяет, что метод {@link OrderDetailDAO#update(OrderDetail, Connection)} возвращает обновленный результат.
+   * Проверяет, что метод {@link OrderDetailDAO#update(OrderDetail, Connection)} возвращает обновленный результат,
+   * а новый статус публикуется в ленту статусов.
    */
   @Test
   void testUpdateOrderDetail() throws SQLException {
     OrderDetailDTO orderDetailDTO = new OrderDetailDTO(1L, OrderStatus.Готов, List.of(), BigDecimal.valueOf(150.05));
     OrderDetail orderDetail = OrderDetailMapper.INSTANCE.toEntity(orderDetailDTO);
 
-    when(orderDetailDAO.findById(eq(1L), any(Connection.class))).thenReturn(Optional.of(orderDetail));
-    when(orderDetailDAO.update(any(OrderDetail.class), any(Connection.class))).thenReturn(Optional.of(orderDetail));
+    when(orderDetailDAO.update(any(OrderDetail.class), any(Connection.class)))
+            .thenReturn(Optional.of(new OrderDetailUpdate(orderDetail, OrderStatus.Готовится, Set.of())));
+    long published = OrderStatusFeed.ORDERS.getPublished();
 
     Optional<OrderDetailDTO> result = orderDetailService.updateOrderDetail(orderDetailDTO);
 
     assertTrue(result.isPresent());
     assertEquals(orderDetailDTO, result.get());
     verify(orderDetailDAO, times(1)).update(any(OrderDetail.class), any(Connection.class));
+    assertEquals(published + 1, OrderStatusFeed.ORDERS.getPublished());
+  }
+
+  /**
+   * Тестирует метод {@link OrderDetailServiceImpl#updateOrderDetail(OrderDetailDTO)} без изменения статуса.
+   * Проверяет, что изменение строк заказа не публикуется в ленту статусов.
+   */
+  @Test
+  void testUpdateOrderDetailWithoutStatusChange() throws SQLException {
+    OrderDetailDTO orderDetailDTO = new OrderDetailDTO(1L, OrderStatus.Готов, List.of(), BigDecimal.valueOf(200.00));
+    OrderDetail orderDetail = OrderDetailMapper.INSTANCE.toEntity(orderDetailDTO);
+
+    when(orderDetailDAO.update(any(OrderDetail.class), any(Connection.class)))
+            .thenReturn(Optional.of(new OrderDetailUpdate(orderDetail, OrderStatus.Готов, Set.of())));
+    long published = OrderStatusFeed.ORDERS.getPublished();
+
+    Optional<OrderDetailDTO> result = orderDetailService.updateOrderDetail(orderDetailDTO);
+
+    assertTrue(result.isPresent());
+    assertEquals(published, OrderStatusFeed.ORDERS.getPublished());
   }
 
   /**
@@ -102,13 +154,53 @@ class OrderDetailServiceImplTest {
    */
   @Test
   void testDeleteOrderDetail() throws SQLException {
-    doNothing().when(orderDetailDAO).deleteById(anyLong(), any(Connection.class));
+    when(orderDetailDAO.deleteById(anyLong(), any(Connection.class))).thenReturn(List.of());
 
     orderDetailService.deleteOrderDetail(1L);
 
     verify(orderDetailDAO, times(1)).deleteById(eq(1L), any(Connection.class));
   }
 
+  /**
+   * Тестирует удаление строк заказа из кэша продуктов после обновления заказа.
+   * Проверяет, что изменённая строка после обновления снова загружается из базы данных.
+   */
+  @Test
+  void testUpdateOrderDetailEvictsCachedLines() throws SQLException {
+    Product line = new Product(5L, "Чай", new BigDecimal("100.00"), 1, true, List.of());
+    when(productDAO.findVersion(eq(5L), any(Connection.class))).thenReturn(Optional.of(1L));
+    when(productDAO.findById(eq(5L), any(Connection.class))).thenReturn(Optional.of(line));
+    productService.getProductById(5L);
+    productService.getProductById(5L);
+    verify(productDAO, times(1)).findById(eq(5L), any(Connection.class));
+
+    OrderDetail orderDetail = new OrderDetail(1L, OrderStatus.Принят, List.of(line), new BigDecimal("100.00"));
+    when(orderDetailDAO.update(any(OrderDetail.class), any(Connection.class)))
+            .thenReturn(Optional.of(new OrderDetailUpdate(orderDetail, OrderStatus.Принят, Set.of(5L))));
+
+    orderDetailService.updateOrderDetail(OrderDetailMapper.INSTANCE.toDTO(orderDetail));
+    productService.getProductById(5L);
+
+    verify(productDAO, times(2)).findById(eq(5L), any(Connection.class));
+  }
+
+  /**
+   * Тестирует удаление строк заказа из кэша продуктов после удаления заказа.
+   * Проверяет, что удалённая строка не выдаётся из кэша.
+   */
+  @Test
+  void testDeleteOrderDetailEvictsCachedLines() throws SQLException {
+    Product line = new Product(5L, "Чай", new BigDecimal("100.00"), 1, true, List.of());
+    when(productDAO.findVersion(eq(5L), any(Connection.class))).thenReturn(Optional.of(1L));
+    when(productDAO.findById(eq(5L), any(Connection.class))).thenReturn(Optional.of(line), Optional.empty());
+    assertTrue(productService.getProductById(5L).isPresent());
+    when(orderDetailDAO.deleteById(eq(1L), any(Connection.class))).thenReturn(List.of(5L));
+
+    orderDetailService.deleteOrderDetail(1L);
+
+    assertTrue(productService.getProductById(5L).isEmpty());
+  }
+
   /**
    * Тестирует метод {@link OrderDetailServiceImpl#getAllOrderDetails()}.
    * Проверяет, что метод {@link OrderDetailDAO#findAll(Connection)} возвращает ожидаемый список деталей заказов.
@@ -130,4 +222,74 @@ class OrderDetailServiceImplTest {
     assertEquals(orderDetailDTOList.size(), result.size());
     assertEquals(orderDetailDTOList, result);
   }
-}
\ No newline at end of file
+
+  /**
+   * Тестирует метод {@link OrderDetailServiceImpl#getOrderDetailsPage(Long, int)}.
+   * Проверяет, что у последней страницы нет курсора следующей страницы.
+   */
+  @Test
+  void testGetOrderDetailsPage() throws SQLException {
+    List<OrderDetail> orderDetails = List.of(
+            new OrderDetail(1L, OrderStatus.Принят, List.of(), BigDecimal.valueOf(150.05)));
+
+    when(orderDetailDAO.findPage(eq(null), eq(11), any(Connection.class))).thenReturn(orderDetails);
+
+    PageDTO<OrderDetailDTO> page = orderDetailService.getOrderDetailsPage(null, 10);
+
+    assertEquals(1, page.getItems().size());
+    assertNull(page.getNextCursor());
+  }
+
+  /**
+   * Тестирует метод {@link OrderDetailServiceImpl#streamAllOrderDetails(RowCallback)}.
+   * Проверяет, что каждый OrderDetail из DAO передаётся в callback в виде OrderDetailDTO.
+   */
+  @Test
+  void testStreamAllOrderDetails() throws Exception {
+    OrderDetail orderDetail = new OrderDetail(1L, OrderStatus.Принят, List.of(), BigDecimal.valueOf(150.05));
+    doAnswer(invocation -> {
+      RowCallback<OrderDetail> callback = invocation.getArgument(1);
+      callback.accept(orderDetail);
+      return null;
+    }).when(orderDetailDAO).streamAll(anyInt(), any(), any(Connection.class));
+
+    List<OrderDetailDTO> result = new ArrayList<>();
+    orderDetailService.streamAllOrderDetails(result::add);
+
+    assertEquals(1, result.size());
+    assertEquals(1L, result.get(0).getId());
+  }
+
+  /**
+   * Тестирует метод {@link OrderDetailServiceImpl#getOrderStatusTotals()}.
+   * Проверяет, что при первом обращении итоги загружаются запросом с GROUP BY, а дальше выдаются без запросов
+   * по всем статусам, включая статусы без заказов.
+   */
+  @Test
+  void testGetOrderStatusTotals() throws SQLException {
+    Connection connection = mock(Connection.class);
+    PreparedStatement preparedStatement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    ConnectionProvider.setMockConnection(connection);
+    when(connection.prepareStatement(SELECT_ORDER_TOTALS_BY_STATUS)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.getString("snapshot")).thenReturn("100:100:");
+    when(resultSet.getString("order_status")).thenReturn(OrderStatus.Готов.name());
+    when(resultSet.getLong("order_count")).thenReturn(2L);
+    when(resultSet.getBigDecimal("total_amount")).thenReturn(new BigDecimal("280.00"));
+    OrderStatusTotals.invalidate();
+
+    try {
+      List<OrderStatusTotalDTO> expected = List.of(
+              new OrderStatusTotalDTO(OrderStatus.Принят, 0, new BigDecimal("0.00")),
+              new OrderStatusTotalDTO(OrderStatus.Готовится, 0, new BigDecimal("0.00")),
+              new OrderStatusTotalDTO(OrderStatus.Готов, 2, new BigDecimal("280.00")));
+      assertEquals(expected, orderDetailService.getOrderStatusTotals());
+      assertEquals(expected, orderDetailService.getOrderStatusTotals());
+      verify(preparedStatement, times(1)).executeQuery();
+    } finally {
+      OrderStatusTotals.invalidate();
+    }
+  }
+}
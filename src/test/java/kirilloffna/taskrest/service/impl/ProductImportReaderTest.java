@@ -0,0 +1,97 @@
+package kirilloffna.taskrest.service.impl;
+
+import kirilloffna.taskrest.dto.ImportErrorDTO;
+import kirilloffna.taskrest.dto.ImportFormat;
+import kirilloffna.taskrest.dto.ImportResultDTO;
+import kirilloffna.taskrest.model.Product;
+import kirilloffna.taskrest.model.ProductCategory;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для проверки разбора тела массового импорта {@link ProductImportReader}.
+ */
+class ProductImportReaderTest {
+
+  private final ImportResultDTO result = new ImportResultDTO();
+
+  /**
+   * Тестирует разбор CSV: значения в кавычках, значения по умолчанию и отклонение некорректных строк
+   * с указанием номера строки.
+   */
+  @Test
+  void testReadCsv() {
+    String body = """
+            name,price,quantity,available,categories
+            "Салат, сезонный",350.5,5,true,1;2;1
+            Суп,abc,1,true,
+
+            Чай,90,,,
+            Борщ,250,3,true,99
+            """;
+
+    List<Product> products = readAll(body, ImportFormat.CSV);
+
+    assertEquals(2, products.size());
+    Product salad = products.get(0);
+    assertEquals("Салат, сезонный", salad.getName());
+    assertEquals(new BigDecimal("350.50"), salad.getPrice());
+    assertEquals(List.of(1L, 2L), salad.getProductCategories().stream().map(ProductCategory::getId).toList());
+    Product tea = products.get(1);
+    assertEquals(0, tea.getQuantity());
+    assertTrue(tea.isAvailable());
+
+    assertEquals(2, result.getFailed());
+    assertEquals(List.of(new ImportErrorDTO(3, "Invalid number in price or quantity"),
+            new ImportErrorDTO(6, "Unknown product category: 99")), result.getErrors());
+  }
+
+  /**
+   * Тестирует разбор NDJSON и ограничение количества ошибок в результате.
+   */
+  @Test
+  void testReadNdjsonWithErrorLimit() {
+    String body = """
+            {"name":"Пицца","price":500,"quantity":2,"available":true,"productCategories":[{"id":2}]}
+            {"name":"Дорогая","price":100000000}
+            not json
+            {"price":10}
+            """;
+
+    List<Product> products = readAll(body, ImportFormat.NDJSON, 2);
+
+    assertEquals(1, products.size());
+    assertEquals("Пицца", products.get(0).getName());
+    assertEquals(3, result.getFailed());
+    assertEquals(2, result.getErrors().size());
+    assertEquals(2, result.getErrors().get(0).getLine());
+  }
+
+  /**
+   * Тестирует, что CSV без обязательных колонок отклоняется целиком.
+   */
+  @Test
+  void testReadCsvWithoutRequiredColumns() {
+    assertThrows(IllegalArgumentException.class, () -> readAll("foo,bar\n1,2\n", ImportFormat.CSV));
+  }
+
+  private List<Product> readAll(String body, ImportFormat format) {
+    return readAll(body, format, 100);
+  }
+
+  private List<Product> readAll(String body, ImportFormat format, int maxReportedErrors) {
+    ProductImportReader reader = new ProductImportReader(new BufferedReader(new StringReader(body)), format,
+            Set.of(1L, 2L), result, maxReportedErrors);
+    List<Product> products = new ArrayList<>();
+    reader.forEachRemaining(products::add);
+    return products;
+  }
+}
@@ -1,7 +1,13 @@
 package kirilloffna.taskrest.service.impl;
 
 import kirilloffna.taskrest.dao.ProductDAO;
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.dao.impl.ProductNameIndex;
+import kirilloffna.taskrest.dto.ImportFormat;
+import kirilloffna.taskrest.dto.ImportResultDTO;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.dto.ProductDTO;
+import kirilloffna.taskrest.dto.ProductFilter;
 import kirilloffna.taskrest.mapper.ProductMapper;
 import kirilloffna.taskrest.model.Product;
 import kirilloffna.taskrest.utils.ConnectionProvider;
@@ -11,13 +17,24 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static kirilloffna.taskrest.dao.impl.DaoQueries.SELECT_PRODUCT_NAMES;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
@@ -37,10 +54,11 @@ class ProductServiceImplTest {
    * Настраивает моки и тестовые данные перед выполнением каждого теста.
    */
   @BeforeEach
-  void setUp() {
+  void setUp() throws SQLException {
     MockitoAnnotations.openMocks(this);
     Connection connection = mock(Connection.class);
     ConnectionProvider.setMockConnection(connection);
+    when(productDAO.findVersion(anyLong(), any(Connection.class))).thenReturn(Optional.of(1L));
   }
 
   /**
@@ -87,7 +105,6 @@ class ProductServiceImplTest {
             BigDecimal.valueOf(129, 55), 10, true, List.of());
     Product product = ProductMapper.INSTANCE.toEntity(productDTO);
 
-    when(productDAO.findById(eq(1L), any(Connection.class))).thenReturn(Optional.of(product));
     when(productDAO.update(any(Product.class), any(Connection.class))).thenReturn(Optional.of(product));
 
     Optional<ProductDTO> result = productService.updateProduct(productDTO);
@@ -138,6 +155,241 @@ class ProductServiceImplTest {
     assertEquals(productDTOList, result);
 
   }
-}
 
+  /**
+   * Тестирует метод {@link ProductServiceImpl#getProductsPage(Long, int)}.
+   * Проверяет, что из DAO запрашивается на один элемент больше размера страницы,
+   * а курсор следующей страницы указывает на последний элемент страницы.
+   */
+  @Test
+  void testGetProductsPage() throws SQLException {
+    List<Product> products = List.of(
+            new Product(4L, "Test Product 4", BigDecimal.TEN, 1, true, List.of()),
+            new Product(5L, "Test Product 5", BigDecimal.TEN, 1, true, List.of()),
+            new Product(6L, "Test Product 6", BigDecimal.TEN, 1, true, List.of()));
+
+    when(productDAO.findPage(eq(3L), eq(3), any(Connection.class))).thenReturn(products);
 
+    PageDTO<ProductDTO> page = productService.getProductsPage(3L, 2);
+
+    assertEquals(2, page.getItems().size());
+    assertEquals(5L, page.getNextCursor());
+  }
+
+  /**
+   * Тестирует метод {@link ProductServiceImpl#getProductsPage(ProductFilter, Long, int)}.
+   * Проверяет, что фильтр передаётся в DAO вместе с курсором и лимитом на один больше размера страницы.
+   */
+  @Test
+  void testGetProductsPageByFilter() throws SQLException {
+    ProductFilter filter = new ProductFilter(null, true, null, null, "ко");
+    List<Product> products = List.of(
+            new Product(1L, "Кока-Кола", BigDecimal.TEN, 1, true, List.of()),
+            new Product(7L, "Кофе", BigDecimal.TEN, 1, true, List.of()));
+
+    when(productDAO.findFiltered(eq(filter), eq(null), eq(2), any(Connection.class))).thenReturn(products);
+
+    PageDTO<ProductDTO> page = productService.getProductsPage(filter, null, 1);
+
+    assertEquals(1, page.getItems().size());
+    assertEquals(1L, page.getNextCursor());
+  }
+
+  /**
+   * Тестирует метод {@link ProductServiceImpl#suggestProductNames(String, int)}.
+   * Проверяет, что при первом обращении индекс названий загружается из базы данных, а дальше подсказки
+   * выдаются без запросов.
+   */
+  @Test
+  void testSuggestProductNames() throws SQLException {
+    Connection connection = mock(Connection.class);
+    PreparedStatement preparedStatement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    ConnectionProvider.setMockConnection(connection);
+    when(connection.prepareStatement(SELECT_PRODUCT_NAMES)).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, true, false);
+    when(resultSet.getLong("id")).thenReturn(1L, 7L);
+    when(resultSet.getString("name")).thenReturn("Кофе", "Кока-Кола");
+    ProductNameIndex.invalidate();
+
+    try {
+      assertEquals(List.of("Кока-Кола", "Кофе"), productService.suggestProductNames("Ко", 10));
+      assertEquals(List.of("Кофе"), productService.suggestProductNames("коф", 10));
+      verify(preparedStatement, times(1)).executeQuery();
+    } finally {
+      ProductNameIndex.invalidate();
+    }
+  }
+
+  /**
+   * Тестирует метод {@link ProductServiceImpl#streamAllProducts(RowCallback)}.
+   * Проверяет, что каждый Product из DAO передаётся в callback в виде ProductDTO.
+   */
+  @Test
+  void testStreamAllProducts() throws Exception {
+    Product product = new Product(1L, "Test Product", BigDecimal.TEN, 1, true, List.of());
+    doAnswer(invocation -> {
+      RowCallback<Product> callback = invocation.getArgument(1);
+      callback.accept(product);
+      return null;
+    }).when(productDAO).streamAll(anyInt(), any(), any(Connection.class));
+
+    List<ProductDTO> result = new ArrayList<>();
+    productService.streamAllProducts(result::add);
+
+    assertEquals(List.of(ProductMapper.INSTANCE.toDTO(product)), result);
+  }
+
+  /**
+   * Тестирует метод {@link ProductServiceImpl#importProducts(Reader, ImportFormat)}.
+   * Проверяет, что корректные строки передаются в {@link ProductDAO#copyAll(Iterator, int, Connection)},
+   * а некорректные попадают в результат импорта.
+   */
+  @Test
+  void testImportProducts() throws Exception {
+    when(productDAO.findCategoryIds(any(Connection.class))).thenReturn(Set.of(1L));
+    when(productDAO.copyAll(any(), anyInt(), any(Connection.class))).thenAnswer(invocation -> {
+      Iterator<Product> products = invocation.getArgument(0);
+      long count = 0;
+      while (products.hasNext()) {
+        products.next();
+        count++;
+      }
+      return count;
+    });
+
+    ImportResultDTO result = productService.importProducts(
+            new StringReader("name,price,categories\nЧай,90,1\nКофе,-1,\n"), ImportFormat.CSV);
+
+    assertEquals(1, result.getImported());
+    assertEquals(1, result.getFailed());
+    assertEquals(3, result.getErrors().get(0).getLine());
+  }
+
+  /**
+   * Тестирует кэширование в методе {@link ProductServiceImpl#getProductById(Long)}.
+   * Проверяет, что повторный запрос обслуживается из кэша, а обновление продукта удаляет запись из кэша.
+   */
+  @Test
+  void testGetProductByIdCached() throws SQLException {
+    ProductDTO productDTO = new ProductDTO(1L, "Test Product", BigDecimal.TEN, 10, true, List.of());
+    Product product = ProductMapper.INSTANCE.toEntity(productDTO);
+    when(productDAO.findById(eq(1L), any(Connection.class))).thenReturn(Optional.of(product));
+
+    productService.getProductById(1L);
+    productService.getProductById(1L);
+
+    verify(productDAO, times(1)).findById(eq(1L), any(Connection.class));
+    assertEquals(1, productService.getCacheStats().hitCount());
+    assertEquals(1, productService.getCacheStats().missCount());
+
+    productService.updateProduct(productDTO);
+    clearInvocations(productDAO);
+    productService.getProductById(1L);
+
+    verify(productDAO, times(1)).findById(eq(1L), any(Connection.class));
+  }
+
+  /**
+   * Тестирует метод {@link ProductServiceImpl#getProductById(Long)} для отсутствующего продукта.
+   * Проверяет, что возвращается пустой результат, который не кэшируется.
+   */
+  @Test
+  void testGetProductByIdNotFound() throws SQLException {
+    when(productDAO.findById(eq(2L), any(Connection.class))).thenReturn(Optional.empty());
+
+    assertTrue(productService.getProductById(2L).isEmpty());
+    assertTrue(productService.getProductById(2L).isEmpty());
+
+    verify(productDAO, times(2)).findById(eq(2L), any(Connection.class));
+  }
+
+  /**
+   * Тестирует удаление записи кэша во время загрузки продукта в {@link ProductServiceImpl#getProductById(Long)}.
+   * Проверяет, что версия, загруженная до изменения, не остаётся в кэше.
+   */
+  @Test
+  void testEvictDuringLoad() throws Exception {
+    Product product = new Product(3L, "Test Product", BigDecimal.TEN, 10, true, List.of());
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(productDAO.findById(eq(3L), any(Connection.class))).thenAnswer(invocation -> {
+      loading.countDown();
+      release.await();
+      return Optional.of(product);
+    }).thenReturn(Optional.of(product));
+
+    CompletableFuture<Optional<ProductDTO>> load = CompletableFuture.supplyAsync(() -> {
+      try {
+        return productService.getProductById(3L);
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertTrue(loading.await(5, TimeUnit.SECONDS));
+    CompletableFuture<Void> eviction = CompletableFuture.runAsync(() -> productService.evictCachedProducts(List.of(3L)));
+    Thread.sleep(100);
+    release.countDown();
+    load.get(5, TimeUnit.SECONDS);
+    eviction.get(5, TimeUnit.SECONDS);
+
+    productService.getProductById(3L);
+
+    verify(productDAO, times(2)).findById(eq(3L), any(Connection.class));
+  }
+
+  /**
+   * Тестирует загрузку продукта вне блокировок кэша.
+   * Проверяет, что удаление записи не ждёт загрузки продукта из базы данных.
+   */
+  @Test
+  void testLoadOutsideCacheLock() throws Exception {
+    Product product = new Product(5L, "Test Product", BigDecimal.TEN, 10, true, List.of());
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(productDAO.findById(eq(5L), any(Connection.class))).thenAnswer(invocation -> {
+      loading.countDown();
+      release.await();
+      return Optional.of(product);
+    });
+
+    CompletableFuture<Optional<ProductDTO>> load = CompletableFuture.supplyAsync(() -> getProduct(5L));
+    assertTrue(loading.await(5, TimeUnit.SECONDS));
+    try {
+      CompletableFuture.runAsync(() -> productService.evictCachedProducts(List.of(5L))).get(1, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+    }
+
+    assertEquals("Test Product", load.get(5, TimeUnit.SECONDS).orElseThrow().getName());
+  }
+
+  /**
+   * Тестирует метод {@link ProductServiceImpl#getProductById(Long, long)}.
+   * Проверяет, что продукт из кэша выдаётся для его версии, а запрос более новой версии загружает продукт заново.
+   */
+  @Test
+  void testGetProductByIdWithVersion() throws SQLException {
+    Product product = new Product(4L, "Test Product", BigDecimal.TEN, 10, true, List.of());
+    Product changed = new Product(4L, "Changed Product", BigDecimal.TEN, 10, true, List.of());
+    when(productDAO.findVersion(eq(4L), any(Connection.class))).thenReturn(Optional.of(7L), Optional.of(9L));
+    when(productDAO.findById(eq(4L), any(Connection.class))).thenReturn(Optional.of(product), Optional.of(changed));
+
+    assertEquals("Test Product", productService.getProductById(4L, 7L).orElseThrow().getName());
+    assertEquals("Test Product", productService.getProductById(4L, 7L).orElseThrow().getName());
+    verify(productDAO, times(1)).findById(eq(4L), any(Connection.class));
+
+    assertEquals("Changed Product", productService.getProductById(4L, 9L).orElseThrow().getName());
+    assertEquals("Changed Product", productService.getProductById(4L, 9L).orElseThrow().getName());
+    verify(productDAO, times(2)).findById(eq(4L), any(Connection.class));
+  }
+
+  private Optional<ProductDTO> getProduct(Long id) {
+    try {
+      return productService.getProductById(id);
+    } catch (SQLException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package kirilloffna.taskrest.servlet;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки работы фильтра {@link CompressionFilter}.
+ */
+class CompressionFilterTest {
+
+  private final HttpServletRequest request = mock(HttpServletRequest.class);
+
+  private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+  private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+  private final CompressionFilter compressionFilter =
+          new CompressionFilter(64, 6, Set.of("application/json"));
+
+  @BeforeEach
+  void setUp() throws Exception {
+    when(request.getHeader(CompressionFilter.ACCEPT_ENCODING_HEADER)).thenReturn("gzip, deflate");
+    when(response.getContentType()).thenReturn("application/json;charset=UTF-8");
+    when(response.getCharacterEncoding()).thenReturn("UTF-8");
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        body.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+      }
+    });
+  }
+
+  /**
+   * Тестирует сжатие ответа больше порога: выставляется Content-Encoding, а тело распаковывается в исходное.
+   */
+  @Test
+  void testDoFilterCompressesLargeResponse() throws Exception {
+    String json = "{\"id\":1,\"name\":\"Кока-Кола\"}".repeat(20);
+    FilterChain chain = (req, resp) -> resp.getWriter().write(json);
+
+    compressionFilter.doFilter(request, response, chain);
+
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).addHeader(CompressionFilter.VARY_HEADER, CompressionFilter.ACCEPT_ENCODING_HEADER);
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+      assertEquals(json, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Тестирует ответ меньше порога: тело отправляется без сжатия с заголовком Content-Length.
+   */
+  @Test
+  void testDoFilterSkipsSmallResponse() throws Exception {
+    FilterChain chain = (req, resp) -> resp.getWriter().write("{\"id\":1}");
+
+    compressionFilter.doFilter(request, response, chain);
+
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+    verify(response).setContentLength(8);
+    assertEquals("{\"id\":1}", body.toString(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Тестирует поток text/event-stream: тип не сжимается, поэтому тело пишется в клиент сразу, без накопления
+   * в буфере до порога.
+   */
+  @Test
+  void testDoFilterPassesThroughEventStream() throws Exception {
+    when(response.getContentType()).thenReturn("text/event-stream;charset=UTF-8");
+    FilterChain chain = (req, resp) -> {
+      resp.getOutputStream().write("data: {}\n\n".getBytes(StandardCharsets.UTF_8));
+      resp.getOutputStream().flush();
+      assertEquals("data: {}\n\n", body.toString(StandardCharsets.UTF_8));
+    };
+
+    compressionFilter.doFilter(request, response, chain);
+
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+    verify(response, never()).setContentLength(anyInt());
+  }
+}
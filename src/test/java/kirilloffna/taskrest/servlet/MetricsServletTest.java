@@ -0,0 +1,63 @@
+package kirilloffna.taskrest.servlet;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dao.impl.DaoQueries;
+import kirilloffna.taskrest.dao.impl.QueryMetrics;
+import kirilloffna.taskrest.utils.ContentEncoding;
+import kirilloffna.taskrest.utils.RequestMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки работы сервлета {@link MetricsServlet}.
+ */
+class MetricsServletTest {
+
+  private final HttpServletRequest request = mock(HttpServletRequest.class);
+
+  private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+  private final MetricsServlet metricsServlet =
+          new MetricsServlet(() -> CacheStats.of(3, 1, 1, 0, 0, 2, 0), null, null);
+
+  /**
+   * Тестирует метод {@link MetricsServlet#doGet(HttpServletRequest, HttpServletResponse)}.
+   * Проверяет, что записанные длительности запросов и SQL-запросов, а также статистика кэша публикуются
+   * в текстовом формате Prometheus.
+   */
+  @Test
+  void testDoGet() throws Exception {
+    RequestMetrics.forServlet("MetricsServletTest").forMethod("GET").record(TimeUnit.MILLISECONDS.toNanos(3));
+    QueryMetrics.record(DaoQueries.SELECT_PRODUCTS_PAGE, System.nanoTime(), 20);
+    ContentEncoding.DEFLATE.getMetrics().record(4000, 1000, 0);
+    StringWriter body = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(body));
+
+    metricsServlet.doGet(request, response);
+
+    verify(response).setContentType(MetricsServlet.CONTENT_TYPE);
+    String metrics = body.toString();
+    assertTrue(metrics.contains("# TYPE http_server_requests_seconds histogram\n"));
+    assertTrue(metrics.contains(
+            "http_server_requests_seconds_bucket{servlet=\"MetricsServletTest\",method=\"GET\",le=\"0.005\"} 1\n"));
+    assertTrue(metrics.contains(
+            "http_server_requests_quantile_seconds{servlet=\"MetricsServletTest\",method=\"GET\",quantile=\"0.99\"} 0.003\n"));
+    assertTrue(metrics.contains("http_server_requests_max_seconds{servlet=\"MetricsServletTest\",method=\"GET\"} 0.003\n"));
+    assertTrue(metrics.contains("db_query_seconds_count{query=\"SELECT_PRODUCTS_PAGE\"} "));
+    assertTrue(metrics.contains("db_query_rows_total{query=\"SELECT_PRODUCTS_PAGE\"} "));
+    assertTrue(metrics.contains("db_connection_acquire_seconds_bucket{le=\"+Inf\"} "));
+    assertTrue(metrics.contains("product_cache_requests_total{result=\"hit\"} 3\n"));
+    assertTrue(metrics.contains("product_cache_evictions_total 2\n"));
+    assertTrue(metrics.contains("http_compressed_responses_total{encoding=\"deflate\"} "));
+    assertTrue(metrics.contains("http_compression_bytes_total{encoding=\"deflate\",stage=\"compressed\"} "));
+    assertTrue(metrics.contains("http_compression_ratio{encoding=\"deflate\"} "));
+  }
+}
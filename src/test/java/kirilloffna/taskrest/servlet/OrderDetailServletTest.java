@@ -3,18 +3,24 @@ package kirilloffna.taskrest.servlet;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dao.RowCallback;
 import kirilloffna.taskrest.dto.OrderDetailDTO;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.model.OrderStatus;
 import kirilloffna.taskrest.service.OrderDetailService;
 import org.junit.jupiter.api.Test;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import static kirilloffna.taskrest.HelperTest.createServletInputStream;
+import static kirilloffna.taskrest.utils.ServletConstants.DEFAULT_PAGE_LIMIT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 /**
@@ -41,15 +47,32 @@ class OrderDetailServletTest {
   void testDoGetOrderDetailById() throws Exception {
     OrderDetailDTO orderDetail = new OrderDetailDTO(1L, OrderStatus.Принят, Arrays.asList(), new BigDecimal("100.00"));
     when(request.getParameter("id")).thenReturn("1");
+    when(orderDetailService.getOrderDetailVersion(1L)).thenReturn(Optional.of(12L));
     when(orderDetailService.getOrderDetailById(1L)).thenReturn(Optional.of(orderDetail));
     when(response.getWriter()).thenReturn(writer);
 
     orderDetailServlet.doGet(request, response);
 
     verify(response).setContentType("application/json;charset=UTF-8");
+    verify(response).setHeader("ETag", "\"12\"");
     verify(writer).write(objectMapper.writeValueAsString(orderDetail));
   }
 
+  /**
+   * Тестирует условный GET-запрос списка всех OrderDetail с текущей версией списка в If-None-Match.
+   * Проверяет, что возвращается 304 без чтения заказов.
+   */
+  @Test
+  void testDoGetAllOrderDetailsNotModified() throws Exception {
+    when(request.getHeader("If-None-Match")).thenReturn("\"4-12\"");
+    when(orderDetailService.getOrderDetailsVersion()).thenReturn("4-12");
+
+    orderDetailServlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(orderDetailService, never()).streamAllOrderDetails(any());
+  }
+
   /**
    * Тестирует обработку GET-запроса для получения списка всех OrderDetail.
    */
@@ -59,13 +82,20 @@ class OrderDetailServletTest {
             new OrderDetailDTO(1L, OrderStatus.Принят, Arrays.asList(), new BigDecimal("100.00")),
             new OrderDetailDTO(2L, OrderStatus.Готовится, Arrays.asList(), new BigDecimal("200.00"))
     );
-    when(orderDetailService.getAllOrderDetails()).thenReturn(orderDetails);
-    when(response.getWriter()).thenReturn(writer);
+    doAnswer(invocation -> {
+      RowCallback<OrderDetailDTO> callback = invocation.getArgument(0);
+      for (OrderDetailDTO orderDetail : orderDetails) {
+        callback.accept(orderDetail);
+      }
+      return null;
+    }).when(orderDetailService).streamAllOrderDetails(any());
+    StringWriter output = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(output));
 
     orderDetailServlet.doGet(request, response);
 
     verify(response).setContentType("application/json;charset=UTF-8");
-    verify(writer).write(objectMapper.writeValueAsString(orderDetails));
+    assertEquals(objectMapper.writeValueAsString(orderDetails), output.toString());
   }
 
   /**
@@ -91,7 +121,6 @@ class OrderDetailServletTest {
     OrderDetailDTO orderDetail = new OrderDetailDTO(1L, OrderStatus.Готовится, Arrays.asList(), new BigDecimal("150.00"));
     when(request.getInputStream()).thenReturn(createServletInputStream(objectMapper.writeValueAsBytes(orderDetail)));
     when(response.getWriter()).thenReturn(writer);
-    when(orderDetailService.getOrderDetailById(1L)).thenReturn(Optional.of(orderDetail));
     when(orderDetailService.updateOrderDetail(any(OrderDetailDTO.class))).thenReturn(Optional.of(orderDetail));
 
     orderDetailServlet.doPut(request, response);
@@ -112,4 +141,20 @@ class OrderDetailServletTest {
     verify(orderDetailService).deleteOrderDetail(1L);
     verify(response).setStatus(HttpServletResponse.SC_NO_CONTENT);
   }
-}
\ No newline at end of file
+
+  /**
+   * Тестирует обработку GET-запроса для получения первой страницы OrderDetail с лимитом по умолчанию.
+   */
+  @Test
+  void testDoGetOrderDetailsPage() throws Exception {
+    PageDTO<OrderDetailDTO> page = new PageDTO<>(List.of(
+            new OrderDetailDTO(1L, OrderStatus.Принят, List.of(), new BigDecimal("100.00"))), null);
+    when(request.getParameter("after")).thenReturn("");
+    when(orderDetailService.getOrderDetailsPage(null, DEFAULT_PAGE_LIMIT)).thenReturn(page);
+    when(response.getWriter()).thenReturn(writer);
+
+    orderDetailServlet.doGet(request, response);
+
+    verify(writer).write(objectMapper.writeValueAsString(page));
+  }
+}
@@ -0,0 +1,77 @@
+package kirilloffna.taskrest.servlet;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.utils.LatencyHistogram;
+import kirilloffna.taskrest.utils.OrderStatusFeed;
+import kirilloffna.taskrest.utils.RequestMetrics;
+import org.junit.jupiter.api.Test;
+
+import static kirilloffna.taskrest.utils.ServletConstants.INVALID_LAST_EVENT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки работы сервлета {@link OrderStatusEventsServlet}.
+ * Все методы кидают Exception если происходит ошибка при выполнении запроса.
+ */
+class OrderStatusEventsServletTest {
+
+  private final OrderStatusFeed feed = mock(OrderStatusFeed.class);
+
+  private final HttpServletRequest request = mock(HttpServletRequest.class);
+
+  private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+  private final AsyncContext asyncContext = mock(AsyncContext.class);
+
+  private final OrderStatusEventsServlet orderStatusEventsServlet = new OrderStatusEventsServlet(feed);
+
+  /**
+   * Тестирует подписку после переподключения: запрос переводится в асинхронный режим без ограничения времени,
+   * а номер из заголовка Last-Event-ID передаётся ленте.
+   */
+  @Test
+  void testDoGetSubscribes() throws Exception {
+    when(request.getHeader("Last-Event-ID")).thenReturn("42");
+    when(request.startAsync()).thenReturn(asyncContext);
+
+    orderStatusEventsServlet.doGet(request, response);
+
+    verify(response).setContentType("text/event-stream");
+    verify(asyncContext).setTimeout(0);
+    verify(feed).subscribe(asyncContext, 42L);
+  }
+
+  /**
+   * Тестирует отклонение подписки с некорректным номером последнего события.
+   */
+  @Test
+  void testDoGetInvalidLastEventId() throws Exception {
+    when(request.getHeader("Last-Event-ID")).thenReturn("abc");
+
+    orderStatusEventsServlet.doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, INVALID_LAST_EVENT_ID);
+    verify(request, never()).startAsync();
+    verify(feed, never()).subscribe(any(), any());
+  }
+
+  /**
+   * Тестирует запись времени подписки в метрики запросов сервлета.
+   */
+  @Test
+  void testDoGetRecordsRequestMetrics() throws Exception {
+    LatencyHistogram latency = RequestMetrics.forServlet("OrderStatusEventsServlet").forMethod("GET");
+    long before = latency.snapshot().count();
+    when(request.getMethod()).thenReturn("GET");
+    when(request.startAsync()).thenReturn(asyncContext);
+
+    orderStatusEventsServlet.doGet(request, response);
+
+    assertEquals(before + 1, latency.snapshot().count());
+    verify(feed).subscribe(asyncContext, null);
+  }
+}
@@ -0,0 +1,59 @@
+package kirilloffna.taskrest.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dto.OrderStatusTotalDTO;
+import kirilloffna.taskrest.model.OrderStatus;
+import kirilloffna.taskrest.service.OrderDetailService;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+
+import static kirilloffna.taskrest.utils.ServletConstants.ERROR_LOADING_ORDER_TOTALS;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки работы сервлета {@link OrderStatusTotalsServlet}.
+ * Все методы кидают Exception если происходит ошибка при выполнении запроса.
+ */
+class OrderStatusTotalsServletTest {
+
+  private final OrderDetailService orderDetailService = mock(OrderDetailService.class);
+
+  private final HttpServletRequest request = mock(HttpServletRequest.class);
+
+  private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+  private final PrintWriter writer = mock(PrintWriter.class);
+
+  private final OrderStatusTotalsServlet orderStatusTotalsServlet = new OrderStatusTotalsServlet(orderDetailService);
+
+  /**
+   * Тестирует выдачу итогов: итоги по статусам записываются JSON-массивом.
+   */
+  @Test
+  void testDoGet() throws Exception {
+    when(orderDetailService.getOrderStatusTotals()).thenReturn(List.of(
+            new OrderStatusTotalDTO(OrderStatus.Готов, 2, new BigDecimal("280.00"))));
+    when(response.getWriter()).thenReturn(writer);
+
+    orderStatusTotalsServlet.doGet(request, response);
+
+    verify(writer).write("[{\"status\":\"Готов\",\"count\":2,\"totalAmount\":280.00}]");
+  }
+
+  /**
+   * Тестирует ответ, если итоги не загружены и база данных недоступна.
+   */
+  @Test
+  void testDoGetDatabaseUnavailable() throws Exception {
+    when(orderDetailService.getOrderStatusTotals()).thenThrow(new SQLException("Connection refused"));
+
+    orderStatusTotalsServlet.doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ERROR_LOADING_ORDER_TOTALS);
+  }
+}
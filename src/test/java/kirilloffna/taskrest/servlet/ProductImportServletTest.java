@@ -0,0 +1,68 @@
+package kirilloffna.taskrest.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dto.ImportErrorDTO;
+import kirilloffna.taskrest.dto.ImportFormat;
+import kirilloffna.taskrest.dto.ImportResultDTO;
+import kirilloffna.taskrest.service.ProductService;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.List;
+
+import static kirilloffna.taskrest.utils.ServletConstants.UNSUPPORTED_IMPORT_FORMAT;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки работы сервлета {@link ProductImportServlet}.
+ * Все методы кидают Exception если происходит ошибка при выполнении запроса.
+ */
+class ProductImportServletTest {
+
+  private final ProductService productService = mock(ProductService.class);
+
+  private final HttpServletRequest request = mock(HttpServletRequest.class);
+
+  private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+  private final PrintWriter writer = mock(PrintWriter.class);
+
+  private final ProductImportServlet productImportServlet = new ProductImportServlet(productService);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  /**
+   * Тестирует импорт CSV: формат определяется по Content-Type, в ответ записывается результат импорта.
+   */
+  @Test
+  void testDoPostCsv() throws Exception {
+    ImportResultDTO result = new ImportResultDTO(1, 1, List.of(new ImportErrorDTO(3, "Product name is required")));
+    when(request.getContentType()).thenReturn("text/csv; charset=UTF-8");
+    when(request.getReader()).thenReturn(new BufferedReader(new StringReader("name,price\nЧай,90\n,10\n")));
+    when(productService.importProducts(any(), eq(ImportFormat.CSV))).thenReturn(result);
+    when(response.getWriter()).thenReturn(writer);
+
+    productImportServlet.doPost(request, response);
+
+    verify(writer).write(objectMapper.writeValueAsString(result));
+  }
+
+  /**
+   * Тестирует отклонение запроса с неподдерживаемым Content-Type.
+   */
+  @Test
+  void testDoPostUnsupportedFormat() throws Exception {
+    when(request.getContentType()).thenReturn("application/json");
+
+    productImportServlet.doPost(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, UNSUPPORTED_IMPORT_FORMAT);
+    verify(productService, never()).importProducts(any(), any());
+  }
+}
@@ -1,20 +1,39 @@
 package kirilloffna.taskrest.servlet;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.dao.RowCallback;
+import kirilloffna.taskrest.dto.PageDTO;
 import kirilloffna.taskrest.dto.ProductDTO;
+import kirilloffna.taskrest.dto.ProductFilter;
+import kirilloffna.taskrest.model.CategoryType;
 import kirilloffna.taskrest.service.ProductService;
+import kirilloffna.taskrest.utils.DbExecutor;
+import kirilloffna.taskrest.utils.ResponseCache;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import static kirilloffna.taskrest.HelperTest.createServletInputStream;
+import static kirilloffna.taskrest.utils.ServletConstants.INVALID_FILTER_PARAMETERS;
+import static kirilloffna.taskrest.utils.ServletConstants.INVALID_PAGE_PARAMETERS;
+import static kirilloffna.taskrest.utils.ServletConstants.MAX_PAGE_LIMIT;
+import static kirilloffna.taskrest.utils.ServletConstants.PRODUCT_NOT_FOUND;
+import static kirilloffna.taskrest.utils.ServletConstants.SERVICE_OVERLOADED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 /**
@@ -35,6 +54,14 @@ class ProductServletTest {
 
   private final ObjectMapper objectMapper = new ObjectMapper();
 
+  /**
+   * Сбрасывает общий кэш готовых ответов, чтобы полный список, записанный одним тестом, не выдавался в другом.
+   */
+  @BeforeEach
+  void setUp() {
+    ResponseCache.PRODUCTS.invalidate();
+  }
+
   /**
    * Тестирует обработку GET-запроса для получения Product по ID.
    */
@@ -42,15 +69,35 @@ class ProductServletTest {
   void testDoGetProductById() throws Exception {
     ProductDTO product = new ProductDTO(1L, "Test Product", new BigDecimal("10.00"), 10, true, null);
     when(request.getParameter("id")).thenReturn("1");
-    when(productService.getProductById(1L)).thenReturn(Optional.of(product));
+    when(productService.getProductVersion(1L)).thenReturn(Optional.of(7L));
+    when(productService.getProductById(1L, 7L)).thenReturn(Optional.of(product));
     when(response.getWriter()).thenReturn(writer);
 
     productServlet.doGet(request, response);
 
     verify(response).setContentType("application/json;charset=UTF-8");
+    verify(response).setHeader("ETag", "\"7\"");
     verify(writer).write(objectMapper.writeValueAsString(product));
   }
 
+  /**
+   * Тестирует условный GET-запрос Product по ID с текущей версией в If-None-Match.
+   * Проверяет, что возвращается 304 без загрузки продукта.
+   */
+  @Test
+  void testDoGetProductByIdNotModified() throws Exception {
+    when(request.getParameter("id")).thenReturn("1");
+    when(request.getHeader("If-None-Match")).thenReturn("W/\"6\", \"7\"");
+    when(productService.getProductVersion(1L)).thenReturn(Optional.of(7L));
+
+    productServlet.doGet(request, response);
+
+    verify(response).setHeader("ETag", "\"7\"");
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(productService, never()).getProductById(any(), anyLong());
+    verify(response, never()).getWriter();
+  }
+
   /**
    * Тестирует обработку GET-запроса для получения списка всех Product.
    */
@@ -60,13 +107,62 @@ class ProductServletTest {
             new ProductDTO(1L, "Test Product 1", new BigDecimal("10.00"), 10, true, null),
             new ProductDTO(2L, "Test Product 2", new BigDecimal("20.00"), 20, true, null)
     );
-    when(productService.getAllProducts()).thenReturn(products);
-    when(response.getWriter()).thenReturn(writer);
+    doAnswer(invocation -> {
+      RowCallback<ProductDTO> callback = invocation.getArgument(0);
+      for (ProductDTO product : products) {
+        callback.accept(product);
+      }
+      return null;
+    }).when(productService).streamAllProducts(any());
+    StringWriter output = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(output));
 
     productServlet.doGet(request, response);
 
     verify(response).setContentType("application/json;charset=UTF-8");
-    verify(writer).write(objectMapper.writeValueAsString(products));
+    assertEquals(objectMapper.writeValueAsString(products), output.toString());
+  }
+
+  /**
+   * Тестирует потоковую выдачу пустого списка Product.
+   */
+  @Test
+  void testDoGetAllProductsEmpty() throws Exception {
+    StringWriter output = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(output));
+
+    productServlet.doGet(request, response);
+
+    verify(productService).streamAllProducts(any());
+    assertEquals("[]", output.toString());
+  }
+
+  /**
+   * Тестирует повторный GET-запрос списка всех Product.
+   * Проверяет, что второй ответ отдаётся из кэша готовыми байтами без обращения к сервису.
+   */
+  @Test
+  void testDoGetAllProductsFromCache() throws Exception {
+    ProductDTO product = new ProductDTO(1L, "Кока-Кола", new BigDecimal("85.00"), 10, true, null);
+    doAnswer(invocation -> {
+      RowCallback<ProductDTO> callback = invocation.getArgument(0);
+      callback.accept(product);
+      return null;
+    }).when(productService).streamAllProducts(any());
+    when(productService.getProductsVersion()).thenReturn("1-7");
+    when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+    productServlet.doGet(request, response);
+    ServletOutputStream outputStream = mock(ServletOutputStream.class);
+    when(response.getOutputStream()).thenReturn(outputStream);
+
+    productServlet.doGet(request, response);
+
+    byte[] body = objectMapper.writeValueAsString(List.of(product)).getBytes(StandardCharsets.UTF_8);
+    verify(productService, times(1)).streamAllProducts(any());
+    verify(productService, times(1)).getProductsVersion();
+    verify(response, times(2)).setHeader("ETag", "\"1-7\"");
+    verify(response).setContentLength(body.length);
+    verify(outputStream).write(body);
   }
 
   /**
@@ -92,7 +188,6 @@ class ProductServletTest {
     ProductDTO product = new ProductDTO(1L, "Updated Product", new BigDecimal("15.00"), 15, true, null);
     when(request.getInputStream()).thenReturn(createServletInputStream(objectMapper.writeValueAsBytes(product)));
     when(response.getWriter()).thenReturn(writer);
-    when(productService.getProductById(1L)).thenReturn(Optional.of(product));
     when(productService.updateProduct(any(ProductDTO.class))).thenReturn(Optional.of(product));
 
     productServlet.doPut(request, response);
@@ -101,6 +196,22 @@ class ProductServletTest {
     verify(writer).write(objectMapper.writeValueAsString(product));
   }
 
+  /**
+   * Тестирует обработку PUT-запроса для несуществующего Product: ответ 404 определяется результатом обновления
+   * без предварительного чтения продукта.
+   */
+  @Test
+  void testDoPutNotFound() throws Exception {
+    ProductDTO product = new ProductDTO(1L, "Updated Product", new BigDecimal("15.00"), 15, true, null);
+    when(request.getInputStream()).thenReturn(createServletInputStream(objectMapper.writeValueAsBytes(product)));
+    when(productService.updateProduct(any(ProductDTO.class))).thenReturn(Optional.empty());
+
+    productServlet.doPut(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_NOT_FOUND, PRODUCT_NOT_FOUND);
+    verify(productService, never()).getProductById(any(), anyLong());
+  }
+
   /**
    * Тестирует обработку DELETE-запроса для удаления Product по ID.
    */
@@ -113,4 +224,131 @@ class ProductServletTest {
     verify(productService).deleteProduct(1L);
     verify(response).setStatus(HttpServletResponse.SC_NO_CONTENT);
   }
-}
\ No newline at end of file
+
+  /**
+   * Тестирует обработку GET-запроса для получения страницы Product по параметрам limit и after.
+   */
+  @Test
+  void testDoGetProductsPage() throws Exception {
+    PageDTO<ProductDTO> page = new PageDTO<>(List.of(
+            new ProductDTO(3L, "Test Product 3", new BigDecimal("10.00"), 10, true, null)), 3L);
+    when(request.getParameter("limit")).thenReturn("1");
+    when(request.getParameter("after")).thenReturn("2");
+    when(productService.getProductsPage(2L, 1)).thenReturn(page);
+    when(response.getWriter()).thenReturn(writer);
+
+    productServlet.doGet(request, response);
+
+    verify(writer).write(objectMapper.writeValueAsString(page));
+    verify(productService, never()).getAllProducts();
+  }
+
+  /**
+   * Тестирует обработку GET-запроса страницы Product с фильтрами.
+   * Проверяет, что параметры фильтра разбираются и передаются в сервис вместе с пагинацией.
+   */
+  @Test
+  void testDoGetProductsPageByFilter() throws Exception {
+    ProductFilter filter = new ProductFilter(CategoryType.Напитки, true, null, new BigDecimal("150"), null);
+    PageDTO<ProductDTO> page = new PageDTO<>(List.of(
+            new ProductDTO(6L, "Чай", new BigDecimal("100.00"), 20, true, null)), null);
+    when(request.getParameter("limit")).thenReturn("10");
+    when(request.getParameter("categoryType")).thenReturn("Напитки");
+    when(request.getParameter("available")).thenReturn("true");
+    when(request.getParameter("maxPrice")).thenReturn("150");
+    when(request.getParameter("name")).thenReturn(" ");
+    when(productService.getProductsPage(filter, null, 10)).thenReturn(page);
+    when(response.getWriter()).thenReturn(writer);
+
+    productServlet.doGet(request, response);
+
+    verify(writer).write(objectMapper.writeValueAsString(page));
+    verify(productService, never()).getProductsPage(any(), anyInt());
+  }
+
+  /**
+   * Тестирует обработку GET-запроса с некорректным значением фильтра.
+   */
+  @Test
+  void testDoGetProductsInvalidFilter() throws Exception {
+    when(request.getParameter("categoryType")).thenReturn("Супы");
+
+    productServlet.doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, INVALID_FILTER_PARAMETERS);
+    verify(productService, never()).getProductsVersion();
+  }
+
+  /**
+   * Тестирует обработку GET-запроса с параметром limit больше {@link Integer#MAX_VALUE}.
+   * Проверяет, что размер страницы ограничивается максимальным, а не усекается при приведении к int.
+   */
+  @Test
+  void testDoGetProductsPageLimitAboveInt() throws Exception {
+    PageDTO<ProductDTO> page = new PageDTO<>(List.of(), null);
+    when(request.getParameter("limit")).thenReturn("4294967297");
+    when(productService.getProductsPage(null, MAX_PAGE_LIMIT)).thenReturn(page);
+    when(response.getWriter()).thenReturn(writer);
+
+    productServlet.doGet(request, response);
+
+    verify(productService).getProductsPage(null, MAX_PAGE_LIMIT);
+    verify(writer).write(objectMapper.writeValueAsString(page));
+  }
+
+  /**
+   * Тестирует обработку GET-запроса с некорректным параметром limit.
+   */
+  @Test
+  void testDoGetProductsPageInvalidLimit() throws Exception {
+    when(request.getParameter("limit")).thenReturn("-1");
+
+    productServlet.doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, INVALID_PAGE_PARAMETERS);
+  }
+
+  /**
+   * Тестирует асинхронную обработку GET-запроса через {@link DbExecutor}.
+   * Проверяет, что ответ записывается в потоке пула и асинхронный запрос завершается.
+   */
+  @Test
+  void testDoGetProductByIdAsync() throws Exception {
+    DbExecutor dbExecutor = new DbExecutor(1, 1, 0, 1);
+    ProductServlet asyncServlet = new ProductServlet(productService, dbExecutor);
+    AsyncContext asyncContext = mock(AsyncContext.class);
+    ProductDTO product = new ProductDTO(1L, "Test Product", new BigDecimal("10.00"), 10, true, null);
+    when(request.startAsync(request, response)).thenReturn(asyncContext);
+    when(request.getParameter("id")).thenReturn("1");
+    when(productService.getProductVersion(1L)).thenReturn(Optional.of(7L));
+    when(productService.getProductById(1L, 7L)).thenReturn(Optional.of(product));
+    when(response.getWriter()).thenReturn(writer);
+
+    asyncServlet.doGet(request, response);
+
+    verify(asyncContext, timeout(1000)).complete();
+    verify(writer).write(objectMapper.writeValueAsString(product));
+    dbExecutor.shutdown();
+  }
+
+  /**
+   * Тестирует обработку GET-запроса, когда очередь {@link DbExecutor} заполнена.
+   * Проверяет, что возвращается 503 с заголовком Retry-After без обращения к сервису.
+   */
+  @Test
+  void testDoGetRejectedWhenOverloaded() throws Exception {
+    DbExecutor dbExecutor = mock(DbExecutor.class);
+    ProductServlet asyncServlet = new ProductServlet(productService, dbExecutor);
+    AsyncContext asyncContext = mock(AsyncContext.class);
+    when(request.startAsync(request, response)).thenReturn(asyncContext);
+    when(dbExecutor.getRetryAfterSeconds()).thenReturn(2);
+    doThrow(new RejectedExecutionException()).when(dbExecutor).execute(any(), any());
+
+    asyncServlet.doGet(request, response);
+
+    verify(response).setHeader("Retry-After", "2");
+    verify(response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, SERVICE_OVERLOADED);
+    verify(asyncContext).complete();
+    verifyNoInteractions(productService);
+  }
+}
@@ -0,0 +1,57 @@
+package kirilloffna.taskrest.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirilloffna.taskrest.service.ProductService;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+import static kirilloffna.taskrest.utils.ServletConstants.INVALID_SUGGEST_PARAMETERS;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки работы сервлета {@link ProductSuggestServlet}.
+ * Все методы кидают Exception если происходит ошибка при выполнении запроса.
+ */
+class ProductSuggestServletTest {
+
+  private final ProductService productService = mock(ProductService.class);
+
+  private final HttpServletRequest request = mock(HttpServletRequest.class);
+
+  private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+  private final PrintWriter writer = mock(PrintWriter.class);
+
+  private final ProductSuggestServlet productSuggestServlet = new ProductSuggestServlet(productService);
+
+  /**
+   * Тестирует выдачу подсказок: лимит больше максимального ограничивается, названия записываются JSON-массивом.
+   */
+  @Test
+  void testDoGet() throws Exception {
+    when(request.getParameter("prefix")).thenReturn("ко");
+    when(request.getParameter("limit")).thenReturn("1000");
+    when(productService.suggestProductNames("ко", 50)).thenReturn(List.of("Кока-Кола", "Кофе"));
+    when(response.getWriter()).thenReturn(writer);
+
+    productSuggestServlet.doGet(request, response);
+
+    verify(writer).write("[\"Кока-Кола\",\"Кофе\"]");
+  }
+
+  /**
+   * Тестирует отклонение запроса без префикса.
+   */
+  @Test
+  void testDoGetWithoutPrefix() throws Exception {
+    productSuggestServlet.doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, INVALID_SUGGEST_PARAMETERS);
+    verify(productService, never()).suggestProductNames(anyString(), anyInt());
+  }
+}
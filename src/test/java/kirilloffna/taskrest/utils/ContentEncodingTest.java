@@ -0,0 +1,54 @@
+package kirilloffna.taskrest.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестовый класс для проверки выбора и работы кодировок сжатия {@link ContentEncoding}.
+ */
+class ContentEncodingTest {
+
+  /**
+   * Тестирует метод {@link ContentEncoding#negotiate(String)}.
+   * Проверяет учёт весов {@code q}, шаблона {@code *} и предпочтение gzip при равных весах.
+   */
+  @Test
+  void testNegotiate() {
+    assertEquals(Optional.of(ContentEncoding.GZIP), ContentEncoding.negotiate("deflate, gzip"));
+    assertEquals(Optional.of(ContentEncoding.DEFLATE), ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+    assertEquals(Optional.of(ContentEncoding.DEFLATE), ContentEncoding.negotiate("gzip;q=0, *"));
+    assertEquals(Optional.empty(), ContentEncoding.negotiate("br, identity"));
+    assertEquals(Optional.empty(), ContentEncoding.negotiate(null));
+  }
+
+  /**
+   * Тестирует метод {@link ContentEncoding#wrap(java.io.OutputStream, int)}.
+   * Проверяет, что после {@code flush()} клиенту уже доступны сжатые данные, а поток распаковывается целиком.
+   */
+  @Test
+  void testWrap() throws Exception {
+    byte[] body = "{\"name\":\"Кока-Кола\"}".repeat(100).getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    OutputStream out = ContentEncoding.GZIP.wrap(compressed, 1);
+    out.write(body);
+    out.flush();
+    int flushed = compressed.size();
+    out.close();
+
+    assertTrue(flushed > 10);
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertArrayEquals(body, in.readAllBytes());
+    }
+  }
+}
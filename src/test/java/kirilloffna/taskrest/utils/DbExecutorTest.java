@@ -0,0 +1,110 @@
+package kirilloffna.taskrest.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для проверки ограниченного пула потоков {@link DbExecutor}.
+ */
+class DbExecutorTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private DbExecutor dbExecutor;
+
+  /**
+   * Освобождает заблокированные задачи и останавливает пул после каждого теста.
+   */
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    dbExecutor.shutdown();
+  }
+
+  /**
+   * Тестирует метод {@link DbExecutor#execute(Runnable, Runnable)}.
+   * Проверяет, что задача выполняется и учитывается в статистике.
+   */
+  @Test
+  void testExecute() throws InterruptedException {
+    dbExecutor = new DbExecutor(1, 1, 0, 1);
+    CountDownLatch done = new CountDownLatch(1);
+
+    dbExecutor.execute(done::countDown, Assertions::fail);
+
+    assertTrue(done.await(1, TimeUnit.SECONDS));
+    dbExecutor.shutdown();
+    assertEquals(1, dbExecutor.getStats().getCompletedTasks());
+    assertEquals(0, dbExecutor.getStats().getRejectedTasks());
+  }
+
+  /**
+   * Тестирует метод {@link DbExecutor#execute(Runnable, Runnable)} при заполненной очереди.
+   * Проверяет, что задача отклоняется сразу и учитывается в статистике.
+   */
+  @Test
+  void testExecuteRejectsWhenQueueIsFull() throws InterruptedException {
+    dbExecutor = new DbExecutor(1, 1, 0, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    dbExecutor.execute(() -> {
+      started.countDown();
+      awaitRelease();
+    }, Assertions::fail);
+    assertTrue(started.await(1, TimeUnit.SECONDS));
+    dbExecutor.execute(() -> {
+    }, Assertions::fail);
+
+    assertThrows(RejectedExecutionException.class, () -> dbExecutor.execute(() -> {
+    }, Assertions::fail));
+
+    DbExecutorStats stats = dbExecutor.getStats();
+    assertEquals(1, stats.getQueueDepth());
+    assertEquals(1, stats.getActiveThreads());
+    assertEquals(1, stats.getRejectedTasks());
+  }
+
+  /**
+   * Тестирует метод {@link DbExecutor#execute(Runnable, Runnable)} для задачи, простоявшей в очереди дольше
+   * допустимого. Проверяет, что вместо задачи выполняется onRejected.
+   */
+  @Test
+  void testExecuteExpiresTaskWaitingTooLong() throws InterruptedException {
+    dbExecutor = new DbExecutor(1, 1, 100, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    dbExecutor.execute(() -> {
+      started.countDown();
+      sleep(300);
+    }, Assertions::fail);
+    // Вторая задача ставится в очередь, только когда поток пула уже занят первой.
+    assertTrue(started.await(1, TimeUnit.SECONDS));
+    CountDownLatch rejected = new CountDownLatch(1);
+
+    dbExecutor.execute(Assertions::fail, rejected::countDown);
+
+    assertTrue(rejected.await(1, TimeUnit.SECONDS));
+    assertEquals(1, dbExecutor.getStats().getExpiredTasks());
+    assertTrue(dbExecutor.getStats().getMaxWaitMs() >= 100);
+  }
+
+  private void awaitRelease() {
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
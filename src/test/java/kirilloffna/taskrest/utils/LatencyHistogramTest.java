@@ -0,0 +1,55 @@
+package kirilloffna.taskrest.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Тестовый класс для проверки гистограммы длительностей {@link LatencyHistogram}.
+ */
+class LatencyHistogramTest {
+
+  /**
+   * Тестирует метод {@link LatencyHistogram#record(long)}.
+   * Проверяет, что значения попадают в корзины по верхней границе, а сумма и максимум учитываются.
+   */
+  @Test
+  void testRecord() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(50));
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(51));
+    histogram.record(TimeUnit.SECONDS.toNanos(60));
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(3, snapshot.count());
+    assertEquals(1, snapshot.counts()[0]);
+    assertEquals(1, snapshot.counts()[1]);
+    assertEquals(1, snapshot.counts()[snapshot.counts().length - 1]);
+    assertEquals(TimeUnit.SECONDS.toNanos(60), snapshot.maxNanos());
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(101) + TimeUnit.SECONDS.toNanos(60), snapshot.sumNanos());
+  }
+
+  /**
+   * Тестирует метод {@link LatencyHistogram.Snapshot#quantileNanos(double)}.
+   * Проверяет, что перцентиль оценивается верхней границей корзины и не превышает максимум.
+   */
+  @Test
+  void testQuantile() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 98; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(700));
+    }
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(20));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(30));
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), snapshot.quantileNanos(0.5));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), snapshot.quantileNanos(0.95));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(25), snapshot.quantileNanos(0.99));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(30), snapshot.quantileNanos(1));
+    assertEquals(0, new LatencyHistogram().snapshot().quantileNanos(0.5));
+  }
+}
@@ -0,0 +1,122 @@
+package kirilloffna.taskrest.utils;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import kirilloffna.taskrest.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки ленты статусов заказов {@link OrderStatusFeed}.
+ */
+class OrderStatusFeedTest {
+
+  private final OrderStatusFeed feed = new OrderStatusFeed(4, 8, 0, 3000);
+
+  /**
+   * Тестирует методы {@link OrderStatusFeed#subscribe(AsyncContext, Long)} и
+   * {@link OrderStatusFeed#publish(long, OrderStatus)}. Проверяет, что подписчик сразу получает задержку
+   * переподключения, а затем событие с номером в поле id.
+   */
+  @Test
+  void testPublishToSubscriber() throws Exception {
+    Client client = new Client();
+    feed.subscribe(client.asyncContext, null);
+
+    feed.publish(5L, OrderStatus.Готов);
+
+    assertEquals("retry: 3000\n\n"
+            + "id: 1\nevent: order-status\ndata: {\"orderId\":5,\"status\":\"Готов\"}\n\n", client.body());
+    assertEquals(1, feed.getSubscribers());
+  }
+
+  /**
+   * Тестирует переподключение с номером последнего события. Проверяет, что досылаются только пропущенные события,
+   * а при неизвестном номере отправляется событие reset.
+   */
+  @Test
+  void testReplayAfterReconnect() throws Exception {
+    feed.publish(1L, OrderStatus.Принят);
+    feed.publish(1L, OrderStatus.Готовится);
+    feed.publish(1L, OrderStatus.Готов);
+
+    Client reconnected = new Client();
+    feed.subscribe(reconnected.asyncContext, 1L);
+    Client restarted = new Client();
+    feed.subscribe(restarted.asyncContext, 99L);
+
+    assertEquals("retry: 3000\n\n"
+            + "id: 2\nevent: order-status\ndata: {\"orderId\":1,\"status\":\"Готовится\"}\n\n"
+            + "id: 3\nevent: order-status\ndata: {\"orderId\":1,\"status\":\"Готов\"}\n\n", reconnected.body());
+    assertEquals("retry: 3000\n\nevent: reset\ndata: {}\n\n", restarted.body());
+  }
+
+  /**
+   * Тестирует неблокирующую запись: пока сокет не готов, события накапливаются и отправляются по
+   * {@link WriteListener#onWritePossible()}, а подписчик, отставший больше допустимого, отключается.
+   */
+  @Test
+  void testSlowSubscriber() throws Exception {
+    Client client = new Client();
+    client.ready = false;
+    feed.subscribe(client.asyncContext, null);
+
+    feed.publish(1L, OrderStatus.Принят);
+    assertEquals("", client.body());
+    client.ready = true;
+    client.listener.onWritePossible();
+    assertEquals("retry: 3000\n\nid: 1\nevent: order-status\ndata: {\"orderId\":1,\"status\":\"Принят\"}\n\n",
+            client.body());
+
+    client.ready = false;
+    for (long orderId = 0; orderId < 9; orderId++) {
+      feed.publish(orderId, OrderStatus.Готов);
+    }
+
+    verify(client.asyncContext).complete();
+    assertEquals(0, feed.getSubscribers());
+    assertEquals(1, feed.getDropped());
+  }
+
+  /**
+   * Асинхронный ответ подписчика, записывающий тело в память.
+   */
+  private static class Client {
+    private final AsyncContext asyncContext = mock(AsyncContext.class);
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private boolean ready = true;
+    private WriteListener listener;
+
+    private Client() throws Exception {
+      ServletResponse response = mock(ServletResponse.class);
+      when(asyncContext.getResponse()).thenReturn(response);
+      when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+          out.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+          return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+          listener = writeListener;
+        }
+      });
+    }
+
+    private String body() {
+      return out.toString(StandardCharsets.UTF_8);
+    }
+  }
+}
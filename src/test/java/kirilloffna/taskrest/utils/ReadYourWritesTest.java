@@ -0,0 +1,98 @@
+package kirilloffna.taskrest.utils;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Тестовый класс для проверки окна чтения своих записей {@link ReadYourWrites}.
+ */
+class ReadYourWritesTest {
+
+  /**
+   * Тестирует метод {@link ReadYourWrites#bind(HttpServletRequest, HttpServletResponse, Runnable)} без настроенных
+   * реплик. Проверяет, что обработчик возвращается без изменений, а cookie не устанавливается.
+   */
+  @Test
+  void testBindWithoutReplicas() {
+    HttpServletRequest req = mock(HttpServletRequest.class);
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    Runnable handler = () -> {
+    };
+
+    assertSame(handler, ReadYourWrites.bind(req, resp, handler));
+    verifyNoInteractions(resp);
+    assertFalse(ReadYourWrites.isPrimaryRequired());
+  }
+
+  /**
+   * Тестирует закрепление реплики за запросом.
+   * Проверяет, что реплика и переход на основную базу данных действуют только внутри обработчика запроса.
+   */
+  @Test
+  void testRoutePinsReplica() {
+    ReadYourWrites.pinReplica(1);
+    assertEquals(ReadYourWrites.UNPINNED, ReadYourWrites.getPinnedReplica());
+
+    ReadYourWrites.route(false, () -> {
+      assertEquals(ReadYourWrites.UNPINNED, ReadYourWrites.getPinnedReplica());
+      ReadYourWrites.pinReplica(1);
+      assertEquals(1, ReadYourWrites.getPinnedReplica());
+      assertFalse(ReadYourWrites.isPrimaryRequired());
+      ReadYourWrites.requirePrimary();
+      assertTrue(ReadYourWrites.isPrimaryRequired());
+    }).run();
+
+    assertEquals(ReadYourWrites.UNPINNED, ReadYourWrites.getPinnedReplica());
+    assertFalse(ReadYourWrites.isPrimaryRequired());
+  }
+
+  /**
+   * Тестирует метод {@link ReadYourWrites#isWrite(String)}.
+   */
+  @Test
+  void testIsWrite() {
+    assertTrue(ReadYourWrites.isWrite("POST"));
+    assertTrue(ReadYourWrites.isWrite("PUT"));
+    assertTrue(ReadYourWrites.isWrite("DELETE"));
+    assertFalse(ReadYourWrites.isWrite("GET"));
+    assertFalse(ReadYourWrites.isWrite(null));
+  }
+
+  /**
+   * Тестирует метод {@link ReadYourWrites#isWithinWindow(Cookie[], long)}.
+   * Проверяет, что основная база данных выбирается только по действующей cookie окна.
+   */
+  @Test
+  void testIsWithinWindow() {
+    Cookie other = new Cookie("session", "1");
+
+    assertFalse(ReadYourWrites.isWithinWindow(null, 1000));
+    assertFalse(ReadYourWrites.isWithinWindow(new Cookie[]{other}, 1000));
+    assertTrue(ReadYourWrites.isWithinWindow(new Cookie[]{other, ReadYourWrites.createCookie(2000)}, 1000));
+    assertFalse(ReadYourWrites.isWithinWindow(new Cookie[]{ReadYourWrites.createCookie(1000)}, 1000));
+    assertFalse(ReadYourWrites.isWithinWindow(new Cookie[]{new Cookie(ReadYourWrites.COOKIE_NAME, "x")}, 1000));
+  }
+
+  /**
+   * Тестирует метод {@link ReadYourWrites#createCookie(long)}.
+   */
+  @Test
+  void testCreateCookie() {
+    Cookie cookie = ReadYourWrites.createCookie(12345);
+
+    assertEquals(ReadYourWrites.COOKIE_NAME, cookie.getName());
+    assertEquals("12345", cookie.getValue());
+    assertEquals("/", cookie.getPath());
+    assertTrue(cookie.isHttpOnly());
+    assertTrue(cookie.getMaxAge() > 0);
+  }
+}
@@ -0,0 +1,86 @@
+package kirilloffna.taskrest.utils;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тестовый класс для проверки кэша готовых тел ответов {@link ResponseCache}.
+ */
+class ResponseCacheTest {
+
+  private final ResponseCache cache = new ResponseCache(true, 2, 64);
+
+  /**
+   * Тестирует методы {@link ResponseCache#record(String)} и {@link ResponseCache#get(String)}.
+   * Проверяет, что тело, записанное в ответ, сохраняется в UTF-8 и сбрасывается при инвалидации.
+   */
+  @Test
+  void testRecordAndInvalidate() throws Exception {
+    StringWriter output = new StringWriter();
+
+    record("all", "[\"Кока-Кола\"]", output);
+
+    assertEquals("[\"Кока-Кола\"]", output.toString());
+    ResponseCache.Entry entry = cache.get("all").orElseThrow();
+    assertEquals("7", entry.version());
+    assertArrayEquals("[\"Кока-Кола\"]".getBytes(StandardCharsets.UTF_8), entry.body());
+    assertEquals(1, cache.getHits());
+
+    cache.invalidate();
+
+    assertTrue(cache.get("all").isEmpty());
+    assertEquals(1, cache.getMisses());
+  }
+
+  /**
+   * Тестирует {@link ResponseCache.Recorder#commit(String)} при изменении данных во время выдачи ответа.
+   * Проверяет, что тело, прочитанное до инвалидации, не сохраняется.
+   */
+  @Test
+  void testCommitAfterInvalidateIsIgnored() throws Exception {
+    ResponseCache.Recorder recorder = cache.record("all").orElseThrow();
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    when(resp.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+    recorder.wrap(resp).getWriter().write("[]");
+
+    cache.invalidate();
+    recorder.commit("7");
+
+    assertTrue(cache.get("all").isEmpty());
+  }
+
+  /**
+   * Тестирует ограничение размера тела ответа. Проверяет, что длинный ответ полностью отправляется клиенту,
+   * но не сохраняется в кэше.
+   */
+  @Test
+  void testLargeBodyIsNotCached() throws Exception {
+    StringWriter output = new StringWriter();
+    String body = "x".repeat(100);
+
+    record("all", body, output);
+
+    assertEquals(body, output.toString());
+    assertTrue(cache.get("all").isEmpty());
+  }
+
+  private void record(String key, String body, StringWriter output) throws Exception {
+    ResponseCache.Recorder recorder = cache.record(key).orElseThrow();
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    when(resp.getWriter()).thenReturn(new PrintWriter(output));
+    PrintWriter writer = recorder.wrap(resp).getWriter();
+    writer.write(body);
+    writer.close();
+    recorder.commit("7");
+  }
+}
@@ -0,0 +1,62 @@
+package kirilloffna.taskrest.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для проверки источника соединений {@link StatementCacheDataSource}.
+ */
+class StatementCacheDataSourceTest {
+
+  private final DataSource delegate = mock(DataSource.class);
+  private final Connection physical = mock(Connection.class);
+
+  /**
+   * Тестирует метод {@link StatementCacheDataSource#getConnection()}.
+   * Проверяет, что новое соединение прогревается, а повторная подготовка того же SQL на нём считается попаданием.
+   */
+  @Test
+  void testGetConnectionWarmsUpAndCountsHits() throws SQLException {
+    when(delegate.getConnection()).thenReturn(physical);
+    when(physical.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+    StatementCacheDataSource dataSource = new StatementCacheDataSource(delegate,
+            connection -> connection.prepareStatement("SELECT 1"));
+
+    Connection connection = dataSource.getConnection();
+    connection.prepareStatement("SELECT 1");
+    connection.prepareStatement("SELECT 1", Statement.RETURN_GENERATED_KEYS);
+
+    verify(physical, times(2)).prepareStatement("SELECT 1");
+    StatementCacheStats stats = dataSource.getStats();
+    assertEquals(1, stats.getHits());
+    assertEquals(2, stats.getMisses());
+    assertEquals(1, stats.getWarmedConnections());
+    assertEquals(1.0 / 3, stats.getHitRate(), 1e-9);
+  }
+
+  /**
+   * Тестирует метод {@link StatementCacheDataSource#getConnection()} при ошибке прогрева.
+   * Проверяет, что соединение всё равно выдаётся, а исключения физического соединения передаются без обёртки.
+   */
+  @Test
+  void testGetConnectionWhenWarmUpFails() throws SQLException {
+    when(delegate.getConnection()).thenReturn(physical);
+    when(physical.prepareStatement(anyString())).thenThrow(new SQLException("relation does not exist"));
+    StatementCacheDataSource dataSource = new StatementCacheDataSource(delegate,
+            connection -> connection.prepareStatement("SELECT * FROM products"));
+
+    Connection connection = dataSource.getConnection();
+
+    assertNotNull(connection);
+    assertEquals(0, dataSource.getStats().getWarmedConnections());
+    assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 1"));
+  }
+}
@@ -0,0 +1,31 @@
+package kirilloffna.taskrest.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Тестовый класс для проверки выбора режима потоков {@link ThreadMode}.
+ */
+class ThreadModeTest {
+
+  /**
+   * Тестирует метод {@link ThreadMode#resolve(String, int)}.
+   * Проверяет, что значение настройки читается без учёта регистра и пробелов.
+   */
+  @Test
+  void testResolve() {
+    assertEquals(ThreadMode.VIRTUAL, ThreadMode.resolve(" Virtual ", 21));
+    assertEquals(ThreadMode.PLATFORM, ThreadMode.resolve("platform", 21));
+  }
+
+  /**
+   * Тестирует метод {@link ThreadMode#resolve(String, int)} для версии Java без виртуальных потоков
+   * и для неизвестного значения. Проверяет, что используются платформенные потоки.
+   */
+  @Test
+  void testResolveFallsBackToPlatform() {
+    assertEquals(ThreadMode.PLATFORM, ThreadMode.resolve("virtual", 17));
+    assertEquals(ThreadMode.PLATFORM, ThreadMode.resolve("loom", 21));
+  }
+}
@@ -1,7 +1,9 @@
+CREATE SEQUENCE IF NOT EXISTS entity_version_seq;
 CREATE TABLE IF NOT EXISTS order_details(
               id SERIAL PRIMARY KEY,
               order_status VARCHAR(50) NOT NULL,
-              total_amount DECIMAL(10, 2) NOT NULL
+              total_amount DECIMAL(10, 2) NOT NULL,
+              version BIGINT NOT NULL DEFAULT nextval('entity_version_seq')
               );
 CREATE TABLE IF NOT EXISTS products_categories(
               id SERIAL PRIMARY KEY, name VARCHAR(255) NOT NULL,
@@ -13,7 +15,8 @@ CREATE TABLE IF NOT EXISTS products(
               price DECIMAL(10, 2) NOT NULL,
               quantity BIGINT NOT NULL DEFAULT 0,
               available BOOLEAN NOT NULL,
-              order_detail_id BIGINT REFERENCES order_details(id) ON DELETE CASCADE
+              order_detail_id BIGINT REFERENCES order_details(id) ON DELETE CASCADE,
+              version BIGINT NOT NULL DEFAULT nextval('entity_version_seq')
               );
 CREATE TABLE IF NOT EXISTS products_products_categories(
               product_id BIGINT,